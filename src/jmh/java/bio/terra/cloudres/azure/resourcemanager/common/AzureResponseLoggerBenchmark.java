@@ -0,0 +1,142 @@
+package bio.terra.cloudres.azure.resourcemanager.common;
+
+import bio.terra.cloudres.azure.resourcemanager.compute.data.CreateDiskRequestData;
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.OperationAnnotator;
+import bio.terra.cloudres.testing.BenchmarkTelemetry;
+import bio.terra.cloudres.testing.SinkLogger;
+import com.azure.core.http.HttpHeaders;
+import com.azure.core.http.HttpMethod;
+import com.azure.core.http.HttpRequest;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.policy.HttpResponseLoggingContext;
+import com.azure.core.management.Region;
+import com.azure.core.util.Context;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.event.Level;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Measures {@link AzureResponseLogger#logResponse} for a disk creation response, with debug logging
+ * on and off. This runs for every Azure Resource Manager response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzureResponseLoggerBenchmark {
+  private static final String RESPONSE_BODY = "{\"name\": \"benchmark-disk\", \"sizeGB\": 100}";
+
+  @Param({"false", "true"})
+  public boolean debugEnabled;
+
+  private AzureResponseLogger responseLogger;
+  private HttpResponseLoggingContext loggingContext;
+
+  @Setup
+  public void setup() throws Exception {
+    ClientConfig clientConfig =
+        ClientConfig.Builder.newBuilder()
+            .setClient("benchmark")
+            .setOpenTelemetry(BenchmarkTelemetry.withSdkMetrics())
+            .build();
+    responseLogger =
+        new AzureResponseLogger(
+            new OperationAnnotator(
+                clientConfig, new SinkLogger(debugEnabled ? Level.DEBUG : Level.INFO)));
+
+    HttpRequest request =
+        new HttpRequest(
+            HttpMethod.PUT,
+            "https://management.azure.com/subscriptions/sub/resourceGroups/rg/providers/Microsoft.Compute/disks/benchmark-disk");
+    Context context =
+        Defaults.buildContext(
+            CreateDiskRequestData.builder()
+                .setName("benchmark-disk")
+                .setRegion(Region.US_EAST)
+                .setTenantId("tenant")
+                .setSubscriptionId("sub")
+                .setResourceGroupName("rg")
+                .setSize(100)
+                .build());
+    // HttpResponseLoggingContext is only constructed by Azure's HttpLoggingPolicy.
+    Constructor<HttpResponseLoggingContext> constructor =
+        HttpResponseLoggingContext.class.getDeclaredConstructor(
+            HttpResponse.class, Duration.class, Context.class, Integer.class);
+    constructor.setAccessible(true);
+    loggingContext =
+        constructor.newInstance(new StaticHttpResponse(request), Duration.ofMillis(42), context, 1);
+  }
+
+  @Benchmark
+  public Mono<HttpResponse> logResponse() {
+    return responseLogger.logResponse(null, loggingContext);
+  }
+
+  /** An {@link HttpResponse} with a fixed JSON body. */
+  private static class StaticHttpResponse extends HttpResponse {
+    private final byte[] body = RESPONSE_BODY.getBytes(StandardCharsets.UTF_8);
+    private final HttpHeaders headers =
+        new HttpHeaders()
+            .set("Content-Type", "application/json")
+            .set("Content-Length", String.valueOf(body.length));
+
+    private StaticHttpResponse(HttpRequest request) {
+      super(request);
+    }
+
+    @Override
+    public int getStatusCode() {
+      return 200;
+    }
+
+    @Override
+    public String getHeaderValue(String name) {
+      return headers.getValue(name);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+
+    @Override
+    public Flux<ByteBuffer> getBody() {
+      return Flux.just(ByteBuffer.wrap(body));
+    }
+
+    @Override
+    public Mono<byte[]> getBodyAsByteArray() {
+      return Mono.just(body);
+    }
+
+    @Override
+    public Mono<String> getBodyAsString() {
+      return Mono.just(RESPONSE_BODY);
+    }
+
+    @Override
+    public Mono<String> getBodyAsString(Charset charset) {
+      return Mono.just(new String(body, charset));
+    }
+  }
+}
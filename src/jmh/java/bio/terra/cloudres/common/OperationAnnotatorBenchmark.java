@@ -0,0 +1,103 @@
+package bio.terra.cloudres.common;
+
+import bio.terra.cloudres.testing.SinkLogger;
+import bio.terra.cloudres.testing.StubCloudOperation;
+import bio.terra.cloudres.util.Serializers;
+import com.google.api.services.compute.model.AttachedDisk;
+import com.google.api.services.compute.model.AttachedDiskInitializeParams;
+import com.google.api.services.compute.model.Instance;
+import com.google.api.services.compute.model.Metadata;
+import com.google.api.services.compute.model.NetworkInterface;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.event.Level;
+
+/**
+ * Measures the per-call overhead {@link OperationAnnotator} adds to a cloud call, with debug
+ * logging on and off. The cloud call itself is a no-op, and the request serialization mirrors a
+ * Compute instance insert.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperationAnnotatorBenchmark {
+  @Param({"false", "true"})
+  public boolean debugEnabled;
+
+  private OperationAnnotator operationAnnotator;
+  private Instance instance;
+
+  @Setup
+  public void setup() {
+    ClientConfig clientConfig = ClientConfig.Builder.newBuilder().setClient("benchmark").build();
+    operationAnnotator =
+        new OperationAnnotator(
+            clientConfig, new SinkLogger(debugEnabled ? Level.DEBUG : Level.INFO));
+    instance = createInstance();
+  }
+
+  @Benchmark
+  public Instance executeCowOperation() {
+    return operationAnnotator.executeCowOperation(
+        StubCloudOperation.TEST_OPERATION, () -> instance, this::serializeInsert);
+  }
+
+  private JsonObject serializeInsert() {
+    JsonObject result = new JsonObject();
+    result.addProperty("projectId", "my-project");
+    result.addProperty("zone", "us-central1-a");
+    result.add("instance", Serializers.gson().toJsonTree(instance));
+    return result;
+  }
+
+  /** Creates a reasonably large {@link Instance}, similar to what Terra services create. */
+  private static Instance createInstance() {
+    Map<String, String> labels = new HashMap<>();
+    List<Metadata.Items> metadataItems = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      labels.put("label-" + i, "value-" + i);
+      metadataItems.add(new Metadata.Items().setKey("key-" + i).setValue("metadata-value-" + i));
+    }
+    List<AttachedDisk> disks = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      disks.add(
+          new AttachedDisk()
+              .setDeviceName("disk-" + i)
+              .setBoot(i == 0)
+              .setAutoDelete(true)
+              .setInitializeParams(
+                  new AttachedDiskInitializeParams()
+                      .setSourceImage("projects/debian-cloud/global/images/family/debian-11")
+                      .setDiskSizeGb(100L)));
+    }
+    return new Instance()
+        .setName("benchmark-instance")
+        .setMachineType("zones/us-central1-a/machineTypes/n1-standard-4")
+        .setLabels(labels)
+        .setMetadata(new Metadata().setItems(metadataItems))
+        .setDisks(disks)
+        .setNetworkInterfaces(
+            List.of(
+                new NetworkInterface()
+                    .setNetwork("global/networks/network")
+                    .setSubnetwork("regions/us-central1/subnetworks/subnetwork")));
+  }
+}
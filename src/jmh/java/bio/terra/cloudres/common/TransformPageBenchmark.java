@@ -0,0 +1,118 @@
+package bio.terra.cloudres.common;
+
+import com.google.api.gax.paging.Page;
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures iterating a {@link TransformPage} over in-memory pages, as the storage COWs do when
+ * listing buckets and blobs. Fetching pages is free here, so this is the cost of the wrapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransformPageBenchmark {
+  @Param({"10"})
+  public int pageCount;
+
+  @Param({"100"})
+  public int pageSize;
+
+  private Page<String> firstPage;
+
+  @Setup
+  public void setup() {
+    List<List<String>> pages = new ArrayList<>(pageCount);
+    for (int p = 0; p < pageCount; p++) {
+      List<String> values = new ArrayList<>(pageSize);
+      for (int i = 0; i < pageSize; i++) {
+        values.add("page-" + p + "-value-" + i);
+      }
+      pages.add(values);
+    }
+    firstPage = new ListPage(pages, 0);
+  }
+
+  @Benchmark
+  public void iterateAll(Blackhole blackhole) {
+    for (Integer length : new TransformPage<>(firstPage, String::length).iterateAll()) {
+      blackhole.consume(length);
+    }
+  }
+
+  /**
+   * Transforms each page into a list once. This costs more than lazy transformation for a cheap
+   * transform like this one, and pays off when the transform is expensive or values are reread.
+   */
+  @Benchmark
+  public void iterateAllMemoized(Blackhole blackhole) {
+    TransformPage.Options options = TransformPage.Options.builder().setMemoize(true).build();
+    for (Integer length : new TransformPage<>(firstPage, String::length, options).iterateAll()) {
+      blackhole.consume(length);
+    }
+  }
+
+  @Benchmark
+  public void iteratePages(Blackhole blackhole) {
+    Page<Integer> page = new TransformPage<>(firstPage, String::length);
+    while (page != null) {
+      for (Integer length : page.getValues()) {
+        blackhole.consume(length);
+      }
+      page = page.hasNextPage() ? page.getNextPage() : null;
+    }
+  }
+
+  /** An in-memory {@link Page} of strings. */
+  private static class ListPage implements Page<String> {
+    private final List<List<String>> pages;
+    private final int index;
+
+    private ListPage(List<List<String>> pages, int index) {
+      this.pages = pages;
+      this.index = index;
+    }
+
+    @Override
+    public boolean hasNextPage() {
+      return index + 1 < pages.size();
+    }
+
+    @Override
+    public String getNextPageToken() {
+      return hasNextPage() ? String.valueOf(index + 1) : "";
+    }
+
+    @Override
+    public Page<String> getNextPage() {
+      return hasNextPage() ? new ListPage(pages, index + 1) : null;
+    }
+
+    @Override
+    public Iterable<String> iterateAll() {
+      return Iterables.concat(pages.subList(index, pages.size()));
+    }
+
+    @Override
+    public Iterable<String> getValues() {
+      return pages.get(index);
+    }
+  }
+}
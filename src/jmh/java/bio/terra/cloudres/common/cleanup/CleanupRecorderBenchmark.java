@@ -0,0 +1,82 @@
+package bio.terra.cloudres.common.cleanup;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.janitor.model.CloudResourceUid;
+import bio.terra.janitor.model.GoogleBucketUid;
+import com.google.api.core.ApiFutures;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.pubsub.v1.Publisher;
+import com.google.pubsub.v1.PubsubMessage;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time {@link CleanupRecorder#record} adds to a resource creation, with synchronous
+ * and asynchronous publishing. Pub/Sub is replaced by a publisher that acknowledges immediately, so
+ * this is CRL's own overhead: building and serializing the Janitor message and handing it off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CleanupRecorderBenchmark {
+  @Param({"false", "true"})
+  public boolean asyncPublishing;
+
+  private final CloudResourceUid resource =
+      new CloudResourceUid().googleBucketUid(new GoogleBucketUid().bucketName("benchmark-bucket"));
+  private ClientConfig clientConfig;
+
+  @Setup
+  public void setup() {
+    // Stub only, so Mockito does not keep every invocation for verification.
+    Publisher publisher = mock(Publisher.class, withSettings().stubOnly());
+    when(publisher.publish(any(PubsubMessage.class)))
+        .thenReturn(ApiFutures.immediateFuture("message-id"));
+    CleanupRecorder.providePublisher(publisher);
+    clientConfig =
+        ClientConfig.Builder.newBuilder()
+            .setClient("benchmark")
+            .setCleanupConfig(
+                CleanupConfig.builder()
+                    .setCleanupId("CleanupRecorderBenchmark")
+                    .setTimeToLive(Duration.ofHours(1))
+                    .setCredentials(GoogleCredentials.create(new AccessToken("token", null)))
+                    .setJanitorProjectId("benchmark-project")
+                    .setJanitorTopicName("benchmark-topic")
+                    .setAsyncPublishing(asyncPublishing)
+                    .setQueueCapacity(100_000)
+                    .build())
+            .build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    CleanupRecorder.close();
+  }
+
+  @Benchmark
+  public void record() {
+    CleanupRecorder.record(resource, clientConfig);
+  }
+}
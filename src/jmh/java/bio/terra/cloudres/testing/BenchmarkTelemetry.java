@@ -0,0 +1,57 @@
+package bio.terra.cloudres.testing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
+import java.time.Duration;
+import java.util.Collection;
+
+/** {@link OpenTelemetry} instances for benchmarks. */
+public class BenchmarkTelemetry {
+  private BenchmarkTelemetry() {}
+
+  /**
+   * Returns an SDK {@link OpenTelemetry} that aggregates metrics like a real deployment, so the
+   * cost of recording is included in measurements, but never exports them during a benchmark.
+   */
+  public static OpenTelemetry withSdkMetrics() {
+    return OpenTelemetrySdk.builder()
+        .setMeterProvider(
+            SdkMeterProvider.builder()
+                .registerMetricReader(
+                    PeriodicMetricReader.builder(new DroppingMetricExporter())
+                        .setInterval(Duration.ofDays(1))
+                        .build())
+                .build())
+        .build();
+  }
+
+  /** A {@link MetricExporter} that drops everything. */
+  private static class DroppingMetricExporter implements MetricExporter {
+    @Override
+    public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+      return AggregationTemporality.CUMULATIVE;
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<MetricData> metrics) {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package bio.terra.cloudres.testing;
+
+import org.slf4j.Marker;
+import org.slf4j.event.Level;
+import org.slf4j.helpers.LegacyAbstractLogger;
+
+/**
+ * A {@link org.slf4j.Logger} for benchmarks with a fixed enabled level. Enabled log calls render
+ * their arguments like a structured logging appender would, so their cost is included in the
+ * measurement, but nothing is written anywhere.
+ */
+public class SinkLogger extends LegacyAbstractLogger {
+  private final Level level;
+
+  /** The most recently rendered message, kept so the JIT cannot eliminate rendering. */
+  private volatile String lastMessage;
+
+  public SinkLogger(Level level) {
+    this.level = level;
+    this.name = SinkLogger.class.getName();
+  }
+
+  public String getLastMessage() {
+    return lastMessage;
+  }
+
+  @Override
+  public boolean isTraceEnabled() {
+    return isEnabled(Level.TRACE);
+  }
+
+  @Override
+  public boolean isDebugEnabled() {
+    return isEnabled(Level.DEBUG);
+  }
+
+  @Override
+  public boolean isInfoEnabled() {
+    return isEnabled(Level.INFO);
+  }
+
+  @Override
+  public boolean isWarnEnabled() {
+    return isEnabled(Level.WARN);
+  }
+
+  @Override
+  public boolean isErrorEnabled() {
+    return isEnabled(Level.ERROR);
+  }
+
+  private boolean isEnabled(Level requested) {
+    return requested.toInt() >= level.toInt();
+  }
+
+  @Override
+  protected String getFullyQualifiedCallerName() {
+    return null;
+  }
+
+  @Override
+  protected void handleNormalizedLoggingCall(
+      Level level, Marker marker, String messagePattern, Object[] arguments, Throwable throwable) {
+    StringBuilder message = new StringBuilder(messagePattern);
+    if (arguments != null) {
+      for (Object argument : arguments) {
+        message.append(' ').append(argument);
+      }
+    }
+    lastMessage = message.toString();
+  }
+}
@@ -0,0 +1,58 @@
+package bio.terra.cloudres.util;
+
+import bio.terra.cloudres.testing.BenchmarkTelemetry;
+import bio.terra.cloudres.testing.StubCloudOperation;
+import java.time.Duration;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of each {@link MetricsHelper} record call against the OpenTelemetry SDK. Every
+ * cloud call records an api count and a latency, and failed calls also record an error.
+ *
+ * <p>Recording should not allocate once attributes for the client and operation are cached; check
+ * with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsHelperBenchmark {
+  private static final String CLIENT = "benchmark";
+  private static final Duration LATENCY = Duration.ofMillis(42);
+  private static final OptionalInt STATUS_CODE = OptionalInt.of(404);
+
+  private MetricsHelper metricsHelper;
+
+  @Setup
+  public void setup() {
+    metricsHelper = new MetricsHelper(BenchmarkTelemetry.withSdkMetrics());
+  }
+
+  @Benchmark
+  public void recordApiCount() {
+    metricsHelper.recordApiCount(CLIENT, StubCloudOperation.TEST_OPERATION);
+  }
+
+  @Benchmark
+  public void recordLatency() {
+    metricsHelper.recordLatency(CLIENT, StubCloudOperation.TEST_OPERATION, LATENCY);
+  }
+
+  @Benchmark
+  public void recordError() {
+    metricsHelper.recordError(CLIENT, StubCloudOperation.TEST_OPERATION, STATUS_CODE);
+  }
+}
@@ -0,0 +1,40 @@
+package bio.terra.cloudres.util;
+
+import com.google.cloud.storage.Acl;
+import com.google.cloud.storage.BlobId;
+import com.google.gson.JsonObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SerializeHelper#convertWithGson} on the storage models that {@code
+ * SerializeUtils} converts for every storage COW call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializeHelperBenchmark {
+  private final BlobId blobId = BlobId.of("benchmark-bucket", "path/to/benchmark-blob", 42L);
+  private final Acl acl = Acl.of(new Acl.User("user@example.com"), Acl.Role.READER);
+
+  @Benchmark
+  public JsonObject convertBlobId() {
+    return SerializeHelper.convertWithGson(blobId, BlobId.class);
+  }
+
+  @Benchmark
+  public JsonObject convertAcl() {
+    return SerializeHelper.convertWithGson(acl, Acl.class);
+  }
+}
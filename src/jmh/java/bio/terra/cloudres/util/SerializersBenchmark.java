@@ -0,0 +1,101 @@
+package bio.terra.cloudres.util;
+
+import bio.terra.janitor.model.CloudResourceUid;
+import bio.terra.janitor.model.CreateResourceRequestBody;
+import bio.terra.janitor.model.GoogleBlobUid;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fatboyindustrial.gsonjavatime.Converters;
+import com.google.cloud.storage.BlobInfo;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares serializing with the shared {@link Serializers} instances against building a new Gson or
+ * ObjectMapper per call, as CRL used to. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializersBenchmark {
+  private BlobInfo blobInfo;
+  private CreateResourceRequestBody janitorRequest;
+
+  @Setup
+  public void setup() {
+    Map<String, String> metadata = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      metadata.put("key-" + i, "value-" + i);
+    }
+    blobInfo =
+        BlobInfo.newBuilder("my-bucket", "path/to/my-blob.bam")
+            .setContentType("application/octet-stream")
+            .setMetadata(metadata)
+            .build();
+    OffsetDateTime now = OffsetDateTime.of(2020, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    janitorRequest =
+        new CreateResourceRequestBody()
+            .resourceUid(
+                new CloudResourceUid()
+                    .googleBlobUid(new GoogleBlobUid().bucketName("my-bucket").blobName("my-blob")))
+            .creation(now)
+            .expiration(now.plusHours(1))
+            .putLabelsItem("client", "benchmark")
+            .putLabelsItem("cleanupId", "benchmark");
+  }
+
+  @Benchmark
+  public JsonObject gsonShared() {
+    return SerializeHelper.convertWithGson(blobInfo, BlobInfo.class);
+  }
+
+  @Benchmark
+  public JsonObject gsonPerCall() {
+    return Converters.registerAll(new GsonBuilder())
+        .registerTypeAdapter(
+            Duration.class,
+            (JsonSerializer<Duration>)
+                (src, typeOfSrc, context) -> new JsonPrimitive(src.toMillis()))
+        .create()
+        .toJsonTree(blobInfo, BlobInfo.class)
+        .getAsJsonObject();
+  }
+
+  @Benchmark
+  public String jacksonShared() throws JsonProcessingException {
+    return Serializers.janitorWriter().writeValueAsString(janitorRequest);
+  }
+
+  @Benchmark
+  public String jacksonPerCall() throws JsonProcessingException {
+    return new ObjectMapper()
+        .registerModule(new Jdk8Module())
+        .registerModule(new JavaTimeModule())
+        .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+        .writeValueAsString(janitorRequest);
+  }
+}
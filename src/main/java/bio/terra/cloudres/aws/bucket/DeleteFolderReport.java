@@ -0,0 +1,24 @@
+package bio.terra.cloudres.aws.bucket;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+/** The outcome of {@link S3BucketCow#deleteFolder}, aggregated over every batch it deleted. */
+@AutoValue
+public abstract class DeleteFolderReport {
+  /** The number of objects S3 reported as deleted. */
+  public abstract long deletedCount();
+
+  /** The objects S3 failed to delete, with the reason for each. */
+  public abstract ImmutableList<S3Error> errors();
+
+  /** Whether every object under the folder was deleted. */
+  public boolean isSuccessful() {
+    return errors().isEmpty();
+  }
+
+  static DeleteFolderReport create(long deletedCount, Iterable<S3Error> errors) {
+    return new AutoValue_DeleteFolderReport(deletedCount, ImmutableList.copyOf(errors));
+  }
+}
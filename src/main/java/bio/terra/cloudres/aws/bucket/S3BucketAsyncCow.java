@@ -0,0 +1,224 @@
+package bio.terra.cloudres.aws.bucket;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.OperationAnnotator;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.JsonObject;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.Tag;
+import software.amazon.awssdk.services.s3.model.Tagging;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+import software.amazon.awssdk.transfer.s3.model.CompletedFileDownload;
+import software.amazon.awssdk.transfer.s3.model.CompletedFileUpload;
+import software.amazon.awssdk.transfer.s3.model.DownloadFileRequest;
+import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
+
+/**
+ * A Cloud Object Wrapper(COW) for AWS S3 Bucket Library: {@link S3AsyncClient} and {@link
+ * S3TransferManager}. Unlike {@link S3BucketCow}, operations return as soon as they are started,
+ * and large objects can be transferred as multiple parts in parallel.
+ *
+ * <p>Each operation is logged and recorded in metrics when its future completes. Generally, this
+ * should be used inside a try-with-resources block in order to close the underlying clients
+ * properly after use.
+ */
+public class S3BucketAsyncCow implements AutoCloseable {
+
+  private static Logger logger = LoggerFactory.getLogger(S3BucketAsyncCow.class);
+  private final OperationAnnotator operationAnnotator;
+  private final S3AsyncClient bucketClient;
+  private final S3TransferManager transferManager;
+
+  @VisibleForTesting
+  public static void setLogger(Logger newLogger) {
+    logger = newLogger;
+  }
+
+  public S3BucketAsyncCow(
+      ClientConfig clientConfig, S3AsyncClient bucketClient, S3TransferManager transferManager) {
+    this.operationAnnotator = new OperationAnnotator(clientConfig, logger);
+    this.bucketClient = bucketClient;
+    this.transferManager = transferManager;
+  }
+
+  /**
+   * Create a {@link S3BucketAsyncCow} with some default configurations for convenience. This uses
+   * the CRT-based {@link S3AsyncClient}, which splits large uploads and downloads into parts that
+   * are transferred in parallel.
+   */
+  public static S3BucketAsyncCow create(
+      ClientConfig clientConfig, AwsCredentialsProvider awsCredential, String region) {
+    S3AsyncClient bucketClient =
+        S3AsyncClient.crtBuilder()
+            .region(Region.of(region))
+            .credentialsProvider(awsCredential)
+            .build();
+    return new S3BucketAsyncCow(
+        clientConfig, bucketClient, S3TransferManager.builder().s3Client(bucketClient).build());
+  }
+
+  /**
+   * Get the metadata of an object with a {@code HeadObject} request, without reading its contents.
+   */
+  public CompletableFuture<HeadObjectResponse> getBlobMetadata(
+      String bucketName, String objectPath) {
+    return operationAnnotator.executeAsyncCowOperation(
+        S3BucketOperation.AWS_HEAD_S3_OBJECT,
+        () ->
+            bucketClient.headObject(
+                HeadObjectRequest.builder().bucket(bucketName).key(objectPath).build()),
+        () -> serialize(bucketName, objectPath));
+  }
+
+  /** Write an object with a single {@code PutObject} request. */
+  public CompletableFuture<PutObjectResponse> putBlob(
+      String bucketName, String objectPath, Collection<Tag> tags, AsyncRequestBody contents) {
+    return operationAnnotator.executeAsyncCowOperation(
+        S3BucketOperation.AWS_CREATE_S3_OBJECT,
+        () -> bucketClient.putObject(putObjectRequest(bucketName, objectPath, tags), contents),
+        () -> serialize(bucketName, objectPath, tags, contents));
+  }
+
+  /**
+   * Write an object from a file with a single {@code PutObject} request. The file is read as it is
+   * sent, rather than loaded on heap first.
+   */
+  public CompletableFuture<PutObjectResponse> putBlob(
+      String bucketName, String objectPath, Collection<Tag> tags, Path source) {
+    return putBlob(bucketName, objectPath, tags, AsyncRequestBody.fromFile(source));
+  }
+
+  /**
+   * Read an object into a file with a single {@code GetObject} request. The contents are written to
+   * the file as they are received, rather than loaded on heap first.
+   */
+  public CompletableFuture<GetObjectResponse> getBlob(
+      String bucketName, String objectPath, Path destination) {
+    return operationAnnotator.executeAsyncCowOperation(
+        S3BucketOperation.AWS_GET_S3_OBJECT,
+        () ->
+            bucketClient.getObject(
+                GetObjectRequest.builder().bucket(bucketName).key(objectPath).build(),
+                AsyncResponseTransformer.toFile(destination)),
+        () -> serialize(bucketName, objectPath, destination));
+  }
+
+  /**
+   * Upload a file with the {@link S3TransferManager}. With the CRT-based client, large files are
+   * uploaded as a multipart upload, with parts sent in parallel. The whole upload is recorded as
+   * one operation.
+   */
+  public CompletableFuture<CompletedFileUpload> uploadFile(
+      String bucketName, String objectPath, Collection<Tag> tags, Path source) {
+    return operationAnnotator.executeAsyncCowOperation(
+        S3BucketOperation.AWS_UPLOAD_S3_OBJECT,
+        () ->
+            transferManager
+                .uploadFile(
+                    UploadFileRequest.builder()
+                        .putObjectRequest(putObjectRequest(bucketName, objectPath, tags))
+                        .source(source)
+                        .build())
+                .completionFuture(),
+        () -> serialize(bucketName, objectPath, tags, source));
+  }
+
+  /**
+   * Download an object into a file with the {@link S3TransferManager}. With the CRT-based client,
+   * large objects are downloaded as byte ranges fetched in parallel. The whole download is recorded
+   * as one operation.
+   */
+  public CompletableFuture<CompletedFileDownload> downloadFile(
+      String bucketName, String objectPath, Path destination) {
+    return operationAnnotator.executeAsyncCowOperation(
+        S3BucketOperation.AWS_DOWNLOAD_S3_OBJECT,
+        () ->
+            transferManager
+                .downloadFile(
+                    DownloadFileRequest.builder()
+                        .getObjectRequest(
+                            GetObjectRequest.builder().bucket(bucketName).key(objectPath).build())
+                        .destination(destination)
+                        .build())
+                .completionFuture(),
+        () -> serialize(bucketName, objectPath, destination));
+  }
+
+  private static PutObjectRequest putObjectRequest(
+      String bucketName, String objectPath, Collection<Tag> tags) {
+    return PutObjectRequest.builder()
+        .bucket(bucketName)
+        .tagging(Tagging.builder().tagSet(tags).build())
+        .key(objectPath)
+        .build();
+  }
+
+  @VisibleForTesting
+  public JsonObject serialize(String bucketName, String objectPath) {
+    var ser = new JsonObject();
+    ser.addProperty("bucketName", bucketName);
+    ser.addProperty("objectPath", objectPath);
+    return ser;
+  }
+
+  /**
+   * Serialize several fields into a useful JSON object for logging with TCL. Like {@link
+   * S3BucketCow#serialize(String, String, Collection,
+   * software.amazon.awssdk.core.sync.RequestBody)}, this only logs the content length of the
+   * request body.
+   */
+  @VisibleForTesting
+  public JsonObject serialize(
+      String bucketName, String objectPath, Collection<Tag> tags, AsyncRequestBody contents) {
+    var ser = serialize(bucketName, objectPath, tags);
+    ser.addProperty("contentLength", contents.contentLength().orElse(0L));
+    return ser;
+  }
+
+  @VisibleForTesting
+  public JsonObject serialize(
+      String bucketName, String objectPath, Collection<Tag> tags, Path source) {
+    var ser = serialize(bucketName, objectPath, tags);
+    ser.addProperty("source", source.toString());
+    return ser;
+  }
+
+  @VisibleForTesting
+  public JsonObject serialize(String bucketName, String objectPath, Path destination) {
+    var ser = serialize(bucketName, objectPath);
+    ser.addProperty("destination", destination.toString());
+    return ser;
+  }
+
+  private JsonObject serialize(String bucketName, String objectPath, Collection<Tag> tags) {
+    var ser = serialize(bucketName, objectPath);
+    // Tags represent key-value pairs, serialize them in the format "k1:v1,k2:v2,..."
+    ser.addProperty(
+        "tags",
+        tags.stream().map(tag -> tag.key() + ":" + tag.value()).collect(Collectors.joining(",")));
+    return ser;
+  }
+
+  @Override
+  public void close() {
+    // The transfer manager does not close a client it was given.
+    transferManager.close();
+    bucketClient.close();
+  }
+}
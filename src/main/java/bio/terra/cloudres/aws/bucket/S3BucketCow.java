@@ -1,13 +1,32 @@
 package bio.terra.cloudres.aws.bucket;
 
+import bio.terra.cloudres.aws.common.AwsClientRegistry;
+import bio.terra.cloudres.common.AsyncExecutor;
 import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.gson.JsonObject;
+import io.opentelemetry.context.Context;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,20 +35,32 @@ import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.Tag;
 import software.amazon.awssdk.services.s3.model.Tagging;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 /**
  * A Cloud Object Wrapper(COW) for AWS S3 Bucket Library: {@link S3Client}. Generally, this should
@@ -42,6 +73,12 @@ public class S3BucketCow implements AutoCloseable {
   private final OperationAnnotator operationAnnotator;
   private final S3Client bucketClient;
   public static final int MAX_RESULTS_PER_REQUEST_S3 = 1000;
+  /** The smallest part S3 accepts in a multipart upload, other than the last part. */
+  public static final int MIN_UPLOAD_PART_SIZE = 5 * 1024 * 1024;
+  /** The size of each part when streaming an object of unknown length. */
+  public static final int DEFAULT_UPLOAD_PART_SIZE = 8 * 1024 * 1024;
+  /** How many delete requests {@link #deleteFolder(String, String)} sends at once. */
+  public static final int DEFAULT_DELETE_CONCURRENCY = 8;
 
   @VisibleForTesting
   public static void setLogger(Logger newLogger) {
@@ -53,11 +90,16 @@ public class S3BucketCow implements AutoCloseable {
     this.bucketClient = bucketClient;
   }
 
-  /** Create a {@link S3BucketCow} with some default configurations for convenience. */
+  /**
+   * Create a {@link S3BucketCow} with some default configurations for convenience. The client is
+   * leased from {@link AwsClientRegistry#shared()}, so COWs for the same region and credentials
+   * provider share its connection pool.
+   */
   public static S3BucketCow create(
       ClientConfig clientConfig, AwsCredentialsProvider awsCredential, String region) {
     S3Client bucketsClient =
-        S3Client.builder().region(Region.of(region)).credentialsProvider(awsCredential).build();
+        AwsClientRegistry.shared()
+            .acquire(S3Client.class, Region.of(region), awsCredential, S3Client::builder);
     return new S3BucketCow(clientConfig, bucketsClient);
   }
 
@@ -95,6 +137,122 @@ public class S3BucketCow implements AutoCloseable {
         () -> serialize(bucketName, objPath, tags, contents));
   }
 
+  /**
+   * Write an object from a stream of unknown length, without buffering the whole object on heap.
+   * Uploads with up to {@link #DEFAULT_UPLOAD_PART_SIZE} bytes per part. See {@link
+   * #putBlob(String, String, Collection, InputStream, int)}.
+   */
+  public void putBlob(String bucketName, String objPath, Collection<Tag> tags, InputStream contents)
+      throws IOException, AwsServiceException, SdkClientException, S3Exception {
+    putBlob(bucketName, objPath, tags, contents, DEFAULT_UPLOAD_PART_SIZE);
+  }
+
+  /**
+   * Write an object from a stream of unknown length, without buffering the whole object on heap.
+   *
+   * <p>The stream is read one part of {@code partSize} bytes at a time. If it ends within the first
+   * part, the object is written with a single {@link #putBlob} request. Otherwise it is written as
+   * a multipart upload, one part at a time, each of which is logged separately. If the upload
+   * fails, it is aborted so that S3 does not keep the uploaded parts. As S3 allows at most 10000
+   * parts, {@code partSize} limits the size of the object to 10000 times {@code partSize}.
+   *
+   * <p>The bytes written and the throughput are recorded in metrics. The stream is not closed.
+   *
+   * @param partSize the size of each part, and of the buffer used to read the stream. S3 requires
+   *     it to be at least {@link #MIN_UPLOAD_PART_SIZE}.
+   */
+  public void putBlob(
+      String bucketName, String objPath, Collection<Tag> tags, InputStream contents, int partSize)
+      throws IOException, AwsServiceException, SdkClientException, S3Exception {
+    Preconditions.checkArgument(
+        partSize >= MIN_UPLOAD_PART_SIZE, "partSize must be at least %s", MIN_UPLOAD_PART_SIZE);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    byte[] buffer = new byte[partSize];
+    int filled = ByteStreams.read(contents, buffer, 0, partSize);
+    if (filled < partSize) {
+      putBlob(bucketName, objPath, tags, partBody(buffer, filled));
+      operationAnnotator.recordTransfer(
+          S3BucketOperation.AWS_CREATE_S3_OBJECT, filled, stopwatch.elapsed());
+      return;
+    }
+
+    String uploadId =
+        operationAnnotator
+            .executeCowOperation(
+                S3BucketOperation.AWS_CREATE_S3_MULTIPART_UPLOAD,
+                () ->
+                    bucketClient.createMultipartUpload(
+                        CreateMultipartUploadRequest.builder()
+                            .bucket(bucketName)
+                            .tagging(Tagging.builder().tagSet(tags).build())
+                            .key(objPath)
+                            .build()),
+                () -> serialize(bucketName, objPath))
+            .uploadId();
+    List<CompletedPart> parts = new ArrayList<>();
+    long uploaded = 0;
+    try {
+      while (filled > 0) {
+        int partNumber = parts.size() + 1;
+        int partLength = filled;
+        UploadPartResponse response =
+            operationAnnotator.executeCowOperation(
+                S3BucketOperation.AWS_UPLOAD_S3_PART,
+                () ->
+                    bucketClient.uploadPart(
+                        UploadPartRequest.builder()
+                            .bucket(bucketName)
+                            .key(objPath)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength((long) partLength)
+                            .build(),
+                        partBody(buffer, partLength)),
+                () -> serialize(bucketName, objPath, uploadId, partNumber, partLength));
+        parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+        uploaded += partLength;
+        filled = ByteStreams.read(contents, buffer, 0, partSize);
+      }
+      operationAnnotator.executeCowOperation(
+          S3BucketOperation.AWS_COMPLETE_S3_MULTIPART_UPLOAD,
+          () ->
+              bucketClient.completeMultipartUpload(
+                  CompleteMultipartUploadRequest.builder()
+                      .bucket(bucketName)
+                      .key(objPath)
+                      .uploadId(uploadId)
+                      .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                      .build()),
+          () -> serialize(bucketName, objPath, uploadId, parts.size()));
+    } catch (IOException | RuntimeException e) {
+      try {
+        operationAnnotator.executeCowOperation(
+            S3BucketOperation.AWS_ABORT_S3_MULTIPART_UPLOAD,
+            () ->
+                bucketClient.abortMultipartUpload(
+                    AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(objPath)
+                        .uploadId(uploadId)
+                        .build()),
+            () -> serialize(bucketName, objPath, uploadId, parts.size()));
+      } catch (RuntimeException abortFailure) {
+        e.addSuppressed(abortFailure);
+      }
+      throw e;
+    } finally {
+      operationAnnotator.recordTransfer(
+          S3BucketOperation.AWS_CREATE_S3_OBJECT, uploaded, stopwatch.elapsed());
+    }
+  }
+
+  /**
+   * Returns a request body of the first {@code length} bytes of {@code buffer}, without copying.
+   */
+  private static RequestBody partBody(byte[] buffer, int length) {
+    return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length);
+  }
+
   public void deleteBlob(String bucketName, String objectPath)
       throws AwsServiceException, SdkClientException, S3Exception {
     operationAnnotator.executeCowOperation(
@@ -105,33 +263,136 @@ public class S3BucketCow implements AutoCloseable {
         () -> serialize(bucketName, objectPath));
   }
 
+  /**
+   * Delete all objects in an AWS bucket with a common prefix, including the folder itself, sending
+   * up to {@link #DEFAULT_DELETE_CONCURRENCY} delete requests at once. See {@link
+   * #deleteFolder(String, String, int)}.
+   */
+  public DeleteFolderReport deleteFolder(String bucketName, String prefix)
+      throws AwsServiceException, SdkClientException, S3Exception {
+    return deleteFolder(bucketName, prefix, DEFAULT_DELETE_CONCURRENCY);
+  }
+
   /**
    * Delete all objects in an AWS bucket with a common prefix, including the folder itself. Because
    * AWS can only support up to 1000 object deletions from a single request, this method may make
    * multiple calls to AWS infrastructure, each of which will be logged separately.
+   *
+   * <p>Every page of the folder listing is deleted, in batches of up to 1000 objects. Up to {@code
+   * maxConcurrentDeletes} batches are deleted in the background, on {@link AsyncExecutor#shared()},
+   * while the next page is listed. Objects S3 fails to delete are returned in the {@link
+   * DeleteFolderReport} rather than thrown. If listing or a whole batch fails, no more batches are
+   * started, and the failure is thrown once the batches already started have finished.
    */
-  public void deleteFolder(String bucketName, String prefix)
+  public DeleteFolderReport deleteFolder(String bucketName, String prefix, int maxConcurrentDeletes)
       throws AwsServiceException, SdkClientException, S3Exception {
+    return deleteFolder(bucketName, prefix, maxConcurrentDeletes, AsyncExecutor.shared());
+  }
+
+  /**
+   * Delete all objects in an AWS bucket with a common prefix, sending the delete requests on {@code
+   * deleteExecutor}. See {@link #deleteFolder(String, String, int)}.
+   */
+  public DeleteFolderReport deleteFolder(
+      String bucketName, String prefix, int maxConcurrentDeletes, Executor deleteExecutor)
+      throws AwsServiceException, SdkClientException, S3Exception {
+    Preconditions.checkArgument(
+        maxConcurrentDeletes >= 1, "maxConcurrentDeletes must be at least 1");
     String folderKey = prefix.endsWith("/") ? prefix : String.format("%s/", prefix);
-    List<ObjectIdentifier> fullObjectList =
-        listBlobs(bucketName, folderKey).contents().stream()
-            .map(o -> ObjectIdentifier.builder().key(o.key()).build())
-            .collect(Collectors.toList());
-    Lists.partition(fullObjectList, MAX_RESULTS_PER_REQUEST_S3)
-        .forEach(
-            partitionedObjectList -> {
-              operationAnnotator.executeCowOperation(
-                  S3BucketOperation.AWS_DELETE_S3_FOLDER,
-                  () ->
-                      bucketClient.deleteObjects(
-                          DeleteObjectsRequest.builder()
-                              .bucket(bucketName)
-                              .delete(Delete.builder().objects(partitionedObjectList).build())
-                              .build()),
-                  () -> serialize(bucketName, folderKey, partitionedObjectList.size()));
-            });
+    Executor executor = Context.current().wrap(deleteExecutor);
+    // Bounds the batches in flight, so that listing does not run arbitrarily far ahead. The
+    // executor itself is unbounded.
+    Semaphore inFlight = new Semaphore(maxConcurrentDeletes);
+    Queue<RuntimeException> failures = new ConcurrentLinkedQueue<>();
+    List<CompletableFuture<DeleteObjectsResponse>> batches = new ArrayList<>();
+    try {
+      String continuationToken = null;
+      do {
+        ListObjectsV2Response page = listBlobs(bucketName, folderKey, continuationToken);
+        List<ObjectIdentifier> objects =
+            page.contents().stream()
+                .map(o -> ObjectIdentifier.builder().key(o.key()).build())
+                .collect(Collectors.toList());
+        for (List<ObjectIdentifier> batch : Lists.partition(objects, MAX_RESULTS_PER_REQUEST_S3)) {
+          inFlight.acquireUninterruptibly();
+          if (!failures.isEmpty()) {
+            inFlight.release();
+            break;
+          }
+          batches.add(
+              CompletableFuture.supplyAsync(
+                      () -> deleteObjects(bucketName, folderKey, batch), executor)
+                  .whenComplete(
+                      (response, e) -> {
+                        if (e != null) {
+                          failures.add(unwrap(e));
+                        }
+                        inFlight.release();
+                      }));
+        }
+        continuationToken = page.nextContinuationToken();
+      } while (continuationToken != null && failures.isEmpty());
+    } catch (RuntimeException e) {
+      failures.add(e);
+    }
+
+    long deletedCount = 0;
+    List<S3Error> errors = new ArrayList<>();
+    for (CompletableFuture<DeleteObjectsResponse> batch : batches) {
+      try {
+        DeleteObjectsResponse response = batch.join();
+        errors.addAll(response.errors());
+        deletedCount += response.deleted().size();
+      } catch (CompletionException e) {
+        // Already recorded in failures.
+      }
+    }
+    RuntimeException failure = failures.poll();
+    if (failure != null) {
+      failures.forEach(failure::addSuppressed);
+      throw failure;
+    }
+    return DeleteFolderReport.create(deletedCount, errors);
   }
 
+  private DeleteObjectsResponse deleteObjects(
+      String bucketName, String folderKey, List<ObjectIdentifier> objects) {
+    return operationAnnotator.executeCowOperation(
+        S3BucketOperation.AWS_DELETE_S3_FOLDER,
+        () ->
+            bucketClient.deleteObjects(
+                DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder().objects(objects).build())
+                    .build()),
+        () -> serialize(bucketName, folderKey, objects.size()));
+  }
+
+  private static RuntimeException unwrap(Throwable t) {
+    Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    return cause instanceof RuntimeException
+        ? (RuntimeException) cause
+        : new IllegalStateException(cause);
+  }
+
+  /**
+   * Get the metadata of an object with a {@code HeadObject} request, without reading its contents.
+   */
+  public HeadObjectResponse getBlobMetadata(String bucketName, String objectPath)
+      throws AwsServiceException, SdkClientException, S3Exception {
+    return operationAnnotator.executeCowOperation(
+        S3BucketOperation.AWS_HEAD_S3_OBJECT,
+        () ->
+            bucketClient.headObject(
+                HeadObjectRequest.builder().bucket(bucketName).key(objectPath).build()),
+        () -> serialize(bucketName, objectPath));
+  }
+
+  /**
+   * Get the response of a {@code GetObject} request, discarding the object's contents. The request
+   * still starts sending the contents, and the connection is aborted rather than reused; prefer
+   * {@link #getBlobMetadata} for metadata, or {@link #getBlobStream} for the contents.
+   */
   public GetObjectResponse getBlob(String bucketName, String objectPath)
       throws IOException, AwsServiceException, SdkClientException, S3Exception {
     // try-with-resources because getObject returns a stream which we must close.
@@ -142,10 +403,121 @@ public class S3BucketCow implements AutoCloseable {
                 bucketClient.getObject(
                     GetObjectRequest.builder().bucket(bucketName).key(objectPath).build()),
             () -> serialize(bucketName, objectPath))) {
+      // Closing alone would drain the rest of the contents to reuse the connection.
+      response.abort();
       return response.response();
     }
   }
 
+  /**
+   * Read an object as a stream, without buffering it on heap. The stream must be closed once read;
+   * the bytes read and the throughput are recorded in metrics when it is.
+   */
+  public ResponseInputStream<GetObjectResponse> getBlobStream(String bucketName, String objectPath)
+      throws AwsServiceException, SdkClientException, S3Exception {
+    return getBlobStream(
+        GetObjectRequest.builder().bucket(bucketName).key(objectPath).build(),
+        () -> serialize(bucketName, objectPath));
+  }
+
+  /**
+   * Read a range of bytes of an object as a stream. See {@link #getBlobStream(String, String)}.
+   *
+   * @param offset the position of the first byte to read.
+   * @param length the number of bytes to read. Fewer are read if the object ends first.
+   */
+  public ResponseInputStream<GetObjectResponse> getBlobStream(
+      String bucketName, String objectPath, long offset, long length)
+      throws AwsServiceException, SdkClientException, S3Exception {
+    Preconditions.checkArgument(offset >= 0, "offset must not be negative");
+    Preconditions.checkArgument(length >= 1, "length must be at least 1");
+    String range = String.format("bytes=%d-%d", offset, offset + length - 1);
+    return getBlobStream(
+        GetObjectRequest.builder().bucket(bucketName).key(objectPath).range(range).build(),
+        () -> serialize(bucketName, objectPath, range));
+  }
+
+  /**
+   * Read a range of bytes of an object as a channel. See {@link #getBlobStream(String, String,
+   * long, long)}.
+   */
+  public ReadableByteChannel getBlobChannel(
+      String bucketName, String objectPath, long offset, long length)
+      throws AwsServiceException, SdkClientException, S3Exception {
+    return Channels.newChannel(getBlobStream(bucketName, objectPath, offset, length));
+  }
+
+  private ResponseInputStream<GetObjectResponse> getBlobStream(
+      GetObjectRequest request, OperationAnnotator.CowSerialize serialize) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ResponseInputStream<GetObjectResponse> response =
+        operationAnnotator.executeCowOperation(
+            S3BucketOperation.AWS_GET_S3_OBJECT, () -> bucketClient.getObject(request), serialize);
+    MeteredInputStream metered =
+        new MeteredInputStream(
+            response,
+            bytes ->
+                operationAnnotator.recordTransfer(
+                    S3BucketOperation.AWS_GET_S3_OBJECT, bytes, stopwatch.elapsed()));
+    return new ResponseInputStream<>(
+        response.response(), AbortableInputStream.create(metered, response::abort));
+  }
+
+  /** Counts the bytes read from a stream, and reports the count once when it is closed. */
+  private static class MeteredInputStream extends FilterInputStream {
+    private final LongConsumer onClose;
+    private long bytesRead;
+    private boolean closed;
+
+    private MeteredInputStream(InputStream in, LongConsumer onClose) {
+      super(in);
+      this.onClose = onClose;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        bytesRead++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        bytesRead += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      bytesRead += skipped;
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      // Rereading after a reset would count bytes twice.
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (!closed) {
+          closed = true;
+          onClose.accept(bytesRead);
+        }
+      }
+    }
+  }
+
   public ListObjectsV2Response listBlobs(String bucketName, String prefix)
       throws AwsServiceException, SdkClientException, S3Exception {
     // A null continuationToken is ignored by the AWS client
@@ -236,6 +608,31 @@ public class S3BucketCow implements AutoCloseable {
     return ser;
   }
 
+  @VisibleForTesting
+  public JsonObject serialize(String bucketName, String objectPath, String range) {
+    var ser = serialize(bucketName, objectPath);
+    ser.addProperty("range", range);
+    return ser;
+  }
+
+  @VisibleForTesting
+  public JsonObject serialize(String bucketName, String objectPath, String uploadId, int numParts) {
+    var ser = serialize(bucketName, objectPath);
+    ser.addProperty("uploadId", uploadId);
+    ser.addProperty("numParts", numParts);
+    return ser;
+  }
+
+  @VisibleForTesting
+  public JsonObject serialize(
+      String bucketName, String objectPath, String uploadId, int partNumber, long contentLength) {
+    var ser = serialize(bucketName, objectPath);
+    ser.addProperty("uploadId", uploadId);
+    ser.addProperty("partNumber", partNumber);
+    ser.addProperty("contentLength", contentLength);
+    return ser;
+  }
+
   @VisibleForTesting
   public JsonObject serialize(ListObjectsV2Request request) {
     var ser = new JsonObject();
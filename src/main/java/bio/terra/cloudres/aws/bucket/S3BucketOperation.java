@@ -7,5 +7,12 @@ public enum S3BucketOperation implements CloudOperation {
   AWS_CREATE_S3_OBJECT,
   AWS_GET_S3_OBJECT,
   AWS_DELETE_S3_OBJECT,
-  AWS_DELETE_S3_FOLDER
+  AWS_DELETE_S3_FOLDER,
+  AWS_HEAD_S3_OBJECT,
+  AWS_UPLOAD_S3_OBJECT,
+  AWS_DOWNLOAD_S3_OBJECT,
+  AWS_CREATE_S3_MULTIPART_UPLOAD,
+  AWS_UPLOAD_S3_PART,
+  AWS_COMPLETE_S3_MULTIPART_UPLOAD,
+  AWS_ABORT_S3_MULTIPART_UPLOAD
 }
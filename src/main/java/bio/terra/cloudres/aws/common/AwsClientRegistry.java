@@ -0,0 +1,290 @@
+package bio.terra.cloudres.aws.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.awscore.client.builder.AwsSyncClientBuilder;
+import software.amazon.awssdk.core.SdkClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Hands out AWS SDK clients shared by every COW for the same service, region and credentials
+ * provider, so that COWs created and closed per request reuse warm HTTP connection pools instead of
+ * paying for pool setup and TLS handshakes on every call.
+ *
+ * <p>Each {@link #acquire} returns a lease on a shared client: a view of it whose {@code close()}
+ * releases the lease instead of closing the client, so COWs can keep closing their clients in
+ * try-with-resources blocks. A lease can not be used after it is closed. A shared client is closed
+ * once it has had no leases for the idle timeout. Clients are built without blocking other leases,
+ * so callers racing to build the same client may each build one; all but the first are closed.
+ *
+ * <p>Credentials providers are compared by identity, so callers must reuse one provider instance to
+ * share clients. To bound the clients kept for callers that do not, at most {@code maxIdleClients}
+ * clients without leases are kept; past that, the least recently used idle client is closed at
+ * once.
+ */
+public class AwsClientRegistry {
+  private static final Logger logger = LoggerFactory.getLogger(AwsClientRegistry.class);
+
+  /** How long a shared client with no leases is kept before it is closed. */
+  public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(5);
+
+  /** How many shared clients with no leases are kept at most. */
+  public static final int DEFAULT_MAX_IDLE_CLIENTS = 32;
+
+  /** Connections per shared client; the SDK default of 50 is easily exhausted by shared use. */
+  private static final int MAX_CONNECTIONS = 200;
+
+  private static final AwsClientRegistry SHARED =
+      new AwsClientRegistry(
+          DEFAULT_IDLE_TIMEOUT,
+          DEFAULT_MAX_IDLE_CLIENTS,
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("crl-aws-client-reaper")
+                  .build()));
+
+  private final Duration idleTimeout;
+  private final int maxIdleClients;
+  private final ScheduledExecutorService reaper;
+  /** Shared clients by key, least recently acquired first. Guarded by {@code this}. */
+  private final Map<ClientKey, SharedClient> clients =
+      new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true);
+  /** How many shared clients have no leases. Guarded by {@code this}. */
+  private int idleClients = 0;
+
+  @VisibleForTesting
+  AwsClientRegistry(Duration idleTimeout, int maxIdleClients, ScheduledExecutorService reaper) {
+    Preconditions.checkArgument(maxIdleClients >= 0, "maxIdleClients must not be negative");
+    this.idleTimeout = idleTimeout;
+    this.maxIdleClients = maxIdleClients;
+    this.reaper = reaper;
+  }
+
+  /** The registry used by the COWs' factory methods. */
+  public static AwsClientRegistry shared() {
+    return SHARED;
+  }
+
+  /**
+   * Lease the shared client for a service, region and credentials provider, building it if there is
+   * none.
+   *
+   * @param clientType the client interface, e.g. {@code Ec2Client.class}
+   * @param region the region the client calls
+   * @param credentialsProvider the credentials the client signs requests with
+   * @param builder creates a builder for the client, e.g. {@code Ec2Client::builder}; the registry
+   *     sets the region, credentials and HTTP client
+   * @return a lease on the shared client; close it when done
+   */
+  public <T extends SdkClient, B extends AwsClientBuilder<B, T> & AwsSyncClientBuilder<B, T>>
+      T acquire(
+          Class<T> clientType,
+          Region region,
+          AwsCredentialsProvider credentialsProvider,
+          Supplier<B> builder) {
+    Preconditions.checkArgument(clientType.isInterface(), "clientType must be an interface");
+    ClientKey key = new ClientKey(clientType, region, credentialsProvider);
+    SharedClient shared;
+    synchronized (this) {
+      shared = clients.get(key);
+      if (shared != null) {
+        addLease(shared);
+      }
+    }
+    if (shared == null) {
+      // Build outside the lock, as building a client is slow and would hold up every other lease.
+      SharedClient built =
+          new SharedClient(
+              key,
+              builder
+                  .get()
+                  .region(region)
+                  .credentialsProvider(credentialsProvider)
+                  .httpClientBuilder(
+                      ApacheHttpClient.builder()
+                          .maxConnections(MAX_CONNECTIONS)
+                          .tcpKeepAlive(true)
+                          .useIdleConnectionReaper(true))
+                  .build());
+      synchronized (this) {
+        shared = clients.putIfAbsent(key, built);
+        if (shared == null) {
+          shared = built;
+        }
+        addLease(shared);
+      }
+      if (shared != built) {
+        logger.debug("Closing duplicate shared {} for {}", clientType.getSimpleName(), key);
+        built.client.close();
+      }
+    }
+    return clientType.cast(
+        Proxy.newProxyInstance(
+            clientType.getClassLoader(), new Class<?>[] {clientType}, new Lease(shared)));
+  }
+
+  /** Adds a lease on {@code shared}, which is no longer idle. Called while holding {@code this}. */
+  private void addLease(SharedClient shared) {
+    if (shared.leases++ == 0 && shared.pendingClose != null) {
+      shared.pendingClose.cancel(false);
+      shared.pendingClose = null;
+      idleClients--;
+    }
+  }
+
+  /** The number of shared clients, whether leased or idle. */
+  public synchronized int size() {
+    return clients.size();
+  }
+
+  private void release(SharedClient shared) {
+    List<SharedClient> evicted = new ArrayList<>();
+    synchronized (this) {
+      if (--shared.leases > 0) {
+        return;
+      }
+      shared.pendingClose =
+          reaper.schedule(() -> closeIfIdle(shared), idleTimeout.toNanos(), TimeUnit.NANOSECONDS);
+      idleClients++;
+      Iterator<SharedClient> leastRecent = clients.values().iterator();
+      while (idleClients > maxIdleClients && leastRecent.hasNext()) {
+        SharedClient next = leastRecent.next();
+        if (next.leases == 0) {
+          next.pendingClose.cancel(false);
+          leastRecent.remove();
+          idleClients--;
+          evicted.add(next);
+        }
+      }
+    }
+    evicted.forEach(this::close);
+  }
+
+  private void closeIfIdle(SharedClient shared) {
+    synchronized (this) {
+      if (shared.leases > 0 || clients.get(shared.key) != shared) {
+        return;
+      }
+      clients.remove(shared.key);
+      idleClients--;
+    }
+    close(shared);
+  }
+
+  private void close(SharedClient shared) {
+    logger.debug(
+        "Closing idle shared {} for {}", shared.key.clientType.getSimpleName(), shared.key);
+    shared.client.close();
+  }
+
+  /** A shared client and its leases. Fields other than the client are guarded by the registry. */
+  private static class SharedClient {
+    private final ClientKey key;
+    private final SdkClient client;
+    private int leases = 0;
+    private ScheduledFuture<?> pendingClose;
+
+    private SharedClient(ClientKey key, SdkClient client) {
+      this.key = key;
+      this.client = client;
+    }
+  }
+
+  /**
+   * Forwards calls to a shared client, except {@code close()}, which releases the lease once. Calls
+   * after {@code close()} fail with an {@link IllegalStateException}.
+   */
+  private class Lease implements InvocationHandler {
+    private final SharedClient shared;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    private Lease(SharedClient shared) {
+      this.shared = shared;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getName().equals("close") && method.getParameterCount() == 0) {
+        if (released.compareAndSet(false, true)) {
+          release(shared);
+        }
+        return null;
+      }
+      if (method.getDeclaringClass() == Object.class) {
+        return switch (method.getName()) {
+          case "equals" -> proxy == args[0];
+          case "hashCode" -> System.identityHashCode(proxy);
+          default -> "Lease on " + shared.client;
+        };
+      }
+      if (released.get()) {
+        throw new IllegalStateException(
+            "Lease on a shared " + shared.key.clientType.getSimpleName() + " used after close()");
+      }
+      try {
+        return method.invoke(shared.client, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  /** Identifies a shared client. Credentials providers are compared by identity. */
+  private static class ClientKey {
+    private final Class<?> clientType;
+    private final Region region;
+    private final AwsCredentialsProvider credentialsProvider;
+
+    private ClientKey(
+        Class<?> clientType, Region region, AwsCredentialsProvider credentialsProvider) {
+      this.clientType = clientType;
+      this.region = region;
+      this.credentialsProvider = credentialsProvider;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof ClientKey)) {
+        return false;
+      }
+      ClientKey other = (ClientKey) o;
+      return clientType == other.clientType
+          && region.equals(other.region)
+          && credentialsProvider == other.credentialsProvider;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(clientType, region, System.identityHashCode(credentialsProvider));
+    }
+
+    @Override
+    public String toString() {
+      return region.id();
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package bio.terra.cloudres.aws.common;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits for many cloud resources to reach a state, polling all of them together on one thread.
+ *
+ * <p>Unlike an SDK waiter, which blocks a thread polling a single resource, each {@link #watch}
+ * registration returns a {@link CompletableFuture} at once. Every poll describes all watched
+ * resources with one call to a {@link BatchDescriber}, which should batch its API calls, and
+ * completes the futures of resources that have reached their state. A registration fails if its
+ * {@link Acceptor} throws, or if it is still waiting after the watcher's timeout.
+ *
+ * <p>Failures to describe resources are logged and retried on the next poll. Closing the watcher
+ * stops polling and cancels all waiting registrations.
+ *
+ * @param <S> the description of a resource's state
+ */
+public class ResourceStateWatcher<S> implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(ResourceStateWatcher.class);
+
+  /** Describes the current state of many resources at once. */
+  @FunctionalInterface
+  public interface BatchDescriber<S> {
+    /**
+     * Returns the state of each resource by ID. Resources that do not exist are left out.
+     *
+     * @param resourceIds the IDs of every watched resource
+     */
+    Map<String, S> describe(Set<String> resourceIds);
+  }
+
+  /** Decides whether a watched resource has reached the state it is being waited on for. */
+  @FunctionalInterface
+  public interface Acceptor<S> {
+    /**
+     * Returns true if the wait is over, or false to keep waiting. Throws to fail the wait, e.g. if
+     * the resource is in a state from which the awaited one is unreachable.
+     *
+     * @param state the current state of the resource, or null if it does not exist
+     */
+    boolean accept(@Nullable S state);
+  }
+
+  private final BatchDescriber<S> describer;
+  private final Duration timeout;
+  private final Ticker ticker;
+  /** The executor to shut down on {@link #close()}, or null if it is shared. */
+  @Nullable private final ScheduledExecutorService executor;
+
+  private final ScheduledFuture<?> pollTask;
+  private volatile boolean closed = false;
+  private final ConcurrentLinkedQueue<Registration<S>> registrations =
+      new ConcurrentLinkedQueue<>();
+
+  /**
+   * Creates a watcher polling on its own daemon thread, which is stopped when the watcher is
+   * closed.
+   *
+   * @param threadName the name of the polling thread
+   * @param describer describes the watched resources on each poll
+   * @param pollInterval the wait between the end of a poll and the start of the next one
+   * @param timeout how long each registration waits before failing with a {@link TimeoutException}
+   */
+  public ResourceStateWatcher(
+      String threadName, BatchDescriber<S> describer, Duration pollInterval, Duration timeout) {
+    this(
+        describer,
+        pollInterval,
+        timeout,
+        Ticker.systemTicker(),
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat(threadName).build()),
+        true);
+  }
+
+  /**
+   * Creates a watcher polling on a shared executor, so that several watchers can poll on one
+   * thread. Closing the watcher stops its polling, but does not shut down the executor.
+   */
+  public ResourceStateWatcher(
+      BatchDescriber<S> describer,
+      Duration pollInterval,
+      Duration timeout,
+      ScheduledExecutorService executor) {
+    this(describer, pollInterval, timeout, Ticker.systemTicker(), executor, false);
+  }
+
+  @VisibleForTesting
+  ResourceStateWatcher(
+      BatchDescriber<S> describer,
+      Duration pollInterval,
+      Duration timeout,
+      Ticker ticker,
+      ScheduledExecutorService executor,
+      boolean ownsExecutor) {
+    Preconditions.checkArgument(
+        !pollInterval.isNegative() && !pollInterval.isZero(), "pollInterval must be positive");
+    this.describer = describer;
+    this.timeout = timeout;
+    this.ticker = ticker;
+    this.executor = ownsExecutor ? executor : null;
+    this.pollTask =
+        executor.scheduleWithFixedDelay(
+            this::pollQuietly,
+            pollInterval.toNanos(),
+            pollInterval.toNanos(),
+            TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Starts waiting for a resource, until {@code acceptor} accepts its state.
+   *
+   * @return a future completed with the accepted state, or failed with what the acceptor threw, a
+   *     {@link TimeoutException}, or a {@link CancellationException} if the watcher is closed.
+   *     Cancelling the future stops watching the resource.
+   */
+  public CompletableFuture<S> watch(String resourceId, Acceptor<S> acceptor) {
+    Preconditions.checkState(!closed, "The watcher is closed");
+    Registration<S> registration =
+        new Registration<>(resourceId, acceptor, ticker.read() + timeout.toNanos());
+    registrations.add(registration);
+    if (closed) {
+      // close() may have drained the registrations before this one was added.
+      registrations.remove(registration);
+      cancel(registration);
+    }
+    return registration.future;
+  }
+
+  /** The number of registrations still waiting. */
+  public int size() {
+    return registrations.size();
+  }
+
+  /** Polls without letting an exception cancel the scheduled task. */
+  private void pollQuietly() {
+    try {
+      poll();
+    } catch (RuntimeException e) {
+      logger.error("Unexpected failure polling watched resources", e);
+    }
+  }
+
+  /** Describes every watched resource once, and completes the registrations that are done. */
+  @VisibleForTesting
+  void poll() {
+    registrations.removeIf(registration -> registration.future.isDone());
+    if (registrations.isEmpty()) {
+      return;
+    }
+    Set<String> resourceIds = new LinkedHashSet<>();
+    registrations.forEach(registration -> resourceIds.add(registration.resourceId));
+    Map<String, S> states;
+    try {
+      states = describer.describe(resourceIds);
+    } catch (RuntimeException e) {
+      logger.warn("Failed to describe {} watched resources, retrying", resourceIds.size(), e);
+      states = null;
+    }
+    long now = ticker.read();
+    for (Registration<S> registration : registrations) {
+      if (states != null) {
+        try {
+          if (registration.acceptor.accept(states.get(registration.resourceId))) {
+            registration.future.complete(states.get(registration.resourceId));
+          }
+        } catch (RuntimeException e) {
+          registration.future.completeExceptionally(e);
+        }
+      }
+      if (!registration.future.isDone() && now - registration.deadlineNanos >= 0) {
+        registration.future.completeExceptionally(
+            new TimeoutException(
+                String.format("Timed out waiting for resource %s", registration.resourceId)));
+      }
+    }
+    registrations.removeIf(registration -> registration.future.isDone());
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    pollTask.cancel(false);
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    Registration<S> registration;
+    while ((registration = registrations.poll()) != null) {
+      cancel(registration);
+    }
+  }
+
+  private static void cancel(Registration<?> registration) {
+    registration.future.completeExceptionally(new CancellationException("The watcher was closed"));
+  }
+
+  /** One resource waiting for a state. */
+  private static class Registration<S> {
+    private final String resourceId;
+    private final Acceptor<S> acceptor;
+    private final long deadlineNanos;
+    private final CompletableFuture<S> future = new CompletableFuture<>();
+
+    private Registration(String resourceId, Acceptor<S> acceptor, long deadlineNanos) {
+      this.resourceId = resourceId;
+      this.acceptor = acceptor;
+      this.deadlineNanos = deadlineNanos;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package bio.terra.cloudres.aws.ec2;
 
+import bio.terra.cloudres.aws.common.AwsClientRegistry;
 import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import com.google.gson.JsonObject;
@@ -49,7 +50,9 @@ public abstract class EC2CowBase implements AutoCloseable {
 
   /**
    * Constructor for use by extending COW classes; builds shared {@link OperationAnnotator}, {@link
-   * Ec2Client}, and {@link Ec2Waiter} instances for use by these COW implementations.
+   * Ec2Client}, and {@link Ec2Waiter} instances for use by these COW implementations. The {@link
+   * Ec2Client} is leased from {@link AwsClientRegistry#shared()}, so COWs for the same region and
+   * credentials provider share its connection pool.
    */
   protected EC2CowBase(
       Logger logger,
@@ -59,7 +62,8 @@ public abstract class EC2CowBase implements AutoCloseable {
     this(
         logger,
         clientConfig,
-        Ec2Client.builder().region(region).credentialsProvider(credentialsProvider).build());
+        AwsClientRegistry.shared()
+            .acquire(Ec2Client.class, region, credentialsProvider, Ec2Client::builder));
   }
 
   /** Getter for {@link OperationAnnotator} to be used by extending COW implementation classes. */
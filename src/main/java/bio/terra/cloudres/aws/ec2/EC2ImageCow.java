@@ -1,11 +1,19 @@
 package bio.terra.cloudres.aws.ec2;
 
+import bio.terra.cloudres.aws.common.AwsClientRegistry;
 import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.RefreshingCache;
+import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSortedSet;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
@@ -32,6 +40,29 @@ public class EC2ImageCow extends EC2CowBase {
 
   private static final Integer MAX_IMAGES_PER_REQUEST = 1000;
 
+  /**
+   * New images are published to a channel about weekly, so the latest image is refreshed hourly and
+   * kept for a day if refreshing fails.
+   */
+  private static final RefreshingCache<ImageKey, String> SHARED_IMAGE_CACHE =
+      new RefreshingCache<>("ec2_latest_image", Duration.ofHours(1), Duration.ofDays(1));
+
+  /** The architectures of an instance type never change. */
+  private static final RefreshingCache<InstanceType, List<String>> SHARED_ARCHITECTURE_CACHE =
+      new RefreshingCache<>(
+          "ec2_instance_type_architectures", Duration.ofDays(1), Duration.ofDays(7));
+
+  private final Region region;
+  private final RefreshingCache<ImageKey, String> imageCache;
+  private final RefreshingCache<InstanceType, List<String>> architectureCache;
+
+  /**
+   * Leases a client to load the caches with, or null to load them with this COW's client. Shared
+   * caches refresh in the background, possibly after this COW and its client are closed, so they
+   * load with a lease of their own.
+   */
+  @Nullable private final Supplier<Ec2Client> cacheClientLeases;
+
   private static Logger logger = LoggerFactory.getLogger(EC2ImageCow.class);
 
   @VisibleForTesting
@@ -39,10 +70,41 @@ public class EC2ImageCow extends EC2CowBase {
     logger = newLogger;
   }
 
-  /** Constructor for test usage, allows mock injections. */
+  /**
+   * Constructor for test usage, allows mock injections. The COW gets caches of its own, rather than
+   * sharing them with other COWs.
+   */
   @VisibleForTesting
   public EC2ImageCow(ClientConfig clientConfig, Ec2Client ec2Client, Ec2Waiter ec2Waiter) {
+    this(
+        clientConfig,
+        ec2Client,
+        ec2Waiter,
+        new RefreshingCache<>("ec2_latest_image", Duration.ofHours(1), Duration.ofDays(1)),
+        new RefreshingCache<>(
+            "ec2_instance_type_architectures", Duration.ofDays(1), Duration.ofDays(7)),
+        null);
+  }
+
+  /**
+   * Constructor for test usage, allows mock and cache injections.
+   *
+   * @param cacheClientLeases leases a client for each cache load, or null to use {@code ec2Client}
+   */
+  @VisibleForTesting
+  EC2ImageCow(
+      ClientConfig clientConfig,
+      Ec2Client ec2Client,
+      Ec2Waiter ec2Waiter,
+      RefreshingCache<ImageKey, String> imageCache,
+      RefreshingCache<InstanceType, List<String>> architectureCache,
+      @Nullable Supplier<Ec2Client> cacheClientLeases) {
     super(logger, clientConfig, ec2Client, ec2Waiter);
+    // The caches are not shared, so every key can use the same placeholder region.
+    this.region = Region.AWS_GLOBAL;
+    this.imageCache = imageCache;
+    this.architectureCache = architectureCache;
+    this.cacheClientLeases = cacheClientLeases;
   }
 
   private EC2ImageCow(
@@ -51,6 +113,13 @@ public class EC2ImageCow extends EC2CowBase {
       AwsCredentialsProvider credentialsProvider,
       Region region) {
     super(logger, clientConfig, credentialsProvider, region);
+    this.region = region;
+    this.imageCache = SHARED_IMAGE_CACHE;
+    this.architectureCache = SHARED_ARCHITECTURE_CACHE;
+    this.cacheClientLeases =
+        () ->
+            AwsClientRegistry.shared()
+                .acquire(Ec2Client.class, region, credentialsProvider, Ec2Client::builder);
   }
 
   /**
@@ -70,6 +139,11 @@ public class EC2ImageCow extends EC2CowBase {
    * Find the latest image in a given release channel that matches the architecture for a given EC2
    * Instance type.
    *
+   * <p>Both the image and the instance type's architectures are cached in process, across COWs, by
+   * region, channel and architectures. Cached images are refreshed in the background after an hour,
+   * so an image published since may not be returned right away. Loads lease their own client from
+   * {@link AwsClientRegistry#shared()}, so closing this COW does not affect a pending refresh.
+   *
    * @param imageChannel release channel to find an image for
    * @param instanceType instance type that will be launched
    * @return the ID of the AMI image that can be used to launch the AMI described by imageChannel on
@@ -80,7 +154,36 @@ public class EC2ImageCow extends EC2CowBase {
   public String getLatestImage(EC2ImageChannel imageChannel, InstanceType instanceType) {
 
     // Query AWS to get the supported architectures for the given instance type
-    List<String> instanceArchitectures = getInstanceTypeArchitectures(instanceType);
+    List<String> instanceArchitectures =
+        architectureCache.get(
+            instanceType,
+            () -> loadWithClient(client -> getInstanceTypeArchitectures(client, instanceType)),
+            getOperationAnnotator());
+
+    return imageCache.get(
+        ImageKey.create(region, imageChannel, instanceArchitectures),
+        () ->
+            loadWithClient(
+                client ->
+                    queryLatestImage(client, imageChannel, instanceType, instanceArchitectures)),
+        getOperationAnnotator());
+  }
+
+  /** Runs a cache load with a client that stays open for the load, even if this COW is closed. */
+  private <V> V loadWithClient(Function<Ec2Client, V> load) {
+    if (cacheClientLeases == null) {
+      return load.apply(getClient());
+    }
+    try (Ec2Client client = cacheClientLeases.get()) {
+      return load.apply(client);
+    }
+  }
+
+  private String queryLatestImage(
+      Ec2Client client,
+      EC2ImageChannel imageChannel,
+      InstanceType instanceType,
+      List<String> instanceArchitectures) {
 
     // Set "latestCreateDate" variable to the epoch; we will use this (in conjunction with
     // `latestImageId" to find the most recently created image.
@@ -95,6 +198,7 @@ public class EC2ImageCow extends EC2CowBase {
     do {
       DescribeImagesResponse describeImagesResponse =
           queryImages(
+              client,
               List.of(imageChannel.getOwner()),
               List.of(
                   Filter.builder()
@@ -133,7 +237,7 @@ public class EC2ImageCow extends EC2CowBase {
     return latestImageId;
   }
 
-  private List<String> getInstanceTypeArchitectures(InstanceType instanceType) {
+  private List<String> getInstanceTypeArchitectures(Ec2Client client, InstanceType instanceType) {
     DescribeInstanceTypesRequest request =
         DescribeInstanceTypesRequest.builder().instanceTypes(List.of(instanceType)).build();
 
@@ -141,7 +245,7 @@ public class EC2ImageCow extends EC2CowBase {
         getOperationAnnotator()
             .executeCowOperation(
                 EC2ImageOperation.AWS_DESCRIBE_EC2_INSTANCE_TYPES,
-                () -> getClient().describeInstanceTypes(request),
+                () -> client.describeInstanceTypes(request),
                 () -> createJsonObjectWithSingleField("request", request));
 
     InstanceTypeInfo instanceTypeInfo =
@@ -153,8 +257,30 @@ public class EC2ImageCow extends EC2CowBase {
     return instanceTypeInfo.processorInfo().supportedArchitecturesAsStrings();
   }
 
+  /**
+   * What the latest image depends on; every instance type with the same architectures shares it.
+   */
+  @AutoValue
+  abstract static class ImageKey {
+    abstract Region region();
+
+    abstract EC2ImageChannel channel();
+
+    abstract ImmutableSortedSet<String> architectures();
+
+    static ImageKey create(
+        Region region, EC2ImageChannel channel, Collection<String> architectures) {
+      return new AutoValue_EC2ImageCow_ImageKey(
+          region, channel, ImmutableSortedSet.copyOf(architectures));
+    }
+  }
+
   private DescribeImagesResponse queryImages(
-      Collection<String> owners, Collection<Filter> filters, Integer maxResults, String nextToken) {
+      Ec2Client client,
+      Collection<String> owners,
+      Collection<Filter> filters,
+      Integer maxResults,
+      String nextToken) {
 
     DescribeImagesRequest request =
         DescribeImagesRequest.builder()
@@ -167,7 +293,7 @@ public class EC2ImageCow extends EC2CowBase {
     return getOperationAnnotator()
         .executeCowOperation(
             EC2ImageOperation.AWS_DESCRIBE_EC2_IMAGES,
-            () -> getClient().describeImages(request),
+            () -> client.describeImages(request),
             () -> createJsonObjectWithSingleField("request", request));
   }
 }
@@ -3,9 +3,19 @@ package bio.terra.cloudres.aws.ec2;
 import bio.terra.cloudres.aws.notebook.SageMakerNotebookCow;
 import bio.terra.cloudres.common.ClientConfig;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,11 +26,13 @@ import software.amazon.awssdk.services.ec2.Ec2Client;
 import software.amazon.awssdk.services.ec2.model.CreateTagsRequest;
 import software.amazon.awssdk.services.ec2.model.DeleteTagsRequest;
 import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusRequest;
+import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusResponse;
 import software.amazon.awssdk.services.ec2.model.DescribeInstancesRequest;
 import software.amazon.awssdk.services.ec2.model.DescribeInstancesResponse;
 import software.amazon.awssdk.services.ec2.model.Filter;
 import software.amazon.awssdk.services.ec2.model.Instance;
 import software.amazon.awssdk.services.ec2.model.InstanceStateName;
+import software.amazon.awssdk.services.ec2.model.InstanceStatus;
 import software.amazon.awssdk.services.ec2.model.Reservation;
 import software.amazon.awssdk.services.ec2.model.RunInstancesRequest;
 import software.amazon.awssdk.services.ec2.model.RunInstancesResponse;
@@ -40,6 +52,18 @@ import software.amazon.awssdk.services.ec2.waiters.Ec2Waiter;
 public class EC2InstanceCow extends EC2CowBase {
   private static Logger logger = LoggerFactory.getLogger(SageMakerNotebookCow.class);
 
+  /**
+   * The most instance IDs {@link #getAll} sends in one {@code DescribeInstances} request, as values
+   * of the {@code instance-id} filter.
+   */
+  public static final int MAX_INSTANCE_IDS_PER_REQUEST = 200;
+
+  /** The most instances {@code DescribeInstances} returns per page. */
+  private static final int MAX_RESULTS_PER_PAGE = 1000;
+
+  /** Recently described instances by ID, or null if caching is not enabled. */
+  private Cache<String, Instance> instanceCache;
+
   @VisibleForTesting
   public static void setLogger(Logger newLogger) {
     logger = newLogger;
@@ -96,6 +120,12 @@ public class EC2InstanceCow extends EC2CowBase {
    * @return {@link Instance} object describing the instance
    */
   public Instance get(String instanceId) {
+    if (instanceCache != null) {
+      Instance cached = instanceCache.getIfPresent(instanceId);
+      if (cached != null) {
+        return cached;
+      }
+    }
     DescribeInstancesResponse response =
         getOperationAnnotator()
             .executeCowOperation(
@@ -108,13 +138,138 @@ public class EC2InstanceCow extends EC2CowBase {
                                 .build()),
                 () -> serializeInstanceId(instanceId));
 
-    return EC2Utils.extractSingleValue(
+    Instance instance =
         EC2Utils.extractSingleValue(
-            response,
-            DescribeInstancesResponse::hasReservations,
-            DescribeInstancesResponse::reservations),
-        Reservation::hasInstances,
-        Reservation::instances);
+            EC2Utils.extractSingleValue(
+                response,
+                DescribeInstancesResponse::hasReservations,
+                DescribeInstancesResponse::reservations),
+            Reservation::hasInstances,
+            Reservation::instances);
+    if (instanceCache != null) {
+      instanceCache.put(instanceId, instance);
+    }
+    return instance;
+  }
+
+  /**
+   * Gets descriptions of many EC2 instances with as few API calls as possible.
+   *
+   * <p>IDs are described in batches of up to {@link #MAX_INSTANCE_IDS_PER_REQUEST}, following
+   * {@code nextToken} through every page of each batch. Each page is logged separately. If the
+   * instance cache is enabled, cached instances are not described again, and the described ones are
+   * cached.
+   *
+   * @param instanceIds IDs of the instances to describe
+   * @return {@link Instance} objects describing the instances by ID. IDs of instances that do not
+   *     exist are left out, rather than failing the whole call.
+   */
+  public Map<String, Instance> getAll(Collection<String> instanceIds) {
+    Map<String, Instance> instances = new HashMap<>();
+    List<String> toDescribe = new ArrayList<>();
+    for (String instanceId : new LinkedHashSet<>(instanceIds)) {
+      Instance cached = instanceCache != null ? instanceCache.getIfPresent(instanceId) : null;
+      if (cached != null) {
+        instances.put(instanceId, cached);
+      } else {
+        toDescribe.add(instanceId);
+      }
+    }
+    for (List<String> batch : Lists.partition(toDescribe, MAX_INSTANCE_IDS_PER_REQUEST)) {
+      String nextToken = null;
+      do {
+        // Filtering by ID, unlike passing instanceIds, tolerates IDs that do not exist and allows
+        // paging.
+        DescribeInstancesRequest request =
+            DescribeInstancesRequest.builder()
+                .filters(Filter.builder().name("instance-id").values(batch).build())
+                .maxResults(MAX_RESULTS_PER_PAGE)
+                .nextToken(nextToken)
+                .build();
+        DescribeInstancesResponse response =
+            getOperationAnnotator()
+                .executeCowOperation(
+                    EC2InstanceOperation.AWS_GET_ALL_EC2_INSTANCES,
+                    () -> getClient().describeInstances(request),
+                    () -> serializeInstanceIds(batch, request.nextToken()));
+        for (Reservation reservation : response.reservations()) {
+          for (Instance instance : reservation.instances()) {
+            instances.put(instance.instanceId(), instance);
+            if (instanceCache != null) {
+              instanceCache.put(instance.instanceId(), instance);
+            }
+          }
+        }
+        nextToken = response.nextToken();
+      } while (nextToken != null);
+    }
+    return instances;
+  }
+
+  /**
+   * Gets the status checks of many running EC2 instances with as few API calls as possible.
+   *
+   * <p>IDs are described in batches of up to {@link #MAX_INSTANCE_IDS_PER_REQUEST}, following
+   * {@code nextToken} through every page of each batch. Each page is logged separately. Statuses
+   * are never cached.
+   *
+   * @param instanceIds IDs of the instances to describe
+   * @return {@link InstanceStatus} objects by ID. Instances that do not exist or are not running
+   *     are left out.
+   */
+  public Map<String, InstanceStatus> getAllStatuses(Collection<String> instanceIds) {
+    Map<String, InstanceStatus> statuses = new HashMap<>();
+    for (List<String> batch :
+        Lists.partition(
+            new ArrayList<>(new LinkedHashSet<>(instanceIds)), MAX_INSTANCE_IDS_PER_REQUEST)) {
+      String nextToken = null;
+      do {
+        DescribeInstanceStatusRequest request =
+            DescribeInstanceStatusRequest.builder()
+                .filters(Filter.builder().name("instance-id").values(batch).build())
+                .maxResults(MAX_RESULTS_PER_PAGE)
+                .nextToken(nextToken)
+                .build();
+        DescribeInstanceStatusResponse response =
+            getOperationAnnotator()
+                .executeCowOperation(
+                    EC2InstanceOperation.AWS_GET_ALL_EC2_INSTANCE_STATUSES,
+                    () -> getClient().describeInstanceStatus(request),
+                    () -> serializeInstanceIds(batch, request.nextToken()));
+        response.instanceStatuses().forEach(status -> statuses.put(status.instanceId(), status));
+        nextToken = response.nextToken();
+      } while (nextToken != null);
+    }
+    return statuses;
+  }
+
+  /**
+   * Enables a cache of instance descriptions, so that polling many instances does not describe each
+   * one on every poll. {@link #get} and {@link #getAll} return cached descriptions up to {@code
+   * ttl} old. Operations through this COW that change an instance remove it from the cache, but
+   * changes made elsewhere are only seen once the cached description expires.
+   *
+   * @param ttl how long a description is cached; keep this short, e.g. a few seconds
+   * @return this COW
+   */
+  public EC2InstanceCow withInstanceCache(Duration ttl) {
+    return withInstanceCache(ttl, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  EC2InstanceCow withInstanceCache(Duration ttl, Ticker ticker) {
+    instanceCache = CacheBuilder.newBuilder().expireAfterWrite(ttl).ticker(ticker).build();
+    return this;
+  }
+
+  /**
+   * Removes a changed instance from the cache, if enabled. Called after the change was sent, even
+   * if it failed, so that an instance read while the change was being sent is dropped too.
+   */
+  private void invalidate(String instanceId) {
+    if (instanceCache != null) {
+      instanceCache.invalidate(instanceId);
+    }
   }
 
   /**
@@ -157,16 +312,20 @@ public class EC2InstanceCow extends EC2CowBase {
    * @param instanceId ID of Instance to terminate
    */
   public void terminate(String instanceId) {
-    getOperationAnnotator()
-        .executeCowOperation(
-            EC2InstanceOperation.AWS_TERMINATE_EC2_INSTANCE,
-            () ->
-                getClient()
-                    .terminateInstances(
-                        TerminateInstancesRequest.builder()
-                            .instanceIds(List.of(instanceId))
-                            .build()),
-            () -> serializeInstanceId(instanceId));
+    try {
+      getOperationAnnotator()
+          .executeCowOperation(
+              EC2InstanceOperation.AWS_TERMINATE_EC2_INSTANCE,
+              () ->
+                  getClient()
+                      .terminateInstances(
+                          TerminateInstancesRequest.builder()
+                              .instanceIds(List.of(instanceId))
+                              .build()),
+              () -> serializeInstanceId(instanceId));
+    } finally {
+      invalidate(instanceId);
+    }
   }
 
   /**
@@ -190,14 +349,18 @@ public class EC2InstanceCow extends EC2CowBase {
    * @param instanceId ID of Instance to start
    */
   public void start(String instanceId) {
-    getOperationAnnotator()
-        .executeCowOperation(
-            EC2InstanceOperation.AWS_START_EC2_INSTANCE,
-            () ->
-                getClient()
-                    .startInstances(
-                        StartInstancesRequest.builder().instanceIds(List.of(instanceId)).build()),
-            () -> serializeInstanceId(instanceId));
+    try {
+      getOperationAnnotator()
+          .executeCowOperation(
+              EC2InstanceOperation.AWS_START_EC2_INSTANCE,
+              () ->
+                  getClient()
+                      .startInstances(
+                          StartInstancesRequest.builder().instanceIds(List.of(instanceId)).build()),
+              () -> serializeInstanceId(instanceId));
+    } finally {
+      invalidate(instanceId);
+    }
   }
 
   /**
@@ -218,14 +381,18 @@ public class EC2InstanceCow extends EC2CowBase {
    * @param instanceId ID of Instance to stop
    */
   public void stop(String instanceId) {
-    getOperationAnnotator()
-        .executeCowOperation(
-            EC2InstanceOperation.AWS_STOP_EC2_INSTANCE,
-            () ->
-                getClient()
-                    .stopInstances(
-                        StopInstancesRequest.builder().instanceIds(List.of(instanceId)).build()),
-            () -> serializeInstanceId(instanceId));
+    try {
+      getOperationAnnotator()
+          .executeCowOperation(
+              EC2InstanceOperation.AWS_STOP_EC2_INSTANCE,
+              () ->
+                  getClient()
+                      .stopInstances(
+                          StopInstancesRequest.builder().instanceIds(List.of(instanceId)).build()),
+              () -> serializeInstanceId(instanceId));
+    } finally {
+      invalidate(instanceId);
+    }
   }
 
   /**
@@ -244,6 +411,9 @@ public class EC2InstanceCow extends EC2CowBase {
    * Wait for an Instance to reach OK Status, meaning the operating system is up and responding to
    * AWS health checks
    *
+   * <p>This blocks the calling thread; to wait for many instances on one thread, use {@link
+   * EC2InstanceStateWatcher#watchStatusOK}.
+   *
    * @param instanceId ID of Instance to wait for
    * @throws {@link CrlEC2Exception} if the API call determines that the Instance will never reach
    *     OK status
@@ -262,7 +432,8 @@ public class EC2InstanceCow extends EC2CowBase {
    * Wait for EC2 virtual machine Instance to reach a certain state.
    *
    * <p>The AWS SDK only supports waiting for states RUNNING, STOPPED, or TERMINATED; this
-   * implementation aligns to the SDK.
+   * implementation aligns to the SDK. This blocks the calling thread; to wait for many instances on
+   * one thread, use {@link EC2InstanceStateWatcher#watchState}.
    *
    * @param instanceId ID of Instance to wait for
    * @param expectedState {@link InstanceStateName} to wait for
@@ -300,17 +471,21 @@ public class EC2InstanceCow extends EC2CowBase {
    * @param tags tags to add/overwrite
    */
   public void createTags(String instanceId, Collection<Tag> tags) {
-    getOperationAnnotator()
-        .executeCowOperation(
-            EC2InstanceOperation.AWS_CREATE_TAGS_EC2_INSTANCE,
-            () ->
-                getClient()
-                    .createTags(
-                        CreateTagsRequest.builder()
-                            .resources(List.of(instanceId))
-                            .tags(tags)
-                            .build()),
-            () -> serializeInstanceId(instanceId));
+    try {
+      getOperationAnnotator()
+          .executeCowOperation(
+              EC2InstanceOperation.AWS_CREATE_TAGS_EC2_INSTANCE,
+              () ->
+                  getClient()
+                      .createTags(
+                          CreateTagsRequest.builder()
+                              .resources(List.of(instanceId))
+                              .tags(tags)
+                              .build()),
+              () -> serializeInstanceId(instanceId));
+    } finally {
+      invalidate(instanceId);
+    }
   }
 
   /**
@@ -330,21 +505,24 @@ public class EC2InstanceCow extends EC2CowBase {
       throw new IllegalArgumentException(
           "Must pass at least one tag key; to delete all tags call deleteAllTags method.");
     }
-
-    getOperationAnnotator()
-        .executeCowOperation(
-            EC2InstanceOperation.AWS_DELETE_TAGS_EC2_INSTANCE,
-            () ->
-                getClient()
-                    .deleteTags(
-                        DeleteTagsRequest.builder()
-                            .resources(List.of(instanceId))
-                            .tags(
-                                keys.stream()
-                                    .map(key -> Tag.builder().key(key).build())
-                                    .collect(Collectors.toList()))
-                            .build()),
-            () -> serializeInstanceId(instanceId));
+    try {
+      getOperationAnnotator()
+          .executeCowOperation(
+              EC2InstanceOperation.AWS_DELETE_TAGS_EC2_INSTANCE,
+              () ->
+                  getClient()
+                      .deleteTags(
+                          DeleteTagsRequest.builder()
+                              .resources(List.of(instanceId))
+                              .tags(
+                                  keys.stream()
+                                      .map(key -> Tag.builder().key(key).build())
+                                      .collect(Collectors.toList()))
+                              .build()),
+              () -> serializeInstanceId(instanceId));
+    } finally {
+      invalidate(instanceId);
+    }
   }
 
   /**
@@ -353,17 +531,32 @@ public class EC2InstanceCow extends EC2CowBase {
    * @param instanceId ID of instance to delete tags from
    */
   public void deleteAllTags(String instanceId) {
-    getOperationAnnotator()
-        .executeCowOperation(
-            EC2InstanceOperation.AWS_DELETE_TAGS_EC2_INSTANCE,
-            () ->
-                getClient()
-                    .deleteTags(DeleteTagsRequest.builder().resources(List.of(instanceId)).build()),
-            () -> serializeInstanceId(instanceId));
+    try {
+      getOperationAnnotator()
+          .executeCowOperation(
+              EC2InstanceOperation.AWS_DELETE_TAGS_EC2_INSTANCE,
+              () ->
+                  getClient()
+                      .deleteTags(
+                          DeleteTagsRequest.builder().resources(List.of(instanceId)).build()),
+              () -> serializeInstanceId(instanceId));
+    } finally {
+      invalidate(instanceId);
+    }
   }
 
   @VisibleForTesting
   public JsonObject serializeInstanceId(String instanceId) {
     return createJsonObjectWithSingleField("instanceId", instanceId);
   }
+
+  @VisibleForTesting
+  public JsonObject serializeInstanceIds(Collection<String> instanceIds, String nextToken) {
+    var obj = new JsonObject();
+    var ids = new JsonArray();
+    instanceIds.forEach(ids::add);
+    obj.add("instanceIds", ids);
+    obj.addProperty("nextToken", nextToken);
+    return obj;
+  }
 }
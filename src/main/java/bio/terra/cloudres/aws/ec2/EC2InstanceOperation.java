@@ -5,6 +5,8 @@ import bio.terra.cloudres.common.CloudOperation;
 /** {@link CloudOperation} for using AWS EC2 Instance API. */
 public enum EC2InstanceOperation implements CloudOperation {
   AWS_GET_EC2_INSTANCE,
+  AWS_GET_ALL_EC2_INSTANCES,
+  AWS_GET_ALL_EC2_INSTANCE_STATUSES,
   AWS_GET_BY_TAG_EC2_INSTANCE,
   AWS_RUN_EC2_INSTANCES,
   AWS_START_EC2_INSTANCE,
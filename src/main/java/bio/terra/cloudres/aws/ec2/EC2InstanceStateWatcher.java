@@ -0,0 +1,124 @@
+package bio.terra.cloudres.aws.ec2;
+
+import bio.terra.cloudres.aws.common.ResourceStateWatcher;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import software.amazon.awssdk.services.ec2.model.Instance;
+import software.amazon.awssdk.services.ec2.model.InstanceStateName;
+import software.amazon.awssdk.services.ec2.model.InstanceStatus;
+import software.amazon.awssdk.services.ec2.model.SummaryStatus;
+
+/**
+ * Waits for many EC2 instances to reach a state on a single thread, instead of blocking a thread on
+ * {@link EC2InstanceCow#waitForState} or {@link EC2InstanceCow#waitForStatusOK} per instance.
+ *
+ * <p>Every poll describes all watched instances with {@link EC2InstanceCow#getAll} and {@link
+ * EC2InstanceCow#getAllStatuses}, which batch instance IDs into as few requests as possible. Like
+ * the SDK waiters, a wait fails with {@link CrlEC2UnreachableStateException} if the instance enters
+ * a state from which the awaited one cannot be reached.
+ *
+ * <p>The watcher does not close the {@link EC2InstanceCow} it polls through.
+ */
+public class EC2InstanceStateWatcher implements AutoCloseable {
+  /** The poll interval of the SDK's EC2 waiters. */
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(15);
+  /** The timeout of the SDK's EC2 waiters, which give up after 40 polls. */
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(10);
+
+  private final ScheduledExecutorService executor;
+  private final ResourceStateWatcher<Instance> stateWatcher;
+  private final ResourceStateWatcher<InstanceStatus> statusWatcher;
+
+  public EC2InstanceStateWatcher(EC2InstanceCow instanceCow) {
+    this(instanceCow, DEFAULT_POLL_INTERVAL, DEFAULT_TIMEOUT);
+  }
+
+  public EC2InstanceStateWatcher(
+      EC2InstanceCow instanceCow, Duration pollInterval, Duration timeout) {
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("crl-ec2-watcher").build());
+    this.stateWatcher =
+        new ResourceStateWatcher<>(instanceCow::getAll, pollInterval, timeout, executor);
+    this.statusWatcher =
+        new ResourceStateWatcher<>(instanceCow::getAllStatuses, pollInterval, timeout, executor);
+  }
+
+  /**
+   * Wait for an instance to reach a state.
+   *
+   * <p>Like the SDK waiters, this only supports waiting for states RUNNING, STOPPED, or TERMINATED.
+   * An instance that no longer exists counts as TERMINATED.
+   *
+   * @param instanceId ID of the instance to wait for
+   * @param expectedState {@link InstanceStateName} to wait for
+   * @return a future completed with the instance's description once it is in {@code expectedState},
+   *     or failed with {@link CrlEC2UnreachableStateException} if that state can no longer be
+   *     reached, or with a {@link java.util.concurrent.TimeoutException}
+   * @throws UnsupportedOperationException if a state other than [RUNNING, STOPPED, TERMINATED] is
+   *     passed
+   */
+  public CompletableFuture<Instance> watchState(
+      String instanceId, InstanceStateName expectedState) {
+    Set<InstanceStateName> failureStates =
+        switch (expectedState) {
+          case RUNNING -> Set.of(
+              InstanceStateName.SHUTTING_DOWN,
+              InstanceStateName.TERMINATED,
+              InstanceStateName.STOPPING);
+          case STOPPED -> Set.of(InstanceStateName.PENDING, InstanceStateName.TERMINATED);
+          case TERMINATED -> Set.of(InstanceStateName.PENDING, InstanceStateName.STOPPING);
+          default -> throw new UnsupportedOperationException(
+              "Unsupported wait state "
+                  + expectedState.toString()
+                  + ", accepts [RUNNING, STOPPED, TERMINATED]");
+        };
+    return stateWatcher.watch(
+        instanceId,
+        instance -> {
+          if (instance == null) {
+            return expectedState == InstanceStateName.TERMINATED;
+          }
+          InstanceStateName state = instance.state().name();
+          if (failureStates.contains(state)) {
+            throw unreachable(instanceId, "Instance is in state " + state);
+          }
+          return state == expectedState;
+        });
+  }
+
+  /**
+   * Wait for an instance to reach OK status, meaning the operating system is up and responding to
+   * AWS health checks. Like the SDK waiter, instances that are not running yet, or whose status is
+   * not OK yet, are waited on until the timeout.
+   *
+   * @param instanceId ID of the instance to wait for
+   * @return a future completed with the instance's status once it is OK, or failed with a {@link
+   *     java.util.concurrent.TimeoutException}
+   */
+  public CompletableFuture<InstanceStatus> watchStatusOK(String instanceId) {
+    return statusWatcher.watch(
+        instanceId,
+        status -> status != null && status.instanceStatus().status() == SummaryStatus.OK);
+  }
+
+  /** The number of waits still pending. */
+  public int size() {
+    return stateWatcher.size() + statusWatcher.size();
+  }
+
+  private static CrlEC2UnreachableStateException unreachable(String instanceId, String reason) {
+    return new CrlEC2UnreachableStateException(instanceId, new IllegalStateException(reason));
+  }
+
+  @Override
+  public void close() {
+    stateWatcher.close();
+    statusWatcher.close();
+    executor.shutdownNow();
+  }
+}
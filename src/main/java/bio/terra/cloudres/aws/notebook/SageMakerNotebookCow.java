@@ -1,10 +1,16 @@
 package bio.terra.cloudres.aws.notebook;
 
+import bio.terra.cloudres.aws.common.AwsClientRegistry;
 import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.JsonObject;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
@@ -19,7 +25,10 @@ import software.amazon.awssdk.services.sagemaker.model.CreatePresignedNotebookIn
 import software.amazon.awssdk.services.sagemaker.model.DeleteNotebookInstanceRequest;
 import software.amazon.awssdk.services.sagemaker.model.DescribeNotebookInstanceRequest;
 import software.amazon.awssdk.services.sagemaker.model.DescribeNotebookInstanceResponse;
+import software.amazon.awssdk.services.sagemaker.model.ListNotebookInstancesRequest;
+import software.amazon.awssdk.services.sagemaker.model.ListNotebookInstancesResponse;
 import software.amazon.awssdk.services.sagemaker.model.NotebookInstanceStatus;
+import software.amazon.awssdk.services.sagemaker.model.NotebookInstanceSummary;
 import software.amazon.awssdk.services.sagemaker.model.StartNotebookInstanceRequest;
 import software.amazon.awssdk.services.sagemaker.model.StopNotebookInstanceRequest;
 import software.amazon.awssdk.services.sagemaker.waiters.SageMakerWaiter;
@@ -33,6 +42,9 @@ public class SageMakerNotebookCow implements AutoCloseable {
 
   private static final Duration SAGEMAKER_NOTEBOOK_WAITER_TIMEOUT_DURATION =
       Duration.ofSeconds(900);
+  /** The most notebook instances {@code ListNotebookInstances} returns in one page. */
+  private static final int MAX_RESULTS_PER_PAGE = 100;
+
   private static Logger logger = LoggerFactory.getLogger(SageMakerNotebookCow.class);
   private final OperationAnnotator operationAnnotator;
   private final SageMakerClient notebooksClient;
@@ -50,14 +62,17 @@ public class SageMakerNotebookCow implements AutoCloseable {
     this.notebooksWaiter = notebooksWaiter;
   }
 
-  /** Create a {@link SageMakerNotebookCow} with some default configurations for convenience. */
+  /**
+   * Create a {@link SageMakerNotebookCow} with some default configurations for convenience. The
+   * client is leased from {@link AwsClientRegistry#shared()}, so COWs for the same region and
+   * credentials provider share its connection pool.
+   */
   public static SageMakerNotebookCow create(
       ClientConfig clientConfig, AwsCredentialsProvider credentials, String region) {
     SageMakerClient notebooksClient =
-        SageMakerClient.builder()
-            .region(Region.of(region))
-            .credentialsProvider(credentials)
-            .build();
+        AwsClientRegistry.shared()
+            .acquire(
+                SageMakerClient.class, Region.of(region), credentials, SageMakerClient::builder);
     return new SageMakerNotebookCow(
         clientConfig,
         notebooksClient,
@@ -89,6 +104,42 @@ public class SageMakerNotebookCow implements AutoCloseable {
         () -> serializeInstanceName(instanceName));
   }
 
+  /**
+   * Get the status of many SageMaker notebook instances, paging through {@code
+   * ListNotebookInstances} until all of them are found. Each page is logged separately.
+   *
+   * <p>SageMaker has no batch describe by name, so this lists every notebook instance in the region
+   * in the worst case. It is still far fewer calls than describing each instance once there are
+   * more than a few of them.
+   *
+   * @param instanceNames names of the notebook instances to look up
+   * @return the status of each instance by name. Instances that do not exist are left out.
+   */
+  public Map<String, NotebookInstanceStatus> getAllStatuses(Collection<String> instanceNames) {
+    Set<String> remaining = new HashSet<>(instanceNames);
+    Map<String, NotebookInstanceStatus> statuses = new HashMap<>();
+    String nextToken = null;
+    do {
+      ListNotebookInstancesRequest request =
+          ListNotebookInstancesRequest.builder()
+              .maxResults(MAX_RESULTS_PER_PAGE)
+              .nextToken(nextToken)
+              .build();
+      ListNotebookInstancesResponse response =
+          operationAnnotator.executeCowOperation(
+              SageMakerNotebookOperation.AWS_LIST_NOTEBOOKS,
+              () -> notebooksClient.listNotebookInstances(request),
+              () -> createJsonObjectWithSingleField("request", request));
+      for (NotebookInstanceSummary summary : response.notebookInstances()) {
+        if (remaining.remove(summary.notebookInstanceName())) {
+          statuses.put(summary.notebookInstanceName(), summary.notebookInstanceStatus());
+        }
+      }
+      nextToken = response.nextToken();
+    } while (nextToken != null && !remaining.isEmpty());
+    return statuses;
+  }
+
   public String createPresignedUrl(String instanceName) {
     return operationAnnotator
         .executeCowOperation(
@@ -118,7 +169,8 @@ public class SageMakerNotebookCow implements AutoCloseable {
 
   /**
    * Request that SageMaker start a notebook instance and block until the instance is usable. To
-   * return immediately after making the request instead, use {@link #start(String)}.
+   * return immediately after making the request instead, use {@link #start(String)}. To wait for
+   * many instances on one thread, use {@link SageMakerNotebookStatusWatcher}.
    */
   public void startAndWait(String instanceName) {
     start(instanceName);
@@ -141,7 +193,8 @@ public class SageMakerNotebookCow implements AutoCloseable {
 
   /**
    * Request that SageMaker stop a notebook instance and block until the instance is stopped. To
-   * return immediately after making the request instead, use {@link #stop(String)}.
+   * return immediately after making the request instead, use {@link #stop(String)}. To wait for
+   * many instances on one thread, use {@link SageMakerNotebookStatusWatcher}.
    */
   public void stopAndWait(String instanceName) {
     stop(instanceName);
@@ -8,6 +8,7 @@ public enum SageMakerNotebookOperation implements CloudOperation {
   AWS_CREATE_PRESIGNED_URL_NOTEBOOK,
   AWS_DELETE_NOTEBOOK,
   AWS_GET_NOTEBOOK,
+  AWS_LIST_NOTEBOOKS,
   AWS_START_NOTEBOOK,
   AWS_STOP_NOTEBOOK
 }
@@ -0,0 +1,76 @@
+package bio.terra.cloudres.aws.notebook;
+
+import bio.terra.cloudres.aws.common.ResourceStateWatcher;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.services.sagemaker.model.NotebookInstanceStatus;
+
+/**
+ * Waits for many SageMaker notebook instances to reach a status on a single thread, instead of
+ * blocking a thread per instance in {@link SageMakerNotebookCow#startAndWait} or {@link
+ * SageMakerNotebookCow#stopAndWait}.
+ *
+ * <p>Every poll looks up all watched instances with {@link SageMakerNotebookCow#getAllStatuses}.
+ * Like the SDK waiters, a wait fails with {@link CrlSageMakerException} if the instance fails.
+ *
+ * <p>The watcher does not close the {@link SageMakerNotebookCow} it polls through.
+ */
+public class SageMakerNotebookStatusWatcher implements AutoCloseable {
+  /** The poll interval of the SDK's notebook instance waiters. */
+  public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(30);
+  /** The same timeout as {@link SageMakerNotebookCow}'s waiter. */
+  public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(900);
+
+  private final ResourceStateWatcher<NotebookInstanceStatus> watcher;
+
+  public SageMakerNotebookStatusWatcher(SageMakerNotebookCow notebookCow) {
+    this(notebookCow, DEFAULT_POLL_INTERVAL, DEFAULT_TIMEOUT);
+  }
+
+  public SageMakerNotebookStatusWatcher(
+      SageMakerNotebookCow notebookCow, Duration pollInterval, Duration timeout) {
+    this.watcher =
+        new ResourceStateWatcher<>(
+            "crl-sagemaker-watcher", notebookCow::getAllStatuses, pollInterval, timeout);
+  }
+
+  /**
+   * Wait for a notebook instance to reach a status. Only IN_SERVICE and STOPPED are supported. An
+   * instance that is not listed yet is waited on.
+   *
+   * @param instanceName name of the notebook instance to wait for
+   * @param expectedStatus {@link NotebookInstanceStatus} to wait for
+   * @return a future completed with {@code expectedStatus} once the instance reaches it, or failed
+   *     with {@link CrlSageMakerException} if the instance fails, or with a {@link
+   *     java.util.concurrent.TimeoutException}
+   * @throws UnsupportedOperationException if a status other than [IN_SERVICE, STOPPED] is passed
+   */
+  public CompletableFuture<NotebookInstanceStatus> watchStatus(
+      String instanceName, NotebookInstanceStatus expectedStatus) {
+    if (expectedStatus != NotebookInstanceStatus.IN_SERVICE
+        && expectedStatus != NotebookInstanceStatus.STOPPED) {
+      throw new UnsupportedOperationException(
+          "Unsupported poll for expected notebook status " + expectedStatus.toString());
+    }
+    return watcher.watch(
+        instanceName,
+        status -> {
+          if (status == NotebookInstanceStatus.FAILED) {
+            throw new CrlSageMakerException(
+                "Error while polling for notebook status: ",
+                new IllegalStateException("Notebook instance " + instanceName + " failed"));
+          }
+          return status == expectedStatus;
+        });
+  }
+
+  /** The number of waits still pending. */
+  public int size() {
+    return watcher.size();
+  }
+
+  @Override
+  public void close() {
+    watcher.close();
+  }
+}
@@ -1,5 +1,6 @@
 package bio.terra.cloudres.aws.sts;
 
+import bio.terra.cloudres.aws.common.AwsClientRegistry;
 import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import com.google.common.annotations.VisibleForTesting;
@@ -36,11 +37,16 @@ public class SecurityTokenServiceCow implements AutoCloseable {
     this.stsClient = stsClient;
   }
 
-  /** Create a {@link SecurityTokenServiceCow} with some default configurations for convenience. */
+  /**
+   * Create a {@link SecurityTokenServiceCow} with some default configurations for convenience. The
+   * client is leased from {@link AwsClientRegistry#shared()}, so COWs for the same credentials
+   * provider share its connection pool.
+   */
   public static SecurityTokenServiceCow create(
       ClientConfig clientConfig, AwsCredentialsProvider awsCredential) {
     StsClient stsClient =
-        StsClient.builder().credentialsProvider(awsCredential).region(Region.AWS_GLOBAL).build();
+        AwsClientRegistry.shared()
+            .acquire(StsClient.class, Region.AWS_GLOBAL, awsCredential, StsClient::builder);
     return new SecurityTokenServiceCow(clientConfig, stsClient);
   }
 
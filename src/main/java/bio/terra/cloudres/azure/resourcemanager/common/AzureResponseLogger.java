@@ -56,30 +56,11 @@ public class AzureResponseLogger implements HttpResponseLogger {
     final HttpResponse response = loggingOptions.getHttpResponse();
     final HttpRequest request = response.getRequest();
 
-    // Always add request method and request URL
-    JsonObject requestDataJson = new JsonObject();
-    requestDataJson.addProperty("requestMethod", request.getHttpMethod().toString());
-    requestDataJson.addProperty("requestUrl", request.getUrl().toString());
-
-    // Optionally add rich request data if provided in the logging context
+    // Look up rich request data if provided in the logging context
     Optional<ResourceManagerRequestData> requestData =
         Optional.ofNullable(loggingOptions.getContext())
             .flatMap(c -> c.getData(CLOUD_RESOURCE_REQUEST_DATA_KEY))
             .map(o -> (ResourceManagerRequestData) o);
-    requestData.ifPresent(d -> requestDataJson.add("requestBody", d.serialize()));
-
-    // Add the raw request/response body only if debug logging is enabled, as it may be very
-    // verbose.
-    if (logger.isDebugEnabled()) {
-      logBody(
-          request.getHeaders(),
-          request.getBody(),
-          s -> requestDataJson.addProperty("rawRequestBody", s));
-      logBody(
-          response.getHeaders(),
-          response.buffer().getBody(),
-          s -> requestDataJson.addProperty("rawResponseBody", s));
-    }
 
     // Build OperationData object.
     OperationData operationData =
@@ -93,7 +74,7 @@ public class AzureResponseLogger implements HttpResponseLogger {
                 requestData
                     .map(ResourceManagerRequestData::cloudOperation)
                     .orElse(ResourceManagerOperation.AZURE_RESOURCE_MANAGER_UNKNOWN_OPERATION))
-            .setRequestData(requestDataJson)
+            .setRequestDataSupplier(() -> serializeRequest(request, response, requestData))
             .build();
 
     // Invoke OperationAnnotator to record the operation.
@@ -102,6 +83,37 @@ public class AzureResponseLogger implements HttpResponseLogger {
     return Mono.justOrEmpty(response);
   }
 
+  /**
+   * Serializes the request for logging. This is deferred until the request data is actually
+   * consumed, since it may involve buffering the request and response bodies.
+   */
+  private static JsonObject serializeRequest(
+      HttpRequest request,
+      HttpResponse response,
+      Optional<ResourceManagerRequestData> requestData) {
+    // Always add request method and request URL
+    JsonObject requestDataJson = new JsonObject();
+    requestDataJson.addProperty("requestMethod", request.getHttpMethod().toString());
+    requestDataJson.addProperty("requestUrl", request.getUrl().toString());
+
+    // Optionally add rich request data if provided in the logging context
+    requestData.ifPresent(d -> requestDataJson.add("requestBody", d.serialize()));
+
+    // Add the raw request/response body only if debug logging is enabled, as it may be very
+    // verbose.
+    if (logger.isDebugEnabled()) {
+      logBody(
+          request.getHeaders(),
+          request.getBody(),
+          s -> requestDataJson.addProperty("rawRequestBody", s));
+      logBody(
+          response.getHeaders(),
+          response.buffer().getBody(),
+          s -> requestDataJson.addProperty("rawResponseBody", s));
+    }
+    return requestDataJson;
+  }
+
   private static void logBody(
       HttpHeaders headers, Flux<ByteBuffer> body, Consumer<String> consumer) {
     // Ensure we have a valid content length
@@ -0,0 +1,37 @@
+package bio.terra.cloudres.common;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** The executor shared by the background work of every cloud's Cloud Object Wrappers. */
+public class AsyncExecutor {
+  private AsyncExecutor() {}
+
+  /**
+   * Returns the shared {@link Executor}.
+   *
+   * <p>On Java 21 or later this starts a virtual thread per task. CRL is built for Java 17, where
+   * virtual threads are not available, so there it falls back to a shared cached pool of daemon
+   * threads. The executor is unbounded either way, so callers bound their own concurrency.
+   */
+  public static Executor shared() {
+    return Holder.EXECUTOR;
+  }
+
+  /** Lazily creates the executor on first use. */
+  private static class Holder {
+    private static final Executor EXECUTOR = create();
+
+    private static Executor create() {
+      try {
+        return (ExecutorService)
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        return Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("crl-async-%d").build());
+      }
+    }
+  }
+}
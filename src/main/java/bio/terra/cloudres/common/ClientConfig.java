@@ -1,11 +1,20 @@
 package bio.terra.cloudres.common;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 import bio.terra.cloudres.common.cleanup.CleanupConfig;
+import bio.terra.cloudres.google.api.services.common.HttpTransportConfig;
 import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.client.http.HttpTransport;
+import com.google.common.base.Ticker;
 import io.opentelemetry.api.OpenTelemetry;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
 
 /** Configuration class to manage CRL behavior. */
 public class ClientConfig {
@@ -13,18 +22,37 @@ public class ClientConfig {
   private final Optional<CleanupConfig> cleanupConfig;
   private final OpenTelemetry openTelemetry;
   private final MetricsHelper metricsHelper;
+  private final RetryConfig retryConfig;
+  private final RateLimitConfig rateLimitConfig;
+  private final RateLimiter rateLimiter;
+  private final HttpTransportConfig httpTransportConfig;
+  /** Built from {@link #httpTransportConfig} on first use. Guarded by {@code this} when written. */
+  private volatile HttpTransportConfig.Transport httpTransport;
+  /** Whether {@link #close()} was called. Guarded by {@code this}. */
+  private boolean closed = false;
+  /** Annotators shared by the COWs using this config, by the logger they log to. */
+  private final ConcurrentMap<Logger, OperationAnnotator> sharedAnnotators =
+      new ConcurrentHashMap<>();
 
   private ClientConfig(
       String clientName,
       Optional<CleanupConfig> cleanupConfig,
       OpenTelemetry openTelemetry,
-      MetricsHelper metricsHelper) {
+      MetricsHelper metricsHelper,
+      RetryConfig retryConfig,
+      RateLimitConfig rateLimitConfig,
+      HttpTransportConfig httpTransportConfig) {
     checkNotNull(clientName, "client name must be set");
 
     this.clientName = clientName;
     this.cleanupConfig = cleanupConfig;
     this.openTelemetry = openTelemetry;
     this.metricsHelper = metricsHelper;
+    this.retryConfig = retryConfig;
+    this.rateLimitConfig = rateLimitConfig;
+    this.rateLimiter =
+        new RateLimiter(rateLimitConfig, clientName, metricsHelper, Ticker.systemTicker());
+    this.httpTransportConfig = httpTransportConfig;
   }
 
   /** The name of the client running CRL, e.g. the name of the service. */
@@ -48,11 +76,78 @@ public class ClientConfig {
     return metricsHelper;
   }
 
+  /** How failed cloud operations are retried. By default, nothing is retried. */
+  public RetryConfig getRetryConfig() {
+    return retryConfig;
+  }
+
+  /** How cloud operations are rate limited before being sent. By default, nothing is limited. */
+  public RateLimitConfig getRateLimitConfig() {
+    return rateLimitConfig;
+  }
+
+  /** How {@link #getHttpTransport()} is built. By default, the shared default transport is used. */
+  public HttpTransportConfig getHttpTransportConfig() {
+    return httpTransportConfig;
+  }
+
+  /**
+   * The {@link HttpTransport} for the {@code com.google.api.services} COWs using this config, built
+   * from {@link #getHttpTransportConfig()} on first use and shared by all of them.
+   */
+  public HttpTransport getHttpTransport() throws GeneralSecurityException, IOException {
+    HttpTransportConfig.Transport transport = httpTransport;
+    if (transport == null) {
+      synchronized (this) {
+        checkState(!closed, "ClientConfig %s is closed", clientName);
+        transport = httpTransport;
+        if (transport == null) {
+          transport = httpTransportConfig.createTransport(metricsHelper, clientName);
+          httpTransport = transport;
+        }
+      }
+    }
+    return transport.httpTransport();
+  }
+
+  /**
+   * Releases what this config built for its COWs: shuts down the connection pool of an {@link
+   * HttpTransportConfig.Type#APACHE} transport and stops reporting it. The shared default transport
+   * is left open. COWs built from this config must not be used afterwards.
+   */
+  public void close() throws IOException {
+    HttpTransportConfig.Transport transport;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      transport = httpTransport;
+      httpTransport = null;
+    }
+    if (transport != null) {
+      transport.close();
+    }
+  }
+
+  /** The token buckets for {@link #getRateLimitConfig()}, shared by all users of this config. */
+  RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /** The annotators shared by {@link OperationAnnotator#shared}. */
+  ConcurrentMap<Logger, OperationAnnotator> getSharedAnnotators() {
+    return sharedAnnotators;
+  }
+
   public static class Builder {
     private String client;
     private Optional<CleanupConfig> cleanupConfig = Optional.empty();
     private OpenTelemetry openTelemetry = OpenTelemetry.noop();
     private Optional<MetricsHelper> metricsHelper = Optional.empty();
+    private RetryConfig retryConfig = RetryConfig.none();
+    private RateLimitConfig rateLimitConfig = RateLimitConfig.none();
+    private HttpTransportConfig httpTransportConfig = HttpTransportConfig.defaults();
 
     private Builder() {}
 
@@ -82,12 +177,30 @@ public class ClientConfig {
       return this;
     }
 
+    public Builder setRetryConfig(RetryConfig retryConfig) {
+      this.retryConfig = retryConfig;
+      return this;
+    }
+
+    public Builder setRateLimitConfig(RateLimitConfig rateLimitConfig) {
+      this.rateLimitConfig = rateLimitConfig;
+      return this;
+    }
+
+    public Builder setHttpTransportConfig(HttpTransportConfig httpTransportConfig) {
+      this.httpTransportConfig = httpTransportConfig;
+      return this;
+    }
+
     public ClientConfig build() {
       return new ClientConfig(
           this.client,
           cleanupConfig,
           openTelemetry,
-          metricsHelper.orElseGet(() -> new MetricsHelper(openTelemetry)));
+          metricsHelper.orElseGet(() -> new MetricsHelper(openTelemetry)),
+          retryConfig,
+          rateLimitConfig,
+          httpTransportConfig);
     }
   }
 }
@@ -7,6 +7,10 @@ package bio.terra.cloudres.common;
  * rarely, or we should revisit.
  */
 public class JanitorException extends RuntimeException {
+  public JanitorException(String msg) {
+    super(msg);
+  }
+
   public JanitorException(String msg, Throwable cause) {
     super(msg, cause);
   }
@@ -2,25 +2,45 @@ package bio.terra.cloudres.common;
 
 import static io.opentelemetry.semconv.HttpAttributes.HTTP_RESPONSE_STATUS_CODE;
 
+import bio.terra.cloudres.util.MetricsHelper;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.gax.rpc.ApiException;
 import com.google.cloud.http.BaseHttpServiceException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
-import com.google.gson.Gson;
+import com.google.common.base.Suppliers;
 import com.google.gson.JsonObject;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Scope;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import org.slf4j.Logger;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.exception.SdkServiceException;
 
 /** Annotates executing cloud operations with logs, traces, and metrics to record what happens. */
 public class OperationAnnotator {
+  private static final String RETRY_AFTER = "Retry-After";
+  private static final AttributeKey<Long> TRY_COUNT_KEY = AttributeKey.longKey("tryCount");
+  private static final AttributeKey<Long> RETRY_DELAY_MS_KEY = AttributeKey.longKey("retryDelayMs");
+
   private final Tracer tracer;
 
   private final ClientConfig clientConfig;
@@ -34,6 +54,24 @@ public class OperationAnnotator {
     this.tracer = clientConfig.getOpenTelemetry().getTracer(OperationAnnotator.class.getName());
   }
 
+  /**
+   * Returns an annotator for {@code clientConfig} and {@code logger} that is shared with every
+   * other caller passing the same two. Use this instead of the constructor for COWs that are
+   * created in large numbers, e.g. one per listed object, so that each one costs no more than a
+   * lookup.
+   */
+  public static OperationAnnotator shared(ClientConfig clientConfig, Logger logger) {
+    // Try a plain get first: computeIfAbsent with a capturing lambda allocates even on a hit.
+    OperationAnnotator annotator = clientConfig.getSharedAnnotators().get(logger);
+    if (annotator == null) {
+      annotator =
+          clientConfig
+              .getSharedAnnotators()
+              .computeIfAbsent(logger, l -> new OperationAnnotator(clientConfig, l));
+    }
+    return annotator;
+  }
+
   /**
    * Executes the CowOperation.
    *
@@ -60,6 +98,11 @@ public class OperationAnnotator {
   /**
    * Executes the CowOperation and allows for checked exceptions.
    *
+   * <p>If the {@link RateLimitConfig} of the client limits the operation, each attempt first waits
+   * for a token. If the {@link RetryConfig} of the client has a {@link RetryPolicy} for the
+   * operation, failed attempts are retried within the same span. Each attempt is recorded
+   * separately with its own latency and try count.
+   *
    * @param cloudOperation: the {@link CloudOperation} to operate.
    * @param cowExecute: how to execute this cloud operation
    * @param cowSerialize: how to serialize request
@@ -68,30 +111,79 @@ public class OperationAnnotator {
   public <R, E extends Exception> R executeCheckedCowOperation(
       CloudOperation cloudOperation, CowCheckedExecute<R, E> cowExecute, CowSerialize cowSerialize)
       throws E {
-    Optional<Exception> executionException = Optional.empty();
+    return executeCheckedCowOperation(cloudOperation, cowExecute, cowSerialize, Optional::empty);
+  }
+
+  /**
+   * Executes the CowOperation and allows for checked exceptions, like {@link
+   * #executeCheckedCowOperation(CloudOperation, CowCheckedExecute, CowSerialize)}.
+   *
+   * @param cowProject: how to find the project of the request, for per-project {@link RateLimit}s
+   */
+  public <R, E extends Exception> R executeCheckedCowOperation(
+      CloudOperation cloudOperation,
+      CowCheckedExecute<R, E> cowExecute,
+      CowSerialize cowSerialize,
+      CowProject cowProject)
+      throws E {
+    Optional<RetryPolicy> retryPolicy = clientConfig.getRetryConfig().policyFor(cloudOperation);
     OptionalInt httpStatusCode = OptionalInt.of(HttpStatusCodes.STATUS_CODE_OK);
     Span span = tracer.spanBuilder(cloudOperation.name()).startSpan();
+    // Serialize the request at most once, even across retries.
+    Supplier<JsonObject> requestData = Suppliers.memoize(cowSerialize::serializeRequest);
 
-    Stopwatch stopwatch = Stopwatch.createStarted();
     try (Scope ignored = span.makeCurrent()) {
-      R response = cowExecute.execute();
-      return response;
-    } catch (Exception e) {
-      // TODO(yonghao): Add success/error tag for latency for us to track differentiate latency in
-      // different scenarios.
-      httpStatusCode = getHttpErrorCode(e);
-      executionException = Optional.of(e);
-      throw e;
+      for (int tryCount = 1; ; tryCount++) {
+        waitForRateLimit(cloudOperation, cowProject);
+        // Only record try counts for retried operations, so that logs are unchanged otherwise.
+        OptionalInt recordedTryCount =
+            retryPolicy.isPresent() ? OptionalInt.of(tryCount) : OptionalInt.empty();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        R response;
+        try {
+          response = cowExecute.execute();
+        } catch (Exception e) {
+          // TODO(yonghao): Add success/error tag for latency for us to track differentiate latency
+          // in different scenarios.
+          httpStatusCode = getHttpErrorCode(e);
+          recordAttempt(
+              cloudOperation,
+              stopwatch.elapsed(),
+              recordedTryCount,
+              Optional.of(e),
+              httpStatusCode,
+              requestData);
+          Optional<Duration> retryDelay = Optional.empty();
+          if (retryPolicy.isPresent()) {
+            retryDelay = retryPolicy.get().retryDelay(tryCount, httpStatusCode, getRetryAfter(e));
+          }
+          if (retryDelay.isEmpty()) {
+            throw e;
+          }
+          span.addEvent(
+              "retry",
+              Attributes.of(
+                  TRY_COUNT_KEY, (long) tryCount, RETRY_DELAY_MS_KEY, retryDelay.get().toMillis()));
+          try {
+            Thread.sleep(retryDelay.get().toMillis());
+          } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            e.addSuppressed(interrupted);
+            throw e;
+          }
+          continue;
+        }
+        httpStatusCode = OptionalInt.of(HttpStatusCodes.STATUS_CODE_OK);
+        recordAttempt(
+            cloudOperation,
+            stopwatch.elapsed(),
+            recordedTryCount,
+            Optional.empty(),
+            httpStatusCode,
+            requestData);
+        return response;
+      }
     } finally {
-      recordOperation(
-          OperationData.builder()
-              .setCloudOperation(cloudOperation)
-              .setDuration(stopwatch.elapsed())
-              .setExecutionException(executionException)
-              .setHttpStatusCode(httpStatusCode)
-              .setRequestData(cowSerialize.serializeRequest())
-              .build());
-
       // We manually manage the span so that the expected span is still present in catch and
       // finally.
       // See warning on SpanBuilder#startScopedSpan.
@@ -101,6 +193,192 @@ public class OperationAnnotator {
     }
   }
 
+  /**
+   * Executes a CowOperation that runs asynchronously, recording it when the returned future
+   * completes.
+   *
+   * <p>If the {@link RateLimitConfig} of the client limits the operation, it is started once a
+   * token is available, without blocking the calling thread. The operation is not retried by the
+   * {@link RetryConfig}; async clients retry with their own policy.
+   *
+   * @param cloudOperation: the {@link CloudOperation} to operate.
+   * @param cowExecute: how to start this cloud operation
+   * @param cowSerialize: how to serialize request
+   * @return a future completed with the result of the {@code cowOperation}
+   */
+  public <R> CompletableFuture<R> executeAsyncCowOperation(
+      CloudOperation cloudOperation, CowAsyncExecute<R> cowExecute, CowSerialize cowSerialize) {
+    Supplier<JsonObject> requestData = Suppliers.memoize(cowSerialize::serializeRequest);
+    Duration wait = takeRateLimit(cloudOperation, Optional::empty);
+    if (wait.isZero()) {
+      return startAsyncCowOperation(cloudOperation, cowExecute, requestData);
+    }
+    Executor afterWait = CompletableFuture.delayedExecutor(wait.toNanos(), TimeUnit.NANOSECONDS);
+    return CompletableFuture.runAsync(() -> {}, afterWait)
+        .thenCompose(ignored -> startAsyncCowOperation(cloudOperation, cowExecute, requestData));
+  }
+
+  private <R> CompletableFuture<R> startAsyncCowOperation(
+      CloudOperation cloudOperation,
+      CowAsyncExecute<R> cowExecute,
+      Supplier<JsonObject> requestData) {
+    Span span = tracer.spanBuilder(cloudOperation.name()).startSpan();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    CompletableFuture<R> response;
+    try (Scope ignored = span.makeCurrent()) {
+      response = cowExecute.execute();
+    } catch (RuntimeException e) {
+      response = CompletableFuture.failedFuture(e);
+    }
+    return response.whenComplete(
+        (result, failure) -> {
+          Optional<Exception> executionException = Optional.ofNullable(unwrap(failure));
+          OptionalInt httpStatusCode =
+              executionException
+                  .map(OperationAnnotator::getHttpErrorCode)
+                  .orElse(OptionalInt.of(HttpStatusCodes.STATUS_CODE_OK));
+          recordAttempt(
+              cloudOperation,
+              stopwatch.elapsed(),
+              OptionalInt.empty(),
+              executionException,
+              httpStatusCode,
+              requestData);
+          httpStatusCode.ifPresent(s -> span.setAttribute(HTTP_RESPONSE_STATUS_CODE, s));
+          span.end();
+        });
+  }
+
+  /** Returns what a future failed with, without the {@link CompletionException} around it. */
+  private static Exception unwrap(Throwable failure) {
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+    if (failure == null || failure instanceof Exception) {
+      return (Exception) failure;
+    }
+    return new ExecutionException(failure);
+  }
+
+  /**
+   * Waits until the rate limit for the operation, if any, allows it to be sent.
+   *
+   * @throws CancellationException if interrupted while waiting, after restoring the interrupt. The
+   *     operation is not sent.
+   */
+  private void waitForRateLimit(CloudOperation cloudOperation, CowProject cowProject) {
+    Duration wait = takeRateLimit(cloudOperation, cowProject);
+    if (wait.isZero()) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(wait.toNanos());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      CancellationException cancellation =
+          new CancellationException(
+              String.format("Interrupted waiting for the rate limit of %s", cloudOperation.name()));
+      cancellation.initCause(e);
+      throw cancellation;
+    }
+  }
+
+  /**
+   * Takes a token from the rate limit for the operation, if any, and returns how long to wait
+   * before sending it.
+   */
+  private Duration takeRateLimit(CloudOperation cloudOperation, CowProject cowProject) {
+    Optional<Duration> wait = clientConfig.getRateLimiter().take(cloudOperation, cowProject);
+    if (wait.isEmpty()) {
+      return Duration.ZERO;
+    }
+    clientConfig
+        .getMetricsHelper()
+        .recordRateLimitWait(clientConfig.getClientName(), cloudOperation, wait.get());
+    return wait.get();
+  }
+
+  private void recordAttempt(
+      CloudOperation cloudOperation,
+      Duration duration,
+      OptionalInt tryCount,
+      Optional<Exception> executionException,
+      OptionalInt httpStatusCode,
+      Supplier<JsonObject> requestData) {
+    recordOperation(
+        OperationData.builder()
+            .setCloudOperation(cloudOperation)
+            .setDuration(duration)
+            .setTryCount(tryCount)
+            .setExecutionException(executionException)
+            .setHttpStatusCode(httpStatusCode)
+            // Serialization is deferred until a consumer (e.g. debug logging) needs the request.
+            .setRequestDataSupplier(requestData)
+            .build());
+  }
+
+  /**
+   * Records a cloud operation that was executed outside of this annotator, e.g. as one request of a
+   * batch, the same way {@link #executeCheckedCowOperation} would have.
+   *
+   * @param cloudOperation the {@link CloudOperation} that was executed.
+   * @param duration the latency of the operation.
+   * @param executionException the exception the operation failed with, or empty.
+   * @param cowSerialize how to serialize request
+   */
+  public void recordExecutedOperation(
+      CloudOperation cloudOperation,
+      Duration duration,
+      Optional<Exception> executionException,
+      CowSerialize cowSerialize) {
+    recordOperation(
+        OperationData.builder()
+            .setCloudOperation(cloudOperation)
+            .setDuration(duration)
+            .setExecutionException(executionException)
+            .setHttpStatusCode(
+                executionException
+                    .map(OperationAnnotator::getHttpErrorCode)
+                    .orElse(OptionalInt.of(HttpStatusCodes.STATUS_CODE_OK)))
+            .setRequestDataSupplier(cowSerialize::serializeRequest)
+            .build());
+  }
+
+  /**
+   * Records object contents streamed to or from the cloud, as bytes and as throughput.
+   *
+   * @param cloudOperation the {@link CloudOperation} that read or wrote the contents.
+   * @param bytes the number of bytes streamed.
+   * @param duration how long the stream was open.
+   */
+  public void recordTransfer(CloudOperation cloudOperation, long bytes, Duration duration) {
+    MetricsHelper metricsHelper = clientConfig.getMetricsHelper();
+    metricsHelper.recordTransferBytes(clientConfig.getClientName(), cloudOperation, bytes);
+    if (!duration.isZero()) {
+      metricsHelper.recordTransferThroughput(
+          clientConfig.getClientName(), cloudOperation, bytes * 1e9 / duration.toNanos());
+    }
+  }
+
+  /**
+   * Records a lookup in an in-process cache of cloud responses.
+   *
+   * @param cache the name of the cache.
+   * @param hit whether the value was found in the cache, rather than fetched from the cloud.
+   */
+  public void recordCacheRequest(String cache, boolean hit) {
+    clientConfig.getMetricsHelper().recordCacheRequest(clientConfig.getClientName(), cache, hit);
+  }
+
+  /**
+   * Records a cached cloud response that was found to be out of date.
+   *
+   * @param cache the name of the cache.
+   */
+  public void recordCacheStale(String cache) {
+    clientConfig.getMetricsHelper().recordCacheStale(clientConfig.getClientName(), cache);
+  }
+
   /**
    * Records the information captured in {@link OperationData} via logs, tracing and metrics.
    *
@@ -152,10 +430,16 @@ public class OperationAnnotator {
    * <p>If an exception is present, it will also be included as a logging argument. SLF4J should
    * recognize this argument and include a stacktrace in the resulting error log message.
    *
+   * <p>Events are only logged at debug level, so nothing is built (including the serialized request
+   * data) when debug logging is disabled.
+   *
    * @param operationData the {@link OperationData} associated with a cloud operation.
    */
   @VisibleForTesting
   void logEvent(OperationData operationData) {
+    if (!logger.isDebugEnabled()) {
+      return;
+    }
     JsonObject logData = new JsonObject();
     logData.addProperty("clientName", clientConfig.getClientName());
     logData.addProperty("durationMs", operationData.duration().toMillis());
@@ -203,7 +487,8 @@ public class OperationAnnotator {
         .toLowerCase();
   }
 
-  private OptionalInt getHttpErrorCode(Exception e) {
+  /** Returns the HTTP status code of a failed cloud call, if {@code e} carries one. */
+  public static OptionalInt getHttpErrorCode(Exception e) {
     // com.google.cloud library standard HTTP exception.
     if (e instanceof BaseHttpServiceException) {
       return OptionalInt.of(((BaseHttpServiceException) e).getCode());
@@ -224,8 +509,46 @@ public class OperationAnnotator {
     return OptionalInt.empty();
   }
 
+  /** Returns the wait asked for by the {@code Retry-After} header of a failed response, if any. */
+  @VisibleForTesting
+  static Optional<Duration> getRetryAfter(Exception e) {
+    Optional<String> retryAfter = Optional.empty();
+    // com.google.api library standard HTTP exception. The com.google.cloud exceptions do not keep
+    // the response headers.
+    if (e instanceof HttpResponseException) {
+      retryAfter =
+          Optional.ofNullable(
+              ((HttpResponseException) e).getHeaders().getFirstHeaderStringValue(RETRY_AFTER));
+    }
+    // Base class for AWS SDK service exceptions with response details.
+    if (e instanceof AwsServiceException) {
+      AwsErrorDetails details = ((AwsServiceException) e).awsErrorDetails();
+      if (details != null && details.sdkHttpResponse() != null) {
+        retryAfter = details.sdkHttpResponse().firstMatchingHeader(RETRY_AFTER);
+      }
+    }
+    return retryAfter.flatMap(OperationAnnotator::parseRetryAfter);
+  }
+
+  /** Parses a {@code Retry-After} value, which is either a number of seconds or an HTTP date. */
+  private static Optional<Duration> parseRetryAfter(String retryAfter) {
+    String value = retryAfter.trim();
+    try {
+      return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value))));
+    } catch (NumberFormatException e) {
+      // Not a number of seconds; try an HTTP date.
+    }
+    try {
+      Duration untilDate =
+          Duration.between(
+              Instant.now(), ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+      return Optional.of(untilDate.isNegative() ? Duration.ZERO : untilDate);
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+
   private JsonObject createExceptionEntry(Exception executionException) {
-    Gson gson = new Gson();
     JsonObject exceptionEntry = new JsonObject();
     exceptionEntry.addProperty("message", executionException.getMessage());
     getHttpErrorCode(executionException)
@@ -246,12 +569,27 @@ public class OperationAnnotator {
     R execute() throws E;
   }
 
+  /** How to start this operation, which completes asynchronously. */
+  @FunctionalInterface
+  public interface CowAsyncExecute<R> {
+    CompletableFuture<R> execute();
+  }
+
   /** How to serialize Request */
   @FunctionalInterface
   public interface CowSerialize {
     JsonObject serializeRequest();
   }
 
+  /**
+   * How to find the project a request is in, without serializing it. Only called for operations
+   * with a per-project {@link RateLimit}.
+   */
+  @FunctionalInterface
+  public interface CowProject {
+    Optional<String> project();
+  }
+
   /** A bogus exception type used to make a {@link CowExecute} into a {@link CowCheckedExecute}. */
   private static class BogusException extends Exception {}
 }
@@ -1,10 +1,12 @@
 package bio.terra.cloudres.common;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.gson.JsonObject;
 import java.time.Duration;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.function.Supplier;
 
 /** Captures data related to a cloud operation for metrics, logging, and tracing. */
 @AutoValue
@@ -24,8 +26,21 @@ public abstract class OperationData {
   /** The {@link CloudOperation} performed. */
   public abstract CloudOperation cloudOperation();
 
-  /** Serialized request data in JSON format. */
-  public abstract JsonObject requestData();
+  /**
+   * Deferred serialization of the request data. Serializing large request payloads is expensive, so
+   * this is only invoked when a consumer of the {@link OperationData} actually needs the request,
+   * e.g. when debug logging is enabled. Prefer {@link #requestData()} to invoking this directly.
+   */
+  public abstract Supplier<JsonObject> requestDataSupplier();
+
+  /**
+   * Serialized request data in JSON format. Computed from {@link #requestDataSupplier()} on first
+   * access and cached for subsequent calls.
+   */
+  @Memoized
+  public JsonObject requestData() {
+    return requestDataSupplier().get();
+  }
 
   public static Builder builder() {
     return new AutoValue_OperationData.Builder();
@@ -49,7 +64,12 @@ public abstract class OperationData {
 
     public abstract Builder setCloudOperation(CloudOperation cloudOperation);
 
-    public abstract Builder setRequestData(JsonObject requestData);
+    public abstract Builder setRequestDataSupplier(Supplier<JsonObject> requestDataSupplier);
+
+    /** Sets already serialized request data. */
+    public Builder setRequestData(JsonObject requestData) {
+      return setRequestDataSupplier(() -> requestData);
+    }
 
     public abstract OperationData build();
   }
@@ -0,0 +1,52 @@
+package bio.terra.cloudres.common;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * A client-side token bucket rate limit on cloud operations, enforced by {@link OperationAnnotator}
+ * before each call is sent.
+ *
+ * <p>The bucket holds up to {@link #burst()} tokens and refills at {@link #permitsPerSecond()}.
+ * Each call takes a token; when none are left, calls wait in turn for tokens to refill instead of
+ * being sent and failing on the cloud quota.
+ */
+@AutoValue
+public abstract class RateLimit {
+  /** How many calls per second are allowed on average. */
+  public abstract double permitsPerSecond();
+
+  /** How many calls may be sent at once after the limit has been idle. */
+  public abstract int burst();
+
+  /**
+   * Whether each project has its own bucket. The project is given by the COW making the call, e.g.
+   * from the parameters of an api-services request; calls without one share a bucket.
+   */
+  public abstract boolean perProject();
+
+  /** A builder defaulting to a burst of 1 and a single bucket for all projects. */
+  public static Builder builder() {
+    return new AutoValue_RateLimit.Builder().setBurst(1).setPerProject(false);
+  }
+
+  /** Builder for {@link RateLimit}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setPermitsPerSecond(double value);
+
+    public abstract Builder setBurst(int value);
+
+    public abstract Builder setPerProject(boolean value);
+
+    abstract RateLimit autoBuild();
+
+    public RateLimit build() {
+      RateLimit rateLimit = autoBuild();
+      checkArgument(rateLimit.permitsPerSecond() > 0, "permitsPerSecond must be positive");
+      checkArgument(rateLimit.burst() >= 1, "burst must be at least 1");
+      return rateLimit;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package bio.terra.cloudres.common;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+import java.util.Optional;
+
+/**
+ * Which {@link RateLimit} applies to each family of {@link CloudOperation}s, e.g. all {@code
+ * IamOperation}s or all {@code CloudComputeOperation}s. Operations of other families are not
+ * limited.
+ */
+@AutoValue
+public abstract class RateLimitConfig {
+  /** Rate limits by {@link CloudOperation} enum class. */
+  public abstract ImmutableMap<Class<? extends CloudOperation>, RateLimit> familyLimits();
+
+  /** Returns the rate limit for the family of {@code cloudOperation}, or empty if not limited. */
+  public Optional<RateLimit> limitFor(CloudOperation cloudOperation) {
+    return Optional.ofNullable(familyLimits().get(familyOf(cloudOperation)));
+  }
+
+  /** A {@link RateLimitConfig} that does not limit anything. */
+  public static RateLimitConfig none() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new AutoValue_RateLimitConfig.Builder();
+  }
+
+  /** The family of a {@link CloudOperation}, which is its enum class. */
+  static Class<? extends CloudOperation> familyOf(CloudOperation cloudOperation) {
+    if (cloudOperation instanceof Enum) {
+      // Enum constants with bodies are subclasses of the enum class.
+      @SuppressWarnings("unchecked")
+      Class<? extends CloudOperation> family =
+          (Class<? extends CloudOperation>) ((Enum<?>) cloudOperation).getDeclaringClass();
+      return family;
+    }
+    return cloudOperation.getClass();
+  }
+
+  /** Builder for {@link RateLimitConfig}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    abstract ImmutableMap.Builder<Class<? extends CloudOperation>, RateLimit> familyLimitsBuilder();
+
+    /** Sets the rate limit shared by all operations of the {@code family} enum class. */
+    public Builder setFamilyLimit(Class<? extends CloudOperation> family, RateLimit rateLimit) {
+      familyLimitsBuilder().put(family, rateLimit);
+      return this;
+    }
+
+    public abstract RateLimitConfig build();
+  }
+}
@@ -0,0 +1,63 @@
+package bio.terra.cloudres.common;
+
+import bio.terra.cloudres.util.MetricsHelper;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The token buckets for the {@link RateLimitConfig} of a {@link ClientConfig}, shared by every
+ * {@link OperationAnnotator} built from it.
+ */
+class RateLimiter {
+  private final RateLimitConfig config;
+  private final String clientName;
+  private final MetricsHelper metricsHelper;
+  private final Ticker ticker;
+  private final ConcurrentMap<BucketKey, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+  RateLimiter(
+      RateLimitConfig config, String clientName, MetricsHelper metricsHelper, Ticker ticker) {
+    this.config = config;
+    this.clientName = clientName;
+    this.metricsHelper = metricsHelper;
+    this.ticker = ticker;
+  }
+
+  /**
+   * Takes a token for a call of {@code cloudOperation} and returns how long the call must wait, or
+   * empty if the operation is not limited.
+   *
+   * @param cowProject the project of the call, only read for per-project limits.
+   */
+  Optional<Duration> take(CloudOperation cloudOperation, OperationAnnotator.CowProject cowProject) {
+    Optional<RateLimit> rateLimit = config.limitFor(cloudOperation);
+    if (rateLimit.isEmpty()) {
+      return Optional.empty();
+    }
+    Class<? extends CloudOperation> family = RateLimitConfig.familyOf(cloudOperation);
+    Optional<String> project =
+        rateLimit.get().perProject() ? cowProject.project() : Optional.empty();
+    TokenBucket bucket =
+        buckets.computeIfAbsent(
+            BucketKey.create(family, project), k -> new TokenBucket(rateLimit.get(), ticker));
+    Duration wait = bucket.take();
+    metricsHelper.recordRateLimitTokens(clientName, family.getSimpleName(), bucket.tokens());
+    return Optional.of(wait);
+  }
+
+  /** Identifies a token bucket: an operation family, and the project for per-project limits. */
+  @AutoValue
+  abstract static class BucketKey {
+    abstract Class<? extends CloudOperation> family();
+
+    abstract Optional<String> project();
+
+    static BucketKey create(Class<? extends CloudOperation> family, Optional<String> project) {
+      return new AutoValue_RateLimiter_BucketKey(family, project);
+    }
+  }
+}
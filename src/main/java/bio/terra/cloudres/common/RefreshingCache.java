@@ -0,0 +1,126 @@
+package bio.terra.cloudres.common;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-process cache of cloud responses that rarely change, shared by every COW that looks them
+ * up.
+ *
+ * <p>A value older than the refresh interval is still returned, but is reloaded in the background
+ * with the loader of the lookup that found it stale, so callers rarely wait for the cloud. A value
+ * older than the time to live is dropped and reloaded in the foreground. Concurrent lookups of a
+ * missing key share one load. Failed loads are not cached, and a failed background refresh keeps
+ * the previous value.
+ *
+ * <p>Every lookup is recorded as a hit or miss through the looking up COW's {@link
+ * OperationAnnotator}.
+ *
+ * @param <K> the key, which must identify the response across clients, e.g. include the region
+ * @param <V> the cached response
+ */
+public class RefreshingCache<K, V> {
+  private static final Logger logger = LoggerFactory.getLogger(RefreshingCache.class);
+
+  /** Refreshes values for every cache, on daemon threads that go away when idle. */
+  private static final Executor REFRESH_EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("crl-cache-refresh-%d").build());
+
+  private final String name;
+  private final long refreshAfterNanos;
+  private final Ticker ticker;
+  private final Executor refreshExecutor;
+  private final Cache<K, Loaded<V>> cache;
+  private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+
+  /**
+   * @param name the name of the cache in metrics and logs
+   * @param refreshAfter how old a value is before it is reloaded in the background
+   * @param ttl how old a value is before it is no longer returned
+   */
+  public RefreshingCache(String name, Duration refreshAfter, Duration ttl) {
+    this(name, refreshAfter, ttl, Ticker.systemTicker(), REFRESH_EXECUTOR);
+  }
+
+  /**
+   * Like {@link #RefreshingCache(String, Duration, Duration)}, but with a custom clock and refresh
+   * executor, e.g. for tests.
+   */
+  public RefreshingCache(
+      String name, Duration refreshAfter, Duration ttl, Ticker ticker, Executor refreshExecutor) {
+    Preconditions.checkArgument(
+        refreshAfter.compareTo(ttl) <= 0, "refreshAfter must not be longer than ttl");
+    this.name = name;
+    this.refreshAfterNanos = refreshAfter.toNanos();
+    this.ticker = ticker;
+    this.refreshExecutor = refreshExecutor;
+    this.cache = CacheBuilder.newBuilder().expireAfterWrite(ttl).ticker(ticker).build();
+  }
+
+  /**
+   * Returns the value for {@code key}, loading it with {@code loader} if it is missing or expired.
+   *
+   * @param key the key to look up
+   * @param loader fetches the value from the cloud; exceptions it throws are rethrown unwrapped. It
+   *     may run in the background after this call returns, so it must not use a client that the
+   *     caller closes
+   * @param operationAnnotator records the lookup as a hit or miss for the calling client
+   */
+  public V get(K key, Supplier<V> loader, OperationAnnotator operationAnnotator) {
+    Loaded<V> loaded = cache.getIfPresent(key);
+    operationAnnotator.recordCacheRequest(name, loaded != null);
+    if (loaded == null) {
+      try {
+        return cache.get(key, () -> new Loaded<>(loader.get(), ticker.read())).value;
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+    if (ticker.read() - loaded.loadedNanos >= refreshAfterNanos && refreshing.add(key)) {
+      refreshExecutor.execute(() -> refresh(key, loader));
+    }
+    return loaded.value;
+  }
+
+  /** Drops every cached value. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private void refresh(K key, Supplier<V> loader) {
+    try {
+      cache.put(key, new Loaded<>(loader.get(), ticker.read()));
+    } catch (RuntimeException e) {
+      logger.warn("Failed to refresh {} for {}, keeping the cached value", name, key, e);
+    } finally {
+      refreshing.remove(key);
+    }
+  }
+
+  /** A value and when it was loaded. */
+  private static class Loaded<V> {
+    private final V value;
+    private final long loadedNanos;
+
+    private Loaded(V value, long loadedNanos) {
+      this.value = value;
+      this.loadedNanos = loadedNanos;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package bio.terra.cloudres.common;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+import java.util.Optional;
+
+/**
+ * Which {@link RetryPolicy} {@link OperationAnnotator} applies to each {@link CloudOperation}.
+ *
+ * <p>Operations with their own policy use it; all other operations use the default policy, or are
+ * not retried if there is none. Only set policies for operations that are safe to repeat.
+ */
+@AutoValue
+public abstract class RetryConfig {
+  /** The policy for operations without their own policy, or empty to not retry them. */
+  public abstract Optional<RetryPolicy> defaultPolicy();
+
+  /** Policies for specific operations, overriding the {@link #defaultPolicy()}. */
+  public abstract ImmutableMap<CloudOperation, RetryPolicy> operationPolicies();
+
+  /** Returns the policy for {@code cloudOperation}, or empty if it is not retried. */
+  public Optional<RetryPolicy> policyFor(CloudOperation cloudOperation) {
+    RetryPolicy policy = operationPolicies().get(cloudOperation);
+    return policy != null ? Optional.of(policy) : defaultPolicy();
+  }
+
+  /** A {@link RetryConfig} that does not retry anything. */
+  public static RetryConfig none() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new AutoValue_RetryConfig.Builder();
+  }
+
+  /** Builder for {@link RetryConfig}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setDefaultPolicy(RetryPolicy value);
+
+    abstract ImmutableMap.Builder<CloudOperation, RetryPolicy> operationPoliciesBuilder();
+
+    /** Sets the policy for one operation. */
+    public Builder setOperationPolicy(CloudOperation cloudOperation, RetryPolicy policy) {
+      operationPoliciesBuilder().put(cloudOperation, policy);
+      return this;
+    }
+
+    public abstract RetryConfig build();
+  }
+}
@@ -0,0 +1,127 @@
+package bio.terra.cloudres.common;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableSet;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a failed cloud operation is retried by {@link OperationAnnotator}.
+ *
+ * <p>An operation is retried when it fails with one of {@link #retryableStatusCodes()}, until it
+ * has been tried {@link #maxAttempts()} times. The wait between attempts grows exponentially from
+ * {@link #initialBackoff()} up to {@link #maxBackoff()}, randomized by {@link #jitter()}.
+ */
+@AutoValue
+public abstract class RetryPolicy {
+  /** The maximum number of times an operation is tried, including the first attempt. */
+  public abstract int maxAttempts();
+
+  /** The wait before the first retry. */
+  public abstract Duration initialBackoff();
+
+  /** The maximum wait between attempts. */
+  public abstract Duration maxBackoff();
+
+  /** How much the wait grows after each retry. */
+  public abstract double backoffMultiplier();
+
+  /**
+   * The fraction by which each wait is randomly shortened or lengthened, between 0 and 1, so that
+   * clients failing together do not retry together.
+   */
+  public abstract double jitter();
+
+  /** The HTTP status codes of failures that are retried. */
+  public abstract ImmutableSet<Integer> retryableStatusCodes();
+
+  /**
+   * Whether to wait at least as long as a {@code Retry-After} header on the failed response asks.
+   * If the server asks for longer than {@link #maxBackoff()}, the operation is not retried.
+   */
+  public abstract boolean honorRetryAfter();
+
+  public abstract Builder toBuilder();
+
+  /**
+   * A builder defaulting to 3 attempts with backoff from 1 second up to 30 seconds, retrying 429
+   * and 503 responses.
+   */
+  public static Builder builder() {
+    return new AutoValue_RetryPolicy.Builder()
+        .setMaxAttempts(3)
+        .setInitialBackoff(Duration.ofSeconds(1))
+        .setMaxBackoff(Duration.ofSeconds(30))
+        .setBackoffMultiplier(2.0)
+        .setJitter(0.2)
+        .setRetryableStatusCodes(ImmutableSet.of(429, 503))
+        .setHonorRetryAfter(true);
+  }
+
+  /**
+   * Returns how long to wait before trying again after the {@code tryCount}th attempt failed, or
+   * empty if the operation should not be retried.
+   *
+   * @param tryCount the number of attempts made so far, starting at 1.
+   * @param httpStatusCode the HTTP status code of the failure, if any.
+   * @param retryAfter the wait the failed response asked for, if any.
+   */
+  Optional<Duration> retryDelay(
+      int tryCount, OptionalInt httpStatusCode, Optional<Duration> retryAfter) {
+    if (tryCount >= maxAttempts()
+        || httpStatusCode.isEmpty()
+        || !retryableStatusCodes().contains(httpStatusCode.getAsInt())) {
+      return Optional.empty();
+    }
+    double backoffMillis =
+        Math.min(
+            initialBackoff().toMillis() * Math.pow(backoffMultiplier(), tryCount - 1),
+            maxBackoff().toMillis());
+    double jitterFactor = 1 + jitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    Duration backoff = Duration.ofMillis(Math.round(backoffMillis * jitterFactor));
+    if (honorRetryAfter() && retryAfter.isPresent()) {
+      if (retryAfter.get().compareTo(maxBackoff()) > 0) {
+        return Optional.empty();
+      }
+      if (retryAfter.get().compareTo(backoff) > 0) {
+        return retryAfter;
+      }
+    }
+    return Optional.of(backoff);
+  }
+
+  /** Builder for {@link RetryPolicy}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setMaxAttempts(int value);
+
+    public abstract Builder setInitialBackoff(Duration value);
+
+    public abstract Builder setMaxBackoff(Duration value);
+
+    public abstract Builder setBackoffMultiplier(double value);
+
+    public abstract Builder setJitter(double value);
+
+    public abstract Builder setRetryableStatusCodes(ImmutableSet<Integer> value);
+
+    public abstract Builder setHonorRetryAfter(boolean value);
+
+    abstract RetryPolicy autoBuild();
+
+    public RetryPolicy build() {
+      RetryPolicy policy = autoBuild();
+      checkArgument(policy.maxAttempts() >= 1, "maxAttempts must be at least 1");
+      checkArgument(policy.backoffMultiplier() >= 1, "backoffMultiplier must be at least 1");
+      checkArgument(policy.jitter() >= 0 && policy.jitter() <= 1, "jitter must be between 0 and 1");
+      checkArgument(
+          policy.initialBackoff().compareTo(policy.maxBackoff()) <= 0,
+          "initialBackoff must not be greater than maxBackoff");
+      return policy;
+    }
+  }
+}
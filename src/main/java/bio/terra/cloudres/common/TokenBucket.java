@@ -0,0 +1,51 @@
+package bio.terra.cloudres.common;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket for one {@link RateLimit}.
+ *
+ * <p>Taking a token never fails: when the bucket is empty the count goes negative, and the caller
+ * is told how long to wait until its token will have refilled. Later callers queue behind it, so
+ * calls are spread out at the refill rate.
+ */
+class TokenBucket {
+  private final double capacity;
+  private final double tokensPerNano;
+  private final Ticker ticker;
+
+  private double tokens;
+  private long lastRefillNanos;
+
+  TokenBucket(RateLimit rateLimit, Ticker ticker) {
+    this.capacity = rateLimit.burst();
+    this.tokensPerNano = rateLimit.permitsPerSecond() / TimeUnit.SECONDS.toNanos(1);
+    this.ticker = ticker;
+    this.tokens = capacity;
+    this.lastRefillNanos = ticker.read();
+  }
+
+  /** Takes a token and returns how long the caller must wait before using it. */
+  synchronized Duration take() {
+    refill();
+    tokens -= 1;
+    if (tokens >= 0) {
+      return Duration.ZERO;
+    }
+    return Duration.ofNanos((long) Math.ceil(-tokens / tokensPerNano));
+  }
+
+  /** The tokens left, negative if callers are waiting for tokens. */
+  synchronized double tokens() {
+    refill();
+    return tokens;
+  }
+
+  private void refill() {
+    long now = ticker.read();
+    tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+    lastRefillNanos = now;
+  }
+}
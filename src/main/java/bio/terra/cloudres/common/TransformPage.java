@@ -3,33 +3,75 @@ package bio.terra.cloudres.common;
 import static com.google.common.collect.Iterables.transform;
 
 import com.google.api.gax.paging.Page;
+import com.google.auto.value.AutoValue;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * Implementation for {@link Page} interface which supports transform {@code Page<F>}to {@code
  * Page<T>}
+ *
+ * <p>By default, values are transformed lazily every time they are iterated. {@link Options} can
+ * instead transform each page's values once, in parallel, and fetch the next page in the background
+ * while {@link #iterateAll()} consumes the current one.
  */
 public class TransformPage<F, T> implements Page<T> {
   private final Function<? super F, ? extends T> transformFn;
   private final Page<F> originalPage;
+  private final Options options;
+  /** The transformed values of this page, computed once, when {@link Options#memoize()}. */
+  private final Supplier<List<T>> memoizedValues;
 
   public TransformPage(Page<F> originalPage, Function<F, T> transformFn) {
+    this(originalPage, transformFn, Options.DEFAULT);
+  }
+
+  public TransformPage(
+      Page<F> originalPage, Function<? super F, ? extends T> transformFn, Options options) {
     this.transformFn = transformFn;
     this.originalPage = originalPage;
+    this.options = options;
+    this.memoizedValues = Suppliers.memoize(this::transformValues);
   }
 
   @Override
   public Iterable<T> iterateAll() {
-    return transform(originalPage.iterateAll(), transformFn);
+    if (!options.memoize() && options.prefetchExecutor().isEmpty()) {
+      return transform(originalPage.iterateAll(), transformFn);
+    }
+    // Walk the pages ourselves, so that values are transformed per page and the next page can be
+    // prefetched. Pages already iterated are not retained.
+    return () -> new PageIterator(this);
   }
 
   @Override
   public Page<T> getNextPage() {
-    return new TransformPage(originalPage.getNextPage(), transformFn);
+    return nextTransformPage();
+  }
+
+  private TransformPage<F, T> nextTransformPage() {
+    Page<F> nextPage = originalPage.getNextPage();
+    return nextPage == null ? null : new TransformPage<>(nextPage, transformFn, options);
   }
 
   @Override
   public Iterable<T> getValues() {
+    if (options.memoize()) {
+      return memoizedValues.get();
+    }
     return transform(originalPage.getValues(), transformFn);
   }
 
@@ -42,4 +84,142 @@ public class TransformPage<F, T> implements Page<T> {
   public boolean hasNextPage() {
     return originalPage.hasNextPage();
   }
+
+  private List<T> transformValues() {
+    if (options.transformExecutor().isEmpty()) {
+      List<T> transformed = new ArrayList<>();
+      originalPage.getValues().forEach(value -> transformed.add(transformFn.apply(value)));
+      return Collections.unmodifiableList(transformed);
+    }
+    List<F> values = Lists.newArrayList(originalPage.getValues());
+    int chunkSize =
+        Math.max(
+            1,
+            (values.size() + options.transformParallelism() - 1) / options.transformParallelism());
+    List<CompletableFuture<List<T>>> chunks = new ArrayList<>();
+    for (List<F> chunk : Lists.partition(values, chunkSize)) {
+      chunks.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                List<T> transformed = new ArrayList<>(chunk.size());
+                chunk.forEach(value -> transformed.add(transformFn.apply(value)));
+                return transformed;
+              },
+              options.transformExecutor().get()));
+    }
+    List<T> transformed = new ArrayList<>(values.size());
+    chunks.forEach(chunk -> transformed.addAll(join(chunk)));
+    return Collections.unmodifiableList(transformed);
+  }
+
+  /** Iterates over the values of a page and the pages after it, prefetching if configured. */
+  private class PageIterator implements Iterator<T> {
+    private Iterator<T> values = Collections.emptyIterator();
+    /** Gets the page after the current one, or null after the last page. */
+    private Supplier<TransformPage<F, T>> nextPage;
+
+    private PageIterator(TransformPage<F, T> firstPage) {
+      nextPage = () -> firstPage;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!values.hasNext() && nextPage != null) {
+        TransformPage<F, T> page = nextPage.get();
+        if (page == null) {
+          nextPage = null;
+          break;
+        }
+        if (!page.hasNextPage()) {
+          nextPage = null;
+        } else if (options.prefetchExecutor().isPresent()) {
+          CompletableFuture<TransformPage<F, T>> prefetched =
+              CompletableFuture.supplyAsync(
+                  page::nextTransformPage, options.prefetchExecutor().get());
+          nextPage = () -> join(prefetched);
+        } else {
+          nextPage = page::nextTransformPage;
+        }
+        // Transform after starting the prefetch, so that the two overlap.
+        values = page.getValues().iterator();
+      }
+      return values.hasNext();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return values.next();
+    }
+  }
+
+  /** Joins {@code future}, rethrowing what it failed with if that is unchecked. */
+  private static <V> V join(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+
+  /** How a {@link TransformPage} transforms and fetches pages. */
+  @AutoValue
+  public abstract static class Options {
+    /** Transform values lazily on every iteration, and fetch pages only when needed. */
+    public static final Options DEFAULT = builder().build();
+
+    /**
+     * Whether each page's values are transformed once and kept, rather than on every iteration. Use
+     * this when the transform is expensive or values are iterated more than once.
+     */
+    public abstract boolean memoize();
+
+    /**
+     * Where to fetch the next page while {@link TransformPage#iterateAll()} consumes the current
+     * page, or empty to fetch it when needed.
+     */
+    public abstract Optional<Executor> prefetchExecutor();
+
+    /**
+     * Where to transform each page's values in parallel, or empty to transform them on the calling
+     * thread. Only used when {@link #memoize()}.
+     */
+    public abstract Optional<Executor> transformExecutor();
+
+    /** Into how many parallel tasks each page's values are split on the transform executor. */
+    public abstract int transformParallelism();
+
+    public static Builder builder() {
+      return new AutoValue_TransformPage_Options.Builder()
+          .setMemoize(false)
+          .setTransformParallelism(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Builder for {@link Options}. */
+    @AutoValue.Builder
+    public abstract static class Builder {
+      public abstract Builder setMemoize(boolean value);
+
+      public abstract Builder setPrefetchExecutor(Executor value);
+
+      public abstract Builder setTransformExecutor(Executor value);
+
+      public abstract Builder setTransformParallelism(int value);
+
+      abstract Options autoBuild();
+
+      public Options build() {
+        Options options = autoBuild();
+        Preconditions.checkArgument(
+            options.transformParallelism() >= 1, "transformParallelism must be at least 1");
+        Preconditions.checkArgument(
+            options.transformExecutor().isEmpty() || options.memoize(),
+            "Parallel transforms require memoize");
+        return options;
+      }
+    }
+  }
 }
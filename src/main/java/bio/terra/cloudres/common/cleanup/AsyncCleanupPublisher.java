@@ -0,0 +1,215 @@
+package bio.terra.cloudres.common.cleanup;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.JanitorException;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.pubsub.v1.Publisher;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.pubsub.v1.PubsubMessage;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes Janitor messages from a bounded in-memory queue on a background thread, so that
+ * recording a resource does not wait for a Pub/Sub round trip.
+ *
+ * <p>The worker thread hands messages to the {@link Publisher}, which groups them into requests
+ * according to its batching settings.
+ */
+class AsyncCleanupPublisher {
+  private static final Logger logger = LoggerFactory.getLogger(AsyncCleanupPublisher.class);
+
+  /** How often waiting threads re-check for progress. */
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+  private final Publisher publisher;
+  private final Duration flushTimeout;
+  private final BlockingQueue<PubsubMessage> queue;
+  private final Thread worker;
+
+  private final Object lock = new Object();
+  /** Messages accepted by {@link #publish} whose publish has not completed yet. */
+  private long pending = 0;
+
+  private boolean closed = false;
+
+  AsyncCleanupPublisher(Publisher publisher, int queueCapacity, Duration flushTimeout) {
+    this.publisher = publisher;
+    this.flushTimeout = flushTimeout;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.worker = new Thread(this::run, "crl-cleanup-publisher");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Queues a message for publishing, applying the {@link CleanupConfig#queueFullPolicy()} of the
+   * {@code clientConfig} if the queue is full.
+   *
+   * @return false if the message was dropped because the queue was full
+   * @throws JanitorException if the message could not be queued, e.g. because the publisher was
+   *     closed while waiting for queue space
+   */
+  boolean publish(PubsubMessage message, ClientConfig clientConfig) {
+    synchronized (lock) {
+      if (closed) {
+        throw new JanitorException("Janitor publisher is closed.");
+      }
+      pending++;
+    }
+    switch (clientConfig.getCleanupConfig().get().queueFullPolicy()) {
+      case BLOCK:
+        put(message);
+        break;
+      case DROP:
+        if (!queue.offer(message)) {
+          completeOne();
+          clientConfig.getMetricsHelper().recordCleanupDropped(clientConfig.getClientName());
+          logger.warn("Janitor queue is full, dropping message: [{}]", message.getData());
+          return false;
+        }
+        break;
+      case FAIL:
+        if (!queue.offer(message)) {
+          completeOne();
+          throw new JanitorException(
+              String.format("Janitor queue is full, failed to queue: [%s]", message.getData()));
+        }
+        break;
+      default:
+        completeOne();
+        throw new IllegalStateException("Unknown queue full policy");
+    }
+    synchronized (lock) {
+      // The message raced with close(), whose worker may no longer be taking from the queue.
+      if (closed && queue.remove(message)) {
+        completeOne();
+        throw new JanitorException(
+            String.format(
+                "Janitor publisher was closed, failed to queue: [%s]", message.getData()));
+      }
+    }
+    return true;
+  }
+
+  /** Waits for space in the queue, giving up once the publisher is closed. */
+  private void put(PubsubMessage message) {
+    try {
+      while (!queue.offer(message, POLL_INTERVAL.toNanos(), TimeUnit.NANOSECONDS)) {
+        synchronized (lock) {
+          if (closed) {
+            completeOne();
+            throw new JanitorException(
+                String.format(
+                    "Janitor publisher was closed, failed to queue: [%s]", message.getData()));
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      completeOne();
+      throw new JanitorException(
+          String.format("Interrupted queueing message: [%s]", message.getData()), e);
+    }
+  }
+
+  /**
+   * Waits for every message accepted so far to be published.
+   *
+   * @return whether all messages were published before the timeout.
+   */
+  boolean flush(Duration timeout) throws InterruptedException {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    while (true) {
+      // Send any partial batch instead of waiting for the batching delay.
+      publisher.publishAllOutstanding();
+      synchronized (lock) {
+        if (pending == 0) {
+          return true;
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(lock, Math.min(remaining, POLL_INTERVAL.toNanos()));
+      }
+    }
+  }
+
+  /**
+   * Stops accepting messages, waits up to the flush timeout for queued messages to be published,
+   * then stops the worker thread. Does not shut down the {@link Publisher}.
+   */
+  void close() {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    try {
+      if (!flush(flushTimeout)) {
+        synchronized (lock) {
+          logger.warn("Timed out publishing to Janitor, {} messages were not published.", pending);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      worker.interrupt();
+      // Messages still queued are not published. Callers waiting for queue space see that the
+      // publisher is closed and fail instead of queueing behind the stopped worker.
+      queue.clear();
+    }
+  }
+
+  private void run() {
+    while (!Thread.currentThread().isInterrupted()) {
+      PubsubMessage message;
+      try {
+        message = queue.poll(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (message == null) {
+        continue;
+      }
+      try {
+        ApiFutures.addCallback(
+            publisher.publish(message),
+            new ApiFutureCallback<>() {
+              @Override
+              public void onSuccess(String messageId) {
+                logger.debug("Publish message to Janitor track resource " + messageId);
+                completeOne();
+              }
+
+              @Override
+              public void onFailure(Throwable t) {
+                logger.error(
+                    String.format("Failed to publish message: [%s] ", message.getData()), t);
+                completeOne();
+              }
+            },
+            MoreExecutors.directExecutor());
+      } catch (RuntimeException e) {
+        logger.error(String.format("Failed to publish message: [%s] ", message.getData()), e);
+        completeOne();
+      }
+    }
+  }
+
+  private void completeOne() {
+    synchronized (lock) {
+      pending--;
+      if (pending == 0) {
+        lock.notifyAll();
+      }
+    }
+  }
+}
@@ -1,8 +1,10 @@
 package bio.terra.cloudres.common.cleanup;
 
+import com.google.api.gax.batching.BatchingSettings;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auto.value.AutoValue;
 import java.time.Duration;
+import java.util.Optional;
 
 /**
  * Configuration for CRL running in cleanup mode, where it tracks cloud resources being created and
@@ -39,8 +41,52 @@ public abstract class CleanupConfig {
   /** The Janitor pub/sub project id */
   public abstract String janitorProjectId();
 
+  /**
+   * Whether resources are published to Janitor in the background. Defaults to false.
+   *
+   * <p>When false, each create call waits for the Janitor message to be acknowledged before the
+   * cloud request is sent. When true, the message is put on a bounded in-memory queue and the
+   * create call proceeds immediately; see {@link CleanupRecorder#flush} and {@link
+   * CleanupRecorder#close}.
+   */
+  public abstract boolean asyncPublishing();
+
+  /** The maximum number of messages waiting to be published when {@link #asyncPublishing()}. */
+  public abstract int queueCapacity();
+
+  /** What to do when a resource is recorded and the async publishing queue is full. */
+  public abstract QueueFullPolicy queueFullPolicy();
+
+  /**
+   * How long {@link CleanupRecorder#close} and the JVM shutdown hook wait for queued messages to be
+   * published.
+   */
+  public abstract Duration flushTimeout();
+
+  /**
+   * The batching settings for the Janitor pub/sub {@link com.google.cloud.pubsub.v1.Publisher}, or
+   * empty to use the Pub/Sub client defaults.
+   */
+  public abstract Optional<BatchingSettings> publisherBatchingSettings();
+
+  public abstract Builder toBuilder();
+
   public static Builder builder() {
-    return new AutoValue_CleanupConfig.Builder();
+    return new AutoValue_CleanupConfig.Builder()
+        .setAsyncPublishing(false)
+        .setQueueCapacity(1000)
+        .setQueueFullPolicy(QueueFullPolicy.BLOCK)
+        .setFlushTimeout(Duration.ofSeconds(30));
+  }
+
+  /** Policy for recording a resource when the async publishing queue is full. */
+  public enum QueueFullPolicy {
+    /** Wait for space in the queue. */
+    BLOCK,
+    /** Skip publishing the resource and count it in the cleanup dropped metric. */
+    DROP,
+    /** Throw a {@link bio.terra.cloudres.common.JanitorException}. */
+    FAIL,
   }
 
   /** Builder for {@link CleanupConfig}. */
@@ -56,6 +102,16 @@ public abstract class CleanupConfig {
 
     public abstract Builder setJanitorProjectId(String value);
 
+    public abstract Builder setAsyncPublishing(boolean value);
+
+    public abstract Builder setQueueCapacity(int value);
+
+    public abstract Builder setQueueFullPolicy(QueueFullPolicy value);
+
+    public abstract Builder setFlushTimeout(Duration value);
+
+    public abstract Builder setPublisherBatchingSettings(BatchingSettings value);
+
     public abstract CleanupConfig build();
   }
 }
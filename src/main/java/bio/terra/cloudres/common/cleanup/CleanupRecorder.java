@@ -2,13 +2,10 @@ package bio.terra.cloudres.common.cleanup;
 
 import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.JanitorException;
+import bio.terra.cloudres.util.Serializers;
 import bio.terra.janitor.model.CloudResourceUid;
 import bio.terra.janitor.model.CreateResourceRequestBody;
 import bio.terra.janitor.model.ResourceMetadata;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.google.api.core.ApiFuture;
 import com.google.api.gax.core.FixedCredentialsProvider;
 import com.google.cloud.pubsub.v1.Publisher;
@@ -18,10 +15,12 @@ import com.google.pubsub.v1.PubsubMessage;
 import com.google.pubsub.v1.TopicName;
 import java.io.IOException;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +33,8 @@ public class CleanupRecorder {
 
   private static TestRecord testRecord = new TestRecord();
   private static Publisher publisher = null;
+  private static AsyncCleanupPublisher asyncPublisher = null;
+  private static boolean shutdownHookAdded = false;
   private static Clock clock = Clock.systemUTC();
 
   public static void record(CloudResourceUid resource, ClientConfig clientConfig) {
@@ -46,8 +47,9 @@ public class CleanupRecorder {
       return;
     }
 
-    publish(resource, metadata, clientConfig);
-    testRecord.add(resource);
+    if (publish(resource, metadata, clientConfig)) {
+      testRecord.add(resource);
+    }
   }
 
   /**
@@ -59,9 +61,56 @@ public class CleanupRecorder {
     return testRecord.startNewRecord();
   }
 
+  /**
+   * Waits for resources recorded with {@link CleanupConfig#asyncPublishing()} to be published to
+   * Janitor. Returns immediately if nothing is queued.
+   *
+   * @return whether everything recorded so far was published before the timeout.
+   */
+  public static boolean flush(Duration timeout) throws InterruptedException {
+    AsyncCleanupPublisher current;
+    synchronized (CleanupRecorder.class) {
+      current = asyncPublisher;
+    }
+    return current == null || current.flush(timeout);
+  }
+
+  /**
+   * Publishes any queued resources, waiting up to {@link CleanupConfig#flushTimeout()}, and shuts
+   * down the Janitor publisher. A later {@link #record} creates a new publisher.
+   *
+   * <p>This is also run by a JVM shutdown hook once asynchronous publishing has been used.
+   */
+  public static void close() {
+    // Close outside the class lock, so that record() is not blocked while waiting on Pub/Sub.
+    AsyncCleanupPublisher closingAsyncPublisher;
+    Publisher closingPublisher;
+    synchronized (CleanupRecorder.class) {
+      closingAsyncPublisher = asyncPublisher;
+      closingPublisher = publisher;
+      asyncPublisher = null;
+      publisher = null;
+    }
+    if (closingAsyncPublisher != null) {
+      closingAsyncPublisher.close();
+    }
+    if (closingPublisher != null) {
+      closingPublisher.shutdown();
+      try {
+        closingPublisher.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /** Provides an {@link Publisher}. */
   @VisibleForTesting
-  static void providePublisher(Publisher newPublisher) {
+  static synchronized void providePublisher(Publisher newPublisher) {
+    if (asyncPublisher != null) {
+      asyncPublisher.close();
+      asyncPublisher = null;
+    }
     publisher = newPublisher;
   }
 
@@ -71,30 +120,10 @@ public class CleanupRecorder {
     clock = newClock;
   }
 
-  private static void publish(
+  /** Publishes a resource to Janitor. Returns false if it was dropped instead. */
+  private static boolean publish(
       CloudResourceUid resource, @Nullable ResourceMetadata metadata, ClientConfig clientConfig) {
     CleanupConfig cleanupConfig = clientConfig.getCleanupConfig().get();
-    if (publisher == null) {
-      // Provide a new publisher if not present.
-      TopicName topicName =
-          TopicName.of(cleanupConfig.janitorProjectId(), cleanupConfig.janitorTopicName());
-      try {
-        providePublisher(
-            Publisher.newBuilder(topicName)
-                .setCredentialsProvider(
-                    FixedCredentialsProvider.create(cleanupConfig.credentials()))
-                .build());
-      } catch (IOException e) {
-        throw new JanitorException("Failed to initialize Janitor pubsub publisher.", e);
-      }
-    }
-
-    ObjectMapper objectMapper =
-        new ObjectMapper()
-            .registerModule(new Jdk8Module())
-            .registerModule(new JavaTimeModule())
-            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-
     OffsetDateTime now = OffsetDateTime.now(clock);
     CreateResourceRequestBody body =
         new CreateResourceRequestBody()
@@ -107,14 +136,18 @@ public class CleanupRecorder {
 
     ByteString data;
     try {
-      data = ByteString.copyFromUtf8(objectMapper.writeValueAsString(body));
+      data = ByteString.copyFromUtf8(Serializers.janitorWriter().writeValueAsString(body));
     } catch (IOException e) {
       throw new JanitorException(
           String.format("Failed to serialize CreateResourceRequestBody: [%s]", body), e);
     }
+    PubsubMessage message = PubsubMessage.newBuilder().setData(data).build();
 
-    ApiFuture<String> messageIdFuture =
-        publisher.publish(PubsubMessage.newBuilder().setData(data).build());
+    if (cleanupConfig.asyncPublishing()) {
+      return getAsyncPublisher(cleanupConfig).publish(message, clientConfig);
+    }
+
+    ApiFuture<String> messageIdFuture = getPublisher(cleanupConfig).publish(message);
     try {
       String messageId = messageIdFuture.get();
       logger.debug("Publish message to Janitor track resource " + messageId);
@@ -122,6 +155,41 @@ public class CleanupRecorder {
       throw new JanitorException(
           String.format("Failed to publish message: [%s] ", data.toString()), e);
     }
+    return true;
+  }
+
+  private static synchronized Publisher getPublisher(CleanupConfig cleanupConfig) {
+    if (publisher == null) {
+      // Provide a new publisher if not present.
+      TopicName topicName =
+          TopicName.of(cleanupConfig.janitorProjectId(), cleanupConfig.janitorTopicName());
+      Publisher.Builder builder =
+          Publisher.newBuilder(topicName)
+              .setCredentialsProvider(FixedCredentialsProvider.create(cleanupConfig.credentials()));
+      cleanupConfig.publisherBatchingSettings().ifPresent(builder::setBatchingSettings);
+      try {
+        publisher = builder.build();
+      } catch (IOException e) {
+        throw new JanitorException("Failed to initialize Janitor pubsub publisher.", e);
+      }
+    }
+    return publisher;
+  }
+
+  private static synchronized AsyncCleanupPublisher getAsyncPublisher(CleanupConfig cleanupConfig) {
+    if (asyncPublisher == null) {
+      asyncPublisher =
+          new AsyncCleanupPublisher(
+              getPublisher(cleanupConfig),
+              cleanupConfig.queueCapacity(),
+              cleanupConfig.flushTimeout());
+      if (!shutdownHookAdded) {
+        Runtime.getRuntime()
+            .addShutdownHook(new Thread(CleanupRecorder::close, "crl-cleanup-shutdown"));
+        shutdownHookAdded = true;
+      }
+    }
+    return asyncPublisher;
   }
 
   /** Helper class for recording resources in memory for testing. */
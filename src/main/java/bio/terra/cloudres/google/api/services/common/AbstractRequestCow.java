@@ -6,14 +6,39 @@ import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.common.cleanup.CleanupRecorder;
 import bio.terra.janitor.model.CloudResourceUid;
 import bio.terra.janitor.model.ResourceMetadata;
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClient;
 import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
 import com.google.gson.JsonObject;
+import io.opentelemetry.context.Context;
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /** An abstract Cloud Object Wrapper to mirror {@link AbstractGoogleClientRequest}. */
 public abstract class AbstractRequestCow<T> {
+  /** The request parameters that may hold the project ID. */
+  private static final List<String> PROJECT_PARAMETERS = List.of("project", "projectId");
+
+  /** The request parameters that may hold a resource name like {@code projects/p/...}. */
+  private static final List<String> RESOURCE_NAME_PARAMETERS =
+      List.of("name", "resource", "parent");
+
+  private static final Pattern PROJECT_RESOURCE_NAME = Pattern.compile("^projects/([^/]+)");
+
   private final AbstractGoogleClientRequest<T> request;
 
   private final CloudOperation operation;
@@ -33,6 +58,98 @@ public abstract class AbstractRequestCow<T> {
 
   /** See {@link AbstractGoogleClientRequest#execute()}. */
   public final T execute() throws IOException {
+    recordForCleanup();
+    return operationAnnotator.executeCheckedCowOperation(
+        operation, request::execute, this::serialize, this::project);
+  }
+
+  /**
+   * Executes the request on {@code executor}, like {@link #execute()}.
+   *
+   * <p>The caller's OpenTelemetry {@link Context} is carried over to the executing thread, so the
+   * operation's span is a child of the caller's current span. Cleanup recording and metrics happen
+   * on the executing thread exactly as for {@link #execute()}. An {@link IOException} fails the
+   * returned future.
+   */
+  public final CompletableFuture<T> executeAsync(Executor executor) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return execute();
+          } catch (IOException e) {
+            throw new CompletionException(e);
+          }
+        },
+        Context.current().wrap(executor));
+  }
+
+  /**
+   * Executes the request on {@link Defaults#asyncExecutor()}. See {@link #executeAsync(Executor)}.
+   */
+  public final CompletableFuture<T> executeAsync() {
+    return executeAsync(Defaults.asyncExecutor());
+  }
+
+  /**
+   * Adds this request to a {@link BatchRequest} instead of executing it on its own. See {@link
+   * AbstractGoogleJsonClientRequest#queue}.
+   *
+   * <p>When the batch is executed, the request is still recorded as its own {@link CloudOperation},
+   * with the time from queueing to its response as the latency, before {@code callback} is called.
+   */
+  public final void queue(BatchRequest batch, BatchCallback<T> callback) throws IOException {
+    Preconditions.checkState(
+        request instanceof AbstractGoogleJsonClientRequest,
+        "Only JSON api-services requests can be batched.");
+    recordForCleanup();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ((AbstractGoogleJsonClientRequest<T>) request)
+        .queue(
+            batch,
+            new JsonBatchCallback<T>() {
+              @Override
+              public void onSuccess(T result, HttpHeaders responseHeaders) {
+                operationAnnotator.recordExecutedOperation(
+                    operation,
+                    stopwatch.elapsed(),
+                    Optional.empty(),
+                    AbstractRequestCow.this::serialize);
+                callback.onSuccess(result);
+              }
+
+              @Override
+              public void onFailure(GoogleJsonError error, HttpHeaders responseHeaders) {
+                GoogleJsonResponseException exception =
+                    new GoogleJsonResponseException(
+                        new HttpResponseException.Builder(
+                            error.getCode(), error.getMessage(), responseHeaders),
+                        error);
+                operationAnnotator.recordExecutedOperation(
+                    operation,
+                    stopwatch.elapsed(),
+                    Optional.of(exception),
+                    AbstractRequestCow.this::serialize);
+                callback.onFailure(exception);
+              }
+            });
+  }
+
+  /** Gets a parameter of the wrapped request by its name, e.g. {@code "pageToken"}. */
+  Object getRequestParameter(String name) {
+    return request.get(name);
+  }
+
+  /** Sets a parameter of the wrapped request by its name, e.g. {@code "pageToken"}. */
+  void setRequestParameter(String name, Object value) {
+    request.set(name, value);
+  }
+
+  /** The api-services client this request is sent with. */
+  AbstractGoogleClient getAbstractGoogleClient() {
+    return request.getAbstractGoogleClient();
+  }
+
+  private void recordForCleanup() {
     Optional<ResourceMetadata> metadata = resourceCreationMetadata();
     Preconditions.checkState(
         metadata.isEmpty() || resourceUidCreation().isPresent(),
@@ -41,8 +158,6 @@ public abstract class AbstractRequestCow<T> {
         .ifPresent(
             resourceUid ->
                 CleanupRecorder.record(resourceUid, metadata.orElse(null), clientConfig));
-    return operationAnnotator.executeCheckedCowOperation(
-        operation, request::execute, this::serialize);
   }
 
   /**
@@ -65,6 +180,40 @@ public abstract class AbstractRequestCow<T> {
     return Optional.empty();
   }
 
+  /**
+   * The project the request is in, for per-project {@link bio.terra.cloudres.common.RateLimit}s.
+   * Read from the {@code project} or {@code projectId} parameter of the request, or else from a
+   * {@code projects/...} resource name in its {@code name}, {@code resource} or {@code parent}
+   * parameter.
+   *
+   * <p>May be overridden by subclasses whose requests give the project some other way.
+   */
+  protected Optional<String> project() {
+    for (String parameter : PROJECT_PARAMETERS) {
+      Object project = request.get(parameter);
+      if (project instanceof String) {
+        return Optional.of((String) project);
+      }
+    }
+    for (String parameter : RESOURCE_NAME_PARAMETERS) {
+      Object name = request.get(parameter);
+      if (name instanceof String) {
+        Matcher matcher = PROJECT_RESOURCE_NAME.matcher((String) name);
+        if (matcher.find()) {
+          return Optional.of(matcher.group(1));
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
   /** How to serialize the request for logging. */
   protected abstract JsonObject serialize();
+
+  /** Callback for the response to a request added to a {@link BatchRequest} with {@link #queue}. */
+  public interface BatchCallback<T> {
+    void onSuccess(T result);
+
+    void onFailure(IOException e);
+  }
 }
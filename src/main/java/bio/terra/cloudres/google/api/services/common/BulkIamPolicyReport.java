@@ -0,0 +1,25 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+
+/** The outcome of a {@link BulkIamPolicyUpdater} call, per resource. */
+@AutoValue
+public abstract class BulkIamPolicyReport<R, P> {
+  /** The current policy of each resource that succeeded, in the order the resources were given. */
+  public abstract ImmutableMap<R, P> policies();
+
+  /** Why each resource that failed did, in the order the resources were given. */
+  public abstract ImmutableMap<R, Exception> failures();
+
+  /** Whether every resource succeeded. */
+  public boolean isSuccessful() {
+    return failures().isEmpty();
+  }
+
+  static <R, P> BulkIamPolicyReport<R, P> create(Map<R, P> policies, Map<R, Exception> failures) {
+    return new AutoValue_BulkIamPolicyReport<>(
+        ImmutableMap.copyOf(policies), ImmutableMap.copyOf(failures));
+  }
+}
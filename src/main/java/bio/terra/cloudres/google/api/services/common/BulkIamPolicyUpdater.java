@@ -0,0 +1,166 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.json.GenericJson;
+import com.google.common.base.Preconditions;
+import io.opentelemetry.context.Context;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads or read-modify-writes the IAM policies of many resources of one kind concurrently, e.g. to
+ * sync permissions across thousands of service accounts.
+ *
+ * <p>Up to {@code maxConcurrency} resources are worked on at once, on {@link
+ * Defaults#asyncExecutor()}, so on virtual threads where they are available. Each write carries the
+ * etag of the policy it was modified from; when a concurrent change makes the write fail with a
+ * conflict, the policy is read and modified again, up to {@code maxAttempts} times. A resource that
+ * fails is reported in the {@link BulkIamPolicyReport} without stopping the others.
+ *
+ * <p>Every read and write is a COW operation of the accessor's COW, so it is logged, measured,
+ * retried and rate limited as configured by that COW's {@link
+ * bio.terra.cloudres.common.ClientConfig}.
+ *
+ * @param <R> identifies a resource, e.g. a {@code ServiceAccountName}
+ * @param <P> the {@code Policy} model of the resource's api-services client
+ */
+public class BulkIamPolicyUpdater<R, P extends GenericJson> {
+  private static final Logger logger = LoggerFactory.getLogger(BulkIamPolicyUpdater.class);
+
+  /** How many resources are worked on at once by default. */
+  public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+  /** How many times a resource's policy is read and written before a conflict is given up on. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  /** The field of every api-services {@code Policy} model that holds the etag. */
+  private static final String ETAG_FIELD = "etag";
+
+  private final IamPolicyAccessor<R, P> accessor;
+  private final int maxConcurrency;
+  private final int maxAttempts;
+
+  /** Modifies a policy for {@link #updateAll}. */
+  @FunctionalInterface
+  public interface PolicyModifier<R, P> {
+    /**
+     * Returns the policy to write for {@code resource}, or empty if {@code policy} needs no change.
+     * May modify and return {@code policy}; a new policy without an etag gets {@code policy}'s.
+     */
+    Optional<P> modify(R resource, P policy);
+  }
+
+  public BulkIamPolicyUpdater(IamPolicyAccessor<R, P> accessor) {
+    this(accessor, DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_ATTEMPTS);
+  }
+
+  /**
+   * @param accessor reads and writes the policies
+   * @param maxConcurrency how many resources are worked on at once
+   * @param maxAttempts how many times a resource's policy is read and written before a conflict is
+   *     given up on
+   */
+  public BulkIamPolicyUpdater(
+      IamPolicyAccessor<R, P> accessor, int maxConcurrency, int maxAttempts) {
+    Preconditions.checkArgument(maxConcurrency >= 1, "maxConcurrency must be at least 1");
+    Preconditions.checkArgument(maxAttempts >= 1, "maxAttempts must be at least 1");
+    this.accessor = accessor;
+    this.maxConcurrency = maxConcurrency;
+    this.maxAttempts = maxAttempts;
+  }
+
+  /** Reads the policy of every resource. */
+  public BulkIamPolicyReport<R, P> getAll(Collection<R> resources) {
+    return forEach(resources, accessor::getIamPolicy);
+  }
+
+  /**
+   * Reads, modifies and writes the policy of every resource. Resources whose policy {@code
+   * modifier} leaves unchanged are not written; their policy as read is reported.
+   */
+  public BulkIamPolicyReport<R, P> updateAll(
+      Collection<R> resources, PolicyModifier<R, P> modifier) {
+    return forEach(resources, resource -> update(resource, modifier));
+  }
+
+  private P update(R resource, PolicyModifier<R, P> modifier) throws IOException {
+    for (int attempt = 1; ; attempt++) {
+      P policy = accessor.getIamPolicy(resource);
+      Object etag = policy.get(ETAG_FIELD);
+      Optional<P> modified = modifier.modify(resource, policy);
+      if (modified.isEmpty()) {
+        return policy;
+      }
+      P toWrite = modified.get();
+      if (toWrite.get(ETAG_FIELD) == null) {
+        toWrite.set(ETAG_FIELD, etag);
+      }
+      try {
+        return accessor.setIamPolicy(resource, toWrite);
+      } catch (HttpResponseException e) {
+        if (!IamPolicyMutator.isConcurrentChange(e) || attempt >= maxAttempts) {
+          throw e;
+        }
+        logger.debug(
+            "IAM policy of {} changed concurrently, retrying (attempt {})", resource, attempt);
+      }
+    }
+  }
+
+  private BulkIamPolicyReport<R, P> forEach(
+      Collection<R> resources, PolicyFunction<R, P> function) {
+    Executor executor = Context.current().wrap(Defaults.asyncExecutor());
+    // Bounds the resources in flight; the executor itself is unbounded.
+    Semaphore inFlight = new Semaphore(maxConcurrency);
+    Map<R, CompletableFuture<P>> futures = new LinkedHashMap<>();
+    for (R resource : resources) {
+      inFlight.acquireUninterruptibly();
+      futures.put(
+          resource,
+          CompletableFuture.supplyAsync(
+                  () -> {
+                    try {
+                      return function.apply(resource);
+                    } catch (IOException e) {
+                      throw new UncheckedIOException(e);
+                    }
+                  },
+                  executor)
+              .whenComplete((policy, e) -> inFlight.release()));
+    }
+
+    Map<R, P> policies = new LinkedHashMap<>();
+    Map<R, Exception> failures = new LinkedHashMap<>();
+    futures.forEach(
+        (resource, future) -> {
+          try {
+            policies.put(resource, future.join());
+          } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+              cause = cause.getCause();
+            }
+            if (!(cause instanceof Exception)) {
+              throw e;
+            }
+            failures.put(resource, (Exception) cause);
+          }
+        });
+    return BulkIamPolicyReport.create(policies, failures);
+  }
+
+  @FunctionalInterface
+  private interface PolicyFunction<R, P> {
+    P apply(R resource) throws IOException;
+  }
+}
@@ -1,33 +1,49 @@
 package bio.terra.cloudres.google.api.services.common;
 
+import bio.terra.cloudres.common.AsyncExecutor;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.Executor;
 
 /** Utility class for defaults for CRL working with {@code com.google.api.services} packages. */
 public class Defaults {
   private Defaults() {}
 
-  private static HttpTransport defaultTransport;
+  private static volatile HttpTransport defaultTransport;
 
-  private static JsonFactory defaultJsonFactory;
-
-  /** Returns a default {@link HttpTransport} for initializing a services builder. */
+  /**
+   * Returns a default {@link HttpTransport} for initializing a services builder. The transport is
+   * built once and shared by every caller. To configure the transport, use {@link
+   * bio.terra.cloudres.common.ClientConfig#getHttpTransport()} instead.
+   */
   public static HttpTransport httpTransport() throws GeneralSecurityException, IOException {
-    if (defaultTransport == null) {
-      defaultTransport = GoogleNetHttpTransport.newTrustedTransport();
+    HttpTransport transport = defaultTransport;
+    if (transport == null) {
+      synchronized (Defaults.class) {
+        transport = defaultTransport;
+        if (transport == null) {
+          transport = GoogleNetHttpTransport.newTrustedTransport();
+          defaultTransport = transport;
+        }
+      }
     }
-    return defaultTransport;
+    return transport;
   }
 
   /** Returns a defaul {@link JsonFactory} for initializing a services builder. */
   public static JsonFactory jsonFactory() {
-    if (defaultJsonFactory == null) {
-      defaultJsonFactory = GsonFactory.getDefaultInstance();
-    }
-    return defaultJsonFactory;
+    return GsonFactory.getDefaultInstance();
+  }
+
+  /**
+   * Returns the default {@link Executor} for {@link AbstractRequestCow#executeAsync()}, the {@link
+   * AsyncExecutor#shared()} executor.
+   */
+  public static Executor asyncExecutor() {
+    return AsyncExecutor.shared();
   }
 }
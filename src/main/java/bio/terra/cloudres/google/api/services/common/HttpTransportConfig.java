@@ -0,0 +1,182 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.client.googleapis.GoogleUtils;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.util.SslUtils;
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Preconditions;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import java.io.Closeable;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * How the {@link HttpTransport} of a {@link bio.terra.cloudres.common.ClientConfig} is built for
+ * the {@code com.google.api.services} COWs.
+ *
+ * <p>By default, every config shares {@link Defaults#httpTransport()}, whose connection reuse is
+ * left to the JDK's {@code HttpURLConnection}. The {@link Type#APACHE} transport instead gives each
+ * config its own pool of connections, sized and evicted as configured, whose connections are
+ * reported through {@link MetricsHelper#registerHttpConnectionPool}. That pool is open until {@link
+ * bio.terra.cloudres.common.ClientConfig#close()}.
+ */
+@AutoValue
+public abstract class HttpTransportConfig {
+  /** The kinds of {@link HttpTransport} that can be built. */
+  public enum Type {
+    /** The shared {@link Defaults#httpTransport()}, on the JDK's {@code HttpURLConnection}. */
+    NET_HTTP,
+    /**
+     * A pooled transport on Apache HttpClient, per {@link bio.terra.cloudres.common.ClientConfig}.
+     */
+    APACHE,
+  }
+
+  public abstract Type type();
+
+  /** The most connections open at once, across all hosts. Only used by {@link Type#APACHE}. */
+  public abstract int maxConnections();
+
+  /**
+   * The most connections open at once to one host. Google APIs are each served from one host, so
+   * this is the concurrency limit per API. Only used by {@link Type#APACHE}.
+   */
+  public abstract int maxConnectionsPerHost();
+
+  /** How long an unused connection is kept open for reuse. Only used by {@link Type#APACHE}. */
+  public abstract Duration idleTimeout();
+
+  /**
+   * How long a connection is reused at most, so that traffic moves to new backends. Only used by
+   * {@link Type#APACHE}.
+   */
+  public abstract Duration connectionTimeToLive();
+
+  /** A {@link HttpTransportConfig} that uses the shared {@link Defaults#httpTransport()}. */
+  public static HttpTransportConfig defaults() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new AutoValue_HttpTransportConfig.Builder()
+        .setType(Type.NET_HTTP)
+        .setMaxConnections(200)
+        .setMaxConnectionsPerHost(100)
+        .setIdleTimeout(Duration.ofSeconds(60))
+        .setConnectionTimeToLive(Duration.ofMinutes(10));
+  }
+
+  /**
+   * Builds the transport described by this config. Close it once no COW uses it any more.
+   *
+   * @param metricsHelper where the connection pool, if any, is reported
+   * @param clientName the client to report the connection pool under
+   */
+  public Transport createTransport(MetricsHelper metricsHelper, String clientName)
+      throws GeneralSecurityException, IOException {
+    if (type() == Type.NET_HTTP) {
+      return new Transport(Defaults.httpTransport(), null);
+    }
+    // Trust the same certificates as GoogleNetHttpTransport.newTrustedTransport().
+    SSLContext sslContext = SslUtils.getTlsSslContext();
+    SslUtils.initSslContext(
+        sslContext, GoogleUtils.getCertificateTrustStore(), SslUtils.getPkixTrustManagerFactory());
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager(
+            RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(sslContext))
+                .build(),
+            null,
+            null,
+            null,
+            connectionTimeToLive().toMillis(),
+            TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(maxConnections());
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost());
+    ApacheHttpTransport transport =
+        new ApacheHttpTransport(
+            ApacheHttpTransport.newDefaultHttpClientBuilder()
+                .setConnectionManager(connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .build());
+    return new Transport(
+        transport,
+        metricsHelper.registerHttpConnectionPool(
+            clientName,
+            () -> connectionManager.getTotalStats().getLeased(),
+            () -> connectionManager.getTotalStats().getAvailable(),
+            () -> connectionManager.getTotalStats().getPending()));
+  }
+
+  /**
+   * A transport built by {@link #createTransport}. Closing it stops reporting its connection pool
+   * and shuts the pool down; the shared {@link Defaults#httpTransport()} is left open.
+   */
+  public static class Transport implements Closeable {
+    private final HttpTransport httpTransport;
+    /** Reports the connection pool, or null for the shared transport. */
+    @Nullable private final ObservableLongGauge poolGauge;
+
+    private Transport(HttpTransport httpTransport, @Nullable ObservableLongGauge poolGauge) {
+      this.httpTransport = httpTransport;
+      this.poolGauge = poolGauge;
+    }
+
+    public HttpTransport httpTransport() {
+      return httpTransport;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (poolGauge == null) {
+        return;
+      }
+      try {
+        poolGauge.close();
+      } finally {
+        httpTransport.shutdown();
+      }
+    }
+  }
+
+  /** Builder for {@link HttpTransportConfig}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    public abstract Builder setType(Type value);
+
+    public abstract Builder setMaxConnections(int value);
+
+    public abstract Builder setMaxConnectionsPerHost(int value);
+
+    public abstract Builder setIdleTimeout(Duration value);
+
+    public abstract Builder setConnectionTimeToLive(Duration value);
+
+    abstract HttpTransportConfig autoBuild();
+
+    public HttpTransportConfig build() {
+      HttpTransportConfig config = autoBuild();
+      Preconditions.checkArgument(
+          config.maxConnectionsPerHost() >= 1
+              && config.maxConnectionsPerHost() <= config.maxConnections(),
+          "maxConnectionsPerHost must be between 1 and maxConnections");
+      Preconditions.checkArgument(
+          !config.idleTimeout().isNegative() && !config.idleTimeout().isZero(),
+          "idleTimeout must be positive");
+      return config;
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import com.google.auto.value.AutoValue;
+
+/** Adds a member to, or removes a member from, the unconditional binding of a role in a policy. */
+@AutoValue
+public abstract class IamBindingDelta {
+  /** Whether the member is added or removed. */
+  public enum Action {
+    ADD,
+    REMOVE,
+  }
+
+  public abstract Action action();
+
+  /** The role, e.g. {@code roles/viewer}. */
+  public abstract String role();
+
+  /** The member, e.g. {@code user:someone@example.com}. */
+  public abstract String member();
+
+  /** Grants {@code role} to {@code member}. */
+  public static IamBindingDelta add(String role, String member) {
+    return new AutoValue_IamBindingDelta(Action.ADD, role, member);
+  }
+
+  /** Revokes {@code role} from {@code member}. */
+  public static IamBindingDelta remove(String role, String member) {
+    return new AutoValue_IamBindingDelta(Action.REMOVE, role, member);
+  }
+}
@@ -0,0 +1,131 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.util.Types;
+import com.google.cloud.Binding;
+import com.google.cloud.Policy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Applies {@link IamBindingDelta}s to one kind of policy model, for {@link IamPolicyMutator}.
+ *
+ * @param <P> the {@code Policy} model
+ */
+@FunctionalInterface
+public interface IamBindingEditor<P> {
+  /**
+   * Applies {@code deltas} to {@code policy} in order. Returns the policy to write, keeping the
+   * etag of {@code policy}, or empty if the deltas change nothing.
+   */
+  Optional<P> apply(P policy, List<IamBindingDelta> deltas);
+
+  /**
+   * An editor for the {@code Policy} models of the api-services clients, e.g. {@code
+   * com.google.api.services.iam.v1.model.Policy}. These all have a {@code bindings} list of {@code
+   * role}, {@code members} and {@code condition}; bindings with a condition are left alone.
+   */
+  static <P extends GenericJson> IamBindingEditor<P> forApiServices() {
+    return IamBindingEditor::applyToGenericJson;
+  }
+
+  /**
+   * An editor for the {@link Policy} of the {@code com.google.cloud} clients, e.g. of {@code
+   * StorageCow}. Like {@link #forApiServices()}, bindings with a condition are left alone.
+   */
+  static IamBindingEditor<Policy> forCloudPolicy() {
+    return (policy, deltas) -> {
+      List<Binding> bindings = new ArrayList<>(policy.getBindingsList());
+      boolean changed = false;
+      for (IamBindingDelta delta : deltas) {
+        int index = -1;
+        for (int i = 0; i < bindings.size(); i++) {
+          Binding candidate = bindings.get(i);
+          if (delta.role().equals(candidate.getRole()) && candidate.getCondition() == null) {
+            index = i;
+            break;
+          }
+        }
+        List<String> members =
+            index < 0 ? new ArrayList<>() : new ArrayList<>(bindings.get(index).getMembers());
+        if (delta.action() == IamBindingDelta.Action.ADD && !members.contains(delta.member())) {
+          members.add(delta.member());
+          Binding binding = Binding.newBuilder().setRole(delta.role()).setMembers(members).build();
+          if (index < 0) {
+            bindings.add(binding);
+          } else {
+            bindings.set(index, binding);
+          }
+          changed = true;
+        } else if (delta.action() == IamBindingDelta.Action.REMOVE
+            && members.remove(delta.member())) {
+          if (members.isEmpty()) {
+            bindings.remove(index);
+          } else {
+            bindings.set(index, bindings.get(index).toBuilder().setMembers(members).build());
+          }
+          changed = true;
+        }
+      }
+      return changed
+          ? Optional.of(policy.toBuilder().setBindings(bindings).build())
+          : Optional.empty();
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <P extends GenericJson> Optional<P> applyToGenericJson(
+      P policy, List<IamBindingDelta> deltas) {
+    List<GenericJson> bindings =
+        policy.get("bindings") == null
+            ? new ArrayList<>()
+            : new ArrayList<>((List<GenericJson>) policy.get("bindings"));
+    boolean changed = false;
+    for (IamBindingDelta delta : deltas) {
+      GenericJson binding = null;
+      for (GenericJson candidate : bindings) {
+        if (delta.role().equals(candidate.get("role")) && candidate.get("condition") == null) {
+          binding = candidate;
+          break;
+        }
+      }
+      List<String> members =
+          binding == null || binding.get("members") == null
+              ? new ArrayList<>()
+              : new ArrayList<>((List<String>) binding.get("members"));
+      if (delta.action() == IamBindingDelta.Action.ADD && !members.contains(delta.member())) {
+        members.add(delta.member());
+        if (binding == null) {
+          binding = newBinding(policy, delta.role());
+          bindings.add(binding);
+        }
+        binding.set("members", members);
+        changed = true;
+      } else if (delta.action() == IamBindingDelta.Action.REMOVE
+          && members.remove(delta.member())) {
+        if (members.isEmpty()) {
+          bindings.remove(binding);
+        } else {
+          binding.set("members", members);
+        }
+        changed = true;
+      }
+    }
+    if (!changed) {
+      return Optional.empty();
+    }
+    policy.set("bindings", bindings);
+    return Optional.of(policy);
+  }
+
+  /** Creates a binding of the model class used by {@code policy}'s {@code bindings} field. */
+  private static GenericJson newBinding(GenericJson policy, String role) {
+    Type bindingType =
+        Types.getIterableParameter(policy.getClassInfo().getField("bindings").getGenericType());
+    GenericJson binding = (GenericJson) Types.newInstance((Class<?>) bindingType);
+    binding.set("role", role);
+    return binding;
+  }
+}
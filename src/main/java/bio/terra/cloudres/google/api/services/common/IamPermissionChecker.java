@@ -0,0 +1,271 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.OperationAnnotator;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers IAM permission checks on one kind of resource from a short-lived cache, merging the
+ * checks that miss it into as few {@code testIamPermissions} calls as possible.
+ *
+ * <p>Each answer is cached per resource and permission for the time to live. Permissions that are
+ * not cached are queued for their resource. One call per resource is in flight at a time: it tests
+ * the queued permissions, up to {@code maxPermissionsPerCall}, and permissions queued while it is
+ * in flight are tested together by the next call. A permission already being tested is not queued
+ * again, so concurrent checks with overlapping permissions share calls.
+ *
+ * <p>The answers are those of the tester's COW, so of the credentials it calls with. Use one
+ * checker per principal.
+ *
+ * @param <R> identifies a resource, e.g. a bucket name
+ */
+public class IamPermissionChecker<R> implements IamPermissionTester<R> {
+  private static final Logger logger = LoggerFactory.getLogger(IamPermissionChecker.class);
+
+  /** How long an answer is cached by default. */
+  public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+  /** The most permissions Google APIs accept in one {@code testIamPermissions} call. */
+  public static final int DEFAULT_MAX_PERMISSIONS_PER_CALL = 100;
+
+  /** How many answers are cached at most. */
+  private static final long MAX_CACHED_ANSWERS = 100_000;
+
+  private final String name;
+  private final IamPermissionTester<R> tester;
+  private final int maxPermissionsPerCall;
+  private final Executor executor;
+  private final OperationAnnotator operationAnnotator;
+  private final Cache<Map.Entry<R, String>, Boolean> answers;
+  /** Resources with permissions being tested, by resource. Guarded by {@code this}. */
+  private final Map<R, ResourceChecks> checks = new HashMap<>();
+
+  /**
+   * @param name the name of the cache in metrics, e.g. {@code "bucket-permissions"}
+   * @param tester tests permissions, e.g. {@code StorageCow#iamPermissionTester()}
+   * @param ttl how long an answer is cached
+   * @param clientConfig the config to record metrics with, usually the tester's COW's
+   */
+  public IamPermissionChecker(
+      String name, IamPermissionTester<R> tester, Duration ttl, ClientConfig clientConfig) {
+    this(
+        name,
+        tester,
+        ttl,
+        DEFAULT_MAX_PERMISSIONS_PER_CALL,
+        Defaults.asyncExecutor(),
+        Ticker.systemTicker(),
+        OperationAnnotator.shared(clientConfig, logger));
+  }
+
+  @VisibleForTesting
+  IamPermissionChecker(
+      String name,
+      IamPermissionTester<R> tester,
+      Duration ttl,
+      int maxPermissionsPerCall,
+      Executor executor,
+      Ticker ticker,
+      OperationAnnotator operationAnnotator) {
+    Preconditions.checkArgument(
+        maxPermissionsPerCall >= 1, "maxPermissionsPerCall must be at least 1");
+    this.name = name;
+    this.tester = tester;
+    this.maxPermissionsPerCall = maxPermissionsPerCall;
+    this.executor = executor;
+    this.operationAnnotator = operationAnnotator;
+    this.answers =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(ttl)
+            .maximumSize(MAX_CACHED_ANSWERS)
+            .ticker(ticker)
+            .build();
+  }
+
+  /** Returns the subset of {@code permissions} that the caller has on {@code resource}. */
+  @Override
+  public Set<String> testIamPermissions(R resource, Set<String> permissions) throws IOException {
+    try {
+      return testIamPermissionsAsync(resource, permissions).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+  }
+
+  /**
+   * Like {@link #testIamPermissions}, but without waiting for the permissions that are not cached.
+   *
+   * @return the granted permissions, or failed with the {@link IOException} or {@link
+   *     RuntimeException} of a call that tested some of them
+   */
+  public CompletableFuture<Set<String>> testIamPermissionsAsync(
+      R resource, Collection<String> permissions) {
+    Map<String, CompletableFuture<Boolean>> results = new LinkedHashMap<>();
+    Set<String> uncached = new LinkedHashSet<>();
+    for (String permission : permissions) {
+      Boolean answer = answers.getIfPresent(Map.entry(resource, permission));
+      if (answer != null) {
+        results.put(permission, CompletableFuture.completedFuture(answer));
+      } else {
+        uncached.add(permission);
+      }
+    }
+    operationAnnotator.recordCacheRequest(name, uncached.isEmpty());
+
+    boolean startCaller = false;
+    if (!uncached.isEmpty()) {
+      synchronized (this) {
+        ResourceChecks resourceChecks = checks.get(resource);
+        if (resourceChecks == null) {
+          resourceChecks = new ResourceChecks();
+          checks.put(resource, resourceChecks);
+          startCaller = true;
+        }
+        for (String permission : uncached) {
+          CompletableFuture<Boolean> result = resourceChecks.inFlight.get(permission);
+          if (result == null) {
+            result =
+                resourceChecks.queued.computeIfAbsent(permission, p -> new CompletableFuture<>());
+          }
+          results.put(permission, result);
+        }
+      }
+    }
+    if (startCaller) {
+      try {
+        executor.execute(() -> callUntilDrained(resource));
+      } catch (RuntimeException e) {
+        // E.g. RejectedExecutionException. Nothing will test the queued permissions.
+        abandon(resource, e);
+      }
+    }
+
+    return CompletableFuture.allOf(results.values().toArray(CompletableFuture[]::new))
+        .thenApply(
+            v -> {
+              Set<String> granted = new LinkedHashSet<>();
+              results.forEach(
+                  (permission, result) -> {
+                    if (result.join()) {
+                      granted.add(permission);
+                    }
+                  });
+              return granted;
+            });
+  }
+
+  /** Drops the cached answers for {@code resource}, e.g. after changing its IAM policy. */
+  public void invalidate(R resource) {
+    answers.asMap().keySet().removeIf(key -> key.getKey().equals(resource));
+  }
+
+  /** Drops every cached answer. */
+  public void invalidateAll() {
+    answers.invalidateAll();
+  }
+
+  private void callUntilDrained(R resource) {
+    Throwable failure = null;
+    try {
+      while (callNext(resource)) {}
+    } catch (Throwable t) {
+      failure = t;
+      throw t;
+    } finally {
+      abandon(resource, failure);
+    }
+  }
+
+  /**
+   * Tests the next batch of queued permissions on {@code resource}.
+   *
+   * @return false if there were none, after removing the resource from {@link #checks}
+   */
+  private boolean callNext(R resource) {
+    Map<String, CompletableFuture<Boolean>> batch = new LinkedHashMap<>();
+    ResourceChecks resourceChecks;
+    synchronized (this) {
+      resourceChecks = checks.get(resource);
+      if (resourceChecks.queued.isEmpty()) {
+        checks.remove(resource);
+        return false;
+      }
+      Iterator<Map.Entry<String, CompletableFuture<Boolean>>> queued =
+          resourceChecks.queued.entrySet().iterator();
+      while (queued.hasNext() && batch.size() < maxPermissionsPerCall) {
+        Map.Entry<String, CompletableFuture<Boolean>> next = queued.next();
+        batch.put(next.getKey(), next.getValue());
+        queued.remove();
+      }
+      resourceChecks.inFlight.putAll(batch);
+    }
+    try {
+      Set<String> granted =
+          tester.testIamPermissions(resource, new LinkedHashSet<>(batch.keySet()));
+      batch.forEach(
+          (permission, result) -> {
+            boolean answer = granted.contains(permission);
+            answers.put(Map.entry(resource, permission), answer);
+            result.complete(answer);
+          });
+    } catch (IOException | RuntimeException e) {
+      batch.values().forEach(result -> result.completeExceptionally(e));
+    } catch (Error e) {
+      batch.values().forEach(result -> result.completeExceptionally(e));
+      throw e;
+    } finally {
+      synchronized (this) {
+        resourceChecks.inFlight.keySet().removeAll(batch.keySet());
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stops testing permissions on {@code resource}, failing those still queued with {@code failure}.
+   * Does nothing if the resource was drained normally, as nothing is queued then.
+   */
+  private void abandon(R resource, @Nullable Throwable failure) {
+    List<CompletableFuture<Boolean>> orphaned = new ArrayList<>();
+    synchronized (this) {
+      ResourceChecks resourceChecks = checks.get(resource);
+      if (resourceChecks == null || failure == null) {
+        return;
+      }
+      checks.remove(resource);
+      orphaned.addAll(resourceChecks.queued.values());
+      orphaned.addAll(resourceChecks.inFlight.values());
+    }
+    orphaned.forEach(result -> result.completeExceptionally(failure));
+  }
+
+  /** The permissions of a resource being tested, or waiting to be. Guarded by the checker. */
+  private static class ResourceChecks {
+    private final Map<String, CompletableFuture<Boolean>> queued = new LinkedHashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new HashMap<>();
+  }
+}
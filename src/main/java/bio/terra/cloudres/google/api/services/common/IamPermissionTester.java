@@ -0,0 +1,24 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Tests which IAM permissions the caller has on one kind of resource through its COW, for {@link
+ * IamPermissionChecker}. COWs with {@code testIamPermissions} provide one with {@code
+ * iamPermissionTester()}.
+ *
+ * @param <R> identifies a resource, e.g. a bucket name
+ */
+@FunctionalInterface
+public interface IamPermissionTester<R> {
+  /** Returns the subset of {@code permissions} that the caller has on {@code resource}. */
+  Set<String> testIamPermissions(R resource, Set<String> permissions) throws IOException;
+
+  /** The granted permissions of a {@code testIamPermissions} response, which omits empty lists. */
+  static Set<String> granted(@Nullable Collection<String> permissions) {
+    return permissions == null ? Set.of() : Set.copyOf(permissions);
+  }
+}
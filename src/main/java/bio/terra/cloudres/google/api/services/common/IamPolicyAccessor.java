@@ -0,0 +1,30 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes the IAM policies of one kind of resource through its COW, for {@link
+ * BulkIamPolicyUpdater} and {@link IamPolicyMutator}. COWs with IAM policies provide one with
+ * {@code iamPolicyAccessor()}.
+ *
+ * @param <R> identifies a resource, e.g. a {@code ServiceAccountName}
+ * @param <P> the {@code Policy} model of the resource's client
+ */
+public interface IamPolicyAccessor<R, P> {
+  /**
+   * The IAM policy version that accessors read and write. Only version 3 policies include
+   * conditional role bindings; reading an older version drops them, and writing one back would fail
+   * or lose them.
+   */
+  int POLICY_VERSION = 3;
+
+  /** Reads the policy of {@code resource}, requesting {@link #POLICY_VERSION}. */
+  P getIamPolicy(R resource) throws IOException;
+
+  /**
+   * Replaces the policy of {@code resource} with {@code policy}, which carries the etag of the
+   * policy it was modified from, so that the write fails if the policy changed since. The policy is
+   * written as {@link #POLICY_VERSION}.
+   */
+  P setIamPolicy(R resource, P policy) throws IOException;
+}
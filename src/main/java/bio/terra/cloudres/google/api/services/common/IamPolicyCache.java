@@ -0,0 +1,200 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.OperationAnnotator;
+import com.google.api.client.json.GenericJson;
+import com.google.cloud.Policy;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An opt-in read-through cache of IAM policies, wrapping the {@link IamPolicyAccessor} of a COW.
+ *
+ * <p>A policy is read from the cloud at most once per time to live, with concurrent reads of a
+ * missing policy sharing one load. Writes through the cache replace the cached policy with the one
+ * written, so readers see their own writes. A failed write drops the cached policy, so the next
+ * read, e.g. a retry after an etag conflict, goes to the cloud. Policies changed by other writers
+ * are only seen once the cached policy expires, so the time to live bounds how stale reads can be.
+ *
+ * <p>Only writes through this cache are seen by it. Writes made directly through the COW, e.g.
+ * {@code cow.projects().setIamPolicy(...).execute()}, or through another accessor count as other
+ * writers. Call {@link #invalidate} after such a write for this cache to read the new policy before
+ * it expires.
+ *
+ * <p>Lookups are recorded as hits or misses with {@link OperationAnnotator#recordCacheRequest}. A
+ * cached policy is recorded as stale with {@link OperationAnnotator#recordCacheStale} when a write
+ * conflict, or the etag of the policy that replaces it once expired, shows it was out of date.
+ *
+ * <p>Every reader gets its own copy of a cached policy, so callers may modify what they read.
+ *
+ * @param <R> identifies a resource, e.g. a project id
+ * @param <P> the {@code Policy} model of the resource's client
+ */
+public class IamPolicyCache<R, P> implements IamPolicyAccessor<R, P> {
+  private static final Logger logger = LoggerFactory.getLogger(IamPolicyCache.class);
+
+  /** How long a policy is cached by default. */
+  public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+  /** How many policies are cached at most by default. */
+  public static final long DEFAULT_MAX_SIZE = 10_000;
+
+  private final String name;
+  private final IamPolicyAccessor<R, P> delegate;
+  private final Function<P, String> etagOf;
+  private final UnaryOperator<P> copyOf;
+  private final long ttlNanos;
+  private final Ticker ticker;
+  private final OperationAnnotator operationAnnotator;
+  /** Expired policies are kept until replaced, to compare their etags with their replacements'. */
+  private final Cache<R, Cached<P>> cache;
+
+  @VisibleForTesting
+  IamPolicyCache(
+      String name,
+      IamPolicyAccessor<R, P> delegate,
+      Function<P, String> etagOf,
+      UnaryOperator<P> copyOf,
+      Duration ttl,
+      long maxSize,
+      Ticker ticker,
+      OperationAnnotator operationAnnotator) {
+    Preconditions.checkArgument(!ttl.isNegative(), "ttl must not be negative");
+    this.name = name;
+    this.delegate = delegate;
+    this.etagOf = etagOf;
+    this.copyOf = copyOf;
+    this.ttlNanos = ttl.toNanos();
+    this.ticker = ticker;
+    this.operationAnnotator = operationAnnotator;
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /**
+   * Caches the policies of an api-services COW's accessor, e.g. {@code
+   * CloudResourceManagerCow.Projects#iamPolicyAccessor()}.
+   *
+   * @param name the name of the cache in metrics, e.g. {@code "project-iam-policy"}
+   * @param clientConfig the config to record metrics with, usually the COW's
+   */
+  public static <R, P extends GenericJson> IamPolicyCache<R, P> forApiServices(
+      String name, IamPolicyAccessor<R, P> delegate, Duration ttl, ClientConfig clientConfig) {
+    return new IamPolicyCache<>(
+        name,
+        delegate,
+        policy -> (String) policy.get("etag"),
+        policy -> {
+          @SuppressWarnings("unchecked")
+          P copy = (P) policy.clone();
+          return copy;
+        },
+        ttl,
+        DEFAULT_MAX_SIZE,
+        Ticker.systemTicker(),
+        OperationAnnotator.shared(clientConfig, logger));
+  }
+
+  /**
+   * Caches the {@link Policy} policies of a {@code com.google.cloud} COW's accessor, e.g. {@code
+   * StorageCow#iamPolicyAccessor()}.
+   *
+   * @param name the name of the cache in metrics, e.g. {@code "bucket-iam-policy"}
+   * @param clientConfig the config to record metrics with, usually the COW's
+   */
+  public static <R> IamPolicyCache<R, Policy> forCloudPolicy(
+      String name, IamPolicyAccessor<R, Policy> delegate, Duration ttl, ClientConfig clientConfig) {
+    return new IamPolicyCache<>(
+        name,
+        delegate,
+        Policy::getEtag,
+        // Policy is immutable.
+        UnaryOperator.identity(),
+        ttl,
+        DEFAULT_MAX_SIZE,
+        Ticker.systemTicker(),
+        OperationAnnotator.shared(clientConfig, logger));
+  }
+
+  @Override
+  public P getIamPolicy(R resource) throws IOException {
+    Cached<P> cached = cache.getIfPresent(resource);
+    boolean hit = cached != null && ticker.read() - cached.loadedNanos < ttlNanos;
+    operationAnnotator.recordCacheRequest(name, hit);
+    if (hit) {
+      return copyOf.apply(cached.policy);
+    }
+    if (cached != null) {
+      // Concurrent readers of the expired policy remove it once; the first to load replaces it.
+      cache.asMap().remove(resource, cached);
+    }
+    Cached<P> loaded;
+    try {
+      loaded =
+          cache.get(resource, () -> new Cached<>(delegate.getIamPolicy(resource), ticker.read()));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw e.getCause() instanceof RuntimeException
+          ? (RuntimeException) e.getCause()
+          : new IllegalStateException(e.getCause());
+    }
+    if (cached != null
+        && !Objects.equals(etagOf.apply(cached.policy), etagOf.apply(loaded.policy))) {
+      operationAnnotator.recordCacheStale(name);
+    }
+    return copyOf.apply(loaded.policy);
+  }
+
+  @Override
+  public P setIamPolicy(R resource, P policy) throws IOException {
+    P written;
+    try {
+      written = delegate.setIamPolicy(resource, policy);
+    } catch (IOException | RuntimeException e) {
+      Cached<P> cached = cache.asMap().remove(resource);
+      if (cached != null
+          && IamPolicyMutator.isConcurrentChange(e)
+          && Objects.equals(etagOf.apply(cached.policy), etagOf.apply(policy))) {
+        // The write was based on the cached policy, which someone else had already replaced.
+        operationAnnotator.recordCacheStale(name);
+      }
+      throw e;
+    }
+    cache.put(resource, new Cached<>(copyOf.apply(written), ticker.read()));
+    return written;
+  }
+
+  /** Drops the cached policy of {@code resource}, e.g. after changing it outside this cache. */
+  public void invalidate(R resource) {
+    cache.invalidate(resource);
+  }
+
+  /** Drops every cached policy. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** A policy and when it was read or written. */
+  private static class Cached<P> {
+    private final P policy;
+    private final long loadedNanos;
+
+    private Cached(P policy, long loadedNanos) {
+      this.policy = policy;
+      this.loadedNanos = loadedNanos;
+    }
+  }
+}
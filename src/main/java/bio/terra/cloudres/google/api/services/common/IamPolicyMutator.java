@@ -0,0 +1,227 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import bio.terra.cloudres.common.OperationAnnotator;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies {@link IamBindingDelta}s to the IAM policies of one kind of resource, coalescing
+ * concurrent mutations of the same resource into one read-modify-write.
+ *
+ * <p>The first mutation of a resource starts a write on the executor. Mutations of that resource
+ * that arrive while it is being written are queued, and are all applied by the next single write.
+ * When many callers touch the same policy at once, e.g. a project's, this replaces a storm of
+ * conflicting writes with a few sequential ones.
+ *
+ * <p>Each write carries the etag of the policy it was modified from. When a concurrent change from
+ * outside this mutator makes the write fail with a conflict, the policy is read and modified again,
+ * up to {@code maxAttempts} times. Deltas that change nothing skip the write.
+ *
+ * <p>When a write of several callers' mutations fails for any other reason, e.g. because one of
+ * them grants a role to a member that does not exist, each caller's mutation is written again on
+ * its own. One caller's bad delta then fails only that caller.
+ *
+ * @param <R> identifies a resource, e.g. a project id
+ * @param <P> the {@code Policy} model of the resource's client
+ */
+public class IamPolicyMutator<R, P> {
+  private static final Logger logger = LoggerFactory.getLogger(IamPolicyMutator.class);
+
+  /** How many times a policy is read and written before a conflict is given up on by default. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+  private final IamPolicyAccessor<R, P> accessor;
+  private final IamBindingEditor<P> editor;
+  private final int maxAttempts;
+  private final Executor executor;
+  /** Resources being written, with the mutations for their next write. Guarded by {@code this}. */
+  private final Map<R, Pending<P>> pending = new HashMap<>();
+
+  public IamPolicyMutator(IamPolicyAccessor<R, P> accessor, IamBindingEditor<P> editor) {
+    this(accessor, editor, DEFAULT_MAX_ATTEMPTS, Defaults.asyncExecutor());
+  }
+
+  /**
+   * @param accessor reads and writes the policies
+   * @param editor applies deltas to the policies
+   * @param maxAttempts how many times a policy is read and written before a conflict is given up on
+   * @param executor where policies are written
+   */
+  public IamPolicyMutator(
+      IamPolicyAccessor<R, P> accessor,
+      IamBindingEditor<P> editor,
+      int maxAttempts,
+      Executor executor) {
+    Preconditions.checkArgument(maxAttempts >= 1, "maxAttempts must be at least 1");
+    this.accessor = accessor;
+    this.editor = editor;
+    this.maxAttempts = maxAttempts;
+    this.executor = executor;
+  }
+
+  /**
+   * Applies {@code deltas} to the policy of {@code resource}, together with any other mutations of
+   * it that are pending.
+   *
+   * @return the policy once written with {@code deltas}, or failed with the write's {@link
+   *     IOException} or {@link RuntimeException}
+   */
+  public CompletableFuture<P> mutate(R resource, List<IamBindingDelta> deltas) {
+    CompletableFuture<P> result = new CompletableFuture<>();
+    boolean startWriter;
+    synchronized (this) {
+      Pending<P> next = pending.get(resource);
+      startWriter = next == null;
+      if (startWriter) {
+        next = new Pending<>();
+        pending.put(resource, next);
+      }
+      next.mutations.add(new Mutation<>(List.copyOf(deltas), result));
+    }
+    if (startWriter) {
+      try {
+        executor.execute(() -> writeUntilDrained(resource));
+      } catch (RuntimeException e) {
+        // E.g. RejectedExecutionException. Nothing will write the pending mutations.
+        abandon(resource, e);
+      }
+    }
+    return result;
+  }
+
+  /** Whether a policy write failed because the policy changed since it was read. */
+  static boolean isConcurrentChange(Exception e) {
+    // IAM reports etag mismatches as 409 ABORTED; Cloud Storage as 412 Precondition Failed.
+    OptionalInt code = OperationAnnotator.getHttpErrorCode(e);
+    return code.isPresent() && (code.getAsInt() == 409 || code.getAsInt() == 412);
+  }
+
+  private void writeUntilDrained(R resource) {
+    Throwable failure = null;
+    try {
+      while (writeNext(resource)) {}
+    } catch (Throwable t) {
+      failure = t;
+      throw t;
+    } finally {
+      abandon(resource, failure);
+    }
+  }
+
+  /**
+   * Writes the pending mutations of {@code resource}.
+   *
+   * @return false if there were none, after removing the resource from {@link #pending}
+   */
+  private boolean writeNext(R resource) {
+    Pending<P> batch;
+    synchronized (this) {
+      batch = pending.get(resource);
+      if (batch.mutations.isEmpty()) {
+        pending.remove(resource);
+        return false;
+      }
+      pending.put(resource, new Pending<>());
+    }
+    try {
+      writeTogether(resource, batch.mutations);
+    } catch (Error e) {
+      batch.fail(e);
+      throw e;
+    }
+    return true;
+  }
+
+  /**
+   * Writes {@code mutations} in one write, completing their results. If that fails other than with
+   * a conflict, each mutation is written on its own, so that only the ones at fault fail.
+   */
+  private void writeTogether(R resource, List<Mutation<P>> mutations) {
+    List<IamBindingDelta> deltas = new ArrayList<>();
+    mutations.forEach(mutation -> deltas.addAll(mutation.deltas));
+    P policy;
+    try {
+      policy = write(resource, deltas);
+    } catch (IOException | RuntimeException e) {
+      if (mutations.size() == 1 || isConcurrentChange(e)) {
+        mutations.forEach(mutation -> mutation.result.completeExceptionally(e));
+        return;
+      }
+      logger.debug(
+          "Failed to write {} coalesced IAM mutations of {}, writing them one at a time",
+          mutations.size(),
+          resource,
+          e);
+      mutations.forEach(mutation -> writeTogether(resource, List.of(mutation)));
+      return;
+    }
+    mutations.forEach(mutation -> mutation.result.complete(policy));
+  }
+
+  /**
+   * Stops writing the policy of {@code resource}, failing its pending mutations with {@code
+   * failure}. Does nothing if the resource was drained normally, as nothing is pending then.
+   */
+  private void abandon(R resource, @Nullable Throwable failure) {
+    Pending<P> orphaned;
+    synchronized (this) {
+      if (failure == null) {
+        return;
+      }
+      orphaned = pending.remove(resource);
+    }
+    if (orphaned != null) {
+      orphaned.fail(failure);
+    }
+  }
+
+  private P write(R resource, List<IamBindingDelta> deltas) throws IOException {
+    for (int attempt = 1; ; attempt++) {
+      P policy = accessor.getIamPolicy(resource);
+      P edited = editor.apply(policy, deltas).orElse(null);
+      if (edited == null) {
+        return policy;
+      }
+      try {
+        return accessor.setIamPolicy(resource, edited);
+      } catch (IOException | RuntimeException e) {
+        if (!isConcurrentChange(e) || attempt >= maxAttempts) {
+          throw e;
+        }
+        logger.debug(
+            "IAM policy of {} changed concurrently, retrying (attempt {})", resource, attempt);
+      }
+    }
+  }
+
+  /** Mutations of a resource waiting for the same write. */
+  private static class Pending<P> {
+    private final List<Mutation<P>> mutations = new ArrayList<>();
+
+    /** Fails the mutations that are not complete yet. */
+    private void fail(Throwable failure) {
+      mutations.forEach(mutation -> mutation.result.completeExceptionally(failure));
+    }
+  }
+
+  /** One caller's deltas, and the result to complete once they are written. */
+  private static class Mutation<P> {
+    private final List<IamBindingDelta> deltas;
+    private final CompletableFuture<P> result;
+
+    private Mutation(List<IamBindingDelta> deltas, CompletableFuture<P> result) {
+      this.deltas = deltas;
+      this.result = result;
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the items of every page of a list request, fetching pages as they are needed.
+ *
+ * <p>Each page is fetched by executing the list {@link AbstractRequestCow} with the previous page's
+ * token, so each fetch is recorded as its own cloud operation. Only the current page is held, plus
+ * the next one when prefetching, however many items there are in total.
+ *
+ * <p>Iteration starts from the page token the request had when the pager was created. The pager
+ * changes the request's page token while iterating, so the request should not be used for anything
+ * else meanwhile, and a pager should only be iterated by one thread at a time. Failures to fetch a
+ * page are thrown from the iterator as an {@link UncheckedIOException}.
+ *
+ * @param <R> the list response type
+ * @param <T> the item type
+ */
+public class ListPager<R, T> implements Iterable<T> {
+  /** The request parameter all api-services list requests use for the page token. */
+  private static final String PAGE_TOKEN = "pageToken";
+
+  private final AbstractRequestCow<R> request;
+  private final Function<R, List<T>> items;
+  private final Function<R, String> nextPageToken;
+  private final String firstPageToken;
+  private final Optional<Executor> prefetchExecutor;
+
+  private ListPager(
+      AbstractRequestCow<R> request,
+      Function<R, List<T>> items,
+      Function<R, String> nextPageToken,
+      String firstPageToken,
+      Optional<Executor> prefetchExecutor) {
+    this.request = request;
+    this.items = items;
+    this.nextPageToken = nextPageToken;
+    this.firstPageToken = firstPageToken;
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * Creates a pager over a list request.
+   *
+   * @param request the list request, set up for the first page to fetch
+   * @param items gets the items of a page, which may be null for an empty page
+   * @param nextPageToken gets the token of the page after a page, which is null or empty on the
+   *     last page
+   */
+  public static <R, T> ListPager<R, T> create(
+      AbstractRequestCow<R> request,
+      Function<R, List<T>> items,
+      Function<R, String> nextPageToken) {
+    return new ListPager<>(
+        request,
+        items,
+        nextPageToken,
+        (String) request.getRequestParameter(PAGE_TOKEN),
+        Optional.empty());
+  }
+
+  /**
+   * Returns a pager that fetches the next page on {@code executor} while the current page is being
+   * consumed. This hides the latency of each fetch when consuming items is slow enough.
+   */
+  public ListPager<R, T> withPrefetch(Executor executor) {
+    Preconditions.checkNotNull(executor);
+    return new ListPager<>(request, items, nextPageToken, firstPageToken, Optional.of(executor));
+  }
+
+  /** Returns a pager that prefetches on {@link Defaults#asyncExecutor()}. */
+  public ListPager<R, T> withPrefetch() {
+    return withPrefetch(Defaults.asyncExecutor());
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return new PageIterator();
+  }
+
+  /** Returns a sequential stream of all items. Pages are fetched as the stream is consumed. */
+  public Stream<T> stream() {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED), false);
+  }
+
+  /** Iterates over the items of one page at a time. */
+  private class PageIterator implements Iterator<T> {
+    private Iterator<T> currentItems = Collections.emptyIterator();
+    private boolean hasMorePages = true;
+    private String pageToken = firstPageToken;
+    /** The next page being prefetched, or null. */
+    private CompletableFuture<R> prefetchedPage;
+
+    @Override
+    public boolean hasNext() {
+      while (!currentItems.hasNext() && hasMorePages) {
+        R page = prefetchedPage != null ? join(prefetchedPage) : fetch(pageToken);
+        pageToken = nextPageToken.apply(page);
+        hasMorePages = !Strings.isNullOrEmpty(pageToken);
+        prefetchedPage =
+            hasMorePages && prefetchExecutor.isPresent()
+                ? prefetch(pageToken, prefetchExecutor.get())
+                : null;
+        List<T> pageItems = items.apply(page);
+        currentItems = pageItems == null ? Collections.emptyIterator() : pageItems.iterator();
+      }
+      return currentItems.hasNext();
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return currentItems.next();
+    }
+
+    private R fetch(String pageToken) {
+      request.setRequestParameter(PAGE_TOKEN, pageToken);
+      try {
+        return request.execute();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private CompletableFuture<R> prefetch(String pageToken, Executor executor) {
+      request.setRequestParameter(PAGE_TOKEN, pageToken);
+      return request.executeAsync(executor);
+    }
+
+    private R join(CompletableFuture<R> page) {
+      try {
+        return page.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while fetching a page", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw new UncheckedIOException((IOException) e.getCause());
+        }
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+}
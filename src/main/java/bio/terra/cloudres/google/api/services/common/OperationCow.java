@@ -41,9 +41,17 @@ public class OperationCow<T> {
    * information.
    */
   public OperationCow<T> executeGet() throws IOException {
-    AbstractRequestCow<T> getRequest = getRequestFactory.create(getOperation());
-    T newOperation = getRequest.execute();
-    return new OperationCow(newOperation, operationAdapterFactory, getRequestFactory);
+    return withOperation(createGetRequest().execute());
+  }
+
+  /** Creates the request for getting an update of the Operation. */
+  AbstractRequestCow<T> createGetRequest() throws IOException {
+    return getRequestFactory.create(getOperation());
+  }
+
+  /** Returns a new OperationCow for updated information about the same Operation. */
+  OperationCow<T> withOperation(T newOperation) {
+    return new OperationCow<>(newOperation, operationAdapterFactory, getRequestFactory);
   }
 
   /**
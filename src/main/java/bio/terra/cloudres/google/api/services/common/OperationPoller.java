@@ -0,0 +1,378 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.services.AbstractGoogleClient;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Polls {@link OperationCow}s until they complete without holding a thread per operation.
+ *
+ * <p>Each poll is scheduled on a shared {@link ScheduledExecutorService}, so threads are only used
+ * while an operation get is in flight. The delay between polls of an operation grows exponentially
+ * from the initial interval up to the max interval, with random jitter so that operations started
+ * together do not poll together.
+ *
+ * <p>This is the non-blocking equivalent of {@link OperationUtils#pollUntilComplete}: the returned
+ * future completes with the first operation that is done or has an error. It completes
+ * exceptionally with a {@link TimeoutException} if the operation's deadline passes first, or with
+ * the exception thrown by the operation get. Cancelling the future stops polling.
+ *
+ * <p>With {@link Builder#setBatching(boolean)}, gets that come due within the batch window of each
+ * other are sent together as one HTTP batch request per api-services client, instead of one HTTP
+ * request each. Each get is still recorded as its own {@link
+ * bio.terra.cloudres.common.CloudOperation}. If a batch request fails as a whole, e.g. on a
+ * connection error, its gets are polled again at their next interval instead of failing.
+ */
+public class OperationPoller implements AutoCloseable {
+  private final ScheduledExecutorService executor;
+  private final boolean ownsExecutor;
+  private final Duration initialInterval;
+  private final Duration maxInterval;
+  private final double multiplier;
+  private final double jitter;
+  private final boolean batching;
+  private final Duration batchWindow;
+  private final int maxBatchSize;
+
+  /** Gets waiting to be sent in the next batch, by the client they are sent with. */
+  private final Map<AbstractGoogleClient, List<BatchedGet<?>>> dueGets = new HashMap<>();
+
+  private OperationPoller(
+      Builder builder, ScheduledExecutorService executor, boolean ownsExecutor) {
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    this.initialInterval = builder.initialInterval;
+    this.maxInterval = builder.maxInterval;
+    this.multiplier = builder.multiplier;
+    this.jitter = builder.jitter;
+    this.batching = builder.batching;
+    this.batchWindow = builder.batchWindow;
+    this.maxBatchSize = builder.maxBatchSize;
+  }
+
+  /**
+   * Polls the operation until it is done or has an error, or until the timeout is reached.
+   *
+   * @param operation the operation to poll.
+   * @param timeout how long from now to wait for the operation to complete.
+   */
+  public <T> CompletableFuture<OperationCow<T>> pollUntilComplete(
+      OperationCow<T> operation, Duration timeout) {
+    CompletableFuture<OperationCow<T>> result = new CompletableFuture<>();
+    PendingOperation<T> pending =
+        new PendingOperation<>(operation, Instant.now().plus(timeout), result);
+    if (isComplete(operation)) {
+      result.complete(operation);
+    } else {
+      pending.schedule(initialInterval);
+    }
+    return result;
+  }
+
+  /** Shuts down the executor if it was created by this poller. */
+  @Override
+  public void close() {
+    if (ownsExecutor) {
+      executor.shutdownNow();
+    }
+  }
+
+  private static boolean isComplete(OperationCow<?> operation) {
+    return OperationUtils.isDone(operation.getOperationAdapter())
+        || operation.getOperationAdapter().getError() != null;
+  }
+
+  /** Returns the interval with up to {@link #jitter} random variation in either direction. */
+  private Duration withJitter(Duration interval) {
+    double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    return Duration.ofNanos((long) (interval.toNanos() * factor));
+  }
+
+  private Duration nextInterval(Duration interval) {
+    Duration next = Duration.ofNanos((long) (interval.toNanos() * multiplier));
+    return next.compareTo(maxInterval) > 0 ? maxInterval : next;
+  }
+
+  /** The polling state of a single operation. */
+  private class PendingOperation<T> {
+    private OperationCow<T> operation;
+    private final Instant deadline;
+    private final CompletableFuture<OperationCow<T>> result;
+
+    private PendingOperation(
+        OperationCow<T> operation, Instant deadline, CompletableFuture<OperationCow<T>> result) {
+      this.operation = operation;
+      this.deadline = deadline;
+      this.result = result;
+    }
+
+    private void schedule(Duration interval) {
+      Duration remaining = Duration.between(Instant.now(), deadline);
+      if (remaining.isNegative() || remaining.isZero()) {
+        result.completeExceptionally(
+            new TimeoutException(
+                "Timeout during pollUntilComplete for operation "
+                    + operation.getOperationAdapter().getName()));
+        return;
+      }
+      Duration delay = withJitter(interval);
+      if (delay.compareTo(remaining) > 0) {
+        delay = remaining;
+      }
+      try {
+        executor.schedule(() -> poll(interval), delay.toNanos(), TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        result.completeExceptionally(e);
+      }
+    }
+
+    private void poll(Duration interval) {
+      if (result.isDone()) {
+        // Cancelled by the caller.
+        return;
+      }
+      if (batching) {
+        AbstractRequestCow<T> getRequest;
+        try {
+          getRequest = operation.createGetRequest();
+        } catch (Exception e) {
+          result.completeExceptionally(e);
+          return;
+        }
+        addToBatch(new BatchedGet<>(this, getRequest, interval));
+        return;
+      }
+      OperationCow<T> updated;
+      try {
+        updated = operation.executeGet();
+      } catch (Exception e) {
+        result.completeExceptionally(e);
+        return;
+      }
+      onUpdate(updated, interval);
+    }
+
+    private void onUpdate(OperationCow<T> updated, Duration interval) {
+      operation = updated;
+      if (isComplete(operation)) {
+        result.complete(operation);
+      } else {
+        schedule(nextInterval(interval));
+      }
+    }
+  }
+
+  /** A get for a {@link PendingOperation} waiting to be sent in a batch. */
+  private static class BatchedGet<T> {
+    private final PendingOperation<T> pending;
+    private final AbstractRequestCow<T> getRequest;
+    private final Duration interval;
+    /** Whether the get's response or error was handled. Only used by the batch's thread. */
+    private boolean handled;
+
+    private BatchedGet(
+        PendingOperation<T> pending, AbstractRequestCow<T> getRequest, Duration interval) {
+      this.pending = pending;
+      this.getRequest = getRequest;
+      this.interval = interval;
+    }
+
+    private void queue(BatchRequest batch) {
+      try {
+        getRequest.queue(
+            batch,
+            new AbstractRequestCow.BatchCallback<>() {
+              @Override
+              public void onSuccess(T result) {
+                handled = true;
+                pending.onUpdate(pending.operation.withOperation(result), interval);
+              }
+
+              @Override
+              public void onFailure(IOException e) {
+                handled = true;
+                pending.result.completeExceptionally(e);
+              }
+            });
+      } catch (Exception e) {
+        handled = true;
+        pending.result.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * Adds a get to the next batch for its client, scheduling that batch to be sent after the batch
+   * window if this is its first get.
+   */
+  private void addToBatch(BatchedGet<?> get) {
+    AbstractGoogleClient client = get.getRequest.getAbstractGoogleClient();
+    synchronized (dueGets) {
+      List<BatchedGet<?>> gets = dueGets.computeIfAbsent(client, c -> new ArrayList<>());
+      gets.add(get);
+      if (gets.size() > 1) {
+        return;
+      }
+    }
+    try {
+      executor.schedule(() -> sendBatches(client), batchWindow.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      get.pending.result.completeExceptionally(e);
+    }
+  }
+
+  private void sendBatches(AbstractGoogleClient client) {
+    List<BatchedGet<?>> gets;
+    synchronized (dueGets) {
+      gets = dueGets.remove(client);
+    }
+    if (gets == null) {
+      return;
+    }
+    for (List<BatchedGet<?>> partition : Lists.partition(gets, maxBatchSize)) {
+      BatchRequest batch = client.batch();
+      partition.forEach(get -> get.queue(batch));
+      if (batch.size() == 0) {
+        continue;
+      }
+      try {
+        batch.execute();
+      } catch (Exception e) {
+        // The batch failed as a whole, e.g. the connection was reset. Gets that were already
+        // handled have been rescheduled or completed. Poll the others again, like an operation
+        // that is still running, until the deadline.
+        partition.stream()
+            .filter(get -> !get.handled)
+            .forEach(get -> get.pending.schedule(nextInterval(get.interval)));
+      }
+    }
+  }
+
+  /** Builder for {@link OperationPoller}. */
+  public static class Builder {
+    private ScheduledExecutorService executor;
+    private int threadCount = 4;
+    private Duration initialInterval = Duration.ofSeconds(1);
+    private Duration maxInterval = Duration.ofSeconds(30);
+    private double multiplier = 2.0;
+    private double jitter = 0.2;
+    private boolean batching = false;
+    private Duration batchWindow = Duration.ofMillis(100);
+    private int maxBatchSize = 100;
+
+    private Builder() {}
+
+    public static Builder newBuilder() {
+      return new Builder();
+    }
+
+    /**
+     * optional, the executor to poll on. If not set, the poller creates one with {@link
+     * #setThreadCount} daemon threads and shuts it down on {@link OperationPoller#close()}.
+     */
+    public Builder setExecutor(ScheduledExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /** optional, the number of threads when the poller creates its own executor. Defaults to 4. */
+    public Builder setThreadCount(int threadCount) {
+      this.threadCount = threadCount;
+      return this;
+    }
+
+    /** optional, the delay before the first poll of an operation. Defaults to 1 second. */
+    public Builder setInitialInterval(Duration initialInterval) {
+      this.initialInterval = initialInterval;
+      return this;
+    }
+
+    /** optional, the upper bound for the delay between polls. Defaults to 30 seconds. */
+    public Builder setMaxInterval(Duration maxInterval) {
+      this.maxInterval = maxInterval;
+      return this;
+    }
+
+    /** optional, how much the delay grows after each poll. Defaults to 2. */
+    public Builder setMultiplier(double multiplier) {
+      this.multiplier = multiplier;
+      return this;
+    }
+
+    /**
+     * optional, the fraction of each delay to randomly add or subtract, between 0 and 1. Defaults
+     * to 0.2.
+     */
+    public Builder setJitter(double jitter) {
+      this.jitter = jitter;
+      return this;
+    }
+
+    /**
+     * optional, whether to send gets for operations of the same api-services client in HTTP batch
+     * requests. Defaults to false.
+     */
+    public Builder setBatching(boolean batching) {
+      this.batching = batching;
+      return this;
+    }
+
+    /**
+     * optional, how long a due get waits for other gets to batch with when {@link #setBatching}.
+     * Defaults to 100 milliseconds.
+     */
+    public Builder setBatchWindow(Duration batchWindow) {
+      this.batchWindow = batchWindow;
+      return this;
+    }
+
+    /**
+     * optional, the maximum number of gets in one batch request when {@link #setBatching}, up to
+     * 1000. Defaults to 100.
+     */
+    public Builder setMaxBatchSize(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    public OperationPoller build() {
+      checkArgument(threadCount > 0, "thread count must be positive");
+      checkArgument(!initialInterval.isNegative(), "initial interval must not be negative");
+      checkArgument(
+          maxInterval.compareTo(initialInterval) >= 0, "max interval must be >= initial interval");
+      checkArgument(multiplier >= 1.0, "multiplier must be >= 1");
+      checkArgument(jitter >= 0.0 && jitter <= 1.0, "jitter must be between 0 and 1");
+      checkArgument(!batchWindow.isNegative(), "batch window must not be negative");
+      checkArgument(
+          maxBatchSize > 0 && maxBatchSize <= 1000, "max batch size must be between 1 and 1000");
+      boolean ownsExecutor = executor == null;
+      ScheduledExecutorService pollExecutor =
+          ownsExecutor
+              ? Executors.newScheduledThreadPool(
+                  threadCount,
+                  new ThreadFactoryBuilder()
+                      .setDaemon(true)
+                      .setNameFormat("crl-operation-poller-%d")
+                      .build())
+              : executor;
+      return new OperationPoller(this, pollExecutor, ownsExecutor);
+    }
+  }
+}
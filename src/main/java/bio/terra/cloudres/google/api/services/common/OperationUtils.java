@@ -14,6 +14,9 @@ public class OperationUtils {
    *
    * <p>Note that this does not throw an error if the operation executes "successfully" but returns
    * an error.
+   *
+   * <p>This blocks the calling thread while waiting. To wait on many operations at once, use an
+   * {@link OperationPoller}.
    */
   @CheckReturnValue
   public static <T> OperationCow<T> pollUntilComplete(
@@ -4,6 +4,10 @@ import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
+import bio.terra.cloudres.google.api.services.common.IamPolicyAccessor;
+import bio.terra.cloudres.google.api.services.common.ListPager;
+import bio.terra.cloudres.util.Serializers;
 import bio.terra.janitor.model.CloudResourceUid;
 import bio.terra.janitor.model.GoogleBigQueryDatasetUid;
 import bio.terra.janitor.model.GoogleBigQueryTableUid;
@@ -12,6 +16,7 @@ import com.google.api.services.bigquery.BigqueryScopes;
 import com.google.api.services.bigquery.model.Dataset;
 import com.google.api.services.bigquery.model.DatasetList;
 import com.google.api.services.bigquery.model.GetIamPolicyRequest;
+import com.google.api.services.bigquery.model.GetPolicyOptions;
 import com.google.api.services.bigquery.model.Policy;
 import com.google.api.services.bigquery.model.SetIamPolicyRequest;
 import com.google.api.services.bigquery.model.Table;
@@ -20,10 +25,10 @@ import com.google.api.services.bigquery.model.TestIamPermissionsRequest;
 import com.google.api.services.bigquery.model.TestIamPermissionsResponse;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +55,7 @@ public class BigQueryCow {
     return new BigQueryCow(
         clientConfig,
         new Bigquery.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(googleCredentials.createScoped(BigqueryScopes.all())))
             .setApplicationName(clientConfig.getClientName()));
@@ -182,7 +187,8 @@ public class BigQueryCow {
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
         result.addProperty("projectId", getProjectId());
-        result.add("content", new Gson().toJsonTree(insert.getJsonContent()).getAsJsonObject());
+        result.add(
+            "content", Serializers.gson().toJsonTree(insert.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -213,6 +219,13 @@ public class BigQueryCow {
         return list.getProjectId();
       }
 
+      /**
+       * Returns a {@link ListPager} over the datasets of every page, starting from this request.
+       */
+      public ListPager<DatasetList, DatasetList.Datasets> pager() {
+        return ListPager.create(this, DatasetList::getDatasets, DatasetList::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -254,7 +267,8 @@ public class BigQueryCow {
         JsonObject result = new JsonObject();
         result.addProperty("projectId", getProjectId());
         result.addProperty("datasetId", getDatasetId());
-        result.add("content", new Gson().toJsonTree(patch.getJsonContent()).getAsJsonObject());
+        result.add(
+            "content", Serializers.gson().toJsonTree(patch.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -291,7 +305,8 @@ public class BigQueryCow {
         JsonObject result = new JsonObject();
         result.addProperty("projectId", getProjectId());
         result.addProperty("datasetId", getDatasetId());
-        result.add("content", new Gson().toJsonTree(update.getJsonContent()).getAsJsonObject());
+        result.add(
+            "content", Serializers.gson().toJsonTree(update.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -388,6 +403,35 @@ public class BigQueryCow {
       }
     }
 
+    /**
+     * An {@link IamPolicyAccessor} for the policies of tables through this COW, e.g. for a {@link
+     * bio.terra.cloudres.google.api.services.common.BulkIamPolicyUpdater}. Resources are table
+     * resource names, {@code projects/{projectId}/datasets/{datasetId}/tables/{tableId}}.
+     */
+    public IamPolicyAccessor<String, Policy> iamPolicyAccessor() {
+      return new IamPolicyAccessor<>() {
+        @Override
+        public Policy getIamPolicy(String resource) throws IOException {
+          return new Tables.GetIamPolicy(
+                  tables.getIamPolicy(
+                      resource,
+                      new GetIamPolicyRequest()
+                          .setOptions(
+                              new GetPolicyOptions().setRequestedPolicyVersion(POLICY_VERSION))))
+              .execute();
+        }
+
+        @Override
+        public Policy setIamPolicy(String resource, Policy policy) throws IOException {
+          return new Tables.SetIamPolicy(
+                  tables.setIamPolicy(
+                      resource,
+                      new SetIamPolicyRequest().setPolicy(policy.setVersion(POLICY_VERSION))))
+              .execute();
+        }
+      };
+    }
+
     /**
      * Wrapper around {@link Bigquery.Tables#getIamPolicy(String, GetIamPolicyRequest)}. For
      * consistency with other methods, this method handles combining projectId, datasetId, and
@@ -423,7 +467,8 @@ public class BigQueryCow {
         JsonObject result = new JsonObject();
         result.addProperty("resource", getResource());
         result.add(
-            "content", new Gson().toJsonTree(getIamPolicy.getJsonContent()).getAsJsonObject());
+            "content",
+            Serializers.gson().toJsonTree(getIamPolicy.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -474,7 +519,8 @@ public class BigQueryCow {
         JsonObject result = new JsonObject();
         result.addProperty("projectId", getProjectId());
         result.addProperty("datasetId", getDatasetId());
-        result.add("content", new Gson().toJsonTree(insert.getJsonContent()).getAsJsonObject());
+        result.add(
+            "content", Serializers.gson().toJsonTree(insert.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -502,6 +548,11 @@ public class BigQueryCow {
         return list.getDatasetId();
       }
 
+      /** Returns a {@link ListPager} over the tables of every page, starting from this request. */
+      public ListPager<TableList, TableList.Tables> pager() {
+        return ListPager.create(this, TableList::getTables, TableList::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -546,7 +597,8 @@ public class BigQueryCow {
         result.addProperty("projectId", getProjectId());
         result.addProperty("datasetId", getDatasetId());
         result.addProperty("tableId", getTableId());
-        result.add("content", new Gson().toJsonTree(patch.getJsonContent()).getAsJsonObject());
+        result.add(
+            "content", Serializers.gson().toJsonTree(patch.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -586,11 +638,29 @@ public class BigQueryCow {
         JsonObject result = new JsonObject();
         result.addProperty("resource", getResource());
         result.add(
-            "content", new Gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
+            "content",
+            Serializers.gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
 
+    /**
+     * An {@link IamPermissionTester} for tables through this COW, e.g. for a {@link
+     * bio.terra.cloudres.google.api.services.common.IamPermissionChecker}. Resources are table
+     * resource names, {@code projects/{projectId}/datasets/{datasetId}/tables/{tableId}}.
+     */
+    public IamPermissionTester<String> iamPermissionTester() {
+      return (resource, permissions) ->
+          IamPermissionTester.granted(
+              new Tables.TestIamPermissions(
+                      tables.testIamPermissions(
+                          resource,
+                          new TestIamPermissionsRequest()
+                              .setPermissions(new ArrayList<>(permissions))))
+                  .execute()
+                  .getPermissions());
+    }
+
     /**
      * Wrapper around {@link Bigquery.Tables#testIamPermissions(String, TestIamPermissionsRequest)}.
      * For consistency with other methods, this method handles combining projectId, datasetId, and
@@ -627,7 +697,7 @@ public class BigQueryCow {
         result.addProperty("resource", getResource());
         result.add(
             "content",
-            new Gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
+            Serializers.gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -670,7 +740,8 @@ public class BigQueryCow {
         result.addProperty("projectId", getProjectId());
         result.addProperty("datasetId", getDatasetId());
         result.addProperty("tableId", getTableId());
-        result.add("content", new Gson().toJsonTree(update.getJsonContent()).getAsJsonObject());
+        result.add(
+            "content", Serializers.gson().toJsonTree(update.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -2,6 +2,7 @@ package bio.terra.cloudres.google.billing;
 
 import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
 import com.google.api.gax.core.FixedCredentialsProvider;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.cloud.billing.v1.CloudBillingClient;
@@ -57,6 +58,22 @@ public class CloudBillingClientCow implements AutoCloseable {
         () -> SerializeBillingUtils.convert(name, projectBillingInfo));
   }
 
+  /**
+   * An {@link IamPermissionTester} for billing accounts through this COW, e.g. for a {@link
+   * bio.terra.cloudres.google.api.services.common.IamPermissionChecker}. Resources are billing
+   * account names, e.g. {@code billingAccounts/012345-567890-ABCDEF}.
+   */
+  public IamPermissionTester<String> iamPermissionTester() {
+    return (resource, permissions) ->
+        IamPermissionTester.granted(
+            testIamPermissions(
+                    TestIamPermissionsRequest.newBuilder()
+                        .setResource(resource)
+                        .addAllPermissions(permissions)
+                        .build())
+                .getPermissionsList());
+  }
+
   /** See {@link CloudBillingClient#testIamPermissions(TestIamPermissionsRequest)} */
   public TestIamPermissionsResponse testIamPermissions(TestIamPermissionsRequest request) {
     return operationAnnotator.executeCowOperation(
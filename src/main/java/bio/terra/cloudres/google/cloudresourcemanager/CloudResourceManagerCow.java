@@ -4,7 +4,10 @@ import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
+import bio.terra.cloudres.google.api.services.common.IamPolicyAccessor;
 import bio.terra.cloudres.google.api.services.common.OperationCow;
+import bio.terra.cloudres.util.Serializers;
 import bio.terra.janitor.model.CloudResourceUid;
 import bio.terra.janitor.model.GoogleProjectUid;
 import bio.terra.janitor.model.ResourceMetadata;
@@ -13,10 +16,10 @@ import com.google.api.services.cloudresourcemanager.v3.CloudResourceManagerScope
 import com.google.api.services.cloudresourcemanager.v3.model.*;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,7 +46,7 @@ public class CloudResourceManagerCow {
     return new CloudResourceManagerCow(
         clientConfig,
         new CloudResourceManager.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(
                     googleCredentials.createScoped(CloudResourceManagerScopes.all())))
@@ -62,6 +65,21 @@ public class CloudResourceManagerCow {
       this.folders = folders;
     }
 
+    /**
+     * An {@link IamPermissionTester} for folders through this COW, e.g. for a {@link
+     * bio.terra.cloudres.google.api.services.common.IamPermissionChecker}. Resources are folder
+     * names, e.g. {@code folders/123}.
+     */
+    public IamPermissionTester<String> iamPermissionTester() {
+      return (resource, permissions) ->
+          IamPermissionTester.granted(
+              testIamPermissions(
+                      resource,
+                      new TestIamPermissionsRequest().setPermissions(new ArrayList<>(permissions)))
+                  .execute()
+                  .getPermissions());
+    }
+
     /**
      * See {@link CloudResourceManager.Folders#testIamPermissions(String,
      * TestIamPermissionsRequest)}.
@@ -101,7 +119,7 @@ public class CloudResourceManagerCow {
         result.addProperty("resource", getResource());
         result.add(
             "content",
-            new Gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
+            Serializers.gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -151,7 +169,7 @@ public class CloudResourceManagerCow {
 
       @Override
       protected JsonObject serialize() {
-        return new Gson().toJsonTree(project).getAsJsonObject();
+        return Serializers.gson().toJsonTree(project).getAsJsonObject();
       }
     }
 
@@ -211,6 +229,33 @@ public class CloudResourceManagerCow {
       }
     }
 
+    /**
+     * An {@link IamPolicyAccessor} for the policies of projects through this COW, e.g. for a {@link
+     * bio.terra.cloudres.google.api.services.common.BulkIamPolicyUpdater}. Resources are project
+     * ids or names, as for {@link #getIamPolicy(String, GetIamPolicyRequest)}.
+     */
+    public IamPolicyAccessor<String, Policy> iamPolicyAccessor() {
+      return new IamPolicyAccessor<>() {
+        @Override
+        public Policy getIamPolicy(String resource) throws IOException {
+          return Projects.this
+              .getIamPolicy(
+                  resource,
+                  new GetIamPolicyRequest()
+                      .setOptions(new GetPolicyOptions().setRequestedPolicyVersion(POLICY_VERSION)))
+              .execute();
+        }
+
+        @Override
+        public Policy setIamPolicy(String resource, Policy policy) throws IOException {
+          return Projects.this
+              .setIamPolicy(
+                  resource, new SetIamPolicyRequest().setPolicy(policy.setVersion(POLICY_VERSION)))
+              .execute();
+        }
+      };
+    }
+
     /**
      * See {@link CloudResourceManager.Projects#getIamPolicy(String, GetIamPolicyRequest)}.
      *
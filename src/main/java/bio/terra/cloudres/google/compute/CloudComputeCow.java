@@ -4,16 +4,22 @@ import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
+import bio.terra.cloudres.google.api.services.common.IamPolicyAccessor;
+import bio.terra.cloudres.google.api.services.common.ListPager;
 import bio.terra.cloudres.google.api.services.common.OperationCow;
+import bio.terra.cloudres.util.Serializers;
 import com.google.api.services.compute.Compute;
 import com.google.api.services.compute.ComputeScopes;
 import com.google.api.services.compute.model.*;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,7 +44,7 @@ public class CloudComputeCow {
     return new CloudComputeCow(
         clientConfig,
         new Compute.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(googleCredentials.createScoped(ComputeScopes.all())))
             .setApplicationName(clientConfig.getClientName()));
@@ -77,7 +83,7 @@ public class CloudComputeCow {
         JsonObject result = new JsonObject();
         result.addProperty("projectId", insert.getProject());
         result.addProperty("zone", insert.getZone());
-        result.add("instance", new Gson().toJsonTree(instance));
+        result.add("instance", Serializers.gson().toJsonTree(instance));
         return result;
       }
     }
@@ -186,6 +192,13 @@ public class CloudComputeCow {
         return this;
       }
 
+      /**
+       * Returns a {@link ListPager} over the instances of every page, starting from this request.
+       */
+      public ListPager<InstanceList, Instance> pager() {
+        return ListPager.create(this, InstanceList::getItems, InstanceList::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -197,6 +210,34 @@ public class CloudComputeCow {
       }
     }
 
+    /**
+     * An {@link IamPolicyAccessor} for the policies of the instances in a zone through this COW,
+     * e.g. for a {@link bio.terra.cloudres.google.api.services.common.IamPolicyMutator}. Resources
+     * are instance names.
+     */
+    public IamPolicyAccessor<String, Policy> iamPolicyAccessor(String project, String zone) {
+      return new IamPolicyAccessor<>() {
+        @Override
+        public Policy getIamPolicy(String resource) throws IOException {
+          return Instances.this
+              .getIamPolicy(project, zone, resource)
+              .setOptionsRequestedPolicyVersion(POLICY_VERSION)
+              .execute();
+        }
+
+        @Override
+        public Policy setIamPolicy(String resource, Policy policy) throws IOException {
+          return Instances.this
+              .setIamPolicy(
+                  project,
+                  zone,
+                  resource,
+                  new ZoneSetPolicyRequest().setPolicy(policy.setVersion(POLICY_VERSION)))
+              .execute();
+        }
+      };
+    }
+
     /** See {@link Compute.Instances#getIamPolicy(String, String, String)} */
     public GetIamPolicy getIamPolicy(String project, String zone, String resource)
         throws IOException {
@@ -325,7 +366,8 @@ public class CloudComputeCow {
         result.addProperty("zone", setIamPolicy.getZone());
         result.addProperty("resource", setIamPolicy.getResource());
         result.add(
-            "content", new Gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
+            "content",
+            Serializers.gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -412,11 +454,29 @@ public class CloudComputeCow {
         result.addProperty("zone", setMetadata.getZone());
         result.addProperty("instance", setMetadata.getInstance());
         result.add(
-            "content", new Gson().toJsonTree(setMetadata.getJsonContent()).getAsJsonObject());
+            "content",
+            Serializers.gson().toJsonTree(setMetadata.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
 
+    /**
+     * An {@link IamPermissionTester} for the instances in a zone through this COW, e.g. for a
+     * {@link bio.terra.cloudres.google.api.services.common.IamPermissionChecker}. Resources are
+     * instance names.
+     */
+    public IamPermissionTester<String> iamPermissionTester(String project, String zone) {
+      return (resource, permissions) ->
+          IamPermissionTester.granted(
+              testIamPermissions(
+                      project,
+                      zone,
+                      resource,
+                      new TestPermissionsRequest().setPermissions(new ArrayList<>(permissions)))
+                  .execute()
+                  .getPermissions());
+    }
+
     /**
      * See {@link Compute.Instances#testIamPermissions(String, String, String,
      * TestPermissionsRequest)}.
@@ -478,7 +538,7 @@ public class CloudComputeCow {
         result.addProperty("resource", testIamPermissions.getResource());
         result.add(
             "content",
-            new Gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
+            Serializers.gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -517,7 +577,7 @@ public class CloudComputeCow {
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
         result.addProperty("project_id", projectId);
-        result.add("network", new Gson().toJsonTree(network).getAsJsonObject());
+        result.add("network", Serializers.gson().toJsonTree(network).getAsJsonObject());
         return result;
       }
     }
@@ -576,6 +636,17 @@ public class CloudComputeCow {
     return new Subnetworks(compute.subnetworks());
   }
 
+  /** The subnetworks of every region in a page of an aggregated list. */
+  private static List<Subnetwork> aggregatedSubnetworks(SubnetworkAggregatedList aggregatedList) {
+    if (aggregatedList.getItems() == null) {
+      return List.of();
+    }
+    return aggregatedList.getItems().values().stream()
+        .filter(scopedList -> scopedList.getSubnetworks() != null)
+        .flatMap(scopedList -> scopedList.getSubnetworks().stream())
+        .collect(Collectors.toList());
+  }
+
   /** See {@link Compute.Subnetworks}. */
   public class Subnetworks {
     private final Compute.Subnetworks subnetworks;
@@ -617,7 +688,7 @@ public class CloudComputeCow {
         JsonObject result = new JsonObject();
         result.addProperty("project_id", projectId);
         result.addProperty("region", region);
-        result.add("subnetwork", new Gson().toJsonTree(subnetwork).getAsJsonObject());
+        result.add("subnetwork", Serializers.gson().toJsonTree(subnetwork).getAsJsonObject());
         return result;
       }
     }
@@ -696,6 +767,13 @@ public class CloudComputeCow {
         return this;
       }
 
+      /**
+       * Returns a {@link ListPager} over the subnetworks of every page, starting from this request.
+       */
+      public ListPager<SubnetworkList, Subnetwork> pager() {
+        return ListPager.create(this, SubnetworkList::getItems, SubnetworkList::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -757,6 +835,17 @@ public class CloudComputeCow {
         return this;
       }
 
+      /**
+       * Returns a {@link ListPager} over the subnetworks of all regions of every page, starting
+       * from this request.
+       */
+      public ListPager<SubnetworkAggregatedList, Subnetwork> pager() {
+        return ListPager.create(
+            this,
+            CloudComputeCow::aggregatedSubnetworks,
+            SubnetworkAggregatedList::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -803,7 +892,7 @@ public class CloudComputeCow {
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
         result.addProperty("project_id", projectId);
-        result.add("firewall", new Gson().toJsonTree(firewall).getAsJsonObject());
+        result.add("firewall", Serializers.gson().toJsonTree(firewall).getAsJsonObject());
         return result;
       }
     }
@@ -890,7 +979,7 @@ public class CloudComputeCow {
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
         result.addProperty("project_id", projectId);
-        result.add("route", new Gson().toJsonTree(route).getAsJsonObject());
+        result.add("route", Serializers.gson().toJsonTree(route).getAsJsonObject());
         return result;
       }
     }
@@ -960,7 +1049,7 @@ public class CloudComputeCow {
         JsonObject result = new JsonObject();
         result.addProperty("project_id", projectId);
         result.addProperty("region", region);
-        result.add("router", new Gson().toJsonTree(router).getAsJsonObject());
+        result.add("router", Serializers.gson().toJsonTree(router).getAsJsonObject());
         return result;
       }
     }
@@ -1103,6 +1192,11 @@ public class CloudComputeCow {
         return this;
       }
 
+      /** Returns a {@link ListPager} over the zones of every page, starting from this request. */
+      public ListPager<ZoneList, Zone> pager() {
+        return ListPager.create(this, ZoneList::getItems, ZoneList::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -4,12 +4,17 @@ import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
+import bio.terra.cloudres.google.api.services.common.IamPolicyAccessor;
+import bio.terra.cloudres.google.api.services.common.ListPager;
 import bio.terra.cloudres.google.api.services.common.OperationCow;
+import bio.terra.cloudres.util.Serializers;
 import com.google.api.services.dataproc.Dataproc;
 import com.google.api.services.dataproc.Dataproc.Projects.Regions;
 import com.google.api.services.dataproc.DataprocScopes;
 import com.google.api.services.dataproc.model.Cluster;
 import com.google.api.services.dataproc.model.GetIamPolicyRequest;
+import com.google.api.services.dataproc.model.GetPolicyOptions;
 import com.google.api.services.dataproc.model.ListClustersResponse;
 import com.google.api.services.dataproc.model.Operation;
 import com.google.api.services.dataproc.model.Policy;
@@ -21,10 +26,10 @@ import com.google.api.services.dataproc.model.TestIamPermissionsResponse;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.common.base.Preconditions;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,7 +53,7 @@ public class DataprocCow {
     return new DataprocCow(
         clientConfig,
         new Dataproc.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(googleCredentials.createScoped(DataprocScopes.all())))
             .setApplicationName(clientConfig.getClientName()));
@@ -90,7 +95,7 @@ public class DataprocCow {
         JsonObject result = new JsonObject();
         result.addProperty("projectId", create.getProjectId());
         result.addProperty("region", create.getRegion());
-        result.add("cluster", new Gson().toJsonTree(cluster));
+        result.add("cluster", Serializers.gson().toJsonTree(cluster));
         return result;
       }
     }
@@ -124,7 +129,7 @@ public class DataprocCow {
         result.addProperty("projectId", patch.getProjectId());
         result.addProperty("region", patch.getRegion());
         result.addProperty("clusterName", patch.getClusterName());
-        result.add("updateMask", new Gson().toJsonTree(patch.getUpdateMask()));
+        result.add("updateMask", Serializers.gson().toJsonTree(patch.getUpdateMask()));
         result.addProperty("gracefulDecommissionTimeout", patch.getGracefulDecommissionTimeout());
         return result;
       }
@@ -245,6 +250,14 @@ public class DataprocCow {
         return this;
       }
 
+      /**
+       * Returns a {@link ListPager} over the clusters of every page, starting from this request.
+       */
+      public ListPager<ListClustersResponse, Cluster> pager() {
+        return ListPager.create(
+            this, ListClustersResponse::getClusters, ListClustersResponse::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -329,6 +342,33 @@ public class DataprocCow {
       }
     }
 
+    /**
+     * An {@link IamPolicyAccessor} for the policies of clusters through this COW, e.g. for a {@link
+     * bio.terra.cloudres.google.api.services.common.BulkIamPolicyUpdater}.
+     */
+    public IamPolicyAccessor<ClusterName, Policy> iamPolicyAccessor() {
+      return new IamPolicyAccessor<>() {
+        @Override
+        public Policy getIamPolicy(ClusterName resource) throws IOException {
+          return new GetIamPolicy(
+                  clusters.getIamPolicy(
+                      resource.formatName(),
+                      new GetIamPolicyRequest()
+                          .setOptions(
+                              new GetPolicyOptions().setRequestedPolicyVersion(POLICY_VERSION))))
+              .execute();
+        }
+
+        @Override
+        public Policy setIamPolicy(ClusterName resource, Policy policy) throws IOException {
+          return Clusters.this
+              .setIamPolicy(
+                  resource, new SetIamPolicyRequest().setPolicy(policy.setVersion(POLICY_VERSION)))
+              .execute();
+        }
+      };
+    }
+
     /** See {@link Dataproc.Projects.Regions.Clusters#getIamPolicy(String, GetIamPolicyRequest)} */
     public GetIamPolicy getIamPolicy(ClusterName clusterName) throws IOException {
       return new GetIamPolicy(
@@ -357,7 +397,8 @@ public class DataprocCow {
         JsonObject result = new JsonObject();
         result.addProperty("resource", getIamPolicy.getResource());
         result.add(
-            "content", new Gson().toJsonTree(getIamPolicy.getJsonContent()).getAsJsonObject());
+            "content",
+            Serializers.gson().toJsonTree(getIamPolicy.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -398,11 +439,26 @@ public class DataprocCow {
         JsonObject result = new JsonObject();
         result.addProperty("resource", setIamPolicy.getResource());
         result.add(
-            "content", new Gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
+            "content",
+            Serializers.gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
 
+    /**
+     * An {@link IamPermissionTester} for clusters through this COW, e.g. for a {@link
+     * bio.terra.cloudres.google.api.services.common.IamPermissionChecker}.
+     */
+    public IamPermissionTester<ClusterName> iamPermissionTester() {
+      return (resource, permissions) ->
+          IamPermissionTester.granted(
+              testIamPermissions(
+                      resource,
+                      new TestIamPermissionsRequest().setPermissions(new ArrayList<>(permissions)))
+                  .execute()
+                  .getPermissions());
+    }
+
     /**
      * See {@link Dataproc.Projects.Regions.Clusters.TestIamPermissions#testIamPermissions(String,
      * TestIamPermissionsRequest)}.
@@ -436,7 +492,7 @@ public class DataprocCow {
         result.addProperty("resource", testIamPermissions.getResource());
         result.add(
             "content",
-            new Gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
+            Serializers.gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -4,12 +4,13 @@ import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.ListPager;
+import bio.terra.cloudres.util.Serializers;
 import com.google.api.services.dns.Dns;
 import com.google.api.services.dns.DnsScopes;
 import com.google.api.services.dns.model.*;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -41,7 +42,7 @@ public class DnsCow {
     return new DnsCow(
         clientConfig,
         new Dns.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(googleCredentials.createScoped(DnsScopes.all())))
             .setApplicationName(clientConfig.getClientName()));
@@ -79,7 +80,7 @@ public class DnsCow {
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
         result.addProperty("project_id", projectId);
-        result.add("managed_zone", new Gson().toJsonTree(managedZone).getAsJsonObject());
+        result.add("managed_zone", Serializers.gson().toJsonTree(managedZone).getAsJsonObject());
         return result;
       }
     }
@@ -142,7 +143,7 @@ public class DnsCow {
         JsonObject result = new JsonObject();
         result.addProperty("project_id", create.getProject());
         result.addProperty("managed_zone_name", create.getManagedZone());
-        result.add("change", new Gson().toJsonTree(change).getAsJsonObject());
+        result.add("change", Serializers.gson().toJsonTree(change).getAsJsonObject());
         return result;
       }
     }
@@ -202,6 +203,17 @@ public class DnsCow {
         this.list = list;
       }
 
+      /**
+       * Returns a {@link ListPager} over the resource record sets of every page, starting from this
+       * request.
+       */
+      public ListPager<ResourceRecordSetsListResponse, ResourceRecordSet> pager() {
+        return ListPager.create(
+            this,
+            ResourceRecordSetsListResponse::getRrsets,
+            ResourceRecordSetsListResponse::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
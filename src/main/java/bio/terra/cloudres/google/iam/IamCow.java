@@ -4,15 +4,19 @@ import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
+import bio.terra.cloudres.google.api.services.common.IamPolicyAccessor;
+import bio.terra.cloudres.google.api.services.common.ListPager;
+import bio.terra.cloudres.util.Serializers;
 import com.google.api.services.iam.v1.Iam;
 import com.google.api.services.iam.v1.IamScopes;
 import com.google.api.services.iam.v1.model.*;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,7 +40,7 @@ public class IamCow {
     return new IamCow(
         clientConfig,
         new Iam.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(googleCredentials.createScoped(IamScopes.all())))
             .setApplicationName(clientConfig.getClientName()));
@@ -90,7 +94,7 @@ public class IamCow {
         protected JsonObject serialize() {
           JsonObject result = new JsonObject();
           result.addProperty("name", name);
-          result.add("content", new Gson().toJsonTree(content).getAsJsonObject());
+          result.add("content", Serializers.gson().toJsonTree(content).getAsJsonObject());
           return result;
         }
       }
@@ -151,6 +155,32 @@ public class IamCow {
         }
       }
 
+      /**
+       * An {@link IamPolicyAccessor} for the policies of service accounts through this COW, e.g.
+       * for a {@link bio.terra.cloudres.google.api.services.common.BulkIamPolicyUpdater}.
+       */
+      public IamPolicyAccessor<ServiceAccountName, Policy> iamPolicyAccessor() {
+        return new IamPolicyAccessor<>() {
+          @Override
+          public Policy getIamPolicy(ServiceAccountName resource) throws IOException {
+            return ServiceAccounts.this
+                .getIamPolicy(resource)
+                .setOptionsRequestedPolicyVersion(POLICY_VERSION)
+                .execute();
+          }
+
+          @Override
+          public Policy setIamPolicy(ServiceAccountName resource, Policy policy)
+              throws IOException {
+            return ServiceAccounts.this
+                .setIamPolicy(
+                    resource,
+                    new SetIamPolicyRequest().setPolicy(policy.setVersion(POLICY_VERSION)))
+                .execute();
+          }
+        };
+      }
+
       /** See {@link Iam.Projects.ServiceAccounts#getIamPolicy(String)}. */
       public GetIamPolicy getIamPolicy(String name) throws IOException {
         return new GetIamPolicy(serviceAccounts.getIamPolicy(name));
@@ -177,6 +207,15 @@ public class IamCow {
           this.getIamPolicy = getIamPolicy;
         }
 
+        /**
+         * See {@link
+         * Iam.Projects.ServiceAccounts.GetIamPolicy#setOptionsRequestedPolicyVersion(Integer)}.
+         */
+        public GetIamPolicy setOptionsRequestedPolicyVersion(Integer version) {
+          this.getIamPolicy.setOptionsRequestedPolicyVersion(version);
+          return this;
+        }
+
         @Override
         protected JsonObject serialize() {
           JsonObject result = new JsonObject();
@@ -198,6 +237,17 @@ public class IamCow {
           this.name = name;
         }
 
+        /**
+         * Returns a {@link ListPager} over the service accounts of every page, starting from this
+         * request.
+         */
+        public ListPager<ListServiceAccountsResponse, ServiceAccount> pager() {
+          return ListPager.create(
+              this,
+              ListServiceAccountsResponse::getAccounts,
+              ListServiceAccountsResponse::getNextPageToken);
+        }
+
         @Override
         protected JsonObject serialize() {
           JsonObject result = new JsonObject();
@@ -239,7 +289,8 @@ public class IamCow {
           JsonObject result = new JsonObject();
           result.addProperty("resource", setIamPolicy.getResource());
           result.add(
-              "content", new Gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
+              "content",
+              Serializers.gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
           return result;
         }
       }
@@ -253,6 +304,21 @@ public class IamCow {
         return new TestIamPermissions(serviceAccounts.testIamPermissions(resource, content));
       }
 
+      /**
+       * An {@link IamPermissionTester} for service accounts through this COW, e.g. for a {@link
+       * bio.terra.cloudres.google.api.services.common.IamPermissionChecker}.
+       */
+      public IamPermissionTester<ServiceAccountName> iamPermissionTester() {
+        return (resource, permissions) ->
+            IamPermissionTester.granted(
+                testIamPermissions(
+                        resource,
+                        new TestIamPermissionsRequest()
+                            .setPermissions(new ArrayList<>(permissions)))
+                    .execute()
+                    .getPermissions());
+      }
+
       /**
        * Test the IAM permissoins of a service account with the {@link ServiceAccountName}. See
        * {@link #testIamPermissions(String, TestIamPermissionsRequest)}.
@@ -282,7 +348,7 @@ public class IamCow {
           result.addProperty("resource", testIamPermissions.getResource());
           result.add(
               "content",
-              new Gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
+              Serializers.gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
           return result;
         }
       }
@@ -319,7 +385,7 @@ public class IamCow {
         protected JsonObject serialize() {
           JsonObject result = new JsonObject();
           result.addProperty("parent", parent);
-          result.add("content", new Gson().toJsonTree(content).getAsJsonObject());
+          result.add("content", Serializers.gson().toJsonTree(content).getAsJsonObject());
           return result;
         }
       }
@@ -387,6 +453,12 @@ public class IamCow {
           return this;
         }
 
+        /** Returns a {@link ListPager} over the roles of every page, starting from this request. */
+        public ListPager<ListRolesResponse, Role> pager() {
+          return ListPager.create(
+              this, ListRolesResponse::getRoles, ListRolesResponse::getNextPageToken);
+        }
+
         @Override
         protected JsonObject serialize() {
           JsonObject result = new JsonObject();
@@ -415,7 +487,7 @@ public class IamCow {
         protected JsonObject serialize() {
           JsonObject result = new JsonObject();
           result.addProperty("name", name);
-          result.add("content", new Gson().toJsonTree(content).getAsJsonObject());
+          result.add("content", Serializers.gson().toJsonTree(content).getAsJsonObject());
           return result;
         }
       }
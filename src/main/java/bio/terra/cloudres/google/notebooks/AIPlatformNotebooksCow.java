@@ -4,7 +4,11 @@ import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
+import bio.terra.cloudres.google.api.services.common.IamPolicyAccessor;
+import bio.terra.cloudres.google.api.services.common.ListPager;
 import bio.terra.cloudres.google.api.services.common.OperationCow;
+import bio.terra.cloudres.util.Serializers;
 import bio.terra.janitor.model.CloudResourceUid;
 import bio.terra.janitor.model.GoogleAiNotebookInstanceUid;
 import com.google.api.services.notebooks.v1.AIPlatformNotebooks;
@@ -23,10 +27,10 @@ import com.google.api.services.notebooks.v1.model.UpdateInstanceMetadataItemsReq
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.common.base.Preconditions;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Optional;
 import org.slf4j.Logger;
@@ -54,7 +58,7 @@ public class AIPlatformNotebooksCow {
     return new AIPlatformNotebooksCow(
         clientConfig,
         new AIPlatformNotebooks.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(
                     googleCredentials.createScoped(AIPlatformNotebooksScopes.all())))
@@ -137,7 +141,7 @@ public class AIPlatformNotebooksCow {
         JsonObject result = new JsonObject();
         InstanceName.fromParentAndId(create.getParent(), create.getInstanceId())
             .addProperties(result);
-        result.add("instance", new Gson().toJsonTree(instance));
+        result.add("instance", Serializers.gson().toJsonTree(instance));
         return result;
       }
     }
@@ -261,6 +265,14 @@ public class AIPlatformNotebooksCow {
         return this;
       }
 
+      /**
+       * Returns a {@link ListPager} over the instances of every page, starting from this request.
+       */
+      public ListPager<ListInstancesResponse, Instance> pager() {
+        return ListPager.create(
+            this, ListInstancesResponse::getInstances, ListInstancesResponse::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -271,6 +283,30 @@ public class AIPlatformNotebooksCow {
       }
     }
 
+    /**
+     * An {@link IamPolicyAccessor} for the policies of instances through this COW, e.g. for a
+     * {@link bio.terra.cloudres.google.api.services.common.IamPolicyMutator}.
+     */
+    public IamPolicyAccessor<InstanceName, Policy> iamPolicyAccessor() {
+      return new IamPolicyAccessor<>() {
+        @Override
+        public Policy getIamPolicy(InstanceName resource) throws IOException {
+          return Instances.this
+              .getIamPolicy(resource)
+              .setOptionsRequestedPolicyVersion(POLICY_VERSION)
+              .execute();
+        }
+
+        @Override
+        public Policy setIamPolicy(InstanceName resource, Policy policy) throws IOException {
+          return Instances.this
+              .setIamPolicy(
+                  resource, new SetIamPolicyRequest().setPolicy(policy.setVersion(POLICY_VERSION)))
+              .execute();
+        }
+      };
+    }
+
     /** See {@link AIPlatformNotebooks.Projects.Locations.Instances#getIamPolicy(String)} */
     public GetIamPolicy getIamPolicy(String resource) throws IOException {
       return new GetIamPolicy(instances.getIamPolicy(resource));
@@ -372,7 +408,8 @@ public class AIPlatformNotebooksCow {
         JsonObject result = new JsonObject();
         InstanceName.fromNameFormat(getResource()).addProperties(result);
         result.add(
-            "content", new Gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
+            "content",
+            Serializers.gson().toJsonTree(setIamPolicy.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
@@ -484,6 +521,20 @@ public class AIPlatformNotebooksCow {
       return new TestIamPermissions(instances.testIamPermissions(resource, content));
     }
 
+    /**
+     * An {@link IamPermissionTester} for instances through this COW, e.g. for a {@link
+     * bio.terra.cloudres.google.api.services.common.IamPermissionChecker}.
+     */
+    public IamPermissionTester<InstanceName> iamPermissionTester() {
+      return (resource, permissions) ->
+          IamPermissionTester.granted(
+              testIamPermissions(
+                      resource,
+                      new TestIamPermissionsRequest().setPermissions(new ArrayList<>(permissions)))
+                  .execute()
+                  .getPermissions());
+    }
+
     /**
      * Test the IAM permissoins of a service account with the {@link InstanceName}. See {@link
      * #testIamPermissions(String, TestIamPermissionsRequest)}.
@@ -527,7 +578,7 @@ public class AIPlatformNotebooksCow {
         InstanceName.fromNameFormat(getResource()).addProperties(result);
         result.add(
             "content",
-            new Gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
+            Serializers.gson().toJsonTree(testIamPermissions.getJsonContent()).getAsJsonObject());
         return result;
       }
     }
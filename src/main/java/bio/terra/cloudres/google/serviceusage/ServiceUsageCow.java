@@ -5,7 +5,9 @@ import bio.terra.cloudres.common.CloudOperation;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.google.api.services.common.AbstractRequestCow;
 import bio.terra.cloudres.google.api.services.common.Defaults;
+import bio.terra.cloudres.google.api.services.common.ListPager;
 import bio.terra.cloudres.google.api.services.common.OperationCow;
+import bio.terra.cloudres.util.Serializers;
 import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
 import com.google.api.services.serviceusage.v1beta1.ServiceUsage;
 import com.google.api.services.serviceusage.v1beta1.ServiceUsageScopes;
@@ -15,9 +17,9 @@ import com.google.api.services.serviceusage.v1beta1.model.ListConsumerOverridesR
 import com.google.api.services.serviceusage.v1beta1.model.ListServicesResponse;
 import com.google.api.services.serviceusage.v1beta1.model.Operation;
 import com.google.api.services.serviceusage.v1beta1.model.QuotaOverride;
+import com.google.api.services.serviceusage.v1beta1.model.Service;
 import com.google.auth.http.HttpCredentialsAdapter;
 import com.google.auth.oauth2.GoogleCredentials;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -45,7 +47,7 @@ public class ServiceUsageCow {
     return new ServiceUsageCow(
         clientConfig,
         new ServiceUsage.Builder(
-                Defaults.httpTransport(),
+                clientConfig.getHttpTransport(),
                 Defaults.jsonFactory(),
                 new HttpCredentialsAdapter(
                     googleCredentials.createScoped(ServiceUsageScopes.all())))
@@ -117,7 +119,7 @@ public class ServiceUsageCow {
           @Override
           protected JsonObject serialize() {
             JsonObject result = new JsonObject();
-            result.add("get", new Gson().toJsonTree(get));
+            result.add("get", Serializers.gson().toJsonTree(get));
             return result;
           }
         }
@@ -172,7 +174,7 @@ public class ServiceUsageCow {
             protected JsonObject serialize() {
               JsonObject result = new JsonObject();
               result.addProperty("parent", parent);
-              result.add("content", new Gson().toJsonTree(content));
+              result.add("content", Serializers.gson().toJsonTree(content));
               return result;
             }
 
@@ -209,11 +211,22 @@ public class ServiceUsageCow {
               this.parent = parent;
             }
 
+            /**
+             * Returns a {@link ListPager} over the quota overrides of every page, starting from
+             * this request.
+             */
+            public ListPager<ListConsumerOverridesResponse, QuotaOverride> pager() {
+              return ListPager.create(
+                  this,
+                  ListConsumerOverridesResponse::getOverrides,
+                  ListConsumerOverridesResponse::getNextPageToken);
+            }
+
             @Override
             protected JsonObject serialize() {
               var result = new JsonObject();
               result.addProperty("parent", parent);
-              result.add("list", new Gson().toJsonTree(list));
+              result.add("list", Serializers.gson().toJsonTree(list));
               return result;
             }
           }
@@ -246,7 +259,7 @@ public class ServiceUsageCow {
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
         result.addProperty("parent", batchEnable.getParent());
-        result.add("content", new Gson().toJsonTree(content));
+        result.add("content", Serializers.gson().toJsonTree(content));
         return result;
       }
     }
@@ -277,6 +290,14 @@ public class ServiceUsageCow {
         return this;
       }
 
+      /**
+       * Returns a {@link ListPager} over the services of every page, starting from this request.
+       */
+      public ListPager<ListServicesResponse, Service> pager() {
+        return ListPager.create(
+            this, ListServicesResponse::getServices, ListServicesResponse::getNextPageToken);
+      }
+
       @Override
       protected JsonObject serialize() {
         JsonObject result = new JsonObject();
@@ -14,7 +14,7 @@ import org.slf4j.LoggerFactory;
 
 /** A Cloud Object Wrapper(COW) for {@link Blob}. */
 public class BlobCow {
-  private final Logger logger = LoggerFactory.getLogger(BlobCow.class);
+  private static final Logger logger = LoggerFactory.getLogger(BlobCow.class);
 
   private final ClientConfig clientConfig;
   private final OperationAnnotator operationAnnotator;
@@ -22,7 +22,7 @@ public class BlobCow {
 
   BlobCow(ClientConfig clientConfig, Blob blob) {
     this.clientConfig = clientConfig;
-    this.operationAnnotator = new OperationAnnotator(clientConfig, logger);
+    this.operationAnnotator = OperationAnnotator.shared(clientConfig, logger);
     this.blob = blob;
   }
 
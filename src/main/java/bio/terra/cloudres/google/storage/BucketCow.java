@@ -14,14 +14,14 @@ import org.slf4j.LoggerFactory;
 
 /** A Cloud Object Wrapper(COW) for {@link Bucket}. */
 public class BucketCow {
-  private final Logger logger = LoggerFactory.getLogger(BucketCow.class);
+  private static final Logger logger = LoggerFactory.getLogger(BucketCow.class);
 
   private final ClientConfig clientConfig;
   private final OperationAnnotator operationAnnotator;
   private final Bucket bucket;
 
   BucketCow(ClientConfig clientConfig, Bucket bucket) {
-    this.operationAnnotator = new OperationAnnotator(clientConfig, logger);
+    this.operationAnnotator = OperationAnnotator.shared(clientConfig, logger);
     this.bucket = bucket;
     this.clientConfig = clientConfig;
   }
@@ -32,12 +32,24 @@ public class BucketCow {
 
   /** See {@link Bucket#list(Storage.BlobListOption...)} */
   public Page<BlobCow> list(Storage.BlobListOption... options) {
+    return list(TransformPage.Options.DEFAULT, options);
+  }
+
+  /**
+   * See {@link Bucket#list(Storage.BlobListOption...)}
+   *
+   * <p>{@code pageOptions} control how pages of {@link BlobCow}s are built and fetched, e.g. to
+   * build each page's {@link BlobCow}s once however many times it is iterated, or to fetch the next
+   * page in the background while iterating over a large bucket.
+   */
+  public Page<BlobCow> list(TransformPage.Options pageOptions, Storage.BlobListOption... options) {
     return new TransformPage<>(
         operationAnnotator.executeCowOperation(
             StorageOperation.GOOGLE_LIST_BLOB,
             () -> bucket.list(options),
             () -> convert(bucket.getName(), options)),
-        (Blob t) -> new BlobCow(clientConfig, t));
+        (Blob t) -> new BlobCow(clientConfig, t),
+        pageOptions);
   }
 
   /**
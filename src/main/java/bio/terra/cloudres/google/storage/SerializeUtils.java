@@ -1,6 +1,7 @@
 package bio.terra.cloudres.google.storage;
 
 import bio.terra.cloudres.util.SerializeHelper;
+import bio.terra.cloudres.util.Serializers;
 import bio.terra.janitor.model.CloudResourceUid;
 import bio.terra.janitor.model.GoogleBlobUid;
 import com.google.cloud.Policy;
@@ -39,7 +40,7 @@ public class SerializeUtils extends SerializeHelper {
   }
 
   static JsonObject convert(String bucketName, Storage.BlobListOption... options) {
-    Gson gson = createGson();
+    Gson gson = Serializers.javaTimeGson();
     JsonObject jsonObject = new JsonObject();
     jsonObject.add("bucketName", gson.toJsonTree(bucketName));
     jsonObject.add("blobListOption", gson.toJsonTree(options));
@@ -47,7 +48,7 @@ public class SerializeUtils extends SerializeHelper {
   }
 
   static JsonObject convert(BucketInfo bucketInfo, Storage.BucketTargetOption... options) {
-    Gson gson = createGson();
+    Gson gson = Serializers.javaTimeGson();
     JsonObject jsonObject = new JsonObject();
     jsonObject.add("bucketInfo", convertWithGson(bucketInfo, BucketInfo.class));
     jsonObject.add("bucketTargetOption", gson.toJsonTree(options));
@@ -3,6 +3,8 @@ package bio.terra.cloudres.google.storage;
 import bio.terra.cloudres.common.ClientConfig;
 import bio.terra.cloudres.common.OperationAnnotator;
 import bio.terra.cloudres.common.cleanup.CleanupRecorder;
+import bio.terra.cloudres.google.api.services.common.IamPermissionTester;
+import bio.terra.cloudres.google.api.services.common.IamPolicyAccessor;
 import bio.terra.janitor.model.CloudResourceUid;
 import bio.terra.janitor.model.GoogleBucketUid;
 import com.google.cloud.Policy;
@@ -12,7 +14,10 @@ import com.google.cloud.storage.Storage.BucketSourceOption;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -146,6 +151,25 @@ public class StorageCow {
         });
   }
 
+  /**
+   * An {@link IamPolicyAccessor} for the policies of buckets through this COW, e.g. for a {@link
+   * bio.terra.cloudres.google.api.services.common.IamPolicyMutator}. Resources are bucket names.
+   */
+  public IamPolicyAccessor<String, Policy> iamPolicyAccessor() {
+    return new IamPolicyAccessor<>() {
+      @Override
+      public Policy getIamPolicy(String bucket) {
+        return StorageCow.this.getIamPolicy(bucket, POLICY_VERSION);
+      }
+
+      @Override
+      public Policy setIamPolicy(String bucket, Policy policy) {
+        return StorageCow.this.setIamPolicy(
+            bucket, policy.toBuilder().setVersion(POLICY_VERSION).build());
+      }
+    };
+  }
+
   /** See {@link Storage#setIamPolicy(String, Policy, Storage.BucketSourceOption...)}. */
   public Policy setIamPolicy(String bucket, Policy policy) {
     return operationAnnotator.executeCowOperation(
@@ -167,6 +191,43 @@ public class StorageCow {
         () -> serializeBucketName(bucket));
   }
 
+  /**
+   * See {@link Storage#getIamPolicy(String, Storage.BucketSourceOption...)} with {@link
+   * BucketSourceOption#requestedPolicyVersion(long)}.
+   */
+  public Policy getIamPolicy(String bucket, int requestedPolicyVersion) {
+    return operationAnnotator.executeCowOperation(
+        StorageOperation.GOOGLE_GET_IAM_POLICY_BUCKET,
+        () ->
+            storage.getIamPolicy(
+                bucket, BucketSourceOption.requestedPolicyVersion(requestedPolicyVersion)),
+        () -> {
+          JsonObject request = new JsonObject();
+          request.add("bucket", serializeBucketName(bucket));
+          request.addProperty("requested_policy_version", requestedPolicyVersion);
+          return request;
+        });
+  }
+
+  /**
+   * An {@link IamPermissionTester} for buckets through this COW, e.g. for a {@link
+   * bio.terra.cloudres.google.api.services.common.IamPermissionChecker}. Resources are bucket
+   * names.
+   */
+  public IamPermissionTester<String> iamPermissionTester() {
+    return (bucket, permissions) -> {
+      List<String> tested = new ArrayList<>(permissions);
+      List<Boolean> results = testIamPermissions(bucket, tested);
+      Set<String> granted = new HashSet<>();
+      for (int i = 0; i < tested.size(); i++) {
+        if (results.get(i)) {
+          granted.add(tested.get(i));
+        }
+      }
+      return granted;
+    };
+  }
+
   /** See {@link Storage#testIamPermissions(String, List, BucketSourceOption...)}. */
   public List<Boolean> testIamPermissions(String bucket, List<String> permissions) {
     return operationAnnotator.executeCowOperation(
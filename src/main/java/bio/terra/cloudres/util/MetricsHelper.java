@@ -5,8 +5,12 @@ import com.google.common.annotations.VisibleForTesting;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.DoubleGauge;
+import io.opentelemetry.api.metrics.DoubleHistogram;
 import io.opentelemetry.api.metrics.LongCounter;
 import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
 import io.opentelemetry.sdk.metrics.Aggregation;
 import io.opentelemetry.sdk.metrics.View;
 import java.time.Duration;
@@ -14,6 +18,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
 
 /** Util class to hold common variable and method used by OpenCensus in tracing and stats. */
 public class MetricsHelper {
@@ -21,18 +29,64 @@ public class MetricsHelper {
   public static final String ERROR_COUNT_METER_NAME = CLOUD_RESOURCE_PREFIX + "/cloud/error";
   public static final String API_COUNT_METER_NAME = CLOUD_RESOURCE_PREFIX + "/cloud/api";
   public static final String LATENCY_METER_NAME = CLOUD_RESOURCE_PREFIX + "/cloud/latency";
+  public static final String CLEANUP_DROPPED_METER_NAME =
+      CLOUD_RESOURCE_PREFIX + "/cleanup/dropped";
+  public static final String RATE_LIMIT_WAIT_METER_NAME = CLOUD_RESOURCE_PREFIX + "/ratelimit/wait";
+  public static final String RATE_LIMIT_TOKENS_METER_NAME =
+      CLOUD_RESOURCE_PREFIX + "/ratelimit/tokens";
+  public static final String TRANSFER_BYTES_METER_NAME = CLOUD_RESOURCE_PREFIX + "/transfer/bytes";
+  public static final String TRANSFER_THROUGHPUT_METER_NAME =
+      CLOUD_RESOURCE_PREFIX + "/transfer/throughput";
+  public static final String CACHE_REQUEST_METER_NAME = CLOUD_RESOURCE_PREFIX + "/cache/request";
+  public static final String CACHE_STALE_METER_NAME = CLOUD_RESOURCE_PREFIX + "/cache/stale";
+  public static final String HTTP_POOL_CONNECTIONS_METER_NAME =
+      CLOUD_RESOURCE_PREFIX + "/http/pool/connections";
+
+  @VisibleForTesting
+  static final AttributeKey<String> KEY_CLIENT = AttributeKey.stringKey("client");
 
-  private static final AttributeKey<String> KEY_CLIENT = AttributeKey.stringKey("client");
   private static final AttributeKey<String> KEY_CLOUD_API = AttributeKey.stringKey("cloud_api");
   public static final AttributeKey<String> KEY_ERROR = AttributeKey.stringKey("error_code");
+
+  @VisibleForTesting
+  static final AttributeKey<String> KEY_RATE_LIMIT = AttributeKey.stringKey("rate_limit");
+
+  @VisibleForTesting static final AttributeKey<String> KEY_CACHE = AttributeKey.stringKey("cache");
+
+  @VisibleForTesting
+  static final AttributeKey<String> KEY_CACHE_RESULT = AttributeKey.stringKey("result");
+
+  @VisibleForTesting
+  static final AttributeKey<String> KEY_CONNECTION_STATE = AttributeKey.stringKey("state");
+
   /** Unit string for count. */
   private static final String COUNT = "1";
   /** Unit string for millisecond. */
   private static final String MILLISECOND = "ms";
+  /** Unit string for bytes. */
+  private static final String BYTE = "By";
+  /** Unit string for bytes per second. */
+  private static final String BYTES_PER_SECOND = "By/s";
 
   private final LongHistogram latencyHistogram;
   private final LongCounter apiCounter;
   private final LongCounter errorCounter;
+  private final LongCounter cleanupDroppedCounter;
+  private final LongHistogram rateLimitWaitHistogram;
+  private final DoubleGauge rateLimitTokensGauge;
+  private final LongCounter transferBytesCounter;
+  private final DoubleHistogram transferThroughputHistogram;
+  private final LongCounter cacheRequestCounter;
+  private final LongCounter cacheStaleCounter;
+  private final Meter meter;
+
+  /**
+   * Attributes for each client and operation, built on first use so that recording does not
+   * allocate. Both key sets are small: clients are usually fixed per service and operations are
+   * enum values.
+   */
+  private final ConcurrentMap<String, ConcurrentMap<CloudOperation, OperationAttributes>>
+      attributesCache = new ConcurrentHashMap<>();
 
   /**
    * This bucketing is our first pass guess at what might be interesting to see for latencies. It is
@@ -45,6 +99,13 @@ public class MetricsHelper {
               200.0, 300.0, 400.0, 500.0, 600.0, 700.0, 800.0, 900.0, 1000.0, 2000.0, 4000.0,
               8000.0, 16000.0, 32000.0, 64000.0));
 
+  /** Throughputs from 100 KB/s to 10 GB/s, in bytes per second. */
+  private static final Aggregation throughputDistribution =
+      Aggregation.explicitBucketHistogram(
+          List.of(
+              1e5, 2.5e5, 5e5, 1e6, 2.5e6, 5e6, 1e7, 2.5e7, 5e7, 1e8, 2.5e8, 5e8, 1e9, 2.5e9, 5e9,
+              1e10));
+
   private static final Aggregation countAggregation = Aggregation.sum();
 
   /**
@@ -54,7 +115,7 @@ public class MetricsHelper {
   @VisibleForTesting static final int GENERIC_UNKNOWN_ERROR_CODE = 1;
 
   public MetricsHelper(OpenTelemetry openTelemetry) {
-    var meter = openTelemetry.getMeter(MetricsHelper.class.getName());
+    meter = openTelemetry.getMeter(MetricsHelper.class.getName());
     latencyHistogram =
         meter
             .histogramBuilder(LATENCY_METER_NAME)
@@ -74,6 +135,49 @@ public class MetricsHelper {
             .setDescription("Number of errors")
             .setUnit(COUNT)
             .build();
+    cleanupDroppedCounter =
+        meter
+            .counterBuilder(CLEANUP_DROPPED_METER_NAME)
+            .setDescription("Number of resources not recorded for cleanup")
+            .setUnit(COUNT)
+            .build();
+    rateLimitWaitHistogram =
+        meter
+            .histogramBuilder(RATE_LIMIT_WAIT_METER_NAME)
+            .setDescription("Time cloud API calls waited for the client-side rate limit")
+            .setUnit(MILLISECOND)
+            .ofLongs()
+            .build();
+    rateLimitTokensGauge =
+        meter
+            .gaugeBuilder(RATE_LIMIT_TOKENS_METER_NAME)
+            .setDescription("Tokens left in a client-side rate limit")
+            .setUnit(COUNT)
+            .build();
+    transferBytesCounter =
+        meter
+            .counterBuilder(TRANSFER_BYTES_METER_NAME)
+            .setDescription("Bytes of object contents streamed to or from the cloud")
+            .setUnit(BYTE)
+            .build();
+    transferThroughputHistogram =
+        meter
+            .histogramBuilder(TRANSFER_THROUGHPUT_METER_NAME)
+            .setDescription("Throughput of object contents streamed to or from the cloud")
+            .setUnit(BYTES_PER_SECOND)
+            .build();
+    cacheRequestCounter =
+        meter
+            .counterBuilder(CACHE_REQUEST_METER_NAME)
+            .setDescription("Number of lookups in CRL's in-process caches of cloud responses")
+            .setUnit(COUNT)
+            .build();
+    cacheStaleCounter =
+        meter
+            .counterBuilder(CACHE_STALE_METER_NAME)
+            .setDescription("Number of cached cloud responses found to be out of date")
+            .setUnit(COUNT)
+            .build();
   }
 
   /**
@@ -84,8 +188,7 @@ public class MetricsHelper {
    * @param latency The API latency.
    */
   public void recordLatency(String client, CloudOperation method, Duration latency) {
-    latencyHistogram.record(
-        latency.toMillis(), Attributes.of(KEY_CLOUD_API, method.toString(), KEY_CLIENT, client));
+    latencyHistogram.record(latency.toMillis(), getAttributes(client, method).attributes);
   }
 
   /**
@@ -100,15 +203,7 @@ public class MetricsHelper {
    */
   public void recordError(String client, CloudOperation method, OptionalInt httpStatusCode) {
     int errorCode = httpStatusCode.orElse(GENERIC_UNKNOWN_ERROR_CODE);
-    errorCounter.add(
-        1,
-        Attributes.of(
-            KEY_CLOUD_API,
-            method.toString(),
-            KEY_CLIENT,
-            client,
-            KEY_ERROR,
-            String.valueOf(errorCode)));
+    errorCounter.add(1, getAttributes(client, method).errorAttributes(errorCode));
   }
 
   /**
@@ -120,7 +215,189 @@ public class MetricsHelper {
    * @param method The cloud api where error happens.
    */
   public void recordApiCount(String client, CloudOperation method) {
-    apiCounter.add(1, Attributes.of(KEY_CLOUD_API, method.toString(), KEY_CLIENT, client));
+    apiCounter.add(1, getAttributes(client, method).attributes);
+  }
+
+  /**
+   * Records a resource that was not published to Janitor because the cleanup queue was full.
+   *
+   * <p>This will be in path /cleanup/dropped with client as tag.
+   *
+   * @param client the client which use this library.
+   */
+  public void recordCleanupDropped(String client) {
+    cleanupDroppedCounter.add(1, Attributes.of(KEY_CLIENT, client));
+  }
+
+  /**
+   * Records how long a Cloud API call waited for the client-side rate limit before being sent.
+   *
+   * <p>This will be in path /ratelimit/wait with client and methodName as tags,
+   *
+   * @param client the client which use this library.
+   * @param method the cloud api
+   * @param wait the time waited, zero if the call was not throttled.
+   */
+  public void recordRateLimitWait(String client, CloudOperation method, Duration wait) {
+    rateLimitWaitHistogram.record(wait.toMillis(), getAttributes(client, method).attributes);
+  }
+
+  /**
+   * Records the tokens left in a client-side rate limit after a call took one.
+   *
+   * <p>This will be in path /ratelimit/tokens with client and rate limit as tags,
+   *
+   * @param client the client which use this library.
+   * @param rateLimit the name of the rate limit, e.g. the operation family.
+   * @param tokens the tokens left; negative when calls are waiting for tokens.
+   */
+  public void recordRateLimitTokens(String client, String rateLimit, double tokens) {
+    rateLimitTokensGauge.set(tokens, Attributes.of(KEY_CLIENT, client, KEY_RATE_LIMIT, rateLimit));
+  }
+
+  /**
+   * Records the bytes of object contents streamed to or from the cloud.
+   *
+   * <p>This will be in path /transfer/bytes with client and methodName as tags,
+   *
+   * @param client the client which use this library.
+   * @param method the cloud api that read or wrote the contents.
+   * @param bytes the number of bytes streamed.
+   */
+  public void recordTransferBytes(String client, CloudOperation method, long bytes) {
+    transferBytesCounter.add(bytes, getAttributes(client, method).attributes);
+  }
+
+  /**
+   * Records the throughput of one stream of object contents to or from the cloud.
+   *
+   * <p>This will be in path /transfer/throughput with client and methodName as tags,
+   *
+   * @param client the client which use this library.
+   * @param method the cloud api that read or wrote the contents.
+   * @param bytesPerSecond the bytes streamed over the time the stream was open.
+   */
+  public void recordTransferThroughput(
+      String client, CloudOperation method, double bytesPerSecond) {
+    transferThroughputHistogram.record(bytesPerSecond, getAttributes(client, method).attributes);
+  }
+
+  /**
+   * Records a lookup in one of CRL's in-process caches of cloud responses.
+   *
+   * <p>This will be in path /cache/request with client, cache and result ("hit" or "miss") as tags,
+   *
+   * @param client the client which use this library.
+   * @param cache the name of the cache.
+   * @param hit whether the value was found in the cache, rather than fetched from the cloud.
+   */
+  public void recordCacheRequest(String client, String cache, boolean hit) {
+    cacheRequestCounter.add(
+        1,
+        Attributes.of(
+            KEY_CLIENT, client, KEY_CACHE, cache, KEY_CACHE_RESULT, hit ? "hit" : "miss"));
+  }
+
+  /**
+   * Records a cached cloud response that was found to be out of date, i.e. that the cloud had
+   * changed while it was cached.
+   *
+   * <p>This will be in path /cache/stale with client and cache as tags.
+   *
+   * @param client the client which use this library.
+   * @param cache the name of the cache.
+   */
+  public void recordCacheStale(String client, String cache) {
+    cacheStaleCounter.add(1, Attributes.of(KEY_CLIENT, client, KEY_CACHE, cache));
+  }
+
+  /**
+   * Reports the connections of an HTTP connection pool each time metrics are collected, until the
+   * returned handle is closed.
+   *
+   * <p>This will be in path /http/pool/connections with client and state ("leased", "idle" or
+   * "pending", for requests waiting for a connection) as tags,
+   *
+   * @param client the client which use this library.
+   * @param leased the number of connections in use.
+   * @param idle the number of open connections available for reuse.
+   * @param pending the number of requests waiting for a connection.
+   * @return a handle that stops reporting the pool when closed.
+   */
+  public ObservableLongGauge registerHttpConnectionPool(
+      String client, LongSupplier leased, LongSupplier idle, LongSupplier pending) {
+    Attributes leasedAttributes = Attributes.of(KEY_CLIENT, client, KEY_CONNECTION_STATE, "leased");
+    Attributes idleAttributes = Attributes.of(KEY_CLIENT, client, KEY_CONNECTION_STATE, "idle");
+    Attributes pendingAttributes =
+        Attributes.of(KEY_CLIENT, client, KEY_CONNECTION_STATE, "pending");
+    return meter
+        .gaugeBuilder(HTTP_POOL_CONNECTIONS_METER_NAME)
+        .setDescription("Connections in CRL's HTTP connection pools, by state")
+        .setUnit(COUNT)
+        .ofLongs()
+        .buildWithCallback(
+            measurement -> {
+              measurement.record(leased.getAsLong(), leasedAttributes);
+              measurement.record(idle.getAsLong(), idleAttributes);
+              measurement.record(pending.getAsLong(), pendingAttributes);
+            });
+  }
+
+  private OperationAttributes getAttributes(String client, CloudOperation method) {
+    // Try a plain get first: computeIfAbsent with a capturing lambda allocates even on a hit.
+    ConcurrentMap<CloudOperation, OperationAttributes> byOperation = attributesCache.get(client);
+    if (byOperation == null) {
+      byOperation = attributesCache.computeIfAbsent(client, c -> new ConcurrentHashMap<>());
+    }
+    OperationAttributes attributes = byOperation.get(method);
+    if (attributes == null) {
+      attributes = byOperation.computeIfAbsent(method, m -> new OperationAttributes(client, m));
+    }
+    return attributes;
+  }
+
+  /** The {@link Attributes} recorded for one client and operation. */
+  private static class OperationAttributes {
+    /** Error attributes are cached for codes below this, which covers all HTTP status codes. */
+    private static final int MAX_CACHED_ERROR_CODE = 600;
+
+    private final Attributes attributes;
+    /**
+     * Error attributes indexed by code, allocated on the operation's first error so that operations
+     * that never fail do not pay for it. Indexing by code keeps lookups allocation-free.
+     */
+    private volatile AtomicReferenceArray<Attributes> errorAttributesByCode;
+
+    private OperationAttributes(String client, CloudOperation method) {
+      this.attributes = Attributes.of(KEY_CLOUD_API, method.toString(), KEY_CLIENT, client);
+    }
+
+    private Attributes errorAttributes(int errorCode) {
+      if (errorCode < 0 || errorCode >= MAX_CACHED_ERROR_CODE) {
+        return buildErrorAttributes(errorCode);
+      }
+      AtomicReferenceArray<Attributes> byCode = errorAttributesByCode;
+      if (byCode == null) {
+        synchronized (this) {
+          byCode = errorAttributesByCode;
+          if (byCode == null) {
+            byCode = new AtomicReferenceArray<>(MAX_CACHED_ERROR_CODE);
+            errorAttributesByCode = byCode;
+          }
+        }
+      }
+      Attributes errorAttributes = byCode.get(errorCode);
+      if (errorAttributes == null) {
+        // Racing threads may both build these; either result is equivalent.
+        errorAttributes = buildErrorAttributes(errorCode);
+        byCode.set(errorCode, errorAttributes);
+      }
+      return errorAttributes;
+    }
+
+    private Attributes buildErrorAttributes(int errorCode) {
+      return attributes.toBuilder().put(KEY_ERROR, String.valueOf(errorCode)).build();
+    }
   }
 
   public static Map<String, View> getMetricsViews() {
@@ -146,13 +423,75 @@ public class MetricsHelper {
             .setAttributeFilter(
                 Set.of(KEY_ERROR.getKey(), KEY_CLOUD_API.getKey(), KEY_CLIENT.getKey()))
             .build();
+    var cleanupDroppedView =
+        View.builder()
+            .setName(CLEANUP_DROPPED_METER_NAME)
+            .setDescription("The number of resources not recorded for cleanup")
+            .setAggregation(countAggregation)
+            .setAttributeFilter(Set.of(KEY_CLIENT.getKey()))
+            .build();
+    var rateLimitWaitView =
+        View.builder()
+            .setName(RATE_LIMIT_WAIT_METER_NAME)
+            .setDescription("The distribution of waits for client-side rate limits")
+            .setAggregation(latencyDistribution)
+            .setAttributeFilter(Set.of(KEY_CLIENT.getKey(), KEY_CLOUD_API.getKey()))
+            .build();
+    var rateLimitTokensView =
+        View.builder()
+            .setName(RATE_LIMIT_TOKENS_METER_NAME)
+            .setDescription("The tokens left in client-side rate limits")
+            .setAggregation(Aggregation.lastValue())
+            .setAttributeFilter(Set.of(KEY_CLIENT.getKey(), KEY_RATE_LIMIT.getKey()))
+            .build();
+    var transferBytesView =
+        View.builder()
+            .setName(TRANSFER_BYTES_METER_NAME)
+            .setDescription("The bytes of object contents streamed")
+            .setAggregation(countAggregation)
+            .setAttributeFilter(Set.of(KEY_CLIENT.getKey(), KEY_CLOUD_API.getKey()))
+            .build();
+    var transferThroughputView =
+        View.builder()
+            .setName(TRANSFER_THROUGHPUT_METER_NAME)
+            .setDescription("The distribution of object streaming throughputs")
+            .setAggregation(throughputDistribution)
+            .setAttributeFilter(Set.of(KEY_CLIENT.getKey(), KEY_CLOUD_API.getKey()))
+            .build();
+    var cacheRequestView =
+        View.builder()
+            .setName(CACHE_REQUEST_METER_NAME)
+            .setDescription("The number of cache lookups, by result")
+            .setAggregation(countAggregation)
+            .setAttributeFilter(
+                Set.of(KEY_CLIENT.getKey(), KEY_CACHE.getKey(), KEY_CACHE_RESULT.getKey()))
+            .build();
+    var cacheStaleView =
+        View.builder()
+            .setName(CACHE_STALE_METER_NAME)
+            .setDescription("The number of cached responses found to be out of date")
+            .setAggregation(countAggregation)
+            .setAttributeFilter(Set.of(KEY_CLIENT.getKey(), KEY_CACHE.getKey()))
+            .build();
+    var httpPoolConnectionsView =
+        View.builder()
+            .setName(HTTP_POOL_CONNECTIONS_METER_NAME)
+            .setDescription("The connections in HTTP connection pools, by state")
+            .setAggregation(Aggregation.lastValue())
+            .setAttributeFilter(Set.of(KEY_CLIENT.getKey(), KEY_CONNECTION_STATE.getKey()))
+            .build();
 
-    return Map.of(
-        LATENCY_METER_NAME,
-        latencyView,
-        API_COUNT_METER_NAME,
-        apiView,
-        ERROR_COUNT_METER_NAME,
-        errorView);
+    return Map.ofEntries(
+        Map.entry(LATENCY_METER_NAME, latencyView),
+        Map.entry(API_COUNT_METER_NAME, apiView),
+        Map.entry(ERROR_COUNT_METER_NAME, errorView),
+        Map.entry(CLEANUP_DROPPED_METER_NAME, cleanupDroppedView),
+        Map.entry(RATE_LIMIT_WAIT_METER_NAME, rateLimitWaitView),
+        Map.entry(RATE_LIMIT_TOKENS_METER_NAME, rateLimitTokensView),
+        Map.entry(TRANSFER_BYTES_METER_NAME, transferBytesView),
+        Map.entry(TRANSFER_THROUGHPUT_METER_NAME, transferThroughputView),
+        Map.entry(CACHE_REQUEST_METER_NAME, cacheRequestView),
+        Map.entry(CACHE_STALE_METER_NAME, cacheStaleView),
+        Map.entry(HTTP_POOL_CONNECTIONS_METER_NAME, httpPoolConnectionsView));
   }
 }
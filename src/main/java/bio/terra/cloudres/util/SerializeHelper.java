@@ -1,9 +1,7 @@
 package bio.terra.cloudres.util;
 
-import com.fatboyindustrial.gsonjavatime.Converters;
 import com.google.gson.*;
 import java.lang.reflect.Type;
-import java.time.Duration;
 
 /** Utils for serializing {@link com.google.cloud} objects. */
 public class SerializeHelper {
@@ -14,15 +12,17 @@ public class SerializeHelper {
    * Gson.
    */
   public static <R> JsonObject convertWithGson(R r, Type t) {
-    return createGson().toJsonTree(r, t).getAsJsonObject();
+    return Serializers.javaTimeGson().toJsonTree(r, t).getAsJsonObject();
   }
 
+  /**
+   * Returns the shared {@link Gson} used by {@link #convertWithGson}. The instance is immutable and
+   * thread-safe, so it is no longer created per call.
+   *
+   * @deprecated use {@link Serializers#javaTimeGson()}.
+   */
+  @Deprecated
   public static Gson createGson() {
-    return Converters.registerAll(new GsonBuilder())
-        .registerTypeAdapter(
-            Duration.class,
-            (JsonSerializer<Duration>)
-                (src, typeOfSrc, context) -> new JsonPrimitive(src.toMillis()))
-        .create();
+    return Serializers.javaTimeGson();
   }
 }
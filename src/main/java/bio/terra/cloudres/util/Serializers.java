@@ -0,0 +1,66 @@
+package bio.terra.cloudres.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fatboyindustrial.gsonjavatime.Converters;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import java.time.Duration;
+
+/**
+ * Shared serializers used by CRL for logging and Janitor messages.
+ *
+ * <p>{@link Gson} and Jackson's {@link ObjectWriter} are immutable and thread-safe once built, and
+ * each instance caches the type adapters it derives for the types it has seen. Building them (and
+ * re-deriving those adapters) is expensive relative to serializing a single request, so each
+ * configuration is built once here and shared, rather than built per request.
+ */
+public class Serializers {
+  private Serializers() {}
+
+  private static final Gson GSON = new Gson();
+
+  private static final Gson JAVA_TIME_GSON =
+      Converters.registerAll(new GsonBuilder())
+          .registerTypeAdapter(
+              Duration.class,
+              (JsonSerializer<Duration>)
+                  (src, typeOfSrc, context) -> new JsonPrimitive(src.toMillis()))
+          .create();
+
+  private static final ObjectWriter JANITOR_WRITER =
+      new ObjectMapper()
+          .registerModule(new Jdk8Module())
+          .registerModule(new JavaTimeModule())
+          .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+          .writer();
+
+  /**
+   * A {@link Gson} with the default configuration, i.e. equivalent to {@code new Gson()}. Used for
+   * {@code com.google.api.services} model objects.
+   */
+  public static Gson gson() {
+    return GSON;
+  }
+
+  /**
+   * A {@link Gson} that also handles {@code java.time} types, with {@link Duration}s written as
+   * milliseconds. Used for {@code com.google.cloud} objects.
+   */
+  public static Gson javaTimeGson() {
+    return JAVA_TIME_GSON;
+  }
+
+  /**
+   * A Jackson {@link ObjectWriter} for Janitor client models, with {@code java.time} support and
+   * dates written as ISO-8601 strings.
+   */
+  public static ObjectWriter janitorWriter() {
+    return JANITOR_WRITER;
+  }
+}
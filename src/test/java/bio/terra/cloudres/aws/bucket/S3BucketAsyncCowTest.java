@@ -0,0 +1,176 @@
+package bio.terra.cloudres.aws.bucket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import bio.terra.cloudres.common.ClientConfig;
+import com.google.gson.JsonObject;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.transfer.s3.S3TransferManager;
+import software.amazon.awssdk.transfer.s3.model.CompletedFileDownload;
+import software.amazon.awssdk.transfer.s3.model.CompletedFileUpload;
+import software.amazon.awssdk.transfer.s3.model.DownloadFileRequest;
+import software.amazon.awssdk.transfer.s3.model.FileDownload;
+import software.amazon.awssdk.transfer.s3.model.FileUpload;
+import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
+
+/**
+ * Unit tests for {@link S3BucketAsyncCow}. Like {@link S3BucketCowTest}, these validate CRL
+ * behavior with mocked AWS clients rather than calling out to live AWS environments.
+ */
+@Tag("unit")
+public class S3BucketAsyncCowTest {
+
+  private S3BucketAsyncCow bucketCow;
+
+  private final S3AsyncClient mockS3Client = mock(S3AsyncClient.class);
+  private final S3TransferManager mockTransferManager = mock(S3TransferManager.class);
+  private final Logger mockLogger = mock(Logger.class);
+  private final String fakeBucketName = "fakeBucketName";
+  private final String fakeObjectPath = "fake/path/to/object";
+  private final Path fakeFile = Path.of("/tmp/fake/file");
+  private final List<software.amazon.awssdk.services.s3.model.Tag> defaultTags =
+      List.of(
+          software.amazon.awssdk.services.s3.model.Tag.builder().key("foo").value("bar").build());
+
+  @BeforeEach
+  public void setupMocks() {
+    ClientConfig unitTestConfig =
+        ClientConfig.Builder.newBuilder().setClient("S3BucketAsyncCowTest").build();
+    S3BucketAsyncCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
+    bucketCow = new S3BucketAsyncCow(unitTestConfig, mockS3Client, mockTransferManager);
+  }
+
+  @Test
+  public void getBlobMetadataTest() {
+    HeadObjectResponse response = HeadObjectResponse.builder().contentLength(42L).build();
+    when(mockS3Client.headObject((HeadObjectRequest) any()))
+        .thenReturn(CompletableFuture.completedFuture(response));
+
+    assertSame(response, bucketCow.getBlobMetadata(fakeBucketName, fakeObjectPath).join());
+
+    JsonObject json = loggedJson();
+    assertEquals(
+        bucketCow.serialize(fakeBucketName, fakeObjectPath), json.getAsJsonObject("requestData"));
+    assertEquals(
+        S3BucketOperation.AWS_HEAD_S3_OBJECT.toString(), json.get("operation").getAsString());
+  }
+
+  @Test
+  public void getBlobMetadataFailureTest() {
+    S3Exception notFound = (S3Exception) S3Exception.builder().statusCode(404).build();
+    when(mockS3Client.headObject((HeadObjectRequest) any()))
+        .thenReturn(CompletableFuture.failedFuture(notFound));
+
+    CompletionException e =
+        assertThrows(
+            CompletionException.class,
+            () -> bucketCow.getBlobMetadata(fakeBucketName, fakeObjectPath).join());
+
+    assertSame(notFound, e.getCause());
+    ArgumentCaptor<JsonObject> gsonArgumentCaptor = ArgumentCaptor.forClass(JsonObject.class);
+    verify(mockLogger).debug(any(String.class), gsonArgumentCaptor.capture(), any());
+    assertEquals(404, gsonArgumentCaptor.getValue().get("httpStatusCode").getAsInt());
+  }
+
+  @Test
+  public void putBlobTest() {
+    AsyncRequestBody requestBody = AsyncRequestBody.fromString("thisIsABlob");
+    when(mockS3Client.putObject((PutObjectRequest) any(), (AsyncRequestBody) any()))
+        .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+    bucketCow.putBlob(fakeBucketName, fakeObjectPath, defaultTags, requestBody).join();
+
+    ArgumentCaptor<PutObjectRequest> requestCaptor =
+        ArgumentCaptor.forClass(PutObjectRequest.class);
+    verify(mockS3Client).putObject(requestCaptor.capture(), (AsyncRequestBody) any());
+    assertEquals(fakeObjectPath, requestCaptor.getValue().key());
+    assertEquals("foo=bar", requestCaptor.getValue().tagging());
+    JsonObject json = loggedJson();
+    assertEquals(
+        bucketCow.serialize(fakeBucketName, fakeObjectPath, defaultTags, requestBody),
+        json.getAsJsonObject("requestData"));
+    assertEquals(11, json.getAsJsonObject("requestData").get("contentLength").getAsLong());
+    assertEquals(
+        S3BucketOperation.AWS_CREATE_S3_OBJECT.toString(), json.get("operation").getAsString());
+  }
+
+  @Test
+  public void uploadFileTest() {
+    FileUpload upload = mock(FileUpload.class);
+    CompletedFileUpload completed =
+        CompletedFileUpload.builder().response(PutObjectResponse.builder().build()).build();
+    when(upload.completionFuture()).thenReturn(CompletableFuture.completedFuture(completed));
+    when(mockTransferManager.uploadFile((UploadFileRequest) any())).thenReturn(upload);
+
+    assertSame(
+        completed,
+        bucketCow.uploadFile(fakeBucketName, fakeObjectPath, defaultTags, fakeFile).join());
+
+    ArgumentCaptor<UploadFileRequest> requestCaptor =
+        ArgumentCaptor.forClass(UploadFileRequest.class);
+    verify(mockTransferManager).uploadFile(requestCaptor.capture());
+    assertEquals(fakeFile, requestCaptor.getValue().source());
+    assertEquals(fakeBucketName, requestCaptor.getValue().putObjectRequest().bucket());
+    JsonObject json = loggedJson();
+    assertEquals(
+        bucketCow.serialize(fakeBucketName, fakeObjectPath, defaultTags, fakeFile),
+        json.getAsJsonObject("requestData"));
+    assertEquals(
+        S3BucketOperation.AWS_UPLOAD_S3_OBJECT.toString(), json.get("operation").getAsString());
+  }
+
+  @Test
+  public void downloadFileTest() {
+    FileDownload download = mock(FileDownload.class);
+    CompletableFuture<CompletedFileDownload> pending = new CompletableFuture<>();
+    when(download.completionFuture()).thenReturn(pending);
+    when(mockTransferManager.downloadFile((DownloadFileRequest) any())).thenReturn(download);
+
+    CompletableFuture<CompletedFileDownload> result =
+        bucketCow.downloadFile(fakeBucketName, fakeObjectPath, fakeFile);
+
+    // Nothing is logged until the download completes.
+    verify(mockLogger, never()).debug(any(String.class), any(Object.class));
+    pending.complete(
+        CompletedFileDownload.builder().response(GetObjectResponse.builder().build()).build());
+    result.join();
+    JsonObject json = loggedJson();
+    assertEquals(
+        bucketCow.serialize(fakeBucketName, fakeObjectPath, fakeFile),
+        json.getAsJsonObject("requestData"));
+    assertTrue(json.getAsJsonObject("requestData").has("destination"));
+    assertEquals(
+        S3BucketOperation.AWS_DOWNLOAD_S3_OBJECT.toString(), json.get("operation").getAsString());
+  }
+
+  private JsonObject loggedJson() {
+    ArgumentCaptor<JsonObject> gsonArgumentCaptor = ArgumentCaptor.forClass(JsonObject.class);
+    verify(mockLogger).debug(any(String.class), gsonArgumentCaptor.capture());
+    return gsonArgumentCaptor.getValue();
+  }
+}
@@ -2,18 +2,32 @@ package bio.terra.cloudres.aws.bucket;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.util.MetricsHelper;
 import com.google.gson.JsonObject;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -22,12 +36,28 @@ import org.mockito.Mock;
 import org.slf4j.Logger;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 /**
  * Note: For AWS APIs, we do not significantly modify the API surface, we just decorate with useful
@@ -42,6 +72,8 @@ public class S3BucketCowTest {
 
   @Mock private S3Client mockS3Client = mock(S3Client.class);
   @Mock private Logger mockLogger = mock(Logger.class);
+  private final MetricsHelper mockMetricsHelper = mock(MetricsHelper.class);
+  private static final String CLIENT_NAME = "S3BucketCowTest";
   private final String fakeBucketName = "fakeBucketName";
   private final String fakeObjectPath = "fake/path/to/object";
   private final List<software.amazon.awssdk.services.s3.model.Tag> defaultTags =
@@ -55,8 +87,12 @@ public class S3BucketCowTest {
   @BeforeEach
   public void setupMocks() {
     ClientConfig unitTestConfig =
-        ClientConfig.Builder.newBuilder().setClient("S3BucketCowTest").build();
+        ClientConfig.Builder.newBuilder()
+            .setClient(CLIENT_NAME)
+            .setMetricsHelper(mockMetricsHelper)
+            .build();
     S3BucketCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
     bucketCow = new S3BucketCow(unitTestConfig, mockS3Client);
   }
 
@@ -129,6 +165,8 @@ public class S3BucketCowTest {
     S3Object mockObject = mock(S3Object.class);
     when(mockResponse.contents()).thenReturn(List.of(mockObject));
     when(mockS3Client.listObjectsV2((ListObjectsV2Request) any())).thenReturn(mockResponse);
+    when(mockS3Client.deleteObjects((DeleteObjectsRequest) any()))
+        .thenReturn(DeleteObjectsResponse.builder().build());
 
     bucketCow.deleteFolder(fakeBucketName, fakeObjectPath);
     // Expect one AWS call to list objects with a prefix and one call to delete them.
@@ -158,6 +196,133 @@ public class S3BucketCowTest {
         secondJson.get("operation").getAsString());
   }
 
+  @Test
+  public void deleteFolderFollowsContinuationTokens() {
+    String folderKey = fakeObjectPath + "/";
+    // 2500 objects on the first page, then 700 on the second.
+    when(mockS3Client.listObjectsV2((ListObjectsV2Request) any()))
+        .thenReturn(listPage(0, 2500, "page2"))
+        .thenReturn(listPage(2500, 700, null));
+    when(mockS3Client.deleteObjects((DeleteObjectsRequest) any()))
+        .thenAnswer(invocation -> deletedAll(invocation.getArgument(0)));
+
+    DeleteFolderReport report = bucketCow.deleteFolder(fakeBucketName, fakeObjectPath, 2);
+
+    assertEquals(3200, report.deletedCount());
+    assertTrue(report.isSuccessful());
+    ArgumentCaptor<ListObjectsV2Request> listCaptor =
+        ArgumentCaptor.forClass(ListObjectsV2Request.class);
+    verify(mockS3Client, times(2)).listObjectsV2(listCaptor.capture());
+    assertNull(listCaptor.getAllValues().get(0).continuationToken());
+    assertEquals("page2", listCaptor.getAllValues().get(1).continuationToken());
+    ArgumentCaptor<DeleteObjectsRequest> deleteCaptor =
+        ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+    verify(mockS3Client, times(4)).deleteObjects(deleteCaptor.capture());
+    Set<String> deletedKeys = new HashSet<>();
+    for (DeleteObjectsRequest request : deleteCaptor.getAllValues()) {
+      assertEquals(fakeBucketName, request.bucket());
+      assertTrue(request.delete().objects().size() <= S3BucketCow.MAX_RESULTS_PER_REQUEST_S3);
+      request.delete().objects().forEach(o -> deletedKeys.add(o.key()));
+    }
+    assertEquals(3200, deletedKeys.size());
+    assertTrue(deletedKeys.stream().allMatch(key -> key.startsWith(folderKey)));
+  }
+
+  @Test
+  public void deleteFolderRunsOnTheGivenExecutor() {
+    when(mockS3Client.listObjectsV2((ListObjectsV2Request) any()))
+        .thenReturn(listPage(0, 1500, null));
+    when(mockS3Client.deleteObjects((DeleteObjectsRequest) any()))
+        .thenAnswer(invocation -> deletedAll(invocation.getArgument(0)));
+    AtomicInteger tasks = new AtomicInteger();
+
+    DeleteFolderReport report =
+        bucketCow.deleteFolder(
+            fakeBucketName,
+            fakeObjectPath,
+            2,
+            task -> {
+              tasks.incrementAndGet();
+              task.run();
+            });
+
+    assertEquals(1500, report.deletedCount());
+    assertEquals(2, tasks.get());
+  }
+
+  @Test
+  public void deleteFolderReportsPerKeyErrors() {
+    when(mockS3Client.listObjectsV2((ListObjectsV2Request) any()))
+        .thenReturn(listPage(0, 1500, null));
+    S3Error accessDenied =
+        S3Error.builder().key("denied").code("AccessDenied").message("Access Denied").build();
+    when(mockS3Client.deleteObjects((DeleteObjectsRequest) any()))
+        .thenAnswer(
+            invocation ->
+                deletedAll(invocation.getArgument(0)).toBuilder().errors(accessDenied).build());
+
+    DeleteFolderReport report = bucketCow.deleteFolder(fakeBucketName, fakeObjectPath);
+
+    assertFalse(report.isSuccessful());
+    assertEquals(List.of(accessDenied, accessDenied), report.errors());
+    assertEquals(1500, report.deletedCount());
+  }
+
+  @Test
+  public void deleteFolderStopsAfterBatchFailure() {
+    when(mockS3Client.listObjectsV2((ListObjectsV2Request) any()))
+        .thenReturn(listPage(0, 1000, "page2"))
+        .thenReturn(listPage(1000, 1000, null));
+    S3Exception throttled = (S3Exception) S3Exception.builder().statusCode(503).build();
+    when(mockS3Client.deleteObjects((DeleteObjectsRequest) any())).thenThrow(throttled);
+
+    S3Exception thrown =
+        assertThrows(
+            S3Exception.class, () -> bucketCow.deleteFolder(fakeBucketName, fakeObjectPath, 1));
+
+    assertSame(throttled, thrown);
+    // With one batch in flight, the failed first batch stops the second from being sent.
+    verify(mockS3Client, times(1)).deleteObjects((DeleteObjectsRequest) any());
+  }
+
+  /**
+   * Returns a listing page of {@code count} objects in the fake folder, numbered from {@code
+   * first}.
+   */
+  private ListObjectsV2Response listPage(int first, int count, String nextContinuationToken) {
+    List<S3Object> objects = new ArrayList<>();
+    for (int i = first; i < first + count; i++) {
+      objects.add(S3Object.builder().key(fakeObjectPath + "/object" + i).build());
+    }
+    return ListObjectsV2Response.builder()
+        .contents(objects)
+        .nextContinuationToken(nextContinuationToken)
+        .build();
+  }
+
+  private static DeleteObjectsResponse deletedAll(DeleteObjectsRequest request) {
+    return DeleteObjectsResponse.builder()
+        .deleted(
+            request.delete().objects().stream()
+                .map(o -> DeletedObject.builder().key(o.key()).build())
+                .collect(Collectors.toList()))
+        .build();
+  }
+
+  @Test
+  public void getBlobMetadataTest() {
+    HeadObjectResponse response = HeadObjectResponse.builder().contentLength(10L).build();
+    when(mockS3Client.headObject((HeadObjectRequest) any())).thenReturn(response);
+
+    assertSame(response, bucketCow.getBlobMetadata(fakeBucketName, fakeObjectPath));
+    verify(mockS3Client, never()).getObject((GetObjectRequest) any());
+    ArgumentCaptor<JsonObject> gsonArgumentCaptor = ArgumentCaptor.forClass(JsonObject.class);
+    verify(mockLogger).debug(any(), gsonArgumentCaptor.capture());
+    assertEquals(
+        S3BucketOperation.AWS_HEAD_S3_OBJECT.toString(),
+        gsonArgumentCaptor.getValue().get("operation").getAsString());
+  }
+
   @Test
   public void getBlobTest() throws IOException {
     ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
@@ -170,6 +335,8 @@ public class S3BucketCowTest {
     when(mockS3Client.getObject((GetObjectRequest) any())).thenReturn(mockResponseStream);
 
     bucketCow.getBlob(fakeBucketName, fakeObjectPath);
+    // The contents are not drained to reuse the connection.
+    verify(mockResponseStream).abort();
     verify(mockLogger).debug(stringArgumentCaptor.capture(), gsonArgumentCaptor.capture());
     JsonObject json = gsonArgumentCaptor.getValue();
     JsonObject serializedRequest = bucketCow.serialize(fakeBucketName, fakeObjectPath);
@@ -178,6 +345,113 @@ public class S3BucketCowTest {
         S3BucketOperation.AWS_GET_S3_OBJECT.toString(), json.get("operation").getAsString());
   }
 
+  @Test
+  public void getBlobStreamRangeTest() throws IOException {
+    byte[] contents = "0123456789".getBytes(StandardCharsets.UTF_8);
+    when(mockS3Client.getObject((GetObjectRequest) any()))
+        .thenReturn(
+            new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength(4L).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(contents, 2, 4))));
+
+    try (InputStream stream = bucketCow.getBlobStream(fakeBucketName, fakeObjectPath, 2, 4)) {
+      assertEquals("2345", new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+      // Bytes are recorded when the stream is closed.
+      verify(mockMetricsHelper, never()).recordTransferBytes(any(), any(), anyLong());
+    }
+
+    ArgumentCaptor<GetObjectRequest> requestCaptor =
+        ArgumentCaptor.forClass(GetObjectRequest.class);
+    verify(mockS3Client).getObject(requestCaptor.capture());
+    assertEquals("bytes=2-5", requestCaptor.getValue().range());
+    verify(mockMetricsHelper)
+        .recordTransferBytes(CLIENT_NAME, S3BucketOperation.AWS_GET_S3_OBJECT, 4L);
+    ArgumentCaptor<JsonObject> gsonArgumentCaptor = ArgumentCaptor.forClass(JsonObject.class);
+    verify(mockLogger).debug(any(String.class), gsonArgumentCaptor.capture());
+    assertEquals(
+        bucketCow.serialize(fakeBucketName, fakeObjectPath, "bytes=2-5"),
+        gsonArgumentCaptor.getValue().getAsJsonObject("requestData"));
+  }
+
+  @Test
+  public void putBlobStreamSmallObjectTest() throws IOException {
+    byte[] contents = "thisIsABlob".getBytes(StandardCharsets.UTF_8);
+
+    bucketCow.putBlob(
+        fakeBucketName, fakeObjectPath, defaultTags, new ByteArrayInputStream(contents));
+
+    // An object smaller than a part is written with a single request.
+    verify(mockS3Client).putObject((PutObjectRequest) any(), (RequestBody) any());
+    verify(mockS3Client, never()).createMultipartUpload((CreateMultipartUploadRequest) any());
+    verify(mockMetricsHelper)
+        .recordTransferBytes(CLIENT_NAME, S3BucketOperation.AWS_CREATE_S3_OBJECT, 11L);
+  }
+
+  @Test
+  public void putBlobStreamMultipartTest() throws IOException {
+    int partSize = S3BucketCow.MIN_UPLOAD_PART_SIZE;
+    byte[] contents = new byte[2 * partSize + 100];
+    when(mockS3Client.createMultipartUpload((CreateMultipartUploadRequest) any()))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(mockS3Client.uploadPart((UploadPartRequest) any(), (RequestBody) any()))
+        .thenAnswer(
+            invocation ->
+                UploadPartResponse.builder()
+                    .eTag("etag" + ((UploadPartRequest) invocation.getArgument(0)).partNumber())
+                    .build());
+
+    bucketCow.putBlob(
+        fakeBucketName, fakeObjectPath, defaultTags, new ByteArrayInputStream(contents), partSize);
+
+    ArgumentCaptor<UploadPartRequest> partCaptor = ArgumentCaptor.forClass(UploadPartRequest.class);
+    verify(mockS3Client, times(3)).uploadPart(partCaptor.capture(), (RequestBody) any());
+    assertEquals(
+        List.of((long) partSize, (long) partSize, 100L),
+        partCaptor.getAllValues().stream()
+            .map(UploadPartRequest::contentLength)
+            .collect(Collectors.toList()));
+    ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(mockS3Client).completeMultipartUpload(completeCaptor.capture());
+    assertEquals("upload", completeCaptor.getValue().uploadId());
+    assertEquals(
+        List.of("etag1", "etag2", "etag3"),
+        completeCaptor.getValue().multipartUpload().parts().stream()
+            .map(CompletedPart::eTag)
+            .collect(Collectors.toList()));
+    verify(mockMetricsHelper)
+        .recordTransferBytes(
+            CLIENT_NAME, S3BucketOperation.AWS_CREATE_S3_OBJECT, (long) contents.length);
+  }
+
+  @Test
+  public void putBlobStreamAbortsFailedUpload() {
+    int partSize = S3BucketCow.MIN_UPLOAD_PART_SIZE;
+    when(mockS3Client.createMultipartUpload((CreateMultipartUploadRequest) any()))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    S3Exception failure = (S3Exception) S3Exception.builder().statusCode(500).build();
+    when(mockS3Client.uploadPart((UploadPartRequest) any(), (RequestBody) any()))
+        .thenThrow(failure);
+
+    S3Exception thrown =
+        assertThrows(
+            S3Exception.class,
+            () ->
+                bucketCow.putBlob(
+                    fakeBucketName,
+                    fakeObjectPath,
+                    defaultTags,
+                    new ByteArrayInputStream(new byte[partSize + 1]),
+                    partSize));
+
+    assertSame(failure, thrown);
+    ArgumentCaptor<AbortMultipartUploadRequest> abortCaptor =
+        ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+    verify(mockS3Client).abortMultipartUpload(abortCaptor.capture());
+    assertEquals("upload", abortCaptor.getValue().uploadId());
+    verify(mockS3Client, never()).completeMultipartUpload((CompleteMultipartUploadRequest) any());
+  }
+
   @Test
   public void listBlobsTest() {
     ArgumentCaptor<String> stringArgumentCaptor = ArgumentCaptor.forClass(String.class);
@@ -0,0 +1,161 @@
+package bio.terra.cloudres.aws.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ec2.Ec2Client;
+import software.amazon.awssdk.services.ec2.Ec2ClientBuilder;
+import software.amazon.awssdk.services.ec2.model.DescribeInstancesRequest;
+
+@Tag("unit")
+public class AwsClientRegistryTest {
+  private final ScheduledExecutorService mockReaper = mock(ScheduledExecutorService.class);
+  private final ScheduledFuture<?> mockPendingClose = mock(ScheduledFuture.class);
+  private final Ec2ClientBuilder mockBuilder = mock(Ec2ClientBuilder.class, RETURNS_SELF);
+  private final Ec2Client mockClient = mock(Ec2Client.class);
+  private final AwsCredentialsProvider credentials = AnonymousCredentialsProvider.create();
+  private AwsClientRegistry registry;
+
+  @BeforeEach
+  public void setUp() {
+    when(mockBuilder.build()).thenReturn(mockClient);
+    doReturn(mockPendingClose).when(mockReaper).schedule(any(Runnable.class), anyLong(), any());
+    registry = new AwsClientRegistry(Duration.ofMinutes(5), 1, mockReaper);
+  }
+
+  @Test
+  public void sharesClientPerKey() {
+    Ec2Client first = acquire(Region.US_EAST_1, credentials);
+    Ec2Client second = acquire(Region.US_EAST_1, credentials);
+    acquire(Region.US_WEST_2, credentials);
+    acquire(Region.US_EAST_1, AnonymousCredentialsProvider.create());
+
+    DescribeInstancesRequest request = DescribeInstancesRequest.builder().build();
+    first.describeInstances(request);
+    second.describeInstances(request);
+
+    verify(mockBuilder, times(3)).build();
+    verify(mockClient, times(2)).describeInstances(request);
+    assertEquals(3, registry.size());
+  }
+
+  @Test
+  public void closesClientOnceIdle() {
+    Ec2Client first = acquire(Region.US_EAST_1, credentials);
+    Ec2Client second = acquire(Region.US_EAST_1, credentials);
+
+    first.close();
+    // Closing a lease twice only releases it once.
+    first.close();
+    verify(mockReaper, never()).schedule(any(Runnable.class), anyLong(), any());
+
+    second.close();
+    ArgumentCaptor<Runnable> closeTask = ArgumentCaptor.forClass(Runnable.class);
+    verify(mockReaper).schedule(closeTask.capture(), anyLong(), any());
+    verify(mockClient, never()).close();
+
+    closeTask.getValue().run();
+    verify(mockClient).close();
+    assertEquals(0, registry.size());
+  }
+
+  @Test
+  public void reacquireCancelsIdleClose() {
+    acquire(Region.US_EAST_1, credentials).close();
+    ArgumentCaptor<Runnable> closeTask = ArgumentCaptor.forClass(Runnable.class);
+    verify(mockReaper).schedule(closeTask.capture(), anyLong(), any());
+
+    Ec2Client again = acquire(Region.US_EAST_1, credentials);
+    verify(mockPendingClose).cancel(false);
+    // A close task that already started does nothing while the client is leased.
+    closeTask.getValue().run();
+
+    verify(mockBuilder, times(1)).build();
+    verify(mockClient, never()).close();
+    again.close();
+  }
+
+  @Test
+  public void closesLeastRecentlyUsedIdleClientsPastTheLimit() {
+    Ec2Client secondClient = mock(Ec2Client.class);
+    Ec2Client thirdClient = mock(Ec2Client.class);
+    when(mockBuilder.build()).thenReturn(mockClient, secondClient, thirdClient);
+    Ec2Client leased = acquire(Region.US_EAST_1, credentials);
+    // A new provider per call gets a new client, but at most one is kept idle.
+    acquire(Region.US_EAST_1, AnonymousCredentialsProvider.create()).close();
+    verify(secondClient, never()).close();
+    acquire(Region.US_EAST_1, AnonymousCredentialsProvider.create()).close();
+
+    verify(secondClient).close();
+    verify(mockClient, never()).close();
+    assertEquals(2, registry.size());
+    // Once released, the first client is the least recently used idle one.
+    leased.close();
+    verify(mockClient).close();
+    verify(thirdClient, never()).close();
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void buildsClientsOutsideTheLock() throws Exception {
+    Ec2Client racingClient = mock(Ec2Client.class);
+    AtomicReference<Ec2Client> racingLease = new AtomicReference<>();
+    Thread racer = new Thread(() -> racingLease.set(acquire(Region.US_EAST_1, credentials)));
+    when(mockBuilder.build())
+        .thenAnswer(
+            invocation -> {
+              // Another thread acquires the same client, and finishes first.
+              racer.start();
+              racer.join(Duration.ofSeconds(10).toMillis());
+              return mockClient;
+            })
+        .thenReturn(racingClient);
+
+    Ec2Client lease = acquire(Region.US_EAST_1, credentials);
+
+    assertFalse(racer.isAlive());
+    // The client built last loses, and both leases share the other.
+    verify(mockClient).close();
+    DescribeInstancesRequest request = DescribeInstancesRequest.builder().build();
+    lease.describeInstances(request);
+    racingLease.get().describeInstances(request);
+    verify(racingClient, times(2)).describeInstances(request);
+    assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void leaseFailsAfterClose() {
+    Ec2Client lease = acquire(Region.US_EAST_1, credentials);
+    lease.close();
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> lease.describeInstances(DescribeInstancesRequest.builder().build()));
+    verify(mockClient, never()).describeInstances(any(DescribeInstancesRequest.class));
+  }
+
+  private Ec2Client acquire(Region region, AwsCredentialsProvider credentialsProvider) {
+    return registry.acquire(Ec2Client.class, region, credentialsProvider, () -> mockBuilder);
+  }
+}
@@ -0,0 +1,174 @@
+package bio.terra.cloudres.aws.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link ResourceStateWatcher}. Polls are run directly, rather than on the scheduled
+ * executor, so that the tests control when they happen.
+ */
+@Tag("unit")
+public class ResourceStateWatcherTest {
+  private static final Duration TIMEOUT = Duration.ofMinutes(10);
+
+  private final Map<String, String> states = new HashMap<>();
+  private final ResourceStateWatcher.BatchDescriber<String> describer =
+      mock(ResourceStateWatcher.BatchDescriber.class);
+  private final ScheduledExecutorService mockExecutor = mock(ScheduledExecutorService.class);
+  private final ScheduledFuture<?> mockPollTask = mock(ScheduledFuture.class);
+  private final FakeTicker ticker = new FakeTicker();
+  private ResourceStateWatcher<String> watcher;
+
+  @BeforeEach
+  public void setUp() {
+    when(describer.describe(any())).thenAnswer(invocation -> new HashMap<>(states));
+    doReturn(mockPollTask)
+        .when(mockExecutor)
+        .scheduleWithFixedDelay(any(), anyLong(), anyLong(), any());
+    watcher =
+        new ResourceStateWatcher<>(
+            describer, Duration.ofSeconds(15), TIMEOUT, ticker, mockExecutor, true);
+  }
+
+  @Test
+  public void pollsAllResourcesInOneCall() {
+    states.put("a", "pending");
+    states.put("b", "pending");
+    CompletableFuture<String> a = watcher.watch("a", "running"::equals);
+    CompletableFuture<String> b = watcher.watch("b", "running"::equals);
+
+    watcher.poll();
+    assertFalse(a.isDone());
+    assertFalse(b.isDone());
+
+    states.put("a", "running");
+    watcher.poll();
+    assertEquals("running", a.getNow(null));
+    assertFalse(b.isDone());
+    assertEquals(1, watcher.size());
+
+    states.put("b", "running");
+    watcher.poll();
+    assertEquals("running", b.getNow(null));
+    assertEquals(0, watcher.size());
+    verify(describer, times(2)).describe(Set.of("a", "b"));
+    verify(describer).describe(Set.of("b"));
+  }
+
+  @Test
+  public void acceptorFailureFailsOnlyThatResource() {
+    states.put("a", "terminated");
+    states.put("b", "running");
+    IllegalStateException unreachable = new IllegalStateException("unreachable");
+    CompletableFuture<String> a =
+        watcher.watch(
+            "a",
+            state -> {
+              if ("terminated".equals(state)) {
+                throw unreachable;
+              }
+              return "running".equals(state);
+            });
+    CompletableFuture<String> b = watcher.watch("b", "running"::equals);
+
+    watcher.poll();
+
+    ExecutionException e = assertThrows(ExecutionException.class, a::get);
+    assertSame(unreachable, e.getCause());
+    assertEquals("running", b.getNow(null));
+  }
+
+  @Test
+  public void missingResourceIsPassedAsNull() {
+    CompletableFuture<String> gone = watcher.watch("gone", state -> state == null);
+
+    watcher.poll();
+
+    assertTrue(gone.isDone());
+    assertEquals(null, gone.getNow("not null"));
+  }
+
+  @Test
+  public void describeFailureIsRetriedUntilTimeout() {
+    when(describer.describe(any())).thenThrow(new RuntimeException("throttled"));
+    CompletableFuture<String> a = watcher.watch("a", "running"::equals);
+
+    watcher.poll();
+    assertFalse(a.isDone());
+
+    ticker.advance(TIMEOUT);
+    watcher.poll();
+    ExecutionException e = assertThrows(ExecutionException.class, a::get);
+    assertInstanceOf(TimeoutException.class, e.getCause());
+  }
+
+  @Test
+  public void closeCancelsPendingWaits() {
+    CompletableFuture<String> a = watcher.watch("a", "running"::equals);
+
+    watcher.close();
+
+    assertTrue(a.isCancelled());
+    verify(mockPollTask).cancel(false);
+    verify(mockExecutor).shutdownNow();
+    assertThrows(IllegalStateException.class, () -> watcher.watch("b", "running"::equals));
+  }
+
+  @Test
+  public void watchRacingCloseIsCancelled() {
+    // watch() reads the ticker after checking that the watcher is open, so this closes it between
+    // that check and the registration being added.
+    ticker.onRead = watcher::close;
+
+    CompletableFuture<String> a = watcher.watch("a", "running"::equals);
+
+    assertTrue(a.isCancelled());
+    assertEquals(0, watcher.size());
+  }
+
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+    /** Run once, on the next read. */
+    private Runnable onRead;
+
+    @Override
+    public long read() {
+      if (onRead != null) {
+        Runnable runnable = onRead;
+        onRead = null;
+        runnable.run();
+      }
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += TimeUnit.NANOSECONDS.convert(duration);
+    }
+  }
+}
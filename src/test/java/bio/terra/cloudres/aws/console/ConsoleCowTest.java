@@ -39,6 +39,7 @@ public class ConsoleCowTest {
     ClientConfig unitTestConfig =
         ClientConfig.Builder.newBuilder().setClient("ConsoleCowTest").build();
     ConsoleCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
     consoleCow = new ConsoleCow(mockUrlRequester, unitTestConfig);
   }
 
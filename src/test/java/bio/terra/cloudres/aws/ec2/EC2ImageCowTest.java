@@ -4,12 +4,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.RefreshingCache;
+import com.google.common.base.Ticker;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -36,15 +44,17 @@ public class EC2ImageCowTest {
   private final InstanceType instanceType = InstanceType.T3_MEDIUM;
   private final List<ArchitectureType> supportedArchitectures =
       List.of(ArchitectureType.X86_64, ArchitectureType.I386);
+  private DescribeInstanceTypesResponse archResponse;
 
   @BeforeEach
   public void setupMocks() {
     ClientConfig unitTestConfig =
         ClientConfig.Builder.newBuilder().setClient("EC2ImageCowTest").build();
     EC2ImageCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
     cow = new EC2ImageCow(unitTestConfig, mockClient, mockWaiter);
 
-    DescribeInstanceTypesResponse archResponse =
+    archResponse =
         DescribeInstanceTypesResponse.builder()
             .instanceTypes(
                 List.of(
@@ -103,4 +113,114 @@ public class EC2ImageCowTest {
         NoSuchElementException.class,
         () -> cow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, instanceType));
   }
+
+  @Test
+  public void getLatestImageCachedTest() {
+    FakeTicker ticker = new FakeTicker();
+    cow =
+        new EC2ImageCow(
+            ClientConfig.Builder.newBuilder().setClient("EC2ImageCowTest").build(),
+            mockClient,
+            mockWaiter,
+            new RefreshingCache<>(
+                "images", Duration.ofHours(1), Duration.ofDays(1), ticker, Runnable::run),
+            new RefreshingCache<>(
+                "architectures", Duration.ofDays(1), Duration.ofDays(7), ticker, Runnable::run),
+            null);
+    when(mockClient.describeImages((DescribeImagesRequest) any()))
+        .thenReturn(DescribeImagesResponse.builder().images(List.of(buildImage(1))).build())
+        .thenReturn(DescribeImagesResponse.builder().images(List.of(buildImage(2))).build());
+
+    assertEquals(
+        imageIdFromOffset(1),
+        cow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, instanceType));
+    // Another instance type with the same architectures shares the cached image.
+    assertEquals(
+        imageIdFromOffset(1),
+        cow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, InstanceType.T3_LARGE));
+    verify(mockClient, times(1)).describeImages((DescribeImagesRequest) any());
+    verify(mockClient, times(2)).describeInstanceTypes((DescribeInstanceTypesRequest) any());
+
+    // A stale image is still returned, and refreshed for later lookups.
+    ticker.advance(Duration.ofHours(2));
+    assertEquals(
+        imageIdFromOffset(1),
+        cow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, instanceType));
+    assertEquals(
+        imageIdFromOffset(2),
+        cow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, instanceType));
+    verify(mockClient, times(2)).describeImages((DescribeImagesRequest) any());
+    verify(mockClient, times(2)).describeInstanceTypes((DescribeInstanceTypesRequest) any());
+  }
+
+  @Test
+  public void getLatestImageRefreshesAfterCowIsClosed() {
+    FakeTicker ticker = new FakeTicker();
+    Queue<Runnable> refreshes = new LinkedList<>();
+    RefreshingCache<EC2ImageCow.ImageKey, String> imageCache =
+        new RefreshingCache<>(
+            "images", Duration.ofHours(1), Duration.ofDays(1), ticker, refreshes::add);
+    RefreshingCache<InstanceType, List<String>> architectureCache =
+        new RefreshingCache<>(
+            "architectures", Duration.ofDays(1), Duration.ofDays(7), ticker, refreshes::add);
+    Ec2Client leasedClient = mock(Ec2Client.class);
+    when(leasedClient.describeInstanceTypes((DescribeInstanceTypesRequest) any()))
+        .thenReturn(archResponse);
+    when(leasedClient.describeImages((DescribeImagesRequest) any()))
+        .thenReturn(DescribeImagesResponse.builder().images(List.of(buildImage(1))).build())
+        .thenReturn(DescribeImagesResponse.builder().images(List.of(buildImage(2))).build());
+    ClientConfig clientConfig =
+        ClientConfig.Builder.newBuilder().setClient("EC2ImageCowTest").build();
+    cow =
+        new EC2ImageCow(
+            clientConfig,
+            mockClient,
+            mockWaiter,
+            imageCache,
+            architectureCache,
+            () -> leasedClient);
+
+    assertEquals(
+        imageIdFromOffset(1),
+        cow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, instanceType));
+    ticker.advance(Duration.ofHours(2));
+    assertEquals(
+        imageIdFromOffset(1),
+        cow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, instanceType));
+    // The COW that found the image stale is closed before the refresh runs.
+    cow.close();
+    assertEquals(1, refreshes.size());
+    refreshes.remove().run();
+
+    EC2ImageCow otherCow =
+        new EC2ImageCow(
+            clientConfig,
+            mock(Ec2Client.class),
+            mockWaiter,
+            imageCache,
+            architectureCache,
+            () -> leasedClient);
+    assertEquals(
+        imageIdFromOffset(2),
+        otherCow.getLatestImage(EC2ImageChannel.FLATCAR_LINUX_STABLE, instanceType));
+    verify(mockClient).close();
+    verify(mockClient, never()).describeImages((DescribeImagesRequest) any());
+    verify(leasedClient, times(2)).describeImages((DescribeImagesRequest) any());
+    // Every load closes its lease: the architectures, the image and its refresh.
+    verify(leasedClient, times(3)).close();
+  }
+
+  /** A {@link Ticker} that only moves when told to. */
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+  }
 }
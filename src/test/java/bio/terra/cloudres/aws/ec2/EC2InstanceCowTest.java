@@ -6,15 +6,20 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import bio.terra.cloudres.common.ClientConfig;
+import com.google.common.base.Ticker;
 import com.google.gson.JsonObject;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -30,6 +35,7 @@ import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusRequest;
 import software.amazon.awssdk.services.ec2.model.DescribeInstanceStatusResponse;
 import software.amazon.awssdk.services.ec2.model.DescribeInstancesRequest;
 import software.amazon.awssdk.services.ec2.model.DescribeInstancesResponse;
+import software.amazon.awssdk.services.ec2.model.Ec2Exception;
 import software.amazon.awssdk.services.ec2.model.Filter;
 import software.amazon.awssdk.services.ec2.model.Instance;
 import software.amazon.awssdk.services.ec2.model.InstanceStateName;
@@ -72,6 +78,7 @@ public class EC2InstanceCowTest {
     ClientConfig unitTestConfig =
         ClientConfig.Builder.newBuilder().setClient("EC2InstanceCowTest").build();
     EC2InstanceCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
     cow = new EC2InstanceCow(unitTestConfig, mockClient, mockWaiter);
   }
 
@@ -135,6 +142,147 @@ public class EC2InstanceCowTest {
     verifyInstanceIdLogging(EC2InstanceOperation.AWS_GET_EC2_INSTANCE);
   }
 
+  @Test
+  void getAllBatchesAndPagesTest() {
+    List<String> ids = IntStream.range(0, 450).mapToObj(i -> "i-" + i).collect(Collectors.toList());
+    when(mockClient.describeInstances((DescribeInstancesRequest) any()))
+        .thenAnswer(
+            invocation -> {
+              DescribeInstancesRequest request = invocation.getArgument(0);
+              List<String> batch = request.filters().get(0).values();
+              // Return each batch in two pages.
+              int half = batch.size() / 2;
+              List<String> page =
+                  request.nextToken() == null
+                      ? batch.subList(0, half)
+                      : batch.subList(half, batch.size());
+              return DescribeInstancesResponse.builder()
+                  .reservations(Reservation.builder().instances(instances(page)).build())
+                  .nextToken(request.nextToken() == null ? "page2" : null)
+                  .build();
+            });
+
+    Map<String, Instance> result = cow.getAll(ids);
+
+    assertEquals(450, result.size());
+    assertEquals("i-17", result.get("i-17").instanceId());
+    ArgumentCaptor<DescribeInstancesRequest> requestArgumentCaptor =
+        ArgumentCaptor.forClass(DescribeInstancesRequest.class);
+    // Three batches of at most 200 IDs, each with two pages.
+    verify(mockClient, times(6)).describeInstances(requestArgumentCaptor.capture());
+    for (DescribeInstancesRequest request : requestArgumentCaptor.getAllValues()) {
+      assertFalse(request.hasInstanceIds());
+      assertEquals("instance-id", request.filters().get(0).name());
+      assertTrue(
+          request.filters().get(0).values().size() <= EC2InstanceCow.MAX_INSTANCE_IDS_PER_REQUEST);
+    }
+    assertEquals("page2", requestArgumentCaptor.getAllValues().get(1).nextToken());
+  }
+
+  @Test
+  void getAllLeavesOutMissingInstancesTest() {
+    when(mockClient.describeInstances((DescribeInstancesRequest) any()))
+        .thenReturn(
+            DescribeInstancesResponse.builder()
+                .reservations(Reservation.builder().instances(fakeInstance).build())
+                .build());
+
+    Map<String, Instance> result = cow.getAll(List.of(instanceId, "i-missing", instanceId));
+
+    assertEquals(Map.of(instanceId, fakeInstance), result);
+    ArgumentCaptor<DescribeInstancesRequest> requestArgumentCaptor =
+        ArgumentCaptor.forClass(DescribeInstancesRequest.class);
+    verify(mockClient).describeInstances(requestArgumentCaptor.capture());
+    // Duplicate IDs are only described once.
+    assertEquals(
+        List.of(instanceId, "i-missing"),
+        requestArgumentCaptor.getValue().filters().get(0).values());
+  }
+
+  @Test
+  void instanceCacheTest() {
+    FakeTicker ticker = new FakeTicker();
+    cow.withInstanceCache(Duration.ofSeconds(5), ticker);
+    when(mockClient.describeInstances((DescribeInstancesRequest) any()))
+        .thenAnswer(
+            invocation -> {
+              DescribeInstancesRequest request = invocation.getArgument(0);
+              return DescribeInstancesResponse.builder()
+                  .reservations(
+                      Reservation.builder()
+                          .instances(instances(request.filters().get(0).values()))
+                          .build())
+                  .build();
+            });
+
+    cow.getAll(List.of("i-1", "i-2"));
+    // Cached instances are not described again, by either get or getAll.
+    assertEquals("i-1", cow.get("i-1").instanceId());
+    cow.getAll(List.of("i-1", "i-2", "i-3"));
+    ArgumentCaptor<DescribeInstancesRequest> requestArgumentCaptor =
+        ArgumentCaptor.forClass(DescribeInstancesRequest.class);
+    verify(mockClient, times(2)).describeInstances(requestArgumentCaptor.capture());
+    assertEquals(List.of("i-3"), requestArgumentCaptor.getValue().filters().get(0).values());
+
+    // Changing an instance removes it from the cache.
+    cow.stop("i-1");
+    cow.getAll(List.of("i-1", "i-2"));
+    verify(mockClient, times(3)).describeInstances((DescribeInstancesRequest) any());
+
+    // Expired descriptions are described again.
+    ticker.advance(Duration.ofSeconds(6));
+    cow.getAll(List.of("i-2"));
+    verify(mockClient, times(4)).describeInstances((DescribeInstancesRequest) any());
+  }
+
+  @Test
+  void instanceReadDuringChangeIsNotCached() {
+    cow.withInstanceCache(Duration.ofSeconds(5), new FakeTicker());
+    when(mockClient.describeInstances((DescribeInstancesRequest) any()))
+        .thenAnswer(
+            invocation -> {
+              DescribeInstancesRequest request = invocation.getArgument(0);
+              return DescribeInstancesResponse.builder()
+                  .reservations(
+                      Reservation.builder()
+                          .instances(instances(request.filters().get(0).values()))
+                          .build())
+                  .build();
+            });
+    when(mockClient.stopInstances((StopInstancesRequest) any()))
+        .thenAnswer(
+            invocation -> {
+              // A read racing with the change caches the instance as it was before.
+              cow.getAll(List.of("i-1"));
+              throw Ec2Exception.builder().message("stop failed").build();
+            });
+
+    assertThrows(Ec2Exception.class, () -> cow.stop("i-1"));
+
+    cow.getAll(List.of("i-1"));
+    verify(mockClient, times(2)).describeInstances((DescribeInstancesRequest) any());
+  }
+
+  private static List<Instance> instances(List<String> instanceIds) {
+    return instanceIds.stream()
+        .map(id -> Instance.builder().instanceId(id).build())
+        .collect(Collectors.toList());
+  }
+
+  /** A {@link Ticker} that only moves when told to. */
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+  }
+
   @Test
   void getByTagTest() {
     String tagName = "ResourceID";
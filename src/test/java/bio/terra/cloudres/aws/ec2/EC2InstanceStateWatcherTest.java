@@ -0,0 +1,105 @@
+package bio.terra.cloudres.aws.ec2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.ec2.model.Instance;
+import software.amazon.awssdk.services.ec2.model.InstanceState;
+import software.amazon.awssdk.services.ec2.model.InstanceStateName;
+import software.amazon.awssdk.services.ec2.model.InstanceStatus;
+import software.amazon.awssdk.services.ec2.model.InstanceStatusSummary;
+import software.amazon.awssdk.services.ec2.model.SummaryStatus;
+
+@Tag("unit")
+public class EC2InstanceStateWatcherTest {
+  private final EC2InstanceCow mockCow = mock(EC2InstanceCow.class);
+  private EC2InstanceStateWatcher watcher;
+
+  @BeforeEach
+  public void setUp() {
+    watcher = new EC2InstanceStateWatcher(mockCow, Duration.ofMillis(10), Duration.ofMinutes(1));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    watcher.close();
+  }
+
+  @Test
+  public void watchStateTest() throws Exception {
+    when(mockCow.getAll(any()))
+        .thenReturn(
+            Map.of(
+                "i-running", instance("i-running", InstanceStateName.RUNNING),
+                "i-stopping", instance("i-stopping", InstanceStateName.STOPPING)));
+
+    CompletableFuture<Instance> running =
+        watcher.watchState("i-running", InstanceStateName.RUNNING);
+    CompletableFuture<Instance> stopping =
+        watcher.watchState("i-stopping", InstanceStateName.RUNNING);
+    CompletableFuture<Instance> gone = watcher.watchState("i-gone", InstanceStateName.TERMINATED);
+
+    assertEquals("i-running", running.get(5, TimeUnit.SECONDS).instanceId());
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> stopping.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(CrlEC2UnreachableStateException.class, e.getCause());
+    // Instances that no longer exist count as terminated.
+    assertEquals(null, gone.get(5, TimeUnit.SECONDS));
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> watcher.watchState("i-running", InstanceStateName.PENDING));
+  }
+
+  @Test
+  public void watchStatusOKTest() throws Exception {
+    when(mockCow.getAllStatuses(any()))
+        .thenReturn(Map.of("i-initializing", status("i-initializing", SummaryStatus.INITIALIZING)))
+        .thenReturn(Map.of("i-initializing", status("i-initializing", SummaryStatus.OK)));
+
+    CompletableFuture<InstanceStatus> status = watcher.watchStatusOK("i-initializing");
+
+    assertEquals(SummaryStatus.OK, status.get(5, TimeUnit.SECONDS).instanceStatus().status());
+  }
+
+  @Test
+  public void watchTimesOutTest() {
+    watcher.close();
+    when(mockCow.getAll(any())).thenReturn(Map.of());
+    watcher = new EC2InstanceStateWatcher(mockCow, Duration.ofMillis(10), Duration.ofMillis(50));
+
+    CompletableFuture<Instance> missing =
+        watcher.watchState("i-missing", InstanceStateName.RUNNING);
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> missing.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(TimeoutException.class, e.getCause());
+  }
+
+  private static Instance instance(String instanceId, InstanceStateName state) {
+    return Instance.builder()
+        .instanceId(instanceId)
+        .state(InstanceState.builder().name(state).build())
+        .build();
+  }
+
+  private static InstanceStatus status(String instanceId, SummaryStatus status) {
+    return InstanceStatus.builder()
+        .instanceId(instanceId)
+        .instanceStatus(InstanceStatusSummary.builder().status(status).build())
+        .build();
+  }
+}
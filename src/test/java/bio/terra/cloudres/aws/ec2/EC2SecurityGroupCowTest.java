@@ -60,6 +60,7 @@ public class EC2SecurityGroupCowTest {
     ClientConfig unitTestConfig =
         ClientConfig.Builder.newBuilder().setClient("EC2SecurityGroupCowTest").build();
     EC2SecurityGroupCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
     cow = new EC2SecurityGroupCow(unitTestConfig, mockClient, mockWaiter);
   }
 
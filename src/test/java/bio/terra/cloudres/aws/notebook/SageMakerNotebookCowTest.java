@@ -1,13 +1,22 @@
 package bio.terra.cloudres.aws.notebook;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import bio.terra.cloudres.common.ClientConfig;
 import com.google.gson.JsonObject;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -19,6 +28,10 @@ import software.amazon.awssdk.services.sagemaker.model.CreateNotebookInstanceReq
 import software.amazon.awssdk.services.sagemaker.model.CreateNotebookInstanceResponse;
 import software.amazon.awssdk.services.sagemaker.model.CreatePresignedNotebookInstanceUrlRequest;
 import software.amazon.awssdk.services.sagemaker.model.CreatePresignedNotebookInstanceUrlResponse;
+import software.amazon.awssdk.services.sagemaker.model.ListNotebookInstancesRequest;
+import software.amazon.awssdk.services.sagemaker.model.ListNotebookInstancesResponse;
+import software.amazon.awssdk.services.sagemaker.model.NotebookInstanceStatus;
+import software.amazon.awssdk.services.sagemaker.model.NotebookInstanceSummary;
 import software.amazon.awssdk.services.sagemaker.waiters.SageMakerWaiter;
 
 /**
@@ -41,6 +54,7 @@ public class SageMakerNotebookCowTest {
     ClientConfig unitTestConfig =
         ClientConfig.Builder.newBuilder().setClient("S3BucketCowTest").build();
     SageMakerNotebookCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
     notebookCow =
         new SageMakerNotebookCow(unitTestConfig, mockSageMakerClient, mockSageMakerWaiter);
   }
@@ -138,4 +152,59 @@ public class SageMakerNotebookCowTest {
         SageMakerNotebookOperation.AWS_DELETE_NOTEBOOK.toString(),
         json.get("operation").getAsString());
   }
+
+  @Test
+  public void getAllStatusesStopsPagingOnceAllFoundTest() {
+    when(mockSageMakerClient.listNotebookInstances((ListNotebookInstancesRequest) any()))
+        .thenReturn(
+            ListNotebookInstancesResponse.builder()
+                .notebookInstances(summary("other", NotebookInstanceStatus.IN_SERVICE))
+                .nextToken("page2")
+                .build(),
+            ListNotebookInstancesResponse.builder()
+                .notebookInstances(summary(instanceName, NotebookInstanceStatus.PENDING))
+                .nextToken("page3")
+                .build());
+
+    assertEquals(
+        Map.of(instanceName, NotebookInstanceStatus.PENDING),
+        notebookCow.getAllStatuses(List.of(instanceName)));
+
+    ArgumentCaptor<ListNotebookInstancesRequest> requestCaptor =
+        ArgumentCaptor.forClass(ListNotebookInstancesRequest.class);
+    verify(mockSageMakerClient, times(2)).listNotebookInstances(requestCaptor.capture());
+    assertEquals("page2", requestCaptor.getAllValues().get(1).nextToken());
+  }
+
+  @Test
+  public void statusWatcherTest() throws Exception {
+    when(mockSageMakerClient.listNotebookInstances((ListNotebookInstancesRequest) any()))
+        .thenReturn(
+            ListNotebookInstancesResponse.builder()
+                .notebookInstances(
+                    summary(instanceName, NotebookInstanceStatus.IN_SERVICE),
+                    summary("failed", NotebookInstanceStatus.FAILED))
+                .build());
+
+    try (SageMakerNotebookStatusWatcher watcher =
+        new SageMakerNotebookStatusWatcher(
+            notebookCow, Duration.ofMillis(10), Duration.ofMinutes(1))) {
+      CompletableFuture<NotebookInstanceStatus> inService =
+          watcher.watchStatus(instanceName, NotebookInstanceStatus.IN_SERVICE);
+      CompletableFuture<NotebookInstanceStatus> failed =
+          watcher.watchStatus("failed", NotebookInstanceStatus.IN_SERVICE);
+
+      assertEquals(NotebookInstanceStatus.IN_SERVICE, inService.get(5, TimeUnit.SECONDS));
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+      assertInstanceOf(CrlSageMakerException.class, e.getCause());
+    }
+  }
+
+  private static NotebookInstanceSummary summary(String name, NotebookInstanceStatus status) {
+    return NotebookInstanceSummary.builder()
+        .notebookInstanceName(name)
+        .notebookInstanceStatus(status)
+        .build();
+  }
 }
@@ -39,6 +39,7 @@ public class SecurityTokenServiceCowTest {
     ClientConfig unitTestConfig =
         ClientConfig.Builder.newBuilder().setClient("SecurityTokenServiceCowTest").build();
     SecurityTokenServiceCow.setLogger(mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
     stsCow = new SecurityTokenServiceCow(unitTestConfig, mockStsClient);
   }
 
@@ -6,12 +6,21 @@ import static org.mockito.Mockito.*;
 
 import bio.terra.cloudres.testing.StubCloudOperation;
 import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
 import com.google.cloud.resourcemanager.ResourceManagerException;
+import com.google.common.base.Stopwatch;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.hamcrest.Matchers;
 import org.junit.Assert;
 import org.junit.jupiter.api.AfterEach;
@@ -80,6 +89,7 @@ public class OperationAnnotatorTest {
             .setMetricsHelper(mockMetricsHelper)
             .build();
     operationAnnotator = new OperationAnnotator(clientConfig, mockLogger);
+    when(mockLogger.isDebugEnabled()).thenReturn(true);
   }
 
   @AfterEach
@@ -140,6 +150,37 @@ public class OperationAnnotatorTest {
     verify(mockLogger).debug(anyString(), any(JsonObject.class), any(InterruptedException.class));
   }
 
+  @Test
+  public void testExecuteGoogleCloudCall_debugDisabledSkipsSerialization() {
+    when(mockLogger.isDebugEnabled()).thenReturn(false);
+    OperationAnnotator.CowSerialize mockSerialize = mock(OperationAnnotator.CowSerialize.class);
+
+    operationAnnotator.executeCowOperation(
+        StubCloudOperation.TEST_OPERATION, () -> null, mockSerialize);
+
+    verify(mockMetricsHelper)
+        .recordApiCount(clientConfig.getClientName(), StubCloudOperation.TEST_OPERATION);
+    verify(mockSerialize, never()).serializeRequest();
+    verify(mockLogger, never()).debug(anyString(), any(JsonObject.class));
+  }
+
+  @Test
+  public void testRequestDataIsSerializedOnce() {
+    OperationAnnotator.CowSerialize mockSerialize = mock(OperationAnnotator.CowSerialize.class);
+    when(mockSerialize.serializeRequest()).thenReturn(PROJECT_REQUEST);
+    OperationData operationData =
+        OperationData.builder()
+            .setCloudOperation(StubCloudOperation.TEST_OPERATION)
+            .setRequestDataSupplier(mockSerialize::serializeRequest)
+            .setDuration(Duration.ofMillis(2345))
+            .build();
+    verify(mockSerialize, never()).serializeRequest();
+
+    assertEquals(PROJECT_REQUEST, operationData.requestData());
+    assertEquals(PROJECT_REQUEST, operationData.requestData());
+    verify(mockSerialize, times(1)).serializeRequest();
+  }
+
   @Test
   public void testLogEvent() {
     operationAnnotator.logEvent(
@@ -186,4 +227,235 @@ public class OperationAnnotatorTest {
     // up by SLF4J.
     assertEquals(exceptionArgumentCaptor.getValue(), RM_EXCEPTION);
   }
+
+  @Test
+  public void testExecuteGoogleCloudCall_retriesRetryableStatusCode() {
+    OperationAnnotator retryingAnnotator = annotatorRetrying(3);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        retryingAnnotator.executeCowOperation(
+            StubCloudOperation.TEST_OPERATION,
+            () -> {
+              if (attempts.incrementAndGet() < 3) {
+                throw new ResourceManagerException(503, ERROR_MESSAGE);
+              }
+              return "done";
+            },
+            SERIALIZE);
+
+    assertEquals("done", result);
+    assertEquals(3, attempts.get());
+    verify(mockMetricsHelper, times(3))
+        .recordApiCount(clientConfig.getClientName(), StubCloudOperation.TEST_OPERATION);
+    verify(mockMetricsHelper, times(3))
+        .recordLatency(
+            eq(clientConfig.getClientName()), eq(StubCloudOperation.TEST_OPERATION), any());
+    verify(mockMetricsHelper, times(2))
+        .recordError(
+            clientConfig.getClientName(), StubCloudOperation.TEST_OPERATION, OptionalInt.of(503));
+    verify(mockLogger).debug(anyString(), gsonArgumentCaptor.capture());
+    assertEquals(3, gsonArgumentCaptor.getValue().getAsJsonPrimitive("tryCount").getAsInt());
+  }
+
+  @Test
+  public void testExecuteGoogleCloudCall_doesNotRetryOtherStatusCodes() {
+    OperationAnnotator retryingAnnotator = annotatorRetrying(3);
+
+    Assert.assertThrows(
+        ResourceManagerException.class,
+        () ->
+            retryingAnnotator.executeCowOperation(
+                StubCloudOperation.TEST_OPERATION, FAILED_COW_EXECUTE, SERIALIZE));
+
+    verify(mockMetricsHelper, times(1))
+        .recordApiCount(clientConfig.getClientName(), StubCloudOperation.TEST_OPERATION);
+  }
+
+  @Test
+  public void testExecuteGoogleCloudCall_stopsAfterMaxAttempts() {
+    OperationAnnotator retryingAnnotator = annotatorRetrying(2);
+
+    ResourceManagerException thrown =
+        Assert.assertThrows(
+            ResourceManagerException.class,
+            () ->
+                retryingAnnotator.executeCowOperation(
+                    StubCloudOperation.TEST_OPERATION,
+                    () -> {
+                      throw new ResourceManagerException(429, ERROR_MESSAGE);
+                    },
+                    SERIALIZE));
+
+    assertEquals(429, thrown.getCode());
+    verify(mockMetricsHelper, times(2))
+        .recordError(
+            clientConfig.getClientName(), StubCloudOperation.TEST_OPERATION, OptionalInt.of(429));
+  }
+
+  @Test
+  public void testGetRetryAfter() {
+    HttpResponseException withSeconds =
+        new HttpResponseException.Builder(429, "Too Many Requests", new HttpHeaders())
+            .setHeaders(new HttpHeaders().set("Retry-After", "7"))
+            .build();
+    HttpResponseException withoutHeader =
+        new HttpResponseException.Builder(429, "Too Many Requests", new HttpHeaders()).build();
+
+    assertEquals(Optional.of(Duration.ofSeconds(7)), OperationAnnotator.getRetryAfter(withSeconds));
+    assertEquals(Optional.empty(), OperationAnnotator.getRetryAfter(withoutHeader));
+    assertEquals(Optional.empty(), OperationAnnotator.getRetryAfter(RM_EXCEPTION));
+  }
+
+  @Test
+  public void testExecuteGoogleCloudCall_waitsForRateLimit() {
+    OperationAnnotator limitedAnnotator =
+        new OperationAnnotator(
+            ClientConfig.Builder.newBuilder()
+                .setClient(CLIENT)
+                .setMetricsHelper(mockMetricsHelper)
+                .setRateLimitConfig(
+                    RateLimitConfig.builder()
+                        .setFamilyLimit(
+                            StubCloudOperation.class,
+                            RateLimit.builder().setPermitsPerSecond(20).build())
+                        .build())
+                .build(),
+            mockLogger);
+
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    for (int i = 0; i < 3; i++) {
+      limitedAnnotator.executeCowOperation(
+          StubCloudOperation.TEST_OPERATION, () -> null, SERIALIZE);
+    }
+
+    // The first call takes the only token, and the next two wait 50ms each for a refill.
+    assertThat(stopwatch.elapsed(), Matchers.greaterThanOrEqualTo(Duration.ofMillis(95)));
+    ArgumentCaptor<Duration> waitCaptor = ArgumentCaptor.forClass(Duration.class);
+    verify(mockMetricsHelper, times(3))
+        .recordRateLimitWait(
+            eq(CLIENT), eq(StubCloudOperation.TEST_OPERATION), waitCaptor.capture());
+    assertEquals(Duration.ZERO, waitCaptor.getAllValues().get(0));
+    verify(mockMetricsHelper, times(3))
+        .recordRateLimitTokens(eq(CLIENT), eq("StubCloudOperation"), anyDouble());
+  }
+
+  @Test
+  public void testExecuteGoogleCloudCall_interruptedRateLimitWaitIsNotSent() {
+    OperationAnnotator limitedAnnotator =
+        new OperationAnnotator(
+            ClientConfig.Builder.newBuilder()
+                .setClient(CLIENT)
+                .setMetricsHelper(mockMetricsHelper)
+                .setRateLimitConfig(
+                    RateLimitConfig.builder()
+                        .setFamilyLimit(
+                            StubCloudOperation.class,
+                            RateLimit.builder().setPermitsPerSecond(1).build())
+                        .build())
+                .build(),
+            mockLogger);
+    AtomicInteger sent = new AtomicInteger();
+    // Takes the only token, so that the next call has to wait.
+    limitedAnnotator.executeCowOperation(
+        StubCloudOperation.TEST_OPERATION, sent::incrementAndGet, SERIALIZE);
+
+    Thread.currentThread().interrupt();
+    assertThrows(
+        CancellationException.class,
+        () ->
+            limitedAnnotator.executeCowOperation(
+                StubCloudOperation.TEST_OPERATION, sent::incrementAndGet, SERIALIZE));
+
+    assertTrue(Thread.interrupted());
+    assertEquals(1, sent.get());
+  }
+
+  @Test
+  public void testExecuteGoogleCloudCall_notRateLimitedByDefault() {
+    operationAnnotator.executeCowOperation(
+        StubCloudOperation.TEST_OPERATION, () -> null, SERIALIZE);
+
+    verify(mockMetricsHelper, never()).recordRateLimitWait(any(), any(), any());
+  }
+
+  @Test
+  public void testExecuteAsyncCowOperation_recordsOnCompletion() {
+    CompletableFuture<String> pending = new CompletableFuture<>();
+
+    CompletableFuture<String> result =
+        operationAnnotator.executeAsyncCowOperation(
+            StubCloudOperation.TEST_OPERATION, () -> pending, SERIALIZE);
+
+    verify(mockMetricsHelper, never()).recordApiCount(any(), any());
+    pending.complete("done");
+    assertEquals("done", result.join());
+    verify(mockMetricsHelper)
+        .recordError(CLIENT, StubCloudOperation.TEST_OPERATION, OptionalInt.of(200));
+    verify(mockLogger).debug(anyString(), any(JsonObject.class));
+  }
+
+  @Test
+  public void testExecuteAsyncCowOperation_withException() {
+    CompletableFuture<Object> failed =
+        operationAnnotator.executeAsyncCowOperation(
+            StubCloudOperation.TEST_OPERATION,
+            () -> CompletableFuture.failedFuture(RM_EXCEPTION),
+            SERIALIZE);
+    CompletableFuture<Object> thrown =
+        operationAnnotator.executeAsyncCowOperation(
+            StubCloudOperation.TEST_OPERATION,
+            () -> {
+              throw RM_EXCEPTION;
+            },
+            SERIALIZE);
+
+    for (CompletableFuture<Object> result : List.of(failed, thrown)) {
+      CompletionException e = assertThrows(CompletionException.class, result::join);
+      assertSame(RM_EXCEPTION, e.getCause());
+    }
+    verify(mockMetricsHelper, times(2))
+        .recordError(CLIENT, StubCloudOperation.TEST_OPERATION, OptionalInt.of(404));
+    verify(mockLogger, times(2))
+        .debug(
+            stringArgumentCaptor.capture(),
+            gsonArgumentCaptor.capture(),
+            exceptionArgumentCaptor.capture());
+    assertTrue(gsonArgumentCaptor.getValue().has("exception"));
+    assertEquals(RM_EXCEPTION, exceptionArgumentCaptor.getValue());
+  }
+
+  @Test
+  public void testSharedAnnotator() {
+    Logger otherLogger = mock(Logger.class);
+    ClientConfig otherConfig = ClientConfig.Builder.newBuilder().setClient(CLIENT).build();
+
+    OperationAnnotator shared = OperationAnnotator.shared(clientConfig, mockLogger);
+
+    assertSame(shared, OperationAnnotator.shared(clientConfig, mockLogger));
+    assertNotSame(shared, OperationAnnotator.shared(clientConfig, otherLogger));
+    assertNotSame(shared, OperationAnnotator.shared(otherConfig, mockLogger));
+  }
+
+  /**
+   * Returns an annotator that retries {@link StubCloudOperation#TEST_OPERATION} without waiting.
+   */
+  private OperationAnnotator annotatorRetrying(int maxAttempts) {
+    RetryPolicy policy =
+        RetryPolicy.builder()
+            .setMaxAttempts(maxAttempts)
+            .setInitialBackoff(Duration.ZERO)
+            .setMaxBackoff(Duration.ZERO)
+            .build();
+    return new OperationAnnotator(
+        ClientConfig.Builder.newBuilder()
+            .setClient(CLIENT)
+            .setMetricsHelper(mockMetricsHelper)
+            .setRetryConfig(
+                RetryConfig.builder()
+                    .setOperationPolicy(StubCloudOperation.TEST_OPERATION, policy)
+                    .build())
+            .build(),
+        mockLogger);
+  }
 }
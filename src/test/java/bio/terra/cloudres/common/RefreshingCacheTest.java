@@ -0,0 +1,73 @@
+package bio.terra.cloudres.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class RefreshingCacheTest {
+  private final FakeTicker ticker = new FakeTicker();
+  private final OperationAnnotator mockAnnotator = mock(OperationAnnotator.class);
+  private final RefreshingCache<String, Integer> cache =
+      new RefreshingCache<>(
+          "test", Duration.ofMinutes(1), Duration.ofMinutes(10), ticker, Runnable::run);
+
+  @Test
+  public void failedLoadIsNotCached() {
+    assertThrows(
+        NoSuchElementException.class,
+        () ->
+            cache.get(
+                "key",
+                () -> {
+                  throw new NoSuchElementException();
+                },
+                mockAnnotator));
+
+    assertEquals(1, cache.get("key", () -> 1, mockAnnotator));
+    verify(mockAnnotator, times(2)).recordCacheRequest("test", false);
+  }
+
+  @Test
+  public void failedRefreshKeepsValueUntilTtl() {
+    AtomicInteger loads = new AtomicInteger();
+    Supplier<Integer> failing =
+        () -> {
+          loads.incrementAndGet();
+          throw new IllegalStateException("unavailable");
+        };
+    cache.get("key", () -> 1, mockAnnotator);
+
+    ticker.advance(Duration.ofMinutes(5));
+    assertEquals(1, cache.get("key", failing, mockAnnotator));
+    assertEquals(1, loads.get());
+    verify(mockAnnotator).recordCacheRequest("test", true);
+
+    ticker.advance(Duration.ofMinutes(5));
+    assertEquals(2, cache.get("key", () -> 2, mockAnnotator));
+  }
+
+  /** A {@link Ticker} that only moves when told to. */
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package bio.terra.cloudres.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.OptionalInt;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class RetryPolicyTest {
+  private static final RetryPolicy NO_JITTER =
+      RetryPolicy.builder()
+          .setMaxAttempts(5)
+          .setInitialBackoff(Duration.ofSeconds(1))
+          .setMaxBackoff(Duration.ofSeconds(5))
+          .setJitter(0)
+          .build();
+
+  @Test
+  public void backoffGrowsExponentiallyUpToMax() {
+    assertEquals(Optional.of(Duration.ofSeconds(1)), delay(NO_JITTER, 1, 503));
+    assertEquals(Optional.of(Duration.ofSeconds(2)), delay(NO_JITTER, 2, 503));
+    assertEquals(Optional.of(Duration.ofSeconds(4)), delay(NO_JITTER, 3, 503));
+    assertEquals(Optional.of(Duration.ofSeconds(5)), delay(NO_JITTER, 4, 503));
+  }
+
+  @Test
+  public void doesNotRetryAfterMaxAttempts() {
+    assertEquals(Optional.empty(), delay(NO_JITTER, 5, 503));
+  }
+
+  @Test
+  public void onlyRetriesRetryableStatusCodes() {
+    assertEquals(Optional.empty(), delay(NO_JITTER, 1, 404));
+    assertEquals(Optional.empty(), NO_JITTER.retryDelay(1, OptionalInt.empty(), Optional.empty()));
+  }
+
+  @Test
+  public void jitterStaysInRange() {
+    RetryPolicy policy = NO_JITTER.toBuilder().setJitter(0.5).build();
+    for (int i = 0; i < 100; i++) {
+      long delayMillis = delay(policy, 2, 429).get().toMillis();
+      assertTrue(delayMillis >= 1000 && delayMillis <= 3000, "delay " + delayMillis);
+    }
+  }
+
+  @Test
+  public void honorsRetryAfter() {
+    assertEquals(
+        Optional.of(Duration.ofSeconds(3)),
+        NO_JITTER.retryDelay(1, OptionalInt.of(429), Optional.of(Duration.ofSeconds(3))));
+    // A shorter Retry-After does not shorten the backoff.
+    assertEquals(
+        Optional.of(Duration.ofSeconds(2)),
+        NO_JITTER.retryDelay(2, OptionalInt.of(429), Optional.of(Duration.ofMillis(10))));
+    // Waiting longer than the max backoff is not worth retrying.
+    assertEquals(
+        Optional.empty(),
+        NO_JITTER.retryDelay(1, OptionalInt.of(429), Optional.of(Duration.ofMinutes(1))));
+    // Unless Retry-After is ignored.
+    assertEquals(
+        Optional.of(Duration.ofSeconds(1)),
+        NO_JITTER.toBuilder()
+            .setHonorRetryAfter(false)
+            .build()
+            .retryDelay(1, OptionalInt.of(429), Optional.of(Duration.ofMinutes(1))));
+  }
+
+  @Test
+  public void buildValidates() {
+    assertThrows(
+        IllegalArgumentException.class, () -> RetryPolicy.builder().setMaxAttempts(0).build());
+    assertThrows(IllegalArgumentException.class, () -> RetryPolicy.builder().setJitter(2).build());
+  }
+
+  private static Optional<Duration> delay(RetryPolicy policy, int tryCount, int statusCode) {
+    return policy.retryDelay(tryCount, OptionalInt.of(statusCode), Optional.empty());
+  }
+}
@@ -0,0 +1,64 @@
+package bio.terra.cloudres.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class TokenBucketTest {
+  private final FakeTicker ticker = new FakeTicker();
+
+  @Test
+  public void burstIsNotThrottled() {
+    TokenBucket bucket = new TokenBucket(limit(10, 3), ticker);
+
+    assertEquals(Duration.ZERO, bucket.take());
+    assertEquals(Duration.ZERO, bucket.take());
+    assertEquals(Duration.ZERO, bucket.take());
+    assertEquals(0, bucket.tokens(), 1e-9);
+  }
+
+  @Test
+  public void waitsQueueAtRefillRate() {
+    TokenBucket bucket = new TokenBucket(limit(10, 1), ticker);
+
+    assertEquals(Duration.ZERO, bucket.take());
+    assertEquals(Duration.ofMillis(100), bucket.take());
+    assertEquals(Duration.ofMillis(200), bucket.take());
+    assertEquals(-2, bucket.tokens(), 1e-9);
+  }
+
+  @Test
+  public void refillsOverTimeUpToBurst() {
+    TokenBucket bucket = new TokenBucket(limit(10, 2), ticker);
+    bucket.take();
+    bucket.take();
+
+    ticker.advance(Duration.ofMillis(150));
+    assertEquals(1.5, bucket.tokens(), 1e-9);
+
+    ticker.advance(Duration.ofSeconds(10));
+    assertEquals(2, bucket.tokens(), 1e-9);
+  }
+
+  private static RateLimit limit(double permitsPerSecond, int burst) {
+    return RateLimit.builder().setPermitsPerSecond(permitsPerSecond).setBurst(burst).build();
+  }
+
+  /** A {@link Ticker} that only moves when told to. */
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package bio.terra.cloudres.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.api.gax.paging.Page;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class TransformPageTest {
+  private static final List<List<Integer>> PAGES =
+      List.of(List.of(1, 2, 3), List.of(), List.of(4, 5));
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+  private final AtomicInteger transforms = new AtomicInteger();
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void transformsLazilyByDefault() {
+    Page<String> page = new TransformPage<>(new ListPage(PAGES, 0), this::transform);
+
+    assertEquals(List.of("1", "2", "3", "4", "5"), ImmutableList.copyOf(page.iterateAll()));
+    assertEquals(List.of("1", "2", "3"), ImmutableList.copyOf(page.getValues()));
+    assertEquals(List.of("1", "2", "3"), ImmutableList.copyOf(page.getValues()));
+    assertEquals(11, transforms.get());
+  }
+
+  @Test
+  public void memoizesPageValues() {
+    Page<String> page =
+        new TransformPage<>(
+            new ListPage(PAGES, 0),
+            this::transform,
+            TransformPage.Options.builder().setMemoize(true).build());
+
+    Iterable<String> values = page.getValues();
+    assertSame(values, page.getValues());
+    assertEquals(List.of("1", "2", "3"), ImmutableList.copyOf(values));
+    assertEquals(3, transforms.get());
+    assertEquals(List.of("1", "2", "3", "4", "5"), ImmutableList.copyOf(page.iterateAll()));
+    assertEquals(5, transforms.get());
+  }
+
+  @Test
+  public void prefetchesNextPageDuringIterateAll() throws Exception {
+    CountDownLatch secondPageFetched = new CountDownLatch(1);
+    Page<String> page =
+        new TransformPage<>(
+            new ListPage(PAGES, 0, index -> secondPageFetched.countDown()),
+            this::transform,
+            TransformPage.Options.builder().setPrefetchExecutor(executor).build());
+
+    List<String> values = new ArrayList<>();
+    for (String value : page.iterateAll()) {
+      if (values.isEmpty()) {
+        // The second page is fetched in the background while the first is consumed.
+        assertTrue(secondPageFetched.await(5, TimeUnit.SECONDS));
+      }
+      values.add(value);
+    }
+    assertEquals(List.of("1", "2", "3", "4", "5"), values);
+  }
+
+  @Test
+  public void transformsInParallelInOrder() {
+    List<Integer> values = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      values.add(i);
+    }
+    Page<String> page =
+        new TransformPage<>(
+            new ListPage(List.of(values), 0),
+            this::transform,
+            TransformPage.Options.builder()
+                .setMemoize(true)
+                .setTransformExecutor(executor)
+                .setTransformParallelism(4)
+                .build());
+
+    assertEquals(100, Iterables.size(page.getValues()));
+    assertEquals("42", Iterables.get(page.getValues(), 42));
+    assertEquals(100, transforms.get());
+  }
+
+  @Test
+  public void parallelTransformRequiresMemoize() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> TransformPage.Options.builder().setTransformExecutor(executor).build());
+  }
+
+  private String transform(Integer value) {
+    transforms.incrementAndGet();
+    return String.valueOf(value);
+  }
+
+  /** An in-memory {@link Page} of integers, with a hook called when a next page is fetched. */
+  private static class ListPage implements Page<Integer> {
+    private final List<List<Integer>> pages;
+    private final int index;
+    private final IntConsumer onFetch;
+
+    private ListPage(List<List<Integer>> pages, int index) {
+      this(pages, index, i -> {});
+    }
+
+    private ListPage(List<List<Integer>> pages, int index, IntConsumer onFetch) {
+      this.pages = pages;
+      this.index = index;
+      this.onFetch = onFetch;
+    }
+
+    @Override
+    public boolean hasNextPage() {
+      return index + 1 < pages.size();
+    }
+
+    @Override
+    public String getNextPageToken() {
+      return hasNextPage() ? String.valueOf(index + 1) : "";
+    }
+
+    @Override
+    public Page<Integer> getNextPage() {
+      if (!hasNextPage()) {
+        return null;
+      }
+      onFetch.accept(index + 1);
+      return new ListPage(pages, index + 1, onFetch);
+    }
+
+    @Override
+    public Iterable<Integer> iterateAll() {
+      return Iterables.concat(pages.subList(index, pages.size()));
+    }
+
+    @Override
+    public Iterable<Integer> getValues() {
+      return pages.get(index);
+    }
+  }
+}
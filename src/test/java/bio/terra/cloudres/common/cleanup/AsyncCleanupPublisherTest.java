@@ -0,0 +1,183 @@
+package bio.terra.cloudres.common.cleanup;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.JanitorException;
+import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.core.SettableApiFuture;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.pubsub.v1.Publisher;
+import com.google.protobuf.ByteString;
+import com.google.pubsub.v1.PubsubMessage;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class AsyncCleanupPublisherTest {
+  private static final String CLIENT_NAME = "crl-test";
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  private final Publisher mockPublisher = mock(Publisher.class);
+  private final MetricsHelper mockMetricsHelper = mock(MetricsHelper.class);
+  private final SettableApiFuture<String> publishFuture = SettableApiFuture.create();
+
+  private AsyncCleanupPublisher asyncPublisher;
+
+  @AfterEach
+  public void tearDown() {
+    publishFuture.set("123");
+    if (asyncPublisher != null) {
+      asyncPublisher.close();
+    }
+  }
+
+  @Test
+  public void publishDoesNotWaitForPubsub() throws Exception {
+    when(mockPublisher.publish(any(PubsubMessage.class))).thenReturn(publishFuture);
+    asyncPublisher = new AsyncCleanupPublisher(mockPublisher, 10, TIMEOUT);
+
+    asyncPublisher.publish(message("1"), clientConfig(CleanupConfig.QueueFullPolicy.BLOCK));
+
+    verify(mockPublisher, timeout(TIMEOUT.toMillis())).publish(message("1"));
+    assertFalse(asyncPublisher.flush(Duration.ofMillis(10)));
+    publishFuture.set("123");
+    assertTrue(asyncPublisher.flush(TIMEOUT));
+  }
+
+  @Test
+  public void failedPublishDoesNotBlockFlush() throws Exception {
+    when(mockPublisher.publish(any(PubsubMessage.class))).thenReturn(publishFuture);
+    asyncPublisher = new AsyncCleanupPublisher(mockPublisher, 10, TIMEOUT);
+
+    asyncPublisher.publish(message("1"), clientConfig(CleanupConfig.QueueFullPolicy.BLOCK));
+    publishFuture.setException(new RuntimeException("pubsub unavailable"));
+
+    assertTrue(asyncPublisher.flush(TIMEOUT));
+  }
+
+  @Test
+  public void dropWhenQueueFull() throws Exception {
+    CountDownLatch publishing = blockPublisher();
+    asyncPublisher = new AsyncCleanupPublisher(mockPublisher, 1, TIMEOUT);
+    ClientConfig clientConfig = clientConfig(CleanupConfig.QueueFullPolicy.DROP);
+
+    // The first message is held by the worker, the second fills the queue.
+    asyncPublisher.publish(message("1"), clientConfig);
+    publishing.await();
+    assertTrue(asyncPublisher.publish(message("2"), clientConfig));
+    verify(mockMetricsHelper, never()).recordCleanupDropped(CLIENT_NAME);
+
+    assertFalse(asyncPublisher.publish(message("3"), clientConfig));
+    verify(mockMetricsHelper).recordCleanupDropped(CLIENT_NAME);
+  }
+
+  @Test
+  public void failWhenQueueFull() throws Exception {
+    CountDownLatch publishing = blockPublisher();
+    asyncPublisher = new AsyncCleanupPublisher(mockPublisher, 1, TIMEOUT);
+    ClientConfig clientConfig = clientConfig(CleanupConfig.QueueFullPolicy.FAIL);
+
+    asyncPublisher.publish(message("1"), clientConfig);
+    publishing.await();
+    asyncPublisher.publish(message("2"), clientConfig);
+
+    assertThrows(JanitorException.class, () -> asyncPublisher.publish(message("3"), clientConfig));
+  }
+
+  @Test
+  public void closeFlushesAndRejectsNewMessages() throws Exception {
+    when(mockPublisher.publish(any(PubsubMessage.class))).thenReturn(publishFuture);
+    asyncPublisher = new AsyncCleanupPublisher(mockPublisher, 10, TIMEOUT);
+    ClientConfig clientConfig = clientConfig(CleanupConfig.QueueFullPolicy.BLOCK);
+    asyncPublisher.publish(message("1"), clientConfig);
+    publishFuture.set("123");
+
+    asyncPublisher.close();
+
+    verify(mockPublisher).publish(message("1"));
+    assertThrows(JanitorException.class, () -> asyncPublisher.publish(message("2"), clientConfig));
+  }
+
+  @Test
+  public void closeFailsCallersWaitingForQueueSpace() throws Exception {
+    CountDownLatch publishing = blockPublisher();
+    asyncPublisher = new AsyncCleanupPublisher(mockPublisher, 1, Duration.ofMillis(200));
+    ClientConfig clientConfig = clientConfig(CleanupConfig.QueueFullPolicy.BLOCK);
+    asyncPublisher.publish(message("1"), clientConfig);
+    publishing.await();
+    asyncPublisher.publish(message("2"), clientConfig);
+
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    Thread blocked =
+        new Thread(
+            () -> {
+              try {
+                asyncPublisher.publish(message("3"), clientConfig);
+              } catch (JanitorException e) {
+                failure.set(e);
+              }
+            });
+    blocked.start();
+    blocked.join(100);
+    assertTrue(blocked.isAlive());
+
+    asyncPublisher.close();
+    blocked.join(TIMEOUT.toMillis());
+
+    assertFalse(blocked.isAlive());
+    assertNotNull(failure.get());
+    verify(mockPublisher, never()).publish(message("3"));
+  }
+
+  /**
+   * Makes {@link Publisher#publish} block until {@link #publishFuture} completes. Returns a latch
+   * that is released once the worker is blocked in the first publish call.
+   */
+  private CountDownLatch blockPublisher() {
+    CountDownLatch publishing = new CountDownLatch(1);
+    when(mockPublisher.publish(any(PubsubMessage.class)))
+        .thenAnswer(
+            invocation -> {
+              publishing.countDown();
+              publishFuture.get();
+              return publishFuture;
+            });
+    return publishing;
+  }
+
+  private ClientConfig clientConfig(CleanupConfig.QueueFullPolicy queueFullPolicy) {
+    return ClientConfig.Builder.newBuilder()
+        .setClient(CLIENT_NAME)
+        .setMetricsHelper(mockMetricsHelper)
+        .setCleanupConfig(
+            CleanupConfig.builder()
+                .setCleanupId("AsyncCleanupPublisherTest")
+                .setTimeToLive(Duration.ofMinutes(1))
+                .setCredentials(GoogleCredentials.create(new AccessToken("token", null)))
+                .setJanitorProjectId("test-project")
+                .setJanitorTopicName("test-topic")
+                .setAsyncPublishing(true)
+                .setQueueFullPolicy(queueFullPolicy)
+                .build())
+        .build();
+  }
+
+  private static PubsubMessage message(String data) {
+    return PubsubMessage.newBuilder().setData(ByteString.copyFromUtf8(data)).build();
+  }
+}
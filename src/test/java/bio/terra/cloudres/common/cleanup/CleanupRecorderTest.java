@@ -1,6 +1,7 @@
 package bio.terra.cloudres.common.cleanup;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 import bio.terra.cloudres.common.ClientConfig;
@@ -146,4 +147,26 @@ public class CleanupRecorderTest {
             objectMapper.writeValueAsString(
                 MESSAGE_BODY.resourceUid(RESOURCE_3).resourceMetadata(METADATA))));
   }
+
+  @Test
+  public void recordWithAsyncPublishingInvokedAfterFlush() throws Exception {
+    ClientConfig asyncClientConfig =
+        ClientConfig.Builder.newBuilder()
+            .setClient(CLIENT_NAME)
+            .setCleanupConfig(CLEANUP_CONFIG.toBuilder().setAsyncPublishing(true).build())
+            .build();
+
+    CleanupRecorder.record(RESOURCE_1, asyncClientConfig);
+    CleanupRecorder.record(RESOURCE_2, asyncClientConfig);
+    assertTrue(CleanupRecorder.flush(Duration.ofSeconds(5)));
+
+    verify(mockPublisher, times(2)).publish(messageArgumentCaptor.capture());
+    assertThat(
+        messageArgumentCaptor.getAllValues().stream()
+            .map(m -> m.getData().toStringUtf8())
+            .collect(Collectors.toList()),
+        Matchers.containsInAnyOrder(
+            objectMapper.writeValueAsString(MESSAGE_BODY.resourceUid(RESOURCE_1)),
+            objectMapper.writeValueAsString(MESSAGE_BODY.resourceUid(RESOURCE_2))));
+  }
 }
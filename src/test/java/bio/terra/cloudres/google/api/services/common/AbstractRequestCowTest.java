@@ -0,0 +1,211 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.common.OperationAnnotator;
+import bio.terra.cloudres.common.RateLimit;
+import bio.terra.cloudres.common.RateLimitConfig;
+import bio.terra.cloudres.google.iam.IamCow;
+import bio.terra.cloudres.google.iam.IamOperation;
+import bio.terra.cloudres.google.iam.ServiceAccountName;
+import bio.terra.cloudres.testing.StubCloudOperation;
+import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.iam.v1.Iam;
+import com.google.gson.JsonObject;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.LoggerFactory;
+
+@Tag("unit")
+public class AbstractRequestCowTest {
+  private static final String CLIENT = "crl-test";
+
+  private final List<SpanData> spans = new CopyOnWriteArrayList<>();
+  private final OpenTelemetrySdk openTelemetry =
+      OpenTelemetrySdk.builder()
+          .setTracerProvider(
+              SdkTracerProvider.builder()
+                  .addSpanProcessor(SimpleSpanProcessor.create(new ListSpanExporter()))
+                  .build())
+          .build();
+  private final MetricsHelper mockMetricsHelper = mock(MetricsHelper.class);
+  private final ClientConfig clientConfig =
+      ClientConfig.Builder.newBuilder()
+          .setClient(CLIENT)
+          .setOpenTelemetry(openTelemetry)
+          .setMetricsHelper(mockMetricsHelper)
+          .build();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  @SuppressWarnings("unchecked")
+  private final AbstractGoogleClientRequest<String> mockRequest =
+      mock(AbstractGoogleClientRequest.class);
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+    openTelemetry.close();
+  }
+
+  @Test
+  public void executeAsyncKeepsSpanContext() throws Exception {
+    when(mockRequest.execute()).thenReturn("result");
+    Span parent = openTelemetry.getTracer("test").spanBuilder("parent").startSpan();
+
+    String result;
+    try (Scope ignored = parent.makeCurrent()) {
+      result = new StubRequestCow(mockRequest).executeAsync(executor).get();
+    } finally {
+      parent.end();
+    }
+
+    assertEquals("result", result);
+    SpanData operationSpan =
+        spans.stream()
+            .filter(s -> s.getName().equals(StubCloudOperation.TEST_OPERATION.name()))
+            .findFirst()
+            .get();
+    assertEquals(parent.getSpanContext().getTraceId(), operationSpan.getTraceId());
+    assertEquals(parent.getSpanContext().getSpanId(), operationSpan.getParentSpanId());
+    verify(mockMetricsHelper).recordApiCount(CLIENT, StubCloudOperation.TEST_OPERATION);
+  }
+
+  @Test
+  public void executeAsyncFailsWithIOException() throws Exception {
+    IOException exception = new IOException("boom");
+    when(mockRequest.execute()).thenThrow(exception);
+
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () -> new StubRequestCow(mockRequest).executeAsync(executor).get());
+
+    assertThat(e.getCause(), instanceOf(IOException.class));
+    assertSame(exception, e.getCause());
+  }
+
+  @Test
+  public void executeAsyncOnDefaultExecutor() throws Exception {
+    when(mockRequest.execute()).thenReturn("result");
+
+    assertEquals("result", new StubRequestCow(mockRequest).executeAsync().get());
+  }
+
+  @Test
+  public void perProjectRateLimitsUseRequestProject() throws Exception {
+    MetricsHelper limitedMetricsHelper = mock(MetricsHelper.class);
+    IamCow iamCow =
+        new IamCow(
+            ClientConfig.Builder.newBuilder()
+                .setClient(CLIENT)
+                .setMetricsHelper(limitedMetricsHelper)
+                .setRateLimitConfig(
+                    RateLimitConfig.builder()
+                        .setFamilyLimit(
+                            IamOperation.class,
+                            RateLimit.builder().setPermitsPerSecond(2).setPerProject(true).build())
+                        .build())
+                .build(),
+            new Iam.Builder(
+                    new MockHttpTransport() {
+                      @Override
+                      public LowLevelHttpRequest buildRequest(String method, String url) {
+                        return new MockLowLevelHttpRequest(url)
+                            .setResponse(new MockLowLevelHttpResponse().setContent("{}"));
+                      }
+                    },
+                    GsonFactory.getDefaultInstance(),
+                    null)
+                .setApplicationName(CLIENT));
+
+    for (String projectId : List.of("project-a", "project-b", "project-a")) {
+      iamCow
+          .projects()
+          .serviceAccounts()
+          .get(
+              ServiceAccountName.builder()
+                  .projectId(projectId)
+                  .email("sa@" + projectId + ".iam.gserviceaccount.com")
+                  .build())
+          .execute();
+    }
+
+    // Each project has its own bucket, so only the second call in project-a waits for a refill.
+    ArgumentCaptor<Duration> waits = ArgumentCaptor.forClass(Duration.class);
+    verify(limitedMetricsHelper, times(3))
+        .recordRateLimitWait(
+            eq(CLIENT), eq(IamOperation.GOOGLE_GET_SERVICE_ACCOUNT), waits.capture());
+    assertEquals(Duration.ZERO, waits.getAllValues().get(0));
+    assertEquals(Duration.ZERO, waits.getAllValues().get(1));
+    assertThat(waits.getAllValues().get(2), greaterThan(Duration.ZERO));
+  }
+
+  private class StubRequestCow extends AbstractRequestCow<String> {
+    private StubRequestCow(AbstractGoogleClientRequest<String> request) {
+      super(
+          StubCloudOperation.TEST_OPERATION,
+          clientConfig,
+          new OperationAnnotator(
+              clientConfig, LoggerFactory.getLogger(AbstractRequestCowTest.class)),
+          request);
+    }
+
+    @Override
+    protected JsonObject serialize() {
+      return new JsonObject();
+    }
+  }
+
+  private class ListSpanExporter implements SpanExporter {
+    @Override
+    public CompletableResultCode export(Collection<SpanData> exported) {
+      spans.addAll(exported);
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.google.cloudresourcemanager.CloudResourceManagerCow;
+import bio.terra.cloudres.google.compute.CloudComputeCow;
+import bio.terra.cloudres.google.iam.IamCow;
+import bio.terra.cloudres.google.iam.ServiceAccountName;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.cloudresourcemanager.v3.CloudResourceManager;
+import com.google.api.services.cloudresourcemanager.v3.model.GetIamPolicyRequest;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.ZoneSetPolicyRequest;
+import com.google.api.services.iam.v1.Iam;
+import com.google.api.services.iam.v1.model.Binding;
+import com.google.api.services.iam.v1.model.Policy;
+import com.google.api.services.iam.v1.model.SetIamPolicyRequest;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class BulkIamPolicyUpdaterTest {
+  private static final Binding BINDING =
+      new Binding()
+          .setRole("roles/viewer")
+          .setMembers(new ArrayList<>(List.of("user:a@example.com")));
+
+  private static final String CONDITIONAL_POLICY =
+      "{\"version\": 3, \"etag\": \"BwX1\", \"bindings\": [{\"role\": \"roles/editor\","
+          + " \"members\": [\"user:b@example.com\"], \"condition\": {\"title\": \"expires\","
+          + " \"expression\": \"request.time < timestamp('2030-01-01T00:00:00Z')\"}}]}";
+
+  private final FakeIamPolicies policies = new FakeIamPolicies();
+
+  @Test
+  public void updatesEveryResource() {
+    List<String> resources = List.of("a", "b", "c");
+    BulkIamPolicyReport<String, Policy> report =
+        new BulkIamPolicyUpdater<>(policies, 2, 1).updateAll(resources, this::addBinding);
+
+    assertTrue(report.isSuccessful());
+    assertEquals(resources, new ArrayList<>(report.policies().keySet()));
+    report
+        .policies()
+        .values()
+        .forEach(policy -> assertEquals(List.of(BINDING), policy.getBindings()));
+    assertEquals(3, policies.writes.get());
+  }
+
+  @Test
+  public void unchangedPolicyIsNotWritten() {
+    BulkIamPolicyUpdater<String, Policy> updater = new BulkIamPolicyUpdater<>(policies);
+    updater.updateAll(List.of("a"), this::addBinding);
+
+    BulkIamPolicyReport<String, Policy> report = updater.updateAll(List.of("a"), this::addBinding);
+
+    assertTrue(report.isSuccessful());
+    assertEquals(1, policies.writes.get());
+  }
+
+  @Test
+  public void conflictIsRetriedWithNewEtag() {
+    BulkIamPolicyReport<String, Policy> report =
+        new BulkIamPolicyUpdater<>(policies)
+            .updateAll(
+                List.of("a"),
+                (resource, policy) -> {
+                  if (policies.reads.get() == 1) {
+                    // Another writer changes the policy between our read and write.
+                    policies.bump(resource);
+                  }
+                  // A new policy without an etag gets the etag of the policy read.
+                  return Optional.of(new Policy().setBindings(new ArrayList<>(List.of(BINDING))));
+                });
+
+    assertTrue(report.isSuccessful());
+    assertEquals(2, policies.reads.get());
+    assertEquals(1, policies.writes.get());
+  }
+
+  @Test
+  public void failuresAreReportedPerResource() {
+    BulkIamPolicyReport<String, Policy> report =
+        new BulkIamPolicyUpdater<>(policies, 4, 2)
+            .updateAll(
+                List.of("a", "b"),
+                (resource, policy) -> {
+                  if (resource.equals("b")) {
+                    policies.bump(resource);
+                  }
+                  return addBinding(resource, policy);
+                });
+
+    assertFalse(report.isSuccessful());
+    assertEquals(List.of("a"), new ArrayList<>(report.policies().keySet()));
+    assertEquals(409, ((HttpResponseException) report.failures().get("b")).getStatusCode());
+  }
+
+  @Test
+  public void conditionalBindingsAreReadAndWrittenAsVersion3() throws Exception {
+    PolicyTransport transport = new PolicyTransport(CONDITIONAL_POLICY);
+    IamCow iamCow =
+        new IamCow(
+            ClientConfig.Builder.newBuilder().setClient("crl-test").build(),
+            new Iam.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("crl-test"));
+    ServiceAccountName serviceAccount =
+        ServiceAccountName.builder()
+            .projectId("project")
+            .email("sa@project.iam.gserviceaccount.com")
+            .build();
+
+    BulkIamPolicyReport<ServiceAccountName, Policy> report =
+        new BulkIamPolicyUpdater<>(iamCow.projects().serviceAccounts().iamPolicyAccessor())
+            .updateAll(
+                List.of(serviceAccount),
+                (resource, policy) -> {
+                  policy.getBindings().add(BINDING);
+                  return Optional.of(policy);
+                });
+
+    assertTrue(report.isSuccessful());
+    assertThat(transport.urls.get(0), containsString("options.requestedPolicyVersion=3"));
+    Policy written =
+        GsonFactory.getDefaultInstance()
+            .fromString(transport.bodies.get(1), SetIamPolicyRequest.class)
+            .getPolicy();
+    assertEquals(3, written.getVersion());
+    assertEquals("expires", written.getBindings().get(0).getCondition().getTitle());
+    assertEquals(BINDING.getRole(), written.getBindings().get(1).getRole());
+  }
+
+  @Test
+  public void projectPoliciesAreReadAsVersion3() throws Exception {
+    PolicyTransport transport = new PolicyTransport(CONDITIONAL_POLICY);
+    CloudResourceManagerCow resourceManagerCow =
+        new CloudResourceManagerCow(
+            ClientConfig.Builder.newBuilder().setClient("crl-test").build(),
+            new CloudResourceManager.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("crl-test"));
+
+    var report =
+        new BulkIamPolicyUpdater<>(resourceManagerCow.projects().iamPolicyAccessor())
+            .getAll(List.of("project"));
+
+    assertTrue(report.isSuccessful());
+    assertEquals(
+        3,
+        GsonFactory.getDefaultInstance()
+            .fromString(transport.bodies.get(0), GetIamPolicyRequest.class)
+            .getOptions()
+            .getRequestedPolicyVersion());
+    assertEquals(
+        "expires", report.policies().get("project").getBindings().get(0).getCondition().getTitle());
+  }
+
+  @Test
+  public void instancePoliciesAreReadAndWrittenAsVersion3() throws Exception {
+    PolicyTransport transport = new PolicyTransport(CONDITIONAL_POLICY);
+    CloudComputeCow computeCow =
+        new CloudComputeCow(
+            ClientConfig.Builder.newBuilder().setClient("crl-test").build(),
+            new Compute.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("crl-test"));
+    var mutator =
+        new IamPolicyMutator<>(
+            computeCow.instances().iamPolicyAccessor("project", "zone"),
+            IamBindingEditor.forApiServices(),
+            1,
+            Runnable::run);
+
+    mutator
+        .mutate("instance", List.of(IamBindingDelta.add("roles/editor", "user:b@example.com")))
+        .get();
+
+    assertThat(transport.urls.get(0), containsString("optionsRequestedPolicyVersion=3"));
+    var written =
+        GsonFactory.getDefaultInstance()
+            .fromString(transport.bodies.get(1), ZoneSetPolicyRequest.class)
+            .getPolicy();
+    assertEquals(3, written.getVersion());
+    // The conditional binding is kept, and the member gets an unconditional one of its own.
+    assertEquals(2, written.getBindings().size());
+    assertEquals("expires", written.getBindings().get(0).getCondition().getTitle());
+    assertNull(written.getBindings().get(1).getCondition());
+  }
+
+  private Optional<Policy> addBinding(String resource, Policy policy) {
+    if (policy.getBindings() != null && policy.getBindings().contains(BINDING)) {
+      return Optional.empty();
+    }
+    return Optional.of(policy.setBindings(new ArrayList<>(List.of(BINDING))));
+  }
+
+  /**
+   * Answers getIamPolicy calls with a fixed policy and setIamPolicy calls with the policy written,
+   * recording the URL and body of each request.
+   */
+  private static class PolicyTransport extends MockHttpTransport {
+    private final String policy;
+    private final List<String> urls = new ArrayList<>();
+    private final List<String> bodies = new ArrayList<>();
+
+    private PolicyTransport(String policy) {
+      this.policy = policy;
+    }
+
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          String body = getContentAsString();
+          urls.add(url);
+          bodies.add(body);
+          String response =
+              url.contains(":setIamPolicy")
+                  ? JsonParser.parseString(body).getAsJsonObject().get("policy").toString()
+                  : policy;
+          return new MockLowLevelHttpResponse()
+              .setContentType(Json.MEDIA_TYPE)
+              .setContent(response);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.iam.v1.model.Policy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** IAM policies in memory, whose writes fail like IAM's when the etag is stale. */
+class FakeIamPolicies implements IamPolicyAccessor<String, Policy> {
+  private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+  final AtomicInteger reads = new AtomicInteger();
+  final AtomicInteger writes = new AtomicInteger();
+
+  @Override
+  public Policy getIamPolicy(String resource) {
+    reads.incrementAndGet();
+    return policies.computeIfAbsent(resource, r -> new Policy().setEtag("0")).clone();
+  }
+
+  @Override
+  public synchronized Policy setIamPolicy(String resource, Policy policy) throws IOException {
+    Policy current = getIamPolicy(resource);
+    reads.decrementAndGet();
+    if (!current.getEtag().equals(policy.getEtag())) {
+      throw new HttpResponseException.Builder(409, "ABORTED", new HttpHeaders()).build();
+    }
+    writes.incrementAndGet();
+    Policy written =
+        policy.clone().setEtag(Integer.toString(Integer.parseInt(current.getEtag()) + 1));
+    policies.put(resource, written);
+    return written.clone();
+  }
+
+  synchronized void bump(String resource) {
+    Policy current = policies.get(resource);
+    policies.put(resource, current.clone().setEtag(current.getEtag() + "1"));
+  }
+}
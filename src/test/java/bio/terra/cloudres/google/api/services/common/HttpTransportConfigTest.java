@@ -0,0 +1,109 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import io.opentelemetry.api.metrics.ObservableLongGauge;
+import java.time.Duration;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class HttpTransportConfigTest {
+  @Test
+  public void defaultConfigUsesSharedTransport() throws Exception {
+    ClientConfig first = ClientConfig.Builder.newBuilder().setClient("first").build();
+    ClientConfig second = ClientConfig.Builder.newBuilder().setClient("second").build();
+
+    assertSame(Defaults.httpTransport(), first.getHttpTransport());
+    assertSame(first.getHttpTransport(), second.getHttpTransport());
+  }
+
+  @Test
+  public void apacheTransportIsBuiltOncePerConfig() throws Exception {
+    ClientConfig clientConfig =
+        ClientConfig.Builder.newBuilder()
+            .setClient("client")
+            .setHttpTransportConfig(
+                HttpTransportConfig.builder()
+                    .setType(HttpTransportConfig.Type.APACHE)
+                    .setMaxConnections(10)
+                    .setMaxConnectionsPerHost(5)
+                    .build())
+            .build();
+
+    HttpTransport transport = clientConfig.getHttpTransport();
+    assertTrue(transport instanceof ApacheHttpTransport);
+    assertSame(transport, clientConfig.getHttpTransport());
+    clientConfig.close();
+  }
+
+  @Test
+  public void closeShutsDownTheConnectionPool() throws Exception {
+    MetricsHelper metricsHelper = mock(MetricsHelper.class);
+    ObservableLongGauge gauge = mock(ObservableLongGauge.class);
+    when(metricsHelper.registerHttpConnectionPool(eq("client"), any(), any(), any()))
+        .thenReturn(gauge);
+    ClientConfig clientConfig =
+        ClientConfig.Builder.newBuilder()
+            .setClient("client")
+            .setMetricsHelper(metricsHelper)
+            .setHttpTransportConfig(
+                HttpTransportConfig.builder().setType(HttpTransportConfig.Type.APACHE).build())
+            .build();
+    HttpTransport transport = clientConfig.getHttpTransport();
+
+    clientConfig.close();
+
+    verify(gauge).close();
+    // The pool is shut down, so no request can lease a connection.
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            transport
+                .createRequestFactory()
+                .buildGetRequest(new GenericUrl("http://localhost:1"))
+                .execute());
+    assertThrows(IllegalStateException.class, clientConfig::getHttpTransport);
+    // Closing again does nothing.
+    clientConfig.close();
+    verify(gauge).close();
+  }
+
+  @Test
+  public void closeLeavesTheSharedTransportOpen() throws Exception {
+    ClientConfig clientConfig = ClientConfig.Builder.newBuilder().setClient("client").build();
+    clientConfig.getHttpTransport();
+
+    clientConfig.close();
+
+    assertSame(
+        Defaults.httpTransport(),
+        ClientConfig.Builder.newBuilder().setClient("other").build().getHttpTransport());
+  }
+
+  @Test
+  public void invalidConfigIsRejected() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            HttpTransportConfig.builder()
+                .setMaxConnections(10)
+                .setMaxConnectionsPerHost(20)
+                .build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> HttpTransportConfig.builder().setIdleTimeout(Duration.ZERO).build());
+  }
+}
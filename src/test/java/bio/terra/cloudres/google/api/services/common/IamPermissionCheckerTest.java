@@ -0,0 +1,180 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import bio.terra.cloudres.common.OperationAnnotator;
+import com.google.common.base.Ticker;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class IamPermissionCheckerTest {
+  private static final Duration TTL = Duration.ofSeconds(30);
+  private static final Set<String> GRANTED = Set.of("read", "list");
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final OperationAnnotator mockAnnotator = mock(OperationAnnotator.class);
+  /** Runs the checker's calls only when the test says so. */
+  private final Queue<Runnable> tasks = new LinkedList<>();
+  /** The permissions tested by each call. */
+  private final List<Set<String>> calls = new ArrayList<>();
+
+  private IamPermissionChecker<String> checker =
+      newChecker(
+          (resource, permissions) -> {
+            calls.add(permissions);
+            Set<String> granted = new HashSet<>(permissions);
+            granted.retainAll(GRANTED);
+            return granted;
+          },
+          100);
+
+  @Test
+  public void concurrentChecksShareCalls() {
+    CompletableFuture<Set<String>> first =
+        checker.testIamPermissionsAsync("bucket", List.of("read", "write"));
+    CompletableFuture<Set<String>> second =
+        checker.testIamPermissionsAsync("bucket", List.of("write", "list"));
+    assertEquals(1, tasks.size());
+
+    tasks.remove().run();
+
+    assertEquals(List.of(Set.of("read", "write", "list")), calls);
+    assertEquals(Set.of("read"), first.join());
+    assertEquals(Set.of("list"), second.join());
+    assertTrue(tasks.isEmpty());
+  }
+
+  @Test
+  public void answersAreCachedUntilTtl() throws Exception {
+    checker.testIamPermissionsAsync("bucket", List.of("read", "write"));
+    tasks.remove().run();
+
+    assertEquals(Set.of("read"), checker.testIamPermissions("bucket", Set.of("read", "write")));
+    assertEquals(1, calls.size());
+    verify(mockAnnotator).recordCacheRequest("test", true);
+
+    ticker.advance(TTL);
+    CompletableFuture<Set<String>> expired =
+        checker.testIamPermissionsAsync("bucket", List.of("read"));
+    assertFalse(expired.isDone());
+    tasks.remove().run();
+    assertEquals(2, calls.size());
+  }
+
+  @Test
+  public void largeChecksAreSplit() {
+    checker =
+        newChecker(
+            (resource, permissions) -> {
+              calls.add(permissions);
+              return Set.of();
+            },
+            2);
+    CompletableFuture<Set<String>> result =
+        checker.testIamPermissionsAsync("bucket", List.of("a", "b", "c", "d", "e"));
+    tasks.remove().run();
+
+    assertEquals(List.of(Set.of("a", "b"), Set.of("c", "d"), Set.of("e")), calls);
+    assertTrue(result.join().isEmpty());
+  }
+
+  @Test
+  public void failuresAreNotCached() {
+    checker =
+        newChecker(
+            (resource, permissions) -> {
+              calls.add(permissions);
+              throw new IOException("unavailable");
+            },
+            100);
+    CompletableFuture<Set<String>> failed =
+        checker.testIamPermissionsAsync("bucket", List.of("read"));
+    tasks.remove().run();
+
+    CompletionException e = assertThrows(CompletionException.class, failed::join);
+    assertTrue(e.getCause() instanceof IOException);
+    checker.testIamPermissionsAsync("bucket", List.of("read"));
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void errorsFailQueuedChecks() {
+    checker =
+        newChecker(
+            (resource, permissions) -> {
+              calls.add(permissions);
+              throw new LinkageError("broken");
+            },
+            1);
+    CompletableFuture<Set<String>> failed =
+        checker.testIamPermissionsAsync("bucket", List.of("read", "write"));
+    assertThrows(LinkageError.class, tasks.remove()::run);
+
+    assertEquals(1, calls.size());
+    CompletionException e = assertThrows(CompletionException.class, failed::join);
+    assertTrue(e.getCause() instanceof LinkageError);
+    checker.testIamPermissionsAsync("bucket", List.of("read"));
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void rejectedCallsFailTheCheck() {
+    checker =
+        new IamPermissionChecker<>(
+            "test",
+            (resource, permissions) -> GRANTED,
+            TTL,
+            100,
+            task -> {
+              throw new RejectedExecutionException("shut down");
+            },
+            ticker,
+            mockAnnotator);
+
+    CompletableFuture<Set<String>> first =
+        checker.testIamPermissionsAsync("bucket", List.of("read"));
+    CompletionException e = assertThrows(CompletionException.class, first::join);
+    assertTrue(e.getCause() instanceof RejectedExecutionException);
+    // The resource is not left with checks that nothing will call.
+    CompletableFuture<Set<String>> second =
+        checker.testIamPermissionsAsync("bucket", List.of("read"));
+    assertThrows(CompletionException.class, second::join);
+  }
+
+  private IamPermissionChecker<String> newChecker(
+      IamPermissionTester<String> tester, int maxPermissionsPerCall) {
+    return new IamPermissionChecker<>(
+        "test", tester, TTL, maxPermissionsPerCall, tasks::add, ticker, mockAnnotator);
+  }
+
+  /** A {@link Ticker} that only moves when told to. */
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+  }
+}
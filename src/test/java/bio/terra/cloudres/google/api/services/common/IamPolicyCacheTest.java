@@ -0,0 +1,94 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import bio.terra.cloudres.common.OperationAnnotator;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.iam.v1.model.Binding;
+import com.google.api.services.iam.v1.model.Policy;
+import com.google.common.base.Ticker;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class IamPolicyCacheTest {
+  private static final Duration TTL = Duration.ofSeconds(30);
+
+  private final FakeIamPolicies policies = new FakeIamPolicies();
+  private final FakeTicker ticker = new FakeTicker();
+  private final OperationAnnotator mockAnnotator = mock(OperationAnnotator.class);
+  private final IamPolicyCache<String, Policy> cache =
+      new IamPolicyCache<>(
+          "test", policies, Policy::getEtag, Policy::clone, TTL, 100, ticker, mockAnnotator);
+
+  @Test
+  public void readsAreCachedUntilTtl() throws Exception {
+    cache.getIamPolicy("p").setBindings(new ArrayList<>(List.of(new Binding())));
+    // Callers get their own copies.
+    assertNull(cache.getIamPolicy("p").getBindings());
+    assertEquals(1, policies.reads.get());
+    verify(mockAnnotator).recordCacheRequest("test", true);
+
+    ticker.advance(TTL);
+    cache.getIamPolicy("p");
+    assertEquals(2, policies.reads.get());
+    verify(mockAnnotator, times(2)).recordCacheRequest("test", false);
+    verify(mockAnnotator, never()).recordCacheStale("test");
+  }
+
+  @Test
+  public void writeReplacesCachedPolicy() throws Exception {
+    Policy written = cache.setIamPolicy("p", cache.getIamPolicy("p"));
+
+    assertEquals(written.getEtag(), cache.getIamPolicy("p").getEtag());
+    assertEquals(1, policies.reads.get());
+  }
+
+  @Test
+  public void conflictDropsStalePolicy() throws Exception {
+    Policy cached = cache.getIamPolicy("p");
+    policies.bump("p");
+
+    HttpResponseException e =
+        assertThrows(HttpResponseException.class, () -> cache.setIamPolicy("p", cached));
+    assertEquals(409, e.getStatusCode());
+    verify(mockAnnotator).recordCacheStale("test");
+
+    cache.setIamPolicy("p", cache.getIamPolicy("p"));
+    assertEquals(2, policies.reads.get());
+    assertEquals(1, policies.writes.get());
+  }
+
+  @Test
+  public void expiredPolicyChangedSinceReadIsStale() throws Exception {
+    cache.getIamPolicy("p");
+    policies.bump("p");
+    ticker.advance(TTL);
+
+    cache.getIamPolicy("p");
+    verify(mockAnnotator).recordCacheStale("test");
+  }
+
+  /** A {@link Ticker} that only moves when told to. */
+  private static class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(Duration duration) {
+      nanos += duration.toNanos();
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.iam.v1.model.Binding;
+import com.google.api.services.iam.v1.model.Expr;
+import com.google.api.services.iam.v1.model.Policy;
+import com.google.cloud.Identity;
+import com.google.cloud.Role;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class IamPolicyMutatorTest {
+  private static final String VIEWER = "roles/viewer";
+  private static final String ALICE = "user:alice@example.com";
+  private static final String BOB = "user:bob@example.com";
+
+  private final FakeIamPolicies policies = new FakeIamPolicies();
+  /** Runs the mutator's writes only when the test says so. */
+  private final Queue<Runnable> tasks = new LinkedList<>();
+
+  private final IamPolicyMutator<String, Policy> mutator =
+      new IamPolicyMutator<>(policies, IamBindingEditor.forApiServices(), 3, tasks::add);
+
+  @Test
+  public void pendingMutationsAreCoalesced() {
+    List<CompletableFuture<Policy>> results =
+        List.of(
+            mutator.mutate("p", List.of(IamBindingDelta.add(VIEWER, ALICE))),
+            mutator.mutate("p", List.of(IamBindingDelta.add(VIEWER, BOB))),
+            mutator.mutate("p", List.of(IamBindingDelta.remove(VIEWER, ALICE))));
+    assertEquals(1, tasks.size());
+
+    tasks.remove().run();
+
+    assertEquals(1, policies.reads.get());
+    assertEquals(1, policies.writes.get());
+    for (CompletableFuture<Policy> result : results) {
+      assertEquals(List.of(BOB), result.join().getBindings().get(0).getMembers());
+    }
+
+    // Once drained, the next mutation starts a new write.
+    CompletableFuture<Policy> later =
+        mutator.mutate("p", List.of(IamBindingDelta.remove(VIEWER, BOB)));
+    tasks.remove().run();
+    assertTrue(later.join().getBindings().isEmpty());
+    assertEquals(2, policies.writes.get());
+  }
+
+  @Test
+  public void conflictIsRetriedWithFreshRead() {
+    IamPolicyAccessor<String, Policy> racing =
+        new IamPolicyAccessor<>() {
+          @Override
+          public Policy getIamPolicy(String resource) {
+            return policies.getIamPolicy(resource);
+          }
+
+          @Override
+          public Policy setIamPolicy(String resource, Policy policy) throws IOException {
+            if (policies.reads.get() == 1) {
+              policies.bump(resource);
+            }
+            return policies.setIamPolicy(resource, policy);
+          }
+        };
+    CompletableFuture<Policy> result =
+        new IamPolicyMutator<>(racing, IamBindingEditor.forApiServices(), 3, Runnable::run)
+            .mutate("p", List.of(IamBindingDelta.add(VIEWER, ALICE)));
+
+    assertEquals(List.of(ALICE), result.join().getBindings().get(0).getMembers());
+    assertEquals(2, policies.reads.get());
+    assertEquals(1, policies.writes.get());
+  }
+
+  @Test
+  public void failedCoalescedWriteIsRetriedPerCaller() {
+    String deleted = "deleted:user:carol@example.com";
+    IamPolicyAccessor<String, Policy> rejecting =
+        new IamPolicyAccessor<>() {
+          @Override
+          public Policy getIamPolicy(String resource) {
+            return policies.getIamPolicy(resource);
+          }
+
+          @Override
+          public Policy setIamPolicy(String resource, Policy policy) throws IOException {
+            if (policy.getBindings().stream().anyMatch(b -> b.getMembers().contains(deleted))) {
+              throw new HttpResponseException.Builder(400, "INVALID_ARGUMENT", new HttpHeaders())
+                  .build();
+            }
+            return policies.setIamPolicy(resource, policy);
+          }
+        };
+    IamPolicyMutator<String, Policy> rejectingMutator =
+        new IamPolicyMutator<>(rejecting, IamBindingEditor.forApiServices(), 3, tasks::add);
+    CompletableFuture<Policy> good =
+        rejectingMutator.mutate("p", List.of(IamBindingDelta.add(VIEWER, ALICE)));
+    CompletableFuture<Policy> bad =
+        rejectingMutator.mutate("p", List.of(IamBindingDelta.add(VIEWER, deleted)));
+
+    tasks.remove().run();
+
+    assertEquals(List.of(ALICE), good.join().getBindings().get(0).getMembers());
+    CompletionException e = assertThrows(CompletionException.class, bad::join);
+    assertTrue(e.getCause() instanceof HttpResponseException);
+    // One write of both, then one each.
+    assertEquals(3, policies.reads.get());
+    assertEquals(1, policies.writes.get());
+  }
+
+  @Test
+  public void errorsFailPendingMutations() {
+    List<CompletableFuture<Policy>> queued = new ArrayList<>();
+    AtomicReference<IamPolicyMutator<String, Policy>> broken = new AtomicReference<>();
+    broken.set(
+        new IamPolicyMutator<>(
+            new IamPolicyAccessor<>() {
+              @Override
+              public Policy getIamPolicy(String resource) {
+                // Queues a mutation behind the write in progress.
+                queued.add(
+                    broken.get().mutate(resource, List.of(IamBindingDelta.add(VIEWER, BOB))));
+                throw new LinkageError("broken");
+              }
+
+              @Override
+              public Policy setIamPolicy(String resource, Policy policy) {
+                throw new AssertionError("unexpected write");
+              }
+            },
+            IamBindingEditor.forApiServices(),
+            3,
+            tasks::add));
+
+    CompletableFuture<Policy> failed =
+        broken.get().mutate("p", List.of(IamBindingDelta.add(VIEWER, ALICE)));
+    assertThrows(LinkageError.class, tasks.remove()::run);
+
+    for (CompletableFuture<Policy> result : List.of(failed, queued.get(0))) {
+      CompletionException e = assertThrows(CompletionException.class, result::join);
+      assertTrue(e.getCause() instanceof LinkageError);
+    }
+    // The resource is not left with mutations that nothing will write.
+    broken.get().mutate("p", List.of(IamBindingDelta.add(VIEWER, ALICE)));
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void rejectedWritesFailTheMutation() {
+    IamPolicyMutator<String, Policy> rejecting =
+        new IamPolicyMutator<>(
+            policies,
+            IamBindingEditor.forApiServices(),
+            3,
+            task -> {
+              throw new RejectedExecutionException("shut down");
+            });
+
+    CompletableFuture<Policy> first =
+        rejecting.mutate("p", List.of(IamBindingDelta.add(VIEWER, ALICE)));
+    CompletionException e = assertThrows(CompletionException.class, first::join);
+    assertTrue(e.getCause() instanceof RejectedExecutionException);
+    CompletableFuture<Policy> second =
+        rejecting.mutate("p", List.of(IamBindingDelta.add(VIEWER, BOB)));
+    assertThrows(CompletionException.class, second::join);
+    assertEquals(0, policies.reads.get());
+  }
+
+  @Test
+  public void apiServicesEditorLeavesConditionalBindingsAlone() {
+    Binding conditional =
+        new Binding()
+            .setRole(VIEWER)
+            .setMembers(new ArrayList<>(List.of(ALICE)))
+            .setCondition(new Expr().setExpression("request.time < timestamp('2030-01-01Z')"));
+    Policy policy = new Policy().setBindings(new ArrayList<>(List.of(conditional)));
+    IamBindingEditor<Policy> editor = IamBindingEditor.forApiServices();
+
+    assertFalse(editor.apply(policy, List.of(IamBindingDelta.remove(VIEWER, ALICE))).isPresent());
+    Policy added = editor.apply(policy, List.of(IamBindingDelta.add(VIEWER, ALICE))).get();
+    assertEquals(2, added.getBindings().size());
+    Policy removed = editor.apply(added, List.of(IamBindingDelta.remove(VIEWER, ALICE))).get();
+    assertEquals(List.of(conditional), removed.getBindings());
+  }
+
+  @Test
+  public void cloudPolicyEditor() {
+    com.google.cloud.Policy policy = com.google.cloud.Policy.newBuilder().setEtag("etag").build();
+    IamBindingEditor<com.google.cloud.Policy> editor = IamBindingEditor.forCloudPolicy();
+
+    com.google.cloud.Policy added =
+        editor.apply(policy, List.of(IamBindingDelta.add(VIEWER, ALICE))).get();
+    assertEquals(Set.of(Identity.valueOf(ALICE)), added.getBindings().get(Role.of(VIEWER)));
+    assertEquals("etag", added.getEtag());
+    assertFalse(editor.apply(added, List.of(IamBindingDelta.add(VIEWER, ALICE))).isPresent());
+  }
+
+  @Test
+  public void cloudPolicyEditorLeavesConditionalBindingsAlone() {
+    com.google.cloud.Binding conditional =
+        com.google.cloud.Binding.newBuilder()
+            .setRole(VIEWER)
+            .setMembers(List.of(ALICE))
+            .setCondition(
+                com.google.cloud.Condition.newBuilder()
+                    .setTitle("expires")
+                    .setExpression("request.time < timestamp('2030-01-01Z')")
+                    .build())
+            .build();
+    com.google.cloud.Policy policy =
+        com.google.cloud.Policy.newBuilder()
+            .setVersion(3)
+            .setBindings(List.of(conditional))
+            .setEtag("etag")
+            .build();
+    IamBindingEditor<com.google.cloud.Policy> editor = IamBindingEditor.forCloudPolicy();
+
+    assertFalse(editor.apply(policy, List.of(IamBindingDelta.remove(VIEWER, ALICE))).isPresent());
+    com.google.cloud.Policy added =
+        editor.apply(policy, List.of(IamBindingDelta.add(VIEWER, ALICE))).get();
+    assertEquals(2, added.getBindingsList().size());
+    assertEquals("etag", added.getEtag());
+    com.google.cloud.Policy removed =
+        editor.apply(added, List.of(IamBindingDelta.remove(VIEWER, ALICE))).get();
+    assertEquals(List.of(conditional), removed.getBindingsList());
+  }
+}
@@ -0,0 +1,148 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.google.compute.CloudComputeCow;
+import bio.terra.cloudres.google.compute.CloudComputeOperation;
+import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Zone;
+import com.google.api.services.compute.model.ZoneList;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class ListPagerTest {
+  private static final String CLIENT = "crl-test";
+  private static final Pattern PAGE_TOKEN = Pattern.compile("pageToken=(\\w+)");
+
+  /** The zone list pages by page token, with the first page under "first". */
+  private static final Map<String, String> PAGES =
+      Map.of(
+          "first", "{\"items\": [{\"name\": \"a\"}, {\"name\": \"b\"}], \"nextPageToken\": \"p2\"}",
+          "p2", "{\"nextPageToken\": \"p3\"}",
+          "p3", "{\"items\": [{\"name\": \"c\"}]}");
+
+  private final AtomicInteger httpRequests = new AtomicInteger();
+  private MetricsHelper mockMetricsHelper;
+  private CloudComputeCow computeCow;
+
+  @BeforeEach
+  public void setup() {
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+              @Override
+              public LowLevelHttpResponse execute() {
+                httpRequests.incrementAndGet();
+                Matcher token = PAGE_TOKEN.matcher(url);
+                String page = PAGES.get(token.find() ? token.group(1) : "first");
+                if (page == null) {
+                  return new MockLowLevelHttpResponse().setStatusCode(500);
+                }
+                return new MockLowLevelHttpResponse()
+                    .setContentType("application/json")
+                    .setContent(page);
+              }
+            };
+          }
+        };
+    mockMetricsHelper = mock(MetricsHelper.class);
+    computeCow =
+        new CloudComputeCow(
+            ClientConfig.Builder.newBuilder()
+                .setClient(CLIENT)
+                .setMetricsHelper(mockMetricsHelper)
+                .build(),
+            new Compute.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName(CLIENT));
+  }
+
+  @Test
+  public void iteratesAllPages() throws Exception {
+    ListPager<ZoneList, Zone> pager = computeCow.zones().list("project").pager();
+
+    assertEquals(List.of("a", "b", "c"), names(pager.stream().collect(Collectors.toList())));
+    assertEquals(3, httpRequests.get());
+    verify(mockMetricsHelper, times(3))
+        .recordApiCount(CLIENT, CloudComputeOperation.GOOGLE_LIST_ZONE);
+  }
+
+  @Test
+  public void fetchesPagesLazily() throws Exception {
+    Iterator<Zone> zones = computeCow.zones().list("project").pager().iterator();
+    assertEquals(0, httpRequests.get());
+
+    assertEquals("a", zones.next().getName());
+    assertEquals("b", zones.next().getName());
+    assertEquals(1, httpRequests.get());
+
+    assertEquals("c", zones.next().getName());
+    assertFalse(zones.hasNext());
+    assertEquals(3, httpRequests.get());
+  }
+
+  @Test
+  public void startsFromRequestPageToken() throws Exception {
+    ListPager<ZoneList, Zone> pager = computeCow.zones().list("project").setPageToken("p3").pager();
+
+    assertEquals(List.of("c"), names(pager.stream().collect(Collectors.toList())));
+    // Iterating again starts over from the same page.
+    assertEquals(List.of("c"), names(pager.stream().collect(Collectors.toList())));
+  }
+
+  @Test
+  public void prefetchesNextPage() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ListPager<ZoneList, Zone> pager =
+          computeCow.zones().list("project").pager().withPrefetch(executor);
+
+      assertEquals(List.of("a", "b", "c"), names(pager.stream().collect(Collectors.toList())));
+      verify(mockMetricsHelper, times(3))
+          .recordApiCount(CLIENT, CloudComputeOperation.GOOGLE_LIST_ZONE);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void pageFailureThrowsUncheckedIOException() throws Exception {
+    Iterator<Zone> zones =
+        computeCow.zones().list("project").setPageToken("missing").pager().iterator();
+
+    UncheckedIOException e = assertThrows(UncheckedIOException.class, zones::hasNext);
+    assertTrue(e.getCause() instanceof IOException);
+  }
+
+  private static List<String> names(List<Zone> zones) {
+    return zones.stream().map(Zone::getName).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,283 @@
+package bio.terra.cloudres.google.api.services.common;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import bio.terra.cloudres.common.ClientConfig;
+import bio.terra.cloudres.google.compute.CloudComputeCow;
+import bio.terra.cloudres.google.compute.CloudComputeOperation;
+import bio.terra.cloudres.util.MetricsHelper;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.compute.Compute;
+import com.google.api.services.compute.model.Operation;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+@Tag("unit")
+public class OperationPollerTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  private final OperationPoller poller =
+      OperationPoller.Builder.newBuilder()
+          .setThreadCount(2)
+          .setInitialInterval(Duration.ofMillis(1))
+          .setMaxInterval(Duration.ofMillis(5))
+          .build();
+
+  @AfterEach
+  public void tearDown() {
+    poller.close();
+  }
+
+  @Test
+  public void completesWhenDone() throws Exception {
+    OperationCow<Object> done = operation(true);
+    OperationCow<Object> running = operation(false);
+    OperationCow<Object> start = operation(false);
+    when(start.executeGet()).thenReturn(running);
+    when(running.executeGet()).thenReturn(done);
+
+    assertSame(
+        done,
+        poller.pollUntilComplete(start, TIMEOUT).get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void completesImmediatelyWhenAlreadyDone() throws Exception {
+    OperationCow<Object> done = operation(true);
+
+    CompletableFuture<OperationCow<Object>> future = poller.pollUntilComplete(done, TIMEOUT);
+
+    assertSame(done, future.getNow(null));
+    verify(done, never()).executeGet();
+  }
+
+  @Test
+  public void completesWhenError() throws Exception {
+    OperationCow<Object> failed = operation(false);
+    when(failed.getOperationAdapter().getError())
+        .thenReturn(mock(OperationCow.OperationAdapter.StatusAdapter.class));
+    OperationCow<Object> start = operation(false);
+    when(start.executeGet()).thenReturn(failed);
+
+    assertSame(
+        failed,
+        poller.pollUntilComplete(start, TIMEOUT).get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void timesOut() throws Exception {
+    OperationCow<Object> running = operation(false);
+    when(running.executeGet()).thenReturn(running);
+
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                poller
+                    .pollUntilComplete(running, Duration.ofMillis(20))
+                    .get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+    assertThat(e.getCause(), instanceOf(TimeoutException.class));
+  }
+
+  @Test
+  public void getErrorFailsFuture() throws Exception {
+    OperationCow<Object> start = operation(false);
+    when(start.executeGet()).thenThrow(new IOException("boom"));
+
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                poller
+                    .pollUntilComplete(start, TIMEOUT)
+                    .get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+    assertThat(e.getCause(), instanceOf(IOException.class));
+  }
+
+  @Test
+  public void pollsManyOperationsOnFewThreads() throws Exception {
+    List<CompletableFuture<OperationCow<Object>>> futures = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      OperationCow<Object> done = operation(true);
+      OperationCow<Object> running = operation(false);
+      OperationCow<Object> start = operation(false);
+      when(start.executeGet()).thenReturn(running);
+      when(running.executeGet()).thenReturn(done);
+      futures.add(poller.pollUntilComplete(start, TIMEOUT));
+    }
+
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void batchesDueGets() throws Exception {
+    AtomicInteger httpRequests = new AtomicInteger();
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+              @Override
+              public LowLevelHttpResponse execute() throws IOException {
+                httpRequests.incrementAndGet();
+                // Answer each get in the order it was added to the batch.
+                Matcher names = Pattern.compile("operations/(\\w+)").matcher(getContentAsString());
+                List<String> operationNames = new ArrayList<>();
+                while (names.find()) {
+                  operationNames.add(names.group(1));
+                }
+                return batchResponse(operationNames);
+              }
+            };
+          }
+        };
+    MetricsHelper mockMetricsHelper = mock(MetricsHelper.class);
+    CloudComputeCow computeCow =
+        new CloudComputeCow(
+            ClientConfig.Builder.newBuilder()
+                .setClient("crl-test")
+                .setMetricsHelper(mockMetricsHelper)
+                .build(),
+            new Compute.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("crl-test"));
+    OperationPoller batchingPoller =
+        OperationPoller.Builder.newBuilder()
+            .setInitialInterval(Duration.ofMillis(1))
+            .setJitter(0)
+            .setBatching(true)
+            .setBatchWindow(Duration.ofMillis(50))
+            .build();
+
+    try {
+      CompletableFuture<OperationCow<Operation>> op1 =
+          batchingPoller.pollUntilComplete(
+              computeCow
+                  .globalOperations()
+                  .operationCow("project", new Operation().setName("op1").setStatus("RUNNING")),
+              TIMEOUT);
+      CompletableFuture<OperationCow<Operation>> op2 =
+          batchingPoller.pollUntilComplete(
+              computeCow
+                  .globalOperations()
+                  .operationCow("project", new Operation().setName("op2").setStatus("RUNNING")),
+              TIMEOUT);
+
+      assertEquals(
+          "op1",
+          op1.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS).getOperationAdapter().getName());
+      assertEquals(
+          "op2",
+          op2.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS).getOperationAdapter().getName());
+      assertEquals(1, httpRequests.get());
+      verify(mockMetricsHelper, times(2))
+          .recordApiCount("crl-test", CloudComputeOperation.GOOGLE_COMPUTE_GLOBAL_OPERATION_GET);
+    } finally {
+      batchingPoller.close();
+    }
+  }
+
+  @Test
+  public void retriesFailedBatches() throws Exception {
+    AtomicInteger httpRequests = new AtomicInteger();
+    MockHttpTransport transport =
+        new MockHttpTransport() {
+          @Override
+          public LowLevelHttpRequest buildRequest(String method, String url) {
+            return new MockLowLevelHttpRequest(url) {
+              @Override
+              public LowLevelHttpResponse execute() throws IOException {
+                if (httpRequests.incrementAndGet() == 1) {
+                  throw new IOException("connection reset");
+                }
+                return batchResponse(List.of("op1"));
+              }
+            };
+          }
+        };
+    CloudComputeCow computeCow =
+        new CloudComputeCow(
+            ClientConfig.Builder.newBuilder()
+                .setClient("crl-test")
+                .setMetricsHelper(mock(MetricsHelper.class))
+                .build(),
+            new Compute.Builder(transport, GsonFactory.getDefaultInstance(), null)
+                .setApplicationName("crl-test"));
+    OperationPoller batchingPoller =
+        OperationPoller.Builder.newBuilder()
+            .setInitialInterval(Duration.ofMillis(1))
+            .setBatching(true)
+            .setBatchWindow(Duration.ofMillis(1))
+            .build();
+
+    try {
+      CompletableFuture<OperationCow<Operation>> op1 =
+          batchingPoller.pollUntilComplete(
+              computeCow
+                  .globalOperations()
+                  .operationCow("project", new Operation().setName("op1").setStatus("RUNNING")),
+              TIMEOUT);
+
+      assertTrue(
+          op1.get(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS).getOperationAdapter().getDone());
+      assertEquals(2, httpRequests.get());
+    } finally {
+      batchingPoller.close();
+    }
+  }
+
+  /** A multipart batch response with a done compute operation for each operation name. */
+  private static MockLowLevelHttpResponse batchResponse(List<String> operationNames) {
+    String boundary = "batch_boundary";
+    StringBuilder content = new StringBuilder();
+    for (String name : operationNames) {
+      content
+          .append("--")
+          .append(boundary)
+          .append("\r\nContent-Type: application/http\r\n\r\n")
+          .append("HTTP/1.1 200 OK\r\nContent-Type: application/json; charset=UTF-8\r\n\r\n")
+          .append(String.format("{\"name\": \"%s\", \"status\": \"DONE\"}\r\n", name));
+    }
+    content.append("--").append(boundary).append("--");
+    return new MockLowLevelHttpResponse()
+        .setContentType("multipart/mixed; boundary=" + boundary)
+        .setContent(content.toString());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static OperationCow<Object> operation(boolean done) {
+    OperationCow.OperationAdapter<Object> adapter = mock(OperationCow.OperationAdapter.class);
+    when(adapter.getName()).thenReturn("operation");
+    when(adapter.getDone()).thenReturn(done);
+    OperationCow<Object> operation = mock(OperationCow.class);
+    when(operation.getOperationAdapter()).thenReturn(adapter);
+    return operation;
+  }
+}
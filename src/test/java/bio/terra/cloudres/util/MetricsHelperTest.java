@@ -1,7 +1,11 @@
 package bio.terra.cloudres.util;
 
 import static bio.terra.cloudres.util.MetricsHelper.GENERIC_UNKNOWN_ERROR_CODE;
+import static bio.terra.cloudres.util.MetricsHelper.KEY_CACHE_RESULT;
+import static bio.terra.cloudres.util.MetricsHelper.KEY_CLIENT;
+import static bio.terra.cloudres.util.MetricsHelper.KEY_CONNECTION_STATE;
 import static bio.terra.cloudres.util.MetricsHelper.KEY_ERROR;
+import static bio.terra.cloudres.util.MetricsHelper.KEY_RATE_LIMIT;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -9,6 +13,7 @@ import bio.terra.cloudres.testing.StubCloudOperation;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.DoublePointData;
 import io.opentelemetry.sdk.metrics.data.HistogramPointData;
 import io.opentelemetry.sdk.metrics.data.LongPointData;
 import io.opentelemetry.sdk.metrics.data.MetricData;
@@ -125,4 +130,138 @@ public class MetricsHelperTest {
     assertEquals(1, point.getCounts().get(0));
     assertEquals(2, point.getCounts().get(1));
   }
+
+  @Test
+  public void testRecordApiCountSeparatesClients() throws Exception {
+    metricsHelper.recordApiCount(CLIENT, StubCloudOperation.TEST_OPERATION);
+    metricsHelper.recordApiCount("OtherClient", StubCloudOperation.TEST_OPERATION);
+    metricsHelper.recordApiCount("OtherClient", StubCloudOperation.TEST_OPERATION);
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.API_COUNT_METER_NAME, metric.getName());
+    assertEquals(2, metric.getData().getPoints().size());
+    assertEquals(
+        2,
+        ((LongPointData)
+                metric.getData().getPoints().stream()
+                    .filter(p -> "OtherClient".equals(p.getAttributes().get(KEY_CLIENT)))
+                    .findFirst()
+                    .get())
+            .getValue());
+  }
+
+  @Test
+  public void testRecordCleanupDropped() throws Exception {
+    metricsHelper.recordCleanupDropped(CLIENT);
+    metricsHelper.recordCleanupDropped(CLIENT);
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.CLEANUP_DROPPED_METER_NAME, metric.getName());
+    assertEquals(1, metric.getData().getPoints().size());
+    assertEquals(2, ((LongPointData) metric.getData().getPoints().iterator().next()).getValue());
+  }
+
+  @Test
+  public void testRecordRateLimitWait() throws Exception {
+    metricsHelper.recordRateLimitWait(CLIENT, StubCloudOperation.TEST_OPERATION, Duration.ZERO);
+    metricsHelper.recordRateLimitWait(
+        CLIENT, StubCloudOperation.TEST_OPERATION, Duration.ofMillis(30));
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.RATE_LIMIT_WAIT_METER_NAME, metric.getName());
+    var point = (HistogramPointData) metric.getData().getPoints().iterator().next();
+    assertEquals(2, point.getCount());
+    assertEquals(30, point.getSum(), 0);
+  }
+
+  @Test
+  public void testRecordRateLimitTokens() throws Exception {
+    metricsHelper.recordRateLimitTokens(CLIENT, "IamOperation", 3);
+    metricsHelper.recordRateLimitTokens(CLIENT, "IamOperation", -1.5);
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.RATE_LIMIT_TOKENS_METER_NAME, metric.getName());
+    var point = (DoublePointData) metric.getData().getPoints().iterator().next();
+    assertEquals(-1.5, point.getValue(), 0);
+    assertEquals("IamOperation", point.getAttributes().get(KEY_RATE_LIMIT));
+  }
+
+  @Test
+  public void testRecordTransferBytes() throws Exception {
+    metricsHelper.recordTransferBytes(CLIENT, StubCloudOperation.TEST_OPERATION, 1000);
+    metricsHelper.recordTransferBytes(CLIENT, StubCloudOperation.TEST_OPERATION, 24);
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.TRANSFER_BYTES_METER_NAME, metric.getName());
+    var point = (LongPointData) metric.getData().getPoints().iterator().next();
+    assertEquals(1024, point.getValue());
+  }
+
+  @Test
+  public void testRecordTransferThroughput() throws Exception {
+    metricsHelper.recordTransferThroughput(CLIENT, StubCloudOperation.TEST_OPERATION, 1e6);
+    metricsHelper.recordTransferThroughput(CLIENT, StubCloudOperation.TEST_OPERATION, 3e6);
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.TRANSFER_THROUGHPUT_METER_NAME, metric.getName());
+    var point = (HistogramPointData) metric.getData().getPoints().iterator().next();
+    assertEquals(2, point.getCount());
+    assertEquals(4e6, point.getSum(), 0);
+  }
+
+  @Test
+  public void testRecordCacheRequest() throws Exception {
+    metricsHelper.recordCacheRequest(CLIENT, "cache", true);
+    metricsHelper.recordCacheRequest(CLIENT, "cache", true);
+    metricsHelper.recordCacheRequest(CLIENT, "cache", false);
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.CACHE_REQUEST_METER_NAME, metric.getName());
+    assertEquals(2, metric.getData().getPoints().size());
+    for (var point : metric.getData().getPoints()) {
+      var longPoint = (LongPointData) point;
+      assertEquals(
+          "hit".equals(longPoint.getAttributes().get(KEY_CACHE_RESULT)) ? 2 : 1,
+          longPoint.getValue());
+    }
+  }
+
+  @Test
+  public void testRecordCacheStale() throws Exception {
+    metricsHelper.recordCacheStale(CLIENT, "cache");
+    metricsHelper.recordCacheStale(CLIENT, "cache");
+
+    var metric = waitForMetrics();
+
+    assertEquals(MetricsHelper.CACHE_STALE_METER_NAME, metric.getName());
+    assertEquals(2, ((LongPointData) metric.getData().getPoints().iterator().next()).getValue());
+  }
+
+  @Test
+  public void testRegisterHttpConnectionPool() throws Exception {
+    try (AutoCloseable gauge =
+        metricsHelper.registerHttpConnectionPool(CLIENT, () -> 3, () -> 2, () -> 1)) {
+      var metric = waitForMetrics();
+
+      assertEquals(MetricsHelper.HTTP_POOL_CONNECTIONS_METER_NAME, metric.getName());
+      assertEquals(3, metric.getData().getPoints().size());
+      for (var point : metric.getData().getPoints()) {
+        var longPoint = (LongPointData) point;
+        long expected =
+            switch (longPoint.getAttributes().get(KEY_CONNECTION_STATE)) {
+              case "leased" -> 3;
+              case "idle" -> 2;
+              default -> 1;
+            };
+        assertEquals(expected, longPoint.getValue());
+      }
+    }
+  }
 }